@@ -32,17 +32,26 @@ from angebot a,
 where a.aid = g.aid
   and GebotsPreis < AuktionMinPreis;
 
-select g1.gid, g2.gid
-from gebot g1,
-     gebot g2
-where g1.aid = g2.aid
-  and g1.GebotsZeitpunkt < g2.GebotsZeitpunkt
-  and g1.GebotsPreis >= g2.GebotsPreis;
-
-select g1.gid, g2.gid
-from gebot g1,
-     gebot g2
-where g1.aid = g2.aid
-  and g1.GebotsZeitpunkt = g2.GebotsZeitpunkt
-  and g1.gid <> g2.gid;
+-- Gebote, die nicht hoeher als ein frueheres Gebot derselben Auktion sind.
+-- Mit Fensterfunktion statt Self-Join, damit der Aufwand je Auktion nicht quadratisch waechst.
+-- Fuer den gesamten Bestand: GebotIntegritaetsPruefer.
+select g.gid, g.aid, g.GebotsZeitpunkt, g.GebotsPreis, z.MaxVorher
+from gebot g
+         join (select aid,
+                      GebotsZeitpunkt,
+                      max(MaxPreis) over (partition by aid order by GebotsZeitpunkt
+                          rows between unbounded preceding and 1 preceding) as MaxVorher
+               from (select aid, GebotsZeitpunkt, max(GebotsPreis) as MaxPreis
+                     from gebot
+                     where GebotsZeitpunkt is not null
+                     group by aid, GebotsZeitpunkt)) z
+              on z.aid = g.aid and z.GebotsZeitpunkt = g.GebotsZeitpunkt
+where g.GebotsPreis <= z.MaxVorher;
+
+-- Gebote mit gleichem Zeitpunkt innerhalb einer Auktion
+select gid, aid, GebotsZeitpunkt
+from (select g.gid, g.aid, g.GebotsZeitpunkt, count(*) over (partition by g.aid, g.GebotsZeitpunkt) as Anzahl
+      from gebot g
+      where g.GebotsZeitpunkt is not null)
+where Anzahl > 1;
 
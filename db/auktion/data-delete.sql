@@ -1,4 +1,12 @@
 delete
+from Gebot_Archiv;
+delete
+from Angebot_Archiv;
+delete
+from Zuschlag;
+delete
+from Maximalgebot;
+delete
 from Gebot;
 delete
 from Angebot;
@@ -61,3 +61,6 @@ values (14002, 5, '20.03.2015 11:30:21', 7.00);
 insert into Gebot (GID, AID, GebotsZeitpunkt, GebotsPreis)
 values (15001, 6, '01.10.2019 10:09:12', 3.00);
 
+update Angebot a
+set AktuellerPreis = (select max(GebotsPreis) from Gebot g where g.AID = a.AID),
+    AnzahlGebote   = (select count(*) from Gebot g where g.AID = a.AID);
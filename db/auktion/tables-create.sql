@@ -4,6 +4,11 @@ create table Angebot
     ArtikelBez           varchar2(30)  not null,
     AuktionEndeZeitpunkt date          not null,
     AuktionMinPreis      decimal(9, 2) not null,
+    -- denormalisiert aus Gebot, null solange kein Gebot vorliegt
+    AktuellerPreis       decimal(9, 2) null,
+    AnzahlGebote         integer       default 0 not null,
+    -- wird bei jeder Aenderung erhoeht (optimistische Sperre)
+    Version              integer       default 0 not null,
     constraint pk_angebot primary key (AID)
 );
 
@@ -13,10 +18,76 @@ create table Gebot
     AID             integer       not null,
     GebotsZeitpunkt date null,
     GebotsPreis     decimal(9, 2) not null,
+    -- nur bei automatischen Geboten (Maximalgebot) gesetzt
+    Bieter          varchar2(30)  null,
     constraint pk_gebot primary key (GID),
     constraint fk_angebot foreign key (AID) references Angebot
 );
 
+-- Keyset-Blaettern: Gebotshistorie je Auktion und offene Auktionen nach Ende
+create index ix_gebot_aid_zeit_gid on Gebot (AID, GebotsZeitpunkt, GID);
+create index ix_angebot_ende_aid on Angebot (AuktionEndeZeitpunkt, AID);
 
+-- hoechster Betrag, bis zu dem automatisch fuer einen Bieter geboten wird
+create table Maximalgebot
+(
+    AID        integer       not null,
+    Bieter     varchar2(30)  not null,
+    MaxPreis   decimal(9, 2) not null,
+    -- bei gleichem Maximalbetrag gewinnt das fruehere
+    Zeitpunkt  date          not null,
+    constraint pk_maximalgebot primary key (AID, Bieter),
+    constraint fk_maximalgebot_angebot foreign key (AID) references Angebot
+);
+
+-- Ergebnis beendeter Auktionen, GID null bedeutet "kein Verkauf"
+create table Zuschlag
+(
+    AID                 integer       not null,
+    GID                 integer       null,
+    ZuschlagPreis       decimal(9, 2) null,
+    AbrechnungZeitpunkt date          not null,
+    constraint pk_zuschlag primary key (AID)
+);
+
+-- Abgerechnete Auktionen werden nach einer Frist hierher verschoben (AuktionsArchivierer),
+-- damit Angebot und Gebot klein bleiben
+create table Angebot_Archiv
+(
+    AID                  integer       not null,
+    ArtikelBez           varchar2(30)  not null,
+    AuktionEndeZeitpunkt date          not null,
+    AuktionMinPreis      decimal(9, 2) not null,
+    AktuellerPreis       decimal(9, 2) null,
+    AnzahlGebote         integer       not null,
+    Version              integer       not null,
+    constraint pk_angebot_archiv primary key (AID)
+);
+
+create table Gebot_Archiv
+(
+    GID             integer       not null,
+    AID             integer       not null,
+    GebotsZeitpunkt date null,
+    GebotsPreis     decimal(9, 2) not null,
+    Bieter          varchar2(30)  null,
+    constraint pk_gebot_archiv primary key (GID),
+    constraint fk_angebot_archiv foreign key (AID) references Angebot_Archiv
+);
+
+create index ix_gebot_archiv_aid_zeit_gid on Gebot_Archiv (AID, GebotsZeitpunkt, GID);
 
+-- aktueller Bestand und Archiv zusammen, fuer Abfragen ueber die gesamte Historie
+create view Angebot_Alle as
+select AID, ArtikelBez, AuktionEndeZeitpunkt, AuktionMinPreis, AktuellerPreis, AnzahlGebote, Version
+from Angebot
+union all
+select AID, ArtikelBez, AuktionEndeZeitpunkt, AuktionMinPreis, AktuellerPreis, AnzahlGebote, Version
+from Angebot_Archiv;
 
+create view Gebot_Alle as
+select GID, AID, GebotsZeitpunkt, GebotsPreis, Bieter
+from Gebot
+union all
+select GID, AID, GebotsZeitpunkt, GebotsPreis, Bieter
+from Gebot_Archiv;
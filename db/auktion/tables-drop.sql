@@ -1,3 +1,9 @@
+drop view Gebot_Alle;
+drop view Angebot_Alle;
+drop table Gebot_Archiv;
+drop table Angebot_Archiv;
+drop table Zuschlag;
+drop table Maximalgebot;
 drop table Gebot;
 drop table Angebot;
 
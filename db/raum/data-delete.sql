@@ -1,2 +1,4 @@
 delete
+from Sitzreservierung;
+delete
 from Raum;
\ No newline at end of file
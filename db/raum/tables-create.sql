@@ -4,3 +4,15 @@ create table Raum
     RaumNr      varchar2(10) not null,
     AnzahlSitze integer
 );
+
+-- belegte Sitze je Raum und Zeitfenster (z.B. Pruefungstermin), SitzNr ab 0
+create table Sitzreservierung
+(
+    RID          integer      not null,
+    Zeitfenster  date         not null,
+    SitzNr       integer      not null,
+    Inhaber      varchar2(30) not null,
+    Zeitpunkt    date         not null,
+    constraint pk_sitzreservierung primary key (RID, Zeitfenster, SitzNr),
+    constraint fk_sitzreservierung_raum foreign key (RID) references Raum (RID)
+);
@@ -1 +1,2 @@
+drop table Sitzreservierung;
 drop table Raum;
@@ -4,11 +4,18 @@ package de.htwberlin.dbtech.aufgaben.ue02;
   @author Ingo Classen
  */
 
+import de.htwberlin.dbtech.utils.mapper.Abbildbar;
+import de.htwberlin.dbtech.utils.mapper.Spalte;
+
 import java.time.LocalDate;
 
+@Abbildbar
 public class Kunde {
+    @Spalte
     private Integer id;
+    @Spalte
     private String name;
+    @Spalte
     private LocalDate geburtsdatum;
 
     public Kunde() {
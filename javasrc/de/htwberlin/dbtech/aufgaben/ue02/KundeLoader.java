@@ -0,0 +1,216 @@
+package de.htwberlin.dbtech.aufgaben.ue02;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.exceptions.KundeExistiertNichtException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sammelt Anfragen nach einzelnen Kunden und liest sie gemeinsam mit einem select ... where ID in (...).
+ * <p>
+ * Eine Sammlung wird gelesen, sobald sie maxBatch verschiedene IDs hat (im Thread des letzten Aufrufers) oder
+ * das Zeitfenster seit ihrer ersten Anfrage abgelaufen ist (im Hintergrund). Mehrfach angefragte IDs werden
+ * einmal gelesen, ihre Aufrufer bekommen dasselbe Kunde-Objekt. Jeder Aufrufer bekommt seinen Kunden oder, wenn
+ * es die ID nicht gibt, nur er eine {@link KundeExistiertNichtException}; ein Datenbankfehler trifft alle
+ * Aufrufer der Sammlung.
+ * <p>
+ * Die Anzahl der Platzhalter wird auf die naechste Zweierpotenz aufgefuellt, damit nur wenige verschiedene
+ * Statements entstehen. Alle Abfragen laufen nacheinander auf der Connection des Loaders.
+ */
+public class KundeLoader implements AutoCloseable {
+    private static final Logger L = LoggerFactory.getLogger(KundeLoader.class);
+    // Oracle erlaubt hoechstens 1000 Ausdruecke in einer in-Liste
+    private static final int MAX_IN_LISTE = 1000;
+
+    private final int maxBatch;
+    private final long fensterNanos;
+    private final ScheduledExecutorService zeitgeber;
+    private final Object abfrageSperre = new Object();
+    private volatile Connection connection = null;
+
+    private Map<Integer, List<CompletableFuture<Kunde>>> offen = new LinkedHashMap<>();
+    private ScheduledFuture<?> geplant = null;
+
+    private final AtomicLong anfragen = new AtomicLong();
+    private final AtomicLong abfragen = new AtomicLong();
+    private final AtomicLong gelesen = new AtomicLong();
+
+    /**
+     * @param maxBatch hoechstens so viele verschiedene IDs je Abfrage, hoechstens 1000
+     * @param fenster  wie lange eine Sammlung nach ihrer ersten Anfrage auf weitere wartet
+     */
+    public KundeLoader(int maxBatch, Duration fenster) {
+        if (maxBatch < 1 || maxBatch > MAX_IN_LISTE) {
+            throw new IllegalArgumentException("es muss 1 <= maxBatch <= " + MAX_IN_LISTE + " gelten");
+        }
+        this.maxBatch = maxBatch;
+        this.fensterNanos = fenster.toNanos();
+        this.zeitgeber = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "kundeloader");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void setConnection(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Wie {@link IVersicherungJdbc#findKundeById}, wartet aber auf die Sammlung.
+     *
+     * @throws KundeExistiertNichtException wenn es die ID nicht gibt
+     */
+    public Kunde lade(Integer id) {
+        try {
+            return ladeAsync(id).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Nimmt die ID in die aktuelle Sammlung auf.
+     */
+    public CompletableFuture<Kunde> ladeAsync(Integer id) {
+        anfragen.incrementAndGet();
+        CompletableFuture<Kunde> kunde = new CompletableFuture<>();
+        if (id == null) {
+            kunde.completeExceptionally(new KundeExistiertNichtException(null));
+            return kunde;
+        }
+        Map<Integer, List<CompletableFuture<Kunde>>> voll = null;
+        synchronized (this) {
+            offen.computeIfAbsent(id, k -> new ArrayList<>(1)).add(kunde);
+            if (offen.size() >= maxBatch) {
+                voll = entnehme();
+            } else if (geplant == null) {
+                geplant = zeitgeber.schedule(this::leere, fensterNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (voll != null) {
+            lies(voll);
+        }
+        return kunde;
+    }
+
+    /**
+     * Liest die aktuelle Sammlung sofort, ohne das Zeitfenster abzuwarten.
+     */
+    public void leere() {
+        Map<Integer, List<CompletableFuture<Kunde>>> sammlung;
+        synchronized (this) {
+            sammlung = entnehme();
+        }
+        if (!sammlung.isEmpty()) {
+            lies(sammlung);
+        }
+    }
+
+    public long getAnfragen() {
+        return anfragen.get();
+    }
+
+    /**
+     * Ausgefuehrte Abfragen, je Sammlung eine.
+     */
+    public long getAbfragen() {
+        return abfragen.get();
+    }
+
+    /**
+     * Mittlere Anzahl verschiedener IDs je Abfrage, 0 ohne Abfragen.
+     */
+    public double getMittlereBatchGroesse() {
+        long n = abfragen.get();
+        return n == 0 ? 0 : (double) gelesen.get() / n;
+    }
+
+    /**
+     * Liest die offene Sammlung und beendet den Hintergrund-Thread.
+     */
+    @Override
+    public void close() {
+        zeitgeber.shutdownNow();
+        leere();
+    }
+
+    // nur mit Sperre aufrufen
+    private Map<Integer, List<CompletableFuture<Kunde>>> entnehme() {
+        Map<Integer, List<CompletableFuture<Kunde>>> sammlung = offen;
+        offen = new LinkedHashMap<>();
+        if (geplant != null) {
+            geplant.cancel(false);
+            geplant = null;
+        }
+        return sammlung;
+    }
+
+    private void lies(Map<Integer, List<CompletableFuture<Kunde>>> sammlung) {
+        Integer[] ids = sammlung.keySet().toArray(new Integer[0]);
+        int platzhalter = Math.min(Integer.highestOneBit(ids.length * 2 - 1), maxBatch);
+        StringBuilder sql = new StringBuilder("select ID, Name, Geburtsdatum from Kunde where ID in (?");
+        for (int i = 1; i < platzhalter; i++) {
+            sql.append(",?");
+        }
+        sql.append(")");
+        L.info(sql.toString());
+        abfragen.incrementAndGet();
+        gelesen.addAndGet(ids.length);
+        try {
+            synchronized (abfrageSperre) {
+                try (PreparedStatement ps = useConnection().prepareStatement(sql.toString())) {
+                    for (int i = 0; i < platzhalter; i++) {
+                        // aufgefuellt mit der ersten ID
+                        ps.setInt(i + 1, ids[i < ids.length ? i : 0]);
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        KundeMapper mapper = new KundeMapper(rs);
+                        while (rs.next()) {
+                            Kunde k = mapper.abbilden(rs);
+                            List<CompletableFuture<Kunde>> wartend = sammlung.remove(k.getId());
+                            if (wartend != null) {
+                                wartend.forEach(f -> f.complete(k));
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            RuntimeException fehler = e instanceof SQLException ? new DataException(e) : (RuntimeException) e;
+            L.error("", e);
+            sammlung.values().forEach(wartend -> wartend.forEach(f -> f.completeExceptionally(fehler)));
+            return;
+        }
+        // was uebrig ist, gibt es nicht
+        sammlung.forEach((id, wartend) -> wartend.forEach(
+                f -> f.completeExceptionally(new KundeExistiertNichtException(id))));
+    }
+
+    private Connection useConnection() {
+        if (connection == null) {
+            throw new DataException("Connection not set");
+        }
+        return connection;
+    }
+}
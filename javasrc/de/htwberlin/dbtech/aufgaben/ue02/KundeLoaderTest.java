@@ -0,0 +1,151 @@
+package de.htwberlin.dbtech.aufgaben.ue02;
+
+import de.htwberlin.dbtech.exceptions.KundeExistiertNichtException;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class KundeLoaderTest {
+
+    private static final String[] SPALTEN = {"ID", "NAME", "GEBURTSDATUM"};
+
+    // Kunden mit den IDs 1..anzahl; merkt sich die Statements
+    private static Connection kunden(int anzahl, List<String> statements) {
+        ClassLoader lader = KundeLoaderTest.class.getClassLoader();
+        return (Connection) Proxy.newProxyInstance(lader, new Class<?>[]{Connection.class}, (p, m, a) -> {
+            if (!m.getName().equals("prepareStatement")) {
+                throw new UnsupportedOperationException(m.getName());
+            }
+            statements.add((String) a[0]);
+            TreeSet<Integer> ids = new TreeSet<>();
+            return Proxy.newProxyInstance(lader, new Class<?>[]{PreparedStatement.class}, (ps, pm, pa) -> {
+                switch (pm.getName()) {
+                    case "setInt":
+                        ids.add((Integer) pa[1]);
+                        return null;
+                    case "executeQuery":
+                        List<Integer> zeilen = new ArrayList<>(ids.headSet(anzahl, true));
+                        return resultSet(lader, zeilen);
+                    case "close":
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(pm.getName());
+                }
+            });
+        });
+    }
+
+    private static ResultSet resultSet(ClassLoader lader, List<Integer> zeilen) {
+        ResultSetMetaData md = (ResultSetMetaData) Proxy.newProxyInstance(lader,
+                new Class<?>[]{ResultSetMetaData.class}, (p, m, a) -> {
+                    if (m.getName().equals("getColumnCount")) {
+                        return SPALTEN.length;
+                    }
+                    return SPALTEN[(Integer) a[0] - 1];
+                });
+        int[] zeile = {-1};
+        return (ResultSet) Proxy.newProxyInstance(lader, new Class<?>[]{ResultSet.class}, (p, m, a) -> {
+            switch (m.getName()) {
+                case "getMetaData":
+                    return md;
+                case "next":
+                    return ++zeile[0] < zeilen.size();
+                case "getInt":
+                    return zeilen.get(zeile[0]);
+                case "getString":
+                    return "Kunde " + zeilen.get(zeile[0]);
+                case "getObject":
+                    return LocalDate.of(1980, 1, 1).plusDays(zeilen.get(zeile[0]));
+                case "wasNull":
+                    return false;
+                case "close":
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(m.getName());
+            }
+        });
+    }
+
+    @org.junit.Test
+    public void anfragenImFensterWerdenGemeinsamGelesen() {
+        List<String> statements = new ArrayList<>();
+        try (KundeLoader loader = new KundeLoader(100, Duration.ofSeconds(10))) {
+            loader.setConnection(kunden(10, statements));
+            List<CompletableFuture<Kunde>> kunden = new ArrayList<>();
+            for (int id : new int[]{3, 1, 4, 1, 5}) {
+                kunden.add(loader.ladeAsync(id));
+            }
+            assertTrue(statements.isEmpty());
+            loader.leere();
+
+            assertEquals(1, statements.size());
+            // 4 verschiedene IDs, 4 Platzhalter
+            assertTrue(statements.get(0), statements.get(0).endsWith("where ID in (?,?,?,?)"));
+            assertEquals("Kunde 3", kunden.get(0).join().getName());
+            assertEquals(LocalDate.of(1980, 1, 5), kunden.get(2).join().getGeburtsdatum());
+            assertSame(kunden.get(1).join(), kunden.get(3).join());
+            assertEquals(4.0, loader.getMittlereBatchGroesse(), 0.0);
+        }
+    }
+
+    @org.junit.Test
+    public void fehlendeIdTrifftNurIhrenAufrufer() {
+        try (KundeLoader loader = new KundeLoader(100, Duration.ofSeconds(10))) {
+            loader.setConnection(kunden(10, new ArrayList<>()));
+            CompletableFuture<Kunde> vorhanden = loader.ladeAsync(7);
+            CompletableFuture<Kunde> fehlt = loader.ladeAsync(999);
+            loader.leere();
+            assertEquals(Integer.valueOf(7), vorhanden.join().getId());
+            try {
+                fehlt.join();
+                fail();
+            } catch (CompletionException e) {
+                assertTrue(e.getCause() instanceof KundeExistiertNichtException);
+            }
+        }
+    }
+
+    @org.junit.Test
+    public void volleSammlungWirdSofortGelesen() {
+        List<String> statements = new ArrayList<>();
+        try (KundeLoader loader = new KundeLoader(3, Duration.ofSeconds(10))) {
+            loader.setConnection(kunden(10, statements));
+            loader.ladeAsync(1);
+            loader.ladeAsync(2);
+            CompletableFuture<Kunde> dritter = loader.ladeAsync(3);
+            assertTrue(dritter.isDone());
+            assertEquals(1, statements.size());
+            assertTrue(statements.get(0), statements.get(0).endsWith("where ID in (?,?,?)"));
+        }
+    }
+
+    @org.junit.Test
+    public void fensterLaeuftAb() {
+        try (KundeLoader loader = new KundeLoader(100, Duration.ofMillis(5))) {
+            loader.setConnection(kunden(10, new ArrayList<>()));
+            assertEquals("Kunde 2", loader.lade(2).getName());
+            try {
+                loader.lade(11);
+                fail();
+            } catch (KundeExistiertNichtException e) {
+                assertEquals("kundenId: 11", e.getMessage());
+            }
+            assertEquals(2, loader.getAbfragen());
+        }
+    }
+}
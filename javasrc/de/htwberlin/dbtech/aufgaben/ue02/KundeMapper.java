@@ -0,0 +1,28 @@
+package de.htwberlin.dbtech.aufgaben.ue02;
+
+/**
+ * Erzeugt von MapperProzessor aus Kunde.
+ */
+@javax.annotation.processing.Generated("de.htwberlin.dbtech.utils.mapper.MapperProzessor")
+public final class KundeMapper implements de.htwberlin.dbtech.utils.mapper.ZeilenMapper<Kunde> {
+    private final int idIndex;
+    private final int nameIndex;
+    private final int geburtsdatumIndex;
+
+    public KundeMapper(java.sql.ResultSet rs) throws java.sql.SQLException {
+        de.htwberlin.dbtech.utils.mapper.Spalten s = de.htwberlin.dbtech.utils.mapper.Spalten.von(rs);
+        idIndex = s.pflicht("id");
+        nameIndex = s.pflicht("name");
+        geburtsdatumIndex = s.pflicht("geburtsdatum");
+    }
+
+    @Override
+    public Kunde abbilden(java.sql.ResultSet rs) throws java.sql.SQLException {
+        Kunde o = new Kunde();
+        int idWert = rs.getInt(idIndex);
+        o.setId(rs.wasNull() ? null : idWert);
+        o.setName(rs.getString(nameIndex));
+        o.setGeburtsdatum(rs.getObject(geburtsdatumIndex, java.time.LocalDate.class));
+        return o;
+    }
+}
@@ -6,6 +6,11 @@ package de.htwberlin.dbtech.aufgaben.ue02;
  */
 
 import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.exceptions.KundeExistiertNichtException;
+import de.htwberlin.dbtech.exceptions.VertragExistiertNichtException;
+import de.htwberlin.dbtech.utils.CursorStream;
+import de.htwberlin.dbtech.utils.ExistenzFilter;
+import de.htwberlin.dbtech.utils.Geld;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -17,20 +22,50 @@ import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * VersicherungJdbc
  */
 public class VersicherungJdbc implements IVersicherungJdbc {
     private static final Logger L = LoggerFactory.getLogger(VersicherungJdbc.class);
+
+    // Zeilen je Roundtrip und kleinster ID-Bereich eines Teilstreams
+    private static final int FETCH_SIZE = 1000;
+    private static final long MIN_BEREICH = 1000;
+
     private Connection connection;
+    private ExistenzFilter kundeFilter = null;
+    private ExistenzFilter vertragFilter = null;
+    private KundeLoader kundeLoader = null;
 
     @Override
     public void setConnection(Connection connection) {
         this.connection = connection;
     }
 
-    @SuppressWarnings("unused")
+    /**
+     * Filter, mit dem nicht existierende Kunden ohne Abfrage erkannt werden.
+     */
+    public void setKundeFilter(ExistenzFilter kundeFilter) {
+        this.kundeFilter = kundeFilter;
+    }
+
+    /**
+     * Wie {@link #setKundeFilter} fuer Vertraege.
+     */
+    public void setVertragFilter(ExistenzFilter vertragFilter) {
+        this.vertragFilter = vertragFilter;
+    }
+
+    /**
+     * Loader, ueber den findKundeById gleichzeitige Anfragen gesammelt liest. Mehrere Dienste koennen sich einen
+     * Loader teilen. Ohne Aufruf liest jeder Aufruf selbst.
+     */
+    public void setKundeLoader(KundeLoader kundeLoader) {
+        this.kundeLoader = kundeLoader;
+    }
+
     private Connection useConnection() {
         if (connection == null) {
             throw new DataException("Connection not set");
@@ -57,12 +92,81 @@ public class VersicherungJdbc implements IVersicherungJdbc {
         return kurzBez;
     }
 
+    /**
+     * Alle Kunden nach ID, erst beim Lesen des Streams geholt. Der Stream haelt Cursor offen und muss
+     * geschlossen werden, wenn er nicht bis zum Ende gelesen wird. Parallel zerfaellt er in ID-Bereiche.
+     */
+    public Stream<Kunde> findAlleKunden() {
+        long[] bereich = idBereich("select min(ID) as MinId, max(ID) as MaxId from Kunde");
+        String sql = "select ID, Name, Geburtsdatum from Kunde where ID between ? and ? order by ID";
+        return CursorStream.nachSchluessel(useConnection(), sql, bereich[0], bereich[1], MIN_BEREICH, FETCH_SIZE,
+                KundeMapper::new);
+    }
+
+    /**
+     * Alle Vertraege eines Produkts nach ID, wie {@link #findAlleKunden()}.
+     */
+    public Stream<Vertrag> findVertraegeByProdukt(Integer produktId) {
+        long[] bereich = idBereich("select min(ID) as MinId, max(ID) as MaxId from Vertrag where Produkt_FK=?",
+                produktId);
+        String sql = "select ID, Produkt_FK, Kunde_FK, Versicherungsbeginn, Versicherungsende from Vertrag " +
+                "where Produkt_FK=? and ID between ? and ? order by ID";
+        return CursorStream.nachSchluessel(useConnection(), sql, bereich[0], bereich[1], MIN_BEREICH, FETCH_SIZE,
+                VertragMapper::new, produktId);
+    }
+
+    // kleinste und groesste ID; ohne Zeilen ein leerer Bereich
+    private long[] idBereich(String sql, Object... parameter) {
+        L.info(sql);
+        try (PreparedStatement ps = useConnection().prepareStatement(sql)) {
+            for (int i = 0; i < parameter.length; i++) {
+                ps.setObject(i + 1, parameter[i]);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                long min = rs.getLong("MinId");
+                return rs.wasNull() ? new long[]{1, 0} : new long[]{min, rs.getLong("MaxId")};
+            }
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        }
+    }
 
     @Override
     public Kunde findKundeById(Integer id) {
         L.info("id: " + id);
+        if (id == null || kundeFilter != null && kundeFilter.sicherAbwesend(id)) {
+            throw new KundeExistiertNichtException(id);
+        }
+        Kunde kunde;
+        try {
+            kunde = kundeLoader != null ? kundeLoader.lade(id) : leseKunde(id);
+        } catch (KundeExistiertNichtException e) {
+            if (kundeFilter != null) {
+                kundeFilter.nichtGefunden(id);
+            }
+            throw e;
+        }
         L.info("ende");
-        return null;
+        return kunde;
+    }
+
+    private Kunde leseKunde(Integer id) {
+        String sql = "select ID, Name, Geburtsdatum from Kunde where ID=?";
+        L.info(sql);
+        try (PreparedStatement ps = useConnection().prepareStatement(sql)) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    throw new KundeExistiertNichtException(id);
+                }
+                return new KundeMapper(rs).abbilden(rs);
+            }
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        }
     }
 
     @Override
@@ -77,9 +181,43 @@ public class VersicherungJdbc implements IVersicherungJdbc {
     @Override
     public BigDecimal calcMonatsrate(Integer vertragsId) {
         L.info("vertragsId: " + vertragsId);
-
+        if (vertragsId == null || vertragFilter != null && vertragFilter.sicherAbwesend(vertragsId)) {
+            throw new VertragExistiertNichtException(vertragsId);
+        }
+        // je Deckung der zum Versicherungsbeginn gueltige Preis; summiert wird in Cent, damit ohne BigDecimal.
+        // Ohne Deckungen liefert der outer join eine Zeile mit Preis null
+        String sql = "select dp.Preis from Vertrag v " +
+                "left join Deckung d on d.Vertrag_FK = v.ID " +
+                "left join Deckungsbetrag db on db.Deckungsart_FK = d.Deckungsart_FK " +
+                "and db.Deckungsbetrag = d.Deckungsbetrag " +
+                "left join Deckungspreis dp on dp.Deckungsbetrag_FK = db.ID " +
+                "and v.Versicherungsbeginn between dp.Gueltig_Von and dp.Gueltig_Bis " +
+                "where v.ID = ?";
+        L.info(sql);
+        long summe = 0;
+        try (PreparedStatement ps = useConnection().prepareStatement(sql)) {
+            ps.setInt(1, vertragsId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    if (vertragFilter != null) {
+                        vertragFilter.nichtGefunden(vertragsId);
+                    }
+                    throw new VertragExistiertNichtException(vertragsId);
+                }
+                do {
+                    BigDecimal preis = rs.getBigDecimal("Preis");
+                    if (preis != null) {
+                        // exakt, mehr als 2 Nachkommastellen geben eine ArithmeticException
+                        summe = Geld.plus(summe, Geld.cent(preis));
+                    }
+                } while (rs.next());
+            }
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        }
         L.info("ende");
-        return null;
+        return Geld.alsNumber(summe);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,70 @@
+package de.htwberlin.dbtech.aufgaben.ue02;
+
+import de.htwberlin.dbtech.utils.mapper.Abbildbar;
+import de.htwberlin.dbtech.utils.mapper.Spalte;
+
+import java.time.LocalDate;
+
+@Abbildbar
+public class Vertrag {
+    @Spalte
+    private Integer id;
+    @Spalte("Produkt_FK")
+    private Integer produktId;
+    @Spalte("Kunde_FK")
+    private Integer kundenId;
+    @Spalte
+    private LocalDate versicherungsbeginn;
+    @Spalte
+    private LocalDate versicherungsende;
+
+    public Vertrag() {
+    }
+
+    @Override
+    public String toString() {
+        return "Vertrag [id=" + id + ", produktId=" + produktId + ", kundenId=" + kundenId
+                + ", versicherungsbeginn=" + versicherungsbeginn + ", versicherungsende=" + versicherungsende + "]";
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public Integer getProduktId() {
+        return produktId;
+    }
+
+    public void setProduktId(Integer produktId) {
+        this.produktId = produktId;
+    }
+
+    public Integer getKundenId() {
+        return kundenId;
+    }
+
+    public void setKundenId(Integer kundenId) {
+        this.kundenId = kundenId;
+    }
+
+    public LocalDate getVersicherungsbeginn() {
+        return versicherungsbeginn;
+    }
+
+    public void setVersicherungsbeginn(LocalDate versicherungsbeginn) {
+        this.versicherungsbeginn = versicherungsbeginn;
+    }
+
+    public LocalDate getVersicherungsende() {
+        return versicherungsende;
+    }
+
+    public void setVersicherungsende(LocalDate versicherungsende) {
+        this.versicherungsende = versicherungsende;
+    }
+
+}
@@ -0,0 +1,36 @@
+package de.htwberlin.dbtech.aufgaben.ue02;
+
+/**
+ * Erzeugt von MapperProzessor aus Vertrag.
+ */
+@javax.annotation.processing.Generated("de.htwberlin.dbtech.utils.mapper.MapperProzessor")
+public final class VertragMapper implements de.htwberlin.dbtech.utils.mapper.ZeilenMapper<Vertrag> {
+    private final int idIndex;
+    private final int produktIdIndex;
+    private final int kundenIdIndex;
+    private final int versicherungsbeginnIndex;
+    private final int versicherungsendeIndex;
+
+    public VertragMapper(java.sql.ResultSet rs) throws java.sql.SQLException {
+        de.htwberlin.dbtech.utils.mapper.Spalten s = de.htwberlin.dbtech.utils.mapper.Spalten.von(rs);
+        idIndex = s.pflicht("id");
+        produktIdIndex = s.pflicht("Produkt_FK");
+        kundenIdIndex = s.pflicht("Kunde_FK");
+        versicherungsbeginnIndex = s.pflicht("versicherungsbeginn");
+        versicherungsendeIndex = s.pflicht("versicherungsende");
+    }
+
+    @Override
+    public Vertrag abbilden(java.sql.ResultSet rs) throws java.sql.SQLException {
+        Vertrag o = new Vertrag();
+        int idWert = rs.getInt(idIndex);
+        o.setId(rs.wasNull() ? null : idWert);
+        int produktIdWert = rs.getInt(produktIdIndex);
+        o.setProduktId(rs.wasNull() ? null : produktIdWert);
+        int kundenIdWert = rs.getInt(kundenIdIndex);
+        o.setKundenId(rs.wasNull() ? null : kundenIdWert);
+        o.setVersicherungsbeginn(rs.getObject(versicherungsbeginnIndex, java.time.LocalDate.class));
+        o.setVersicherungsende(rs.getObject(versicherungsendeIndex, java.time.LocalDate.class));
+        return o;
+    }
+}
@@ -0,0 +1,35 @@
+package de.htwberlin.dbtech.aufgaben.ue03;
+
+import de.htwberlin.dbtech.exceptions.UeberlastException;
+import de.htwberlin.dbtech.utils.AdaptivesLimit;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+
+/**
+ * Leitet createDeckung nur im Rahmen eines {@link AdaptivesLimit} an den eigentlichen Dienst weiter.
+ * Ueberzaehlige Aufrufe werden mit {@link UeberlastException} abgelehnt.
+ */
+public class LimitierterVersicherungService implements IVersicherungService {
+    private final IVersicherungService dienst;
+    private final AdaptivesLimit limit;
+
+    public LimitierterVersicherungService(IVersicherungService dienst, AdaptivesLimit limit) {
+        this.dienst = dienst;
+        this.limit = limit;
+    }
+
+    @Override
+    public void setConnection(Connection connection) {
+        dienst.setConnection(connection);
+    }
+
+    @Override
+    public void createDeckung(Integer vertragsId, Integer deckungsartId, BigDecimal deckungsbetrag) {
+        limit.ausfuehren(() -> dienst.createDeckung(vertragsId, deckungsartId, deckungsbetrag));
+    }
+
+    public AdaptivesLimit getLimit() {
+        return limit;
+    }
+}
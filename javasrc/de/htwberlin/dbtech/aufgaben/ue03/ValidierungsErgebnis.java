@@ -0,0 +1,51 @@
+package de.htwberlin.dbtech.aufgaben.ue03;
+
+import de.htwberlin.dbtech.exceptions.DeckungsartExistiertNichtException;
+import de.htwberlin.dbtech.exceptions.DeckungsartNichtRegelkonformException;
+import de.htwberlin.dbtech.exceptions.DeckungsartPasstNichtZuProduktException;
+import de.htwberlin.dbtech.exceptions.DeckungspreisNichtVorhandenException;
+import de.htwberlin.dbtech.exceptions.UngueltigerDeckungsbetragException;
+import de.htwberlin.dbtech.exceptions.VersicherungException;
+import de.htwberlin.dbtech.exceptions.VertragExistiertNichtException;
+
+import java.math.BigDecimal;
+
+/**
+ * Ergebnis der Pruefung einer Deckung, in der Reihenfolge, in der geprueft wird. Jedes Ergebnis ausser OK
+ * entspricht einer Ausnahme von createDeckung.
+ */
+public enum ValidierungsErgebnis {
+    OK,
+    VERTRAG_EXISTIERT_NICHT,
+    DECKUNGSART_EXISTIERT_NICHT,
+    DECKUNGSART_PASST_NICHT_ZU_PRODUKT,
+    UNGUELTIGER_DECKUNGSBETRAG,
+    DECKUNGSPREIS_NICHT_VORHANDEN,
+    DECKUNGSART_NICHT_REGELKONFORM;
+
+    public boolean istOk() {
+        return this == OK;
+    }
+
+    /**
+     * Die Ausnahme, die createDeckung fuer dieses Ergebnis wirft, bei OK null.
+     */
+    public VersicherungException alsException(Integer vertragsId, Integer deckungsartId, BigDecimal deckungsbetrag) {
+        switch (this) {
+            case VERTRAG_EXISTIERT_NICHT:
+                return new VertragExistiertNichtException(vertragsId);
+            case DECKUNGSART_EXISTIERT_NICHT:
+                return new DeckungsartExistiertNichtException(deckungsartId);
+            case DECKUNGSART_PASST_NICHT_ZU_PRODUKT:
+                return new DeckungsartPasstNichtZuProduktException();
+            case UNGUELTIGER_DECKUNGSBETRAG:
+                return new UngueltigerDeckungsbetragException(deckungsbetrag);
+            case DECKUNGSPREIS_NICHT_VORHANDEN:
+                return new DeckungspreisNichtVorhandenException(deckungsbetrag);
+            case DECKUNGSART_NICHT_REGELKONFORM:
+                return new DeckungsartNichtRegelkonformException(deckungsartId);
+            default:
+                return null;
+        }
+    }
+}
@@ -3,6 +3,10 @@ package de.htwberlin.dbtech.aufgaben.ue03;
  * @author Ingo Classen
  */
 import de.htwberlin.dbtech.exceptions.*;
+import de.htwberlin.dbtech.utils.ExistenzFilter;
+import de.htwberlin.dbtech.utils.Geld;
+import de.htwberlin.dbtech.utils.Pruefkette;
+import de.htwberlin.dbtech.utils.SingleFlight;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -11,13 +15,23 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
 
 /**
  * VersicherungService - Implementierung basierend auf dem korrekten Datenbankschema
  */
 public class VersicherungService implements IVersicherungService {
     private static final Logger L = LoggerFactory.getLogger(VersicherungService.class);
+    // jeder wievielte Aufruf von isDeckungZulaessig im adaptiven Modus alle Pruefungen ausfuehrt
+    private static final int ERKUNDEN = 64;
+
     private Connection connection;
+    private Pruefkette pruefkette = null;
+    private ExistenzFilter vertragFilter = null;
+    private ExistenzFilter deckungsartFilter = null;
+    private SingleFlight<List<Object>, Boolean> gleicheAbfragen = null;
 
     @Override
     public void setConnection(Connection connection) {
@@ -39,13 +53,10 @@ public class VersicherungService implements IVersicherungService {
         L.info("deckungsartId: " + deckungsartId);
         L.info("deckungsbetrag: " + deckungsbetrag);
 
-        // Validierungskette 
-        isVertragExisting(vertragsId);                                    
-        isDeckungsartExisting(deckungsartId);                             
-        isDeckungsartPassendZuProdukt(vertragsId, deckungsartId);         
-        isDeckungsbetragGueltig(deckungsartId, deckungsbetrag);           
-        isDeckungspreisVorhanden(deckungsartId, deckungsbetrag);          
-        isDeckungsartRegelkonform(vertragsId, deckungsartId, deckungsbetrag); 
+        ValidierungsErgebnis ergebnis = validateDeckung(vertragsId, deckungsartId, deckungsbetrag);
+        if (!ergebnis.istOk()) {
+            throw ergebnis.alsException(vertragsId, deckungsartId, deckungsbetrag);
+        }
 
         // Deckung in Datenbank einfügen
         insertDeckung(vertragsId, deckungsartId, deckungsbetrag);   
@@ -53,13 +64,143 @@ public class VersicherungService implements IVersicherungService {
         L.info("createDeckung erfolgreich beendet");
     }
 
+    /**
+     * Prueft eine Deckung wie createDeckung, ohne sie einzufuegen und ohne Ausnahme fuer abgelehnte Deckungen.
+     * Fuer Massenaufrufe, bei denen Ablehnungen erwartet werden.
+     *
+     * @return das erste zutreffende Ergebnis in der Reihenfolge von {@link ValidierungsErgebnis}
+     */
+    public ValidierungsErgebnis validateDeckung(Integer vertragsId, Integer deckungsartId, BigDecimal deckungsbetrag) {
+        // Validierungskette
+        if (!geteilt(() -> isVertragExisting(vertragsId), "Vertrag", vertragsId)) {
+            return ValidierungsErgebnis.VERTRAG_EXISTIERT_NICHT;
+        }
+        if (!geteilt(() -> isDeckungsartExisting(deckungsartId), "Deckungsart", deckungsartId)) {
+            return ValidierungsErgebnis.DECKUNGSART_EXISTIERT_NICHT;
+        }
+        if (!geteilt(() -> isDeckungsartPassendZuProdukt(vertragsId, deckungsartId), "Produkt", vertragsId,
+                deckungsartId)) {
+            return ValidierungsErgebnis.DECKUNGSART_PASST_NICHT_ZU_PRODUKT;
+        }
+        if (!geteilt(() -> isDeckungsbetragGueltig(deckungsartId, deckungsbetrag), "Betrag", deckungsartId,
+                betragSchluessel(deckungsbetrag))) {
+            return ValidierungsErgebnis.UNGUELTIGER_DECKUNGSBETRAG;
+        }
+        // ab hier passt der Betrag in decimal(13,2), die Regeln rechnen in Cent
+        long deckungsbetragCent = Geld.cent(deckungsbetrag);
+        if (!geteilt(() -> isDeckungspreisVorhanden(deckungsartId, deckungsbetrag), "Preis", deckungsartId,
+                deckungsbetragCent)) {
+            return ValidierungsErgebnis.DECKUNGSPREIS_NICHT_VORHANDEN;
+        }
+        if (!geteilt(() -> isDeckungsartRegelkonform(vertragsId, deckungsartId, deckungsbetragCent), "Regel",
+                vertragsId, deckungsartId, deckungsbetragCent)) {
+            return ValidierungsErgebnis.DECKUNGSART_NICHT_REGELKONFORM;
+        }
+        return ValidierungsErgebnis.OK;
+    }
+
+    /**
+     * Ob createDeckung die Deckung annehmen wuerde, ohne Einfuegen und ohne Ausnahme. Anders als
+     * validateDeckung wird nur Ja/Nein entschieden; mit {@link #setAdaptiveReihenfolge} kommen dabei die
+     * Pruefungen zuerst, die bisher am haeufigsten je Zeiteinheit abgelehnt haben.
+     */
+    public boolean isDeckungZulaessig(Integer vertragsId, Integer deckungsartId, BigDecimal deckungsbetrag) {
+        Pruefkette kette = pruefkette;
+        if (kette == null || vertragsId == null || deckungsartId == null) {
+            return validateDeckung(vertragsId, deckungsartId, deckungsbetrag).istOk();
+        }
+        if (!Geld.passtIn(deckungsbetrag, 13)) {
+            return false;
+        }
+        // Betrag passt in decimal(13,2), daher sind alle Pruefungen unabhaengig voneinander ausfuehrbar
+        long deckungsbetragCent = Geld.cent(deckungsbetrag);
+        return kette.alleBestanden(
+                () -> geteilt(() -> isVertragExisting(vertragsId), "Vertrag", vertragsId),
+                () -> geteilt(() -> isDeckungsartExisting(deckungsartId), "Deckungsart", deckungsartId),
+                () -> geteilt(() -> isDeckungsartPassendZuProdukt(vertragsId, deckungsartId), "Produkt", vertragsId,
+                        deckungsartId),
+                () -> geteilt(() -> isDeckungsbetragGueltig(deckungsartId, deckungsbetrag), "Betrag", deckungsartId,
+                        deckungsbetragCent),
+                () -> geteilt(() -> isDeckungspreisVorhanden(deckungsartId, deckungsbetrag), "Preis", deckungsartId,
+                        deckungsbetragCent),
+                () -> geteilt(() -> isDeckungsartRegelkonform(vertragsId, deckungsartId, deckungsbetragCent), "Regel",
+                        vertragsId, deckungsartId, deckungsbetragCent));
+    }
+
+    /**
+     * Schaltet die adaptive Pruefreihenfolge fuer isDeckungZulaessig ein oder aus. createDeckung und
+     * validateDeckung pruefen immer in fester Reihenfolge, weil die gemeldete Ausnahme davon abhaengt. Beim
+     * Einschalten beginnt die Beobachtung von vorn.
+     */
+    public void setAdaptiveReihenfolge(boolean adaptiv) {
+        pruefkette = adaptiv ? new Pruefkette(6, ERKUNDEN) : null;
+    }
+
+    /**
+     * Beobachtete Fehlerquoten und Dauern der Pruefungen, null ohne adaptive Reihenfolge.
+     */
+    public Pruefkette getPruefkette() {
+        return pruefkette;
+    }
+
+    /**
+     * Filter, mit dem nicht existierende Vertraege ohne Abfrage erkannt werden.
+     */
+    public void setVertragFilter(ExistenzFilter vertragFilter) {
+        this.vertragFilter = vertragFilter;
+    }
+
+    /**
+     * Wie {@link #setVertragFilter} fuer Deckungsarten.
+     */
+    public void setDeckungsartFilter(ExistenzFilter deckungsartFilter) {
+        this.deckungsartFilter = deckungsartFilter;
+    }
+
+    /**
+     * Buendelt gleichzeitige gleiche Pruefabfragen (z.B. die Ablehnungsregeln fuer dieselbe Deckungsart und
+     * denselben Vertrag), auch ueber mehrere Dienste. Ohne Aufruf fragt jede Pruefung selbst.
+     * <p>
+     * Gebuendelt wird nur im Auto-Commit-Modus. Ein geteiltes Ergebnis kann von einer anderen Connection stammen
+     * und die noch nicht festgeschriebenen Aenderungen einer laufenden Transaktion nicht sehen, z.B. einen eben
+     * eingefuegten Vertrag; ohne Auto-Commit fragt daher jede Pruefung selbst.
+     */
+    public void setGleicheAbfragen(SingleFlight<List<Object>, Boolean> gleicheAbfragen) {
+        this.gleicheAbfragen = gleicheAbfragen;
+    }
+
+    // Schluessel aus Name der Pruefung und ihren Parametern
+    private boolean geteilt(BooleanSupplier abfrage, Object... schluessel) {
+        SingleFlight<List<Object>, Boolean> sf = gleicheAbfragen;
+        return sf == null || !isAutoCommit() ? abfrage.getAsBoolean()
+                : sf.ausfuehren(Arrays.asList(schluessel), abfrage::getAsBoolean);
+    }
+
+    private boolean isAutoCommit() {
+        try {
+            return useConnection().getAutoCommit();
+        } catch (SQLException e) {
+            L.error("Datenbankfehler beim Lesen des Auto-Commit-Modus", e);
+            throw new DataException("Fehler beim Lesen des Auto-Commit-Modus: " + e.getMessage(), e);
+        }
+    }
+
+    // BigDecimal.equals beachtet die Skala; 100.0 und 100.00 sollen sich eine Abfrage teilen
+    private static Object betragSchluessel(BigDecimal deckungsbetrag) {
+        return Geld.passtIn(deckungsbetrag, 13) ? (Object) Geld.cent(deckungsbetrag) : deckungsbetrag;
+    }
+
     /**
      * @param vertragsId Die ID des zu prüfenden Vertrags
-     * @throws VertragExistiertNichtException wenn der Vertrag nicht existiert
+     * @return false, wenn der Vertrag nicht existiert
      */
-    private void isVertragExisting(Integer vertragsId) {
+    private boolean isVertragExisting(Integer vertragsId) {
         L.debug("Überprüfe Existenz von Vertrag mit ID: " + vertragsId);
-        
+        if (vertragFilter != null && vertragsId != null && vertragFilter.sicherAbwesend(vertragsId)) {
+            L.warn("Vertrag mit ID " + vertragsId + " existiert nicht (Filter)");
+            return false;
+        }
+
         String sql = "SELECT 1 FROM Vertrag WHERE ID = ?";
         
         try (PreparedStatement stmt = useConnection().prepareStatement(sql)) {
@@ -68,9 +209,13 @@ public class VersicherungService implements IVersicherungService {
             try (ResultSet rs = stmt.executeQuery()) {
                 if (!rs.next()) {
                     L.warn("Vertrag mit ID " + vertragsId + " existiert nicht");
-                    throw new VertragExistiertNichtException(vertragsId);
+                    if (vertragFilter != null) {
+                        vertragFilter.nichtGefunden(vertragsId);
+                    }
+                    return false;
                 }
                 L.debug("✅ Vertrag mit ID " + vertragsId + " existiert");
+                return true;
             }
         } catch (SQLException e) {
             L.error("Datenbankfehler beim Prüfen der Vertragsexistenz", e);
@@ -81,11 +226,16 @@ public class VersicherungService implements IVersicherungService {
     /**
      * Überprüft, ob eine Deckungsart mit der gegebenen ID existiert
      * @param deckungsartId Die ID der zu prüfenden Deckungsart
-     * @throws DeckungsartExistiertNichtException wenn die Deckungsart nicht existiert
+     * @return false, wenn die Deckungsart nicht existiert
      */
-    private void isDeckungsartExisting(Integer deckungsartId) {
+    private boolean isDeckungsartExisting(Integer deckungsartId) {
         L.debug("Überprüfe Existenz von Deckungsart mit ID: " + deckungsartId);
-        
+        if (deckungsartFilter != null && deckungsartId != null
+                && deckungsartFilter.sicherAbwesend(deckungsartId)) {
+            L.warn("Deckungsart mit ID " + deckungsartId + " existiert nicht (Filter)");
+            return false;
+        }
+
         String sql = "SELECT 1 FROM Deckungsart WHERE ID = ?";
         
         try (PreparedStatement stmt = useConnection().prepareStatement(sql)) {
@@ -94,9 +244,13 @@ public class VersicherungService implements IVersicherungService {
             try (ResultSet rs = stmt.executeQuery()) {
                 if (!rs.next()) {
                     L.warn("Deckungsart mit ID " + deckungsartId + " existiert nicht");
-                    throw new DeckungsartExistiertNichtException(deckungsartId);
+                    if (deckungsartFilter != null) {
+                        deckungsartFilter.nichtGefunden(deckungsartId);
+                    }
+                    return false;
                 }
                 L.debug("✅ Deckungsart mit ID " + deckungsartId + " existiert");
+                return true;
             }
         } catch (SQLException e) {
             L.error("Datenbankfehler beim Prüfen der Deckungsart-Existenz", e);
@@ -107,9 +261,9 @@ public class VersicherungService implements IVersicherungService {
     /**
      * @param vertragsId Die ID des Vertrags
      * @param deckungsartId Die ID der Deckungsart
-     * @throws DeckungsartPasstNichtZuProduktException wenn die Deckungsart nicht zum Produkt passt
+     * @return false, wenn die Deckungsart nicht zum Produkt passt
      */
-    private void isDeckungsartPassendZuProdukt(Integer vertragsId, Integer deckungsartId) {
+    private boolean isDeckungsartPassendZuProdukt(Integer vertragsId, Integer deckungsartId) {
         L.debug("Überprüfe ob Deckungsart " + deckungsartId + " zu Produkt von Vertrag " + vertragsId + " passt");
         
         // Prüfe ob Deckungsart.Produkt_FK = Vertrag.Produkt_FK
@@ -123,9 +277,10 @@ public class VersicherungService implements IVersicherungService {
             try (ResultSet rs = stmt.executeQuery()) {
                 if (!rs.next()) {
                     L.warn("Deckungsart " + deckungsartId + " passt nicht zum Produkt von Vertrag " + vertragsId);
-                    throw new DeckungsartPasstNichtZuProduktException();
+                    return false;
                 }
                 L.debug("✅ Deckungsart " + deckungsartId + " passt zum Produkt von Vertrag " + vertragsId);
+                return true;
             }
         } catch (SQLException e) {
             L.error("Datenbankfehler beim Prüfen der Deckungsart-Produkt-Kompatibilität", e);
@@ -137,10 +292,16 @@ public class VersicherungService implements IVersicherungService {
      * Überprüft, ob der Deckungsbetrag für die Deckungsart gültig ist.
      * @param deckungsartId Die ID der Deckungsart
      * @param deckungsbetrag Der zu prüfende Deckungsbetrag
-     * @throws UngueltigerDeckungsbetragException wenn der Deckungsbetrag nicht gültig ist
+     * @return false, wenn der Deckungsbetrag nicht gültig ist
      */
-    private void isDeckungsbetragGueltig(Integer deckungsartId, BigDecimal deckungsbetrag) {
+    private boolean isDeckungsbetragGueltig(Integer deckungsartId, BigDecimal deckungsbetrag) {
         L.debug("Überprüfe Gültigkeit von Deckungsbetrag " + deckungsbetrag + " für Deckungsart " + deckungsartId);
+
+        // Deckungsbetrag ist decimal(13,2), andere Betraege koennen nicht vorkommen
+        if (!Geld.passtIn(deckungsbetrag, 13)) {
+            L.warn("Deckungsbetrag " + deckungsbetrag + " passt nicht in decimal(13,2)");
+            return false;
+        }
         
         String sql = "SELECT 1 FROM Deckungsbetrag WHERE Deckungsart_FK = ? AND Deckungsbetrag = ?";
         
@@ -151,9 +312,10 @@ public class VersicherungService implements IVersicherungService {
             try (ResultSet rs = stmt.executeQuery()) {
                 if (!rs.next()) {
                     L.warn("Deckungsbetrag " + deckungsbetrag + " ist nicht gültig für Deckungsart " + deckungsartId);
-                    throw new UngueltigerDeckungsbetragException(deckungsbetrag);
+                    return false;
                 }
                 L.debug("✅ Deckungsbetrag " + deckungsbetrag + " ist gültig für Deckungsart " + deckungsartId);
+                return true;
             }
         } catch (SQLException e) {
             L.error("Datenbankfehler beim Prüfen des Deckungsbetrags", e);
@@ -164,9 +326,9 @@ public class VersicherungService implements IVersicherungService {
     /**
      * @param deckungsartId Die ID der Deckungsart
      * @param deckungsbetrag Der Deckungsbetrag
-     * @throws DeckungspreisNichtVorhandenException wenn kein gültiger Preis vorhanden ist
+     * @return false, wenn kein gültiger Preis vorhanden ist
      */
-    private void isDeckungspreisVorhanden(Integer deckungsartId, BigDecimal deckungsbetrag) {
+    private boolean isDeckungspreisVorhanden(Integer deckungsartId, BigDecimal deckungsbetrag) {
         L.debug("Überprüfe Deckungspreis für Deckungsart " + deckungsartId + " und Betrag " + deckungsbetrag);
         
         // Prüfe ob ein gültiger Preis zum heutigen Datum existiert
@@ -183,9 +345,10 @@ public class VersicherungService implements IVersicherungService {
                 if (!rs.next()) {
                     L.warn("Kein gültiger Deckungspreis für Deckungsart " + deckungsartId + 
                            " und Betrag " + deckungsbetrag + " verfügbar");
-                    throw new DeckungspreisNichtVorhandenException(deckungsbetrag);
+                    return false;
                 }
                 L.debug("✅ Gültiger Deckungspreis gefunden");
+                return true;
             }
         } catch (SQLException e) {
             L.error("Datenbankfehler beim Prüfen des Deckungspreises", e);
@@ -196,9 +359,9 @@ public class VersicherungService implements IVersicherungService {
     /**
      * Überprüft Ablehnungsregeln.
      */
-    private void isDeckungsartRegelkonform(Integer vertragsId, Integer deckungsartId, BigDecimal deckungsbetrag) {
+    private boolean isDeckungsartRegelkonform(Integer vertragsId, Integer deckungsartId, long deckungsbetragCent) {
     L.debug("Überprüfe Regelkonformität für Vertrag " + vertragsId + 
-            ", Deckungsart " + deckungsartId + ", Betrag " + deckungsbetrag);
+            ", Deckungsart " + deckungsartId + ", Betrag " + Geld.text(deckungsbetragCent));
 
     String sql = "SELECT ar.R_Betrag, ar.R_Alter, " +
                  "TRUNC(MONTHS_BETWEEN(v.Versicherungsbeginn, k.Geburtsdatum) / 12) as \"Alter\" " +
@@ -219,18 +382,19 @@ public class VersicherungService implements IVersicherungService {
                 L.debug("Prüfe Regel: R_Betrag=" + rBetrag + ", R_Alter=" + rAlter + ", KundenAlter=" + kundenAlter);
 
                 boolean alterVerletzt = isAlterRegelVerletzt(rAlter, kundenAlter);
-                boolean betragVerletzt = isBetragRegelVerletzt(rBetrag, deckungsbetrag);
+                boolean betragVerletzt = isBetragRegelVerletzt(rBetrag, deckungsbetragCent);
 
                 L.debug("Alterregel verletzt? " + alterVerletzt + ", Betragsregel verletzt? " + betragVerletzt);
 
                 // Beide Regeln müssen erfüllt sein, um abzulehnen
                 if (alterVerletzt || betragVerletzt) {
                     L.warn("Ablehnungsregel verletzt (Alter & Betrag): R_Alter=" + rAlter + ", R_Betrag=" + rBetrag + 
-                           ", KundenAlter=" + kundenAlter + ", Deckungsbetrag=" + deckungsbetrag);
-                    throw new DeckungsartNichtRegelkonformException(deckungsartId);
+                           ", KundenAlter=" + kundenAlter + ", Deckungsbetrag=" + Geld.text(deckungsbetragCent));
+                    return false;
                 }
             }
             L.debug("✅ Alle Regelprüfungen bestanden");
+            return true;
         }
     } catch (SQLException e) {
         L.error("Datenbankfehler beim Prüfen der Regelkonformität", e);
@@ -272,13 +436,13 @@ private boolean isAlterRegelVerletzt(String regelAlter, int alter) {
 }
 
 
-private boolean isBetragRegelVerletzt(String regelBetrag, BigDecimal betrag) {
+private boolean isBetragRegelVerletzt(String regelBetrag, long betragCent) {
     if (regelBetrag == null || regelBetrag.trim().isEmpty() || regelBetrag.equals("- -")) return false;
 
     regelBetrag = regelBetrag.trim();
     if (regelBetrag.startsWith(">=")) {
-        BigDecimal grenzwert = new BigDecimal(regelBetrag.substring(2).trim());
-        return betrag.compareTo(grenzwert) >= 0;
+        long grenzwertCent = Geld.parse(regelBetrag.substring(2).trim());
+        return betragCent >= grenzwertCent;
     }
     return false;
 }
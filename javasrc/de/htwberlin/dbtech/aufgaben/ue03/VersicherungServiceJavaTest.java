@@ -196,4 +196,19 @@ public class VersicherungServiceJavaTest {
 
     }
 
+    /**
+     * validateDeckung meldet Ablehnungen als Ergebnis, ohne Ausnahme und ohne Eintrag in der Datenbank.
+     */
+    @org.junit.Test
+    public void validateDeckung01() {
+        VersicherungService service = (VersicherungService) vService;
+        Assert.assertEquals(ValidierungsErgebnis.VERTRAG_EXISTIERT_NICHT,
+                service.validateDeckung(99, 1, BigDecimal.valueOf(0)));
+        Assert.assertEquals(ValidierungsErgebnis.DECKUNGSART_PASST_NICHT_ZU_PRODUKT,
+                service.validateDeckung(5, 1, BigDecimal.valueOf(0)));
+        Assert.assertEquals(ValidierungsErgebnis.DECKUNGSART_NICHT_REGELKONFORM,
+                service.validateDeckung(9, 3, BigDecimal.valueOf(300000)));
+        Assert.assertEquals(ValidierungsErgebnis.OK, service.validateDeckung(5, 4, BigDecimal.valueOf(50000)));
+    }
+
 }
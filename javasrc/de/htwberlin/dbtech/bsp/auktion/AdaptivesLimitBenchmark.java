@@ -0,0 +1,113 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.exceptions.UeberlastException;
+import de.htwberlin.dbtech.utils.AdaptivesLimit;
+import de.htwberlin.dbtech.utils.LatenzHistogramm;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lastsimulation ohne Datenbank: Gebote kommen mit fester Rate an, die simulierte Datenbank hat eine feste
+ * Anzahl Connections und wird in der mittleren Phase zehnmal langsamer. Verglichen wird der Dienst ohne Limit
+ * mit dem {@link LimitierterAuktionsService}; ausgegeben werden je Phase die Latenzen der angenommenen Gebote
+ * und die Ablehnungen.
+ * <p>
+ * Aufruf: AdaptivesLimitBenchmark [gebote/s] [sekunden je Phase]
+ */
+public class AdaptivesLimitBenchmark {
+
+    private static final int CONNECTIONS = 10;
+    private static final long NORMAL_MILLIS = 2;
+    private static final long LANGSAM_MILLIS = 20;
+
+    // wartet wie ein Connection-Pool auf eine freie Connection und belegt sie fuer die aktuelle Bearbeitungszeit
+    private static class SimulierteDb implements IAuktionsService {
+        final Semaphore connections = new Semaphore(CONNECTIONS, true);
+        volatile long millis = NORMAL_MILLIS;
+
+        @Override
+        public void setConnection(Connection connection) {
+        }
+
+        @Override
+        public void biete(Integer aid, BigDecimal angebotspreis) {
+            try {
+                connections.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DataException(e);
+            }
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DataException(e);
+            } finally {
+                connections.release();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int rate = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int sekunden = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        SimulierteDb ohneDb = new SimulierteDb();
+        messe("ohne Limit", ohneDb, ohneDb, null, rate, sekunden);
+
+        SimulierteDb mitDb = new SimulierteDb();
+        AdaptivesLimit limit = new AdaptivesLimit(CONNECTIONS, 2, 4 * CONNECTIONS, CONNECTIONS, 20);
+        messe("adaptives Limit", mitDb, new LimitierterAuktionsService(mitDb, limit), limit, rate, sekunden);
+    }
+
+    private static void messe(String name, SimulierteDb db, IAuktionsService dienst, AdaptivesLimit limit, int rate,
+                              int sekunden) throws InterruptedException {
+        System.out.println(name + ":");
+        // viele Threads wie in einem Anwendungsserver, Auftraege ueber deren Zahl hinaus warten unbegrenzt
+        ExecutorService aufrufer = Executors.newFixedThreadPool(200);
+        long[] millisJePhase = {NORMAL_MILLIS, LANGSAM_MILLIS, NORMAL_MILLIS};
+        String[] phasen = {"normal", "langsam", "erholt"};
+        LatenzHistogramm[] latenzen = new LatenzHistogramm[phasen.length];
+        AtomicLong[] ablehnungen = new AtomicLong[phasen.length];
+        long abstandNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        for (int p = 0; p < phasen.length; p++) {
+            db.millis = millisJePhase[p];
+            LatenzHistogramm latenz = latenzen[p] = new LatenzHistogramm();
+            AtomicLong abgelehnt = ablehnungen[p] = new AtomicLong();
+            long beginn = System.nanoTime();
+            long gebote = (long) rate * sekunden;
+            for (long i = 0; i < gebote; i++) {
+                long faellig = beginn + i * abstandNanos;
+                long warten = faellig - System.nanoTime();
+                if (warten > 0) {
+                    LockSupport.parkNanos(warten);
+                }
+                aufrufer.execute(() -> {
+                    try {
+                        dienst.biete(1, BigDecimal.ONE);
+                        latenz.erfasse(System.nanoTime() - faellig);
+                    } catch (UeberlastException e) {
+                        abgelehnt.incrementAndGet();
+                    }
+                });
+            }
+            if (limit != null) {
+                System.out.println("  ende " + phasen[p] + ": " + limit);
+            }
+        }
+        aufrufer.shutdown();
+        aufrufer.awaitTermination(10, TimeUnit.MINUTES);
+        // erst nach dem Abarbeiten ausgeben, damit Gebote aus dem Rueckstau ihrer Phase zugerechnet werden
+        for (int p = 0; p < phasen.length; p++) {
+            System.out.printf("  %-8s %s abgelehnt=%d%n", phasen[p], latenzen[p].zusammenfassung(), ablehnungen[p].get());
+        }
+    }
+}
@@ -1,21 +1,55 @@
 package de.htwberlin.dbtech.bsp.auktion;
 
+import de.htwberlin.dbtech.exceptions.DataException;
 import de.htwberlin.dbtech.exceptions.ServiceException;
+import de.htwberlin.dbtech.exceptions.VersionskonfliktException;
+import de.htwberlin.dbtech.utils.Geld;
+import de.htwberlin.dbtech.utils.mapper.Abbildbar;
+import de.htwberlin.dbtech.utils.mapper.Spalte;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 
+@Abbildbar
 public class Angebot {
+    private static final Logger L = LoggerFactory.getLogger(Angebot.class);
+
+    @Spalte
     private Integer aid;
+    @Spalte
     private String artikelBez;
+    @Spalte
     private Timestamp auktionEndeZeitpunkt;
+    @Spalte
     private BigDecimal auktionMinPreis;
 
-    // aktuellerPreis wird aus den Geboten berechnet
-    // ist nicht Splate in der Tabelle Angebot
-    // wird auch nicht in insert und aupdate behandelt
+    // aktuellerPreis und anzahlGebote sind aus den Geboten denormalisiert,
+    // aktuellerPreis ist null, solange kein Gebot vorliegt
+    @Spalte
     private BigDecimal aktuellerPreis;
+    @Spalte
+    private int anzahlGebote;
+
+    // die Preise noch einmal in Cent, fuer istGebotspreisOk ohne BigDecimal-Vergleich
+    private long auktionMinPreisCent;
+    private long aktuellerPreisCent;
+
+    // wird bei jedem update in der Datenbank erhoeht
+    @Spalte
+    private int version;
+
+    // geaenderte Spalten seit dem Laden bzw. dem letzten update
+    static final int ARTIKEL_BEZ = 1;
+    static final int AUKTION_ENDE_ZEITPUNKT = 1 << 1;
+    static final int AUKTION_MIN_PREIS = 1 << 2;
+    static final int AKTUELLER_PREIS = 1 << 3;
+    static final int ANZAHL_GEBOTE = 1 << 4;
+    private int geaendert = 0;
 
     private Connection connection = null;
 
@@ -23,7 +57,6 @@ public class Angebot {
         this.connection = connection;
     }
 
-    @SuppressWarnings("unused")
     private Connection useConnection() {
         if (connection == null) {
             throw new ServiceException("Service hat keine Connection");
@@ -45,6 +78,7 @@ public class Angebot {
 
     public void setArtikelBez(String artikelBez) {
         this.artikelBez = artikelBez;
+        geaendert |= ARTIKEL_BEZ;
     }
 
     public Timestamp getAuktionEndeZeitpunkt() {
@@ -53,6 +87,7 @@ public class Angebot {
 
     public void setAuktionEndeZeitpunkt(Timestamp auktionEndeZeitpunkt) {
         this.auktionEndeZeitpunkt = auktionEndeZeitpunkt;
+        geaendert |= AUKTION_ENDE_ZEITPUNKT;
     }
 
     public BigDecimal getAuktionMinPreis() {
@@ -61,18 +96,160 @@ public class Angebot {
 
     public void setAuktionMinPreis(BigDecimal auktionMinPreis) {
         this.auktionMinPreis = auktionMinPreis;
+        this.auktionMinPreisCent = auktionMinPreis == null ? 0 : Geld.cent(auktionMinPreis);
+        geaendert |= AUKTION_MIN_PREIS;
     }
 
     public BigDecimal getAktuellerPreis() {
         return aktuellerPreis;
     }
 
+    public void setAktuellerPreis(BigDecimal aktuellerPreis) {
+        this.aktuellerPreis = aktuellerPreis;
+        this.aktuellerPreisCent = aktuellerPreis == null ? 0 : Geld.cent(aktuellerPreis);
+        geaendert |= AKTUELLER_PREIS;
+    }
+
+    public int getAnzahlGebote() {
+        return anzahlGebote;
+    }
+
+    public void setAnzahlGebote(int anzahlGebote) {
+        this.anzahlGebote = anzahlGebote;
+        geaendert |= ANZAHL_GEBOTE;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    /**
+     * Ohne Gebote muss der Gebotspreis mindestens AuktionMinPreis betragen, sonst echt groesser als das
+     * bisher hoechste Gebot sein.
+     */
+    public boolean istGebotspreisOk(BigDecimal gebotspreis) {
+        // ein Gebot mit Bruchteilen von Cent passt nicht in GebotsPreis
+        return Geld.passtIn(gebotspreis, 9) && istGebotspreisOk(Geld.cent(gebotspreis));
+    }
+
+    /**
+     * Wie {@link #istGebotspreisOk(BigDecimal)}, mit dem Gebotspreis in Cent.
+     */
+    public boolean istGebotspreisOk(long gebotspreisCent) {
+        if (anzahlGebote == 0) {
+            // keine Gebote bedeutet "gebotspreis" muss >= AuktionMinPreis sein
+            return gebotspreisCent >= auktionMinPreisCent;
+        } else {
+            // Gebote vorhanden, dann muss "gebotspreis" echt groesser als der bisher hoechste
+            // Gebotspreis sein
+            return gebotspreisCent > aktuellerPreisCent;
+        }
+    }
+
+    /**
+     * Uebernimmt ein Gebot in den denormalisierten Stand. Gespeichert wird erst mit {@link #update()}.
+     */
+    public void uebernimmGebot(BigDecimal gebotspreis) {
+        setAktuellerPreis(gebotspreis);
+        setAnzahlGebote(anzahlGebote + 1);
+    }
+
     public void insert() {
         // SQL-Code zum Speichern dieses Angebots in der Datenbank
     }
 
+    public boolean istGeaendert() {
+        return geaendert != 0;
+    }
+
+    /**
+     * Schreibt die geaenderten Spalten des Angebots, sofern die Version in der Datenbank noch der gelesenen
+     * entspricht (compare-and-set). Ohne Aenderungen passiert nichts.
+     *
+     * @throws VersionskonfliktException wenn das Angebot zwischenzeitlich geaendert wurde.
+     */
     public void update() {
-        // SQL-Code zum Aendern dieses Angebots in der Datenbank
+        if (!istGeaendert()) {
+            return;
+        }
+        String sql = updateSql(geaendert);
+        L.info(sql);
+        int anzahl;
+        try (PreparedStatement ps = useConnection().prepareStatement(sql)) {
+            bindeUpdate(ps);
+            anzahl = ps.executeUpdate();
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        }
+        if (anzahl == 0) {
+            throw new VersionskonfliktException("Angebot " + aid + " wurde geaendert, gelesene Version: " + version);
+        }
+        nachUpdate();
+    }
+
+    int getGeaenderteSpalten() {
+        return geaendert;
+    }
+
+    // erzwingt beim naechsten update die Versionspruefung, auch wenn sich keine Spalte aendert
+    void alsGeaendertMarkieren() {
+        geaendert |= ANZAHL_GEBOTE;
+    }
+
+    // nach dem Laden aus der Datenbank
+    void alsUnveraendertMarkieren() {
+        geaendert = 0;
+    }
+
+    void nachUpdate() {
+        version++;
+        geaendert = 0;
+    }
+
+    static String updateSql(int spalten) {
+        StringBuilder sql = new StringBuilder("update Angebot set ");
+        if ((spalten & ARTIKEL_BEZ) != 0) {
+            sql.append("ArtikelBez=?, ");
+        }
+        if ((spalten & AUKTION_ENDE_ZEITPUNKT) != 0) {
+            sql.append("AuktionEndeZeitpunkt=?, ");
+        }
+        if ((spalten & AUKTION_MIN_PREIS) != 0) {
+            sql.append("AuktionMinPreis=?, ");
+        }
+        if ((spalten & AKTUELLER_PREIS) != 0) {
+            sql.append("AktuellerPreis=?, ");
+        }
+        if ((spalten & ANZAHL_GEBOTE) != 0) {
+            sql.append("AnzahlGebote=?, ");
+        }
+        return sql.append("Version=Version+1 where AID=? and Version=?").toString();
+    }
+
+    void bindeUpdate(PreparedStatement ps) throws SQLException {
+        int i = 1;
+        if ((geaendert & ARTIKEL_BEZ) != 0) {
+            ps.setString(i++, artikelBez);
+        }
+        if ((geaendert & AUKTION_ENDE_ZEITPUNKT) != 0) {
+            ps.setTimestamp(i++, auktionEndeZeitpunkt);
+        }
+        if ((geaendert & AUKTION_MIN_PREIS) != 0) {
+            ps.setBigDecimal(i++, auktionMinPreis);
+        }
+        if ((geaendert & AKTUELLER_PREIS) != 0) {
+            ps.setBigDecimal(i++, aktuellerPreis);
+        }
+        if ((geaendert & ANZAHL_GEBOTE) != 0) {
+            ps.setInt(i++, anzahlGebote);
+        }
+        ps.setInt(i++, aid);
+        ps.setInt(i, version);
     }
 
     public void delete() {
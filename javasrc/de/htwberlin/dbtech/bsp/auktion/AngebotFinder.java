@@ -1,16 +1,46 @@
 package de.htwberlin.dbtech.bsp.auktion;
 
+import de.htwberlin.dbtech.exceptions.DataException;
 import de.htwberlin.dbtech.exceptions.ServiceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 
 public class AngebotFinder {
+    private static final Logger L = LoggerFactory.getLogger(AngebotFinder.class);
+
+    private static final String SPALTEN = "select AID, ArtikelBez, AuktionEndeZeitpunkt, AuktionMinPreis, " +
+            "AktuellerPreis, AnzahlGebote, Version from Angebot ";
+
+    // Laengen der in-Listen; kuerzere Listen werden aufgefuellt, damit nur wenige verschiedene
+    // Anweisungen entstehen. Oracle erlaubt hoechstens 1000 Ausdruecke.
+    private static final int[] IN_LISTEN_LAENGEN = {1, 4, 16, 64, 256, 1000};
+
     private Connection connection = null;
+    private UnitOfWork unitOfWork = null;
 
     public void setConnection(Connection connection) {
         this.connection = connection;
     }
 
+    /**
+     * Mit Unit of Work wird jedes Angebot nur einmal geladen, weitere Anfragen liefern dasselbe Objekt.
+     */
+    public void setUnitOfWork(UnitOfWork unitOfWork) {
+        this.unitOfWork = unitOfWork;
+    }
+
     private Connection useConnection() {
         if (connection == null) {
             throw new ServiceException("Service hat keine Connection");
@@ -18,11 +48,121 @@ public class AngebotFinder {
         return connection;
     }
 
+    /**
+     * Liefert das Angebot oder null, wenn die AID nicht existiert.
+     */
     public Angebot findById(Integer aid) {
-        Angebot a = new Angebot();
+        if (unitOfWork != null && unitOfWork.getAngebot(aid) != null) {
+            return unitOfWork.getAngebot(aid);
+        }
+        String sql = SPALTEN + "where AID=?";
+        L.info(sql);
+        try (PreparedStatement ps = useConnection().prepareStatement(sql)) {
+            ps.setInt(1, aid);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? uebernehme(new AngebotMapper(rs), rs) : null;
+            }
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        }
+    }
+
+    /**
+     * Laedt mehrere Angebote mit in-Listen von hoechstens 1000 AIDs. Nicht existierende AIDs fehlen im Ergebnis.
+     */
+    public Map<Integer, Angebot> findByIds(Collection<Integer> aids) {
+        Map<Integer, Angebot> ergebnis = new HashMap<>();
+        List<Integer> fehlend = new ArrayList<>();
+        for (Integer aid : new LinkedHashSet<>(aids)) {
+            Angebot a = unitOfWork == null ? null : unitOfWork.getAngebot(aid);
+            if (a != null) {
+                ergebnis.put(aid, a);
+            } else {
+                fehlend.add(aid);
+            }
+        }
+        int max = IN_LISTEN_LAENGEN[IN_LISTEN_LAENGEN.length - 1];
+        for (int von = 0; von < fehlend.size(); von += max) {
+            List<Integer> block = fehlend.subList(von, Math.min(von + max, fehlend.size()));
+            ladeBlock(block, ergebnis);
+        }
+        return ergebnis;
+    }
+
+    /**
+     * Offene Auktionen nach Auktionsende und AID sortiert, seitenweise. Fuer die erste Seite ist nach null, sonst
+     * das letzte Angebot der vorherigen Seite. Jede Seite ist ein Bereichszugriff auf ix_angebot_ende_aid.
+     */
+    public Seite<Angebot> findOffeneSeite(Angebot nach, int groesse) {
+        String sql = SPALTEN + "where AuktionEndeZeitpunkt >= current_timestamp " +
+                (nach == null ? "" : "and AuktionEndeZeitpunkt >= ? and (AuktionEndeZeitpunkt > ? or AID > ?) ") +
+                "order by AuktionEndeZeitpunkt, AID fetch first ? rows only";
+        L.info(sql);
+        try (PreparedStatement ps = useConnection().prepareStatement(sql)) {
+            int i = 1;
+            if (nach != null) {
+                ps.setTimestamp(i++, nach.getAuktionEndeZeitpunkt());
+                ps.setTimestamp(i++, nach.getAuktionEndeZeitpunkt());
+                ps.setInt(i++, nach.getAid());
+            }
+            // ein Angebot mehr lesen, um zu erkennen, ob es eine weitere Seite gibt
+            ps.setInt(i, groesse + 1);
+            ps.setFetchSize(groesse + 1);
+            List<Angebot> angebote = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                AngebotMapper mapper = new AngebotMapper(rs);
+                while (rs.next()) {
+                    angebote.add(uebernehme(mapper, rs));
+                }
+            }
+            boolean weitere = angebote.size() > groesse;
+            if (weitere) {
+                angebote.remove(groesse);
+            }
+            return new Seite<>(angebote, weitere);
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        }
+    }
+
+    private void ladeBlock(List<Integer> aids, Map<Integer, Angebot> ergebnis) {
+        int laenge = IN_LISTEN_LAENGEN[0];
+        for (int l : IN_LISTEN_LAENGEN) {
+            laenge = l;
+            if (l >= aids.size()) {
+                break;
+            }
+        }
+        String sql = SPALTEN + "where AID in (" + String.join(",", Collections.nCopies(laenge, "?")) + ")";
+        L.info(sql);
+        try (PreparedStatement ps = useConnection().prepareStatement(sql)) {
+            ps.setFetchSize(laenge);
+            for (int i = 0; i < laenge; i++) {
+                // mit der letzten AID auffuellen
+                ps.setInt(i + 1, aids.get(Math.min(i, aids.size() - 1)));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                AngebotMapper mapper = new AngebotMapper(rs);
+                while (rs.next()) {
+                    Angebot a = uebernehme(mapper, rs);
+                    ergebnis.put(a.getAid(), a);
+                }
+            }
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        }
+    }
+
+    // AktuellerPreis ist seit der Versionierung eine Spalte von Angebot und muss nicht mehr aus Gebot
+    // aggregiert werden
+    private Angebot uebernehme(AngebotMapper mapper, ResultSet rs) throws SQLException {
+        Angebot a = mapper.abbilden(rs);
         a.setConnection(useConnection());
-        // Sql-Code zum Befuellen des Abgebotsobjekts
-        return a;
+        a.alsUnveraendertMarkieren();
+        return unitOfWork == null ? a : unitOfWork.registriere(a);
     }
 
 }
@@ -0,0 +1,40 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+/**
+ * Erzeugt von MapperProzessor aus Angebot.
+ */
+@javax.annotation.processing.Generated("de.htwberlin.dbtech.utils.mapper.MapperProzessor")
+public final class AngebotMapper implements de.htwberlin.dbtech.utils.mapper.ZeilenMapper<Angebot> {
+    private final int aidIndex;
+    private final int artikelBezIndex;
+    private final int auktionEndeZeitpunktIndex;
+    private final int auktionMinPreisIndex;
+    private final int aktuellerPreisIndex;
+    private final int anzahlGeboteIndex;
+    private final int versionIndex;
+
+    public AngebotMapper(java.sql.ResultSet rs) throws java.sql.SQLException {
+        de.htwberlin.dbtech.utils.mapper.Spalten s = de.htwberlin.dbtech.utils.mapper.Spalten.von(rs);
+        aidIndex = s.pflicht("aid");
+        artikelBezIndex = s.pflicht("artikelBez");
+        auktionEndeZeitpunktIndex = s.pflicht("auktionEndeZeitpunkt");
+        auktionMinPreisIndex = s.pflicht("auktionMinPreis");
+        aktuellerPreisIndex = s.pflicht("aktuellerPreis");
+        anzahlGeboteIndex = s.pflicht("anzahlGebote");
+        versionIndex = s.pflicht("version");
+    }
+
+    @Override
+    public Angebot abbilden(java.sql.ResultSet rs) throws java.sql.SQLException {
+        Angebot o = new Angebot();
+        int aidWert = rs.getInt(aidIndex);
+        o.setAid(rs.wasNull() ? null : aidWert);
+        o.setArtikelBez(rs.getString(artikelBezIndex));
+        o.setAuktionEndeZeitpunkt(rs.getTimestamp(auktionEndeZeitpunktIndex));
+        o.setAuktionMinPreis(rs.getBigDecimal(auktionMinPreisIndex));
+        o.setAktuellerPreis(rs.getBigDecimal(aktuellerPreisIndex));
+        o.setAnzahlGebote(rs.getInt(anzahlGeboteIndex));
+        o.setVersion(rs.getInt(versionIndex));
+        return o;
+    }
+}
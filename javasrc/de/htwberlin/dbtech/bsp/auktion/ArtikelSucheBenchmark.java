@@ -0,0 +1,91 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Misst Aufbau und Suchlatenz des {@link ArtikelTrigrammIndex} auf einem kuenstlichen Katalog, ohne Datenbank.
+ * Zum Vergleich wird eine lineare Suche mit contains gemessen, wie sie like '%...%' entspricht.
+ * <p>
+ * Aufruf: ArtikelSucheBenchmark [angebote] [suchen]
+ */
+public class ArtikelSucheBenchmark {
+    private static final String[] SILBEN = {"ka", "me", "ra", "ob", "jek", "tiv", "stuhl", "ei", "che", "gar",
+            "ten", "lam", "pe", "so", "fa", "buch", "kri", "mi", "uhr", "gold", "sil", "ber", "ti", "sch", "win",
+            "ter", "som", "mer", "han", "dy", "spiel", "kon", "so", "le", "pos", "vin", "yl", "gi", "tar", "re"};
+    // Anzahl verschiedener Woerter im Katalog
+    private static final int WORTSCHATZ = 20_000;
+
+    public static void main(String[] args) {
+        int angebote = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int suchen = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        Random r = new Random(42);
+        String[] woerter = new String[WORTSCHATZ];
+        for (int i = 0; i < WORTSCHATZ; i++) {
+            StringBuilder w = new StringBuilder();
+            int silben = 2 + r.nextInt(3);
+            for (int k = 0; k < silben; k++) {
+                w.append(SILBEN[r.nextInt(SILBEN.length)]);
+            }
+            woerter[i] = w.substring(0, 1).toUpperCase(Locale.ROOT) + w.substring(1);
+        }
+
+        String[] texte = new String[angebote];
+        long start = System.nanoTime();
+        ArtikelTrigrammIndex index = new ArtikelTrigrammIndex();
+        for (int aid = 0; aid < angebote; aid++) {
+            texte[aid] = wort(woerter, r) + " " + wort(woerter, r) + ", " + wort(woerter, r) + " " + (1 + r.nextInt(20));
+            index.hinzufuegen(aid, texte[aid], new Timestamp(r.nextInt(1_000_000_000)));
+        }
+        System.gc();
+        Runtime rt = Runtime.getRuntime();
+        System.out.printf("aufbau: %d angebote in %d ms, trigramme: %d, heap: %d MB%n", angebote,
+                (System.nanoTime() - start) / 1_000_000, index.anzahlTrigramme(),
+                (rt.totalMemory() - rt.freeMemory()) >> 20);
+
+        String[] anfragen = new String[suchen];
+        for (int i = 0; i < suchen; i++) {
+            // Suchen nach Woertern aus vorhandenen Bezeichnungen, damit es Treffer gibt
+            String[] w = texte[r.nextInt(angebote)].replace(",", "").split(" ");
+            anfragen[i] = i % 2 == 0 ? w[0] : w[0] + " " + w[1];
+        }
+        // Aufwaermen
+        for (int i = 0; i < suchen; i++) {
+            index.suche(anfragen[i], 20);
+        }
+        long[] dauer = new long[suchen];
+        for (int i = 0; i < suchen; i++) {
+            long vorher = System.nanoTime();
+            index.suche(anfragen[i], 20);
+            dauer[i] = System.nanoTime() - vorher;
+        }
+        Arrays.sort(dauer);
+        System.out.printf("index:  p50 %8.3f ms  p99 %8.3f ms  max %8.3f ms%n",
+                dauer[suchen / 2] / 1e6, dauer[suchen * 99 / 100] / 1e6, dauer[suchen - 1] / 1e6);
+
+        int linear = Math.min(suchen, 20);
+        long vorher = System.nanoTime();
+        long gefunden = 0;
+        for (int i = 0; i < linear; i++) {
+            String[] w = anfragen[i].toLowerCase(Locale.ROOT).split(" ");
+            for (String t : texte) {
+                String klein = t.toLowerCase(Locale.ROOT);
+                boolean passt = true;
+                for (String s : w) {
+                    passt &= klein.contains(s);
+                }
+                if (passt) {
+                    gefunden++;
+                }
+            }
+        }
+        System.out.printf("linear: mittel %8.3f ms (%d treffer)%n", (System.nanoTime() - vorher) / 1e6 / linear, gefunden);
+    }
+
+    // haeufige Woerter kommen deutlich oefter vor (ungefaehr Zipf-verteilt)
+    private static String wort(String[] woerter, Random r) {
+        return woerter[(int) Math.pow(woerter.length, r.nextDouble()) - 1];
+    }
+}
@@ -0,0 +1,459 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.exceptions.ServiceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Trigramm-Index ueber ArtikelBez der offenen Auktionen, als Ersatz fuer like '%...%'.
+ * <p>
+ * Jede Bezeichnung bekommt eine fortlaufende interne Nummer. Je Trigramm wird ein aufsteigend sortiertes
+ * int-Array dieser Nummern gefuehrt; da neue Bezeichnungen immer die groesste Nummer bekommen, genuegt zum
+ * Einfuegen ein Anhaengen. Eine Suche schneidet die Listen aller Trigramme der Suchwoerter, beginnend mit der
+ * kuerzesten, und prueft die Kandidaten gegen die Bezeichnung. Geliefert werden die Treffer mit dem
+ * fruehesten Auktionsende. Entfernte und ersetzte Auktionen werden nur markiert; ist ein Viertel der Nummern
+ * markiert, werden die verbliebenen Eintraege beim Verdichten in ihrer Reihenfolge neu nummeriert.
+ * <p>
+ * Gesucht wird ohne Beachtung von Gross-/Kleinschreibung nach Wortteilen; Satzzeichen trennen Woerter. Woerter
+ * mit weniger als drei Zeichen haben keine Trigramme und werden nur an den Kandidaten geprueft. Besteht eine
+ * Suche nur aus solchen Woertern, werden alle Bezeichnungen geprueft.
+ * <p>
+ * Beendete und archivierte Auktionen fallen ueber {@link #beobachte} heraus. Neue Angebote kommen nur mit
+ * {@link #laden} oder {@link #hinzufuegen} hinein, da {@link Angebot#insert()} noch nicht implementiert ist.
+ */
+public class ArtikelTrigrammIndex {
+    private static final Logger L = LoggerFactory.getLogger(ArtikelTrigrammIndex.class);
+    private static final int MIN_KAPAZITAET = 1024;
+
+    public static class Treffer {
+        private final int aid;
+        private final String artikelBez;
+        private final Timestamp auktionEndeZeitpunkt;
+
+        public Treffer(int aid, String artikelBez, Timestamp auktionEndeZeitpunkt) {
+            this.aid = aid;
+            this.artikelBez = artikelBez;
+            this.auktionEndeZeitpunkt = auktionEndeZeitpunkt;
+        }
+
+        public int getAid() {
+            return aid;
+        }
+
+        public String getArtikelBez() {
+            return artikelBez;
+        }
+
+        public Timestamp getAuktionEndeZeitpunkt() {
+            return auktionEndeZeitpunkt;
+        }
+
+        @Override
+        public String toString() {
+            return "Treffer [aid=" + aid + ", artikelBez=" + artikelBez + ", auktionEndeZeitpunkt=" + auktionEndeZeitpunkt + "]";
+        }
+    }
+
+    // sortierte Liste interner Nummern, nur das erste anzahl Elemente sind gueltig
+    private static final class Postings {
+        int[] nummern = new int[2];
+        int anzahl = 0;
+
+        void anhaengen(int nummer) {
+            if (anzahl > 0 && nummern[anzahl - 1] == nummer) {
+                return;
+            }
+            if (anzahl == nummern.length) {
+                nummern = Arrays.copyOf(nummern, anzahl + (anzahl >> 1) + 2);
+            }
+            nummern[anzahl++] = nummer;
+        }
+    }
+
+    private Connection connection = null;
+
+    private final ReadWriteLock sperre = new ReentrantReadWriteLock();
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private final Map<Integer, Integer> aidZuNummer = new HashMap<>();
+    private int[] aids = new int[MIN_KAPAZITAET];
+    private String[] bezeichnungen = new String[MIN_KAPAZITAET];
+    private String[] normalisiert = new String[MIN_KAPAZITAET];
+    private long[] enden = new long[MIN_KAPAZITAET];
+    private BitSet entfernt = new BitSet();
+    private int naechsteNummer = 0;
+    private int anzahlEntfernt = 0;
+
+    public void setConnection(Connection connection) {
+        this.connection = connection;
+    }
+
+    private Connection useConnection() {
+        if (connection == null) {
+            throw new ServiceException("Service hat keine Connection");
+        }
+        return connection;
+    }
+
+    /**
+     * Nimmt alle Angebote auf, deren Ende laut Datenbank noch nicht erreicht ist.
+     */
+    public void laden() {
+        String sql = "select AID, ArtikelBez, AuktionEndeZeitpunkt from Angebot " +
+                "where AuktionEndeZeitpunkt >= current_timestamp";
+        L.info(sql);
+        int anzahl = 0;
+        try (PreparedStatement ps = useConnection().prepareStatement(sql)) {
+            ps.setFetchSize(1000);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    hinzufuegen(rs.getInt("AID"), rs.getString("ArtikelBez"), rs.getTimestamp("AuktionEndeZeitpunkt"));
+                    anzahl++;
+                }
+            }
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        }
+        L.info("geladen: " + anzahl + "  trigramme: " + anzahlTrigramme());
+    }
+
+    /**
+     * Nimmt ein Angebot auf. Ist die AID schon enthalten, wird der alte Eintrag ersetzt.
+     */
+    public void hinzufuegen(int aid, String artikelBez, Timestamp auktionEndeZeitpunkt) {
+        String text = normalisiere(artikelBez);
+        sperre.writeLock().lock();
+        try {
+            Integer alt = aidZuNummer.get(aid);
+            if (alt != null) {
+                markiereEntfernt(alt);
+            }
+            int nummer = naechsteNummer++;
+            if (nummer == aids.length) {
+                int groesse = nummer * 2;
+                aids = Arrays.copyOf(aids, groesse);
+                bezeichnungen = Arrays.copyOf(bezeichnungen, groesse);
+                normalisiert = Arrays.copyOf(normalisiert, groesse);
+                enden = Arrays.copyOf(enden, groesse);
+            }
+            aids[nummer] = aid;
+            bezeichnungen[nummer] = artikelBez;
+            normalisiert[nummer] = text;
+            enden[nummer] = auktionEndeZeitpunkt.getTime();
+            aidZuNummer.put(aid, nummer);
+            for (long t : trigramme(text)) {
+                postings.computeIfAbsent(t, k -> new Postings()).anhaengen(nummer);
+            }
+            if (alt != null) {
+                verdichtenWennNoetig();
+            }
+        } finally {
+            sperre.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Entfernt die Auktionen, sobald der Scheduler sie beendet hat.
+     */
+    public void beobachte(AuktionsEndeScheduler scheduler) {
+        scheduler.addBeendetListener(this::entfernen);
+    }
+
+    /**
+     * Entfernt die Auktionen, sobald sie archiviert sind.
+     */
+    public void beobachte(AuktionsArchivierer archivierer) {
+        archivierer.addArchiviertListener(this::entfernen);
+    }
+
+    /**
+     * Entfernt beendete Auktionen.
+     */
+    public void entfernen(Collection<Integer> aids) {
+        sperre.writeLock().lock();
+        try {
+            for (Integer aid : aids) {
+                Integer nummer = aidZuNummer.get(aid);
+                if (nummer != null) {
+                    markiereEntfernt(nummer);
+                }
+            }
+            verdichtenWennNoetig();
+        } finally {
+            sperre.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Die hoechstens n Angebote mit dem fruehesten Auktionsende, deren Bezeichnung alle Woerter der Suche
+     * enthaelt.
+     */
+    public List<Treffer> suche(String suche, int n) {
+        List<String> woerter = woerter(normalisiere(suche));
+        if (woerter.isEmpty() || n <= 0) {
+            return new ArrayList<>();
+        }
+        Set<Long> gesucht = new LinkedHashSet<>();
+        for (String w : woerter) {
+            for (long t : trigramme(w)) {
+                gesucht.add(t);
+            }
+        }
+        sperre.readLock().lock();
+        try {
+            int[] kandidaten;
+            int anzahlKandidaten;
+            if (gesucht.isEmpty()) {
+                kandidaten = null;
+                anzahlKandidaten = naechsteNummer;
+            } else {
+                List<Postings> listen = new ArrayList<>(gesucht.size());
+                for (Long t : gesucht) {
+                    Postings p = postings.get(t);
+                    if (p == null) {
+                        return new ArrayList<>();
+                    }
+                    listen.add(p);
+                }
+                listen.sort(Comparator.comparingInt(p -> p.anzahl));
+                kandidaten = Arrays.copyOf(listen.get(0).nummern, listen.get(0).anzahl);
+                anzahlKandidaten = kandidaten.length;
+                for (int i = 1; i < listen.size() && anzahlKandidaten > 0; i++) {
+                    anzahlKandidaten = schneide(kandidaten, anzahlKandidaten, listen.get(i));
+                }
+            }
+
+            // Max-Heap nach Ende, enthaelt die bisher besten n
+            Comparator<Integer> nachEnde = Comparator.comparingLong((Integer k) -> enden[k]).thenComparingInt(k -> aids[k]);
+            PriorityQueue<Integer> beste = new PriorityQueue<>(n + 1, nachEnde.reversed());
+            for (int i = 0; i < anzahlKandidaten; i++) {
+                int k = kandidaten == null ? i : kandidaten[i];
+                if (entfernt.get(k)) {
+                    continue;
+                }
+                // erst pruefen, ob der Kandidat unter die besten n kaeme, der Textvergleich ist teurer
+                if (beste.size() == n && nachEnde.compare(k, beste.peek()) >= 0) {
+                    continue;
+                }
+                if (!enthaeltAlle(normalisiert[k], woerter)) {
+                    continue;
+                }
+                beste.add(k);
+                if (beste.size() > n) {
+                    beste.poll();
+                }
+            }
+            Treffer[] treffer = new Treffer[beste.size()];
+            for (int i = treffer.length - 1; i >= 0; i--) {
+                int k = beste.poll();
+                treffer[i] = new Treffer(aids[k], bezeichnungen[k], new Timestamp(enden[k]));
+            }
+            return new ArrayList<>(Arrays.asList(treffer));
+        } finally {
+            sperre.readLock().unlock();
+        }
+    }
+
+    public int anzahl() {
+        sperre.readLock().lock();
+        try {
+            return aidZuNummer.size();
+        } finally {
+            sperre.readLock().unlock();
+        }
+    }
+
+    public int anzahlTrigramme() {
+        sperre.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            sperre.readLock().unlock();
+        }
+    }
+
+    private void markiereEntfernt(int nummer) {
+        if (!entfernt.get(nummer)) {
+            entfernt.set(nummer);
+            aidZuNummer.remove(aids[nummer]);
+            bezeichnungen[nummer] = null;
+            normalisiert[nummer] = null;
+            anzahlEntfernt++;
+        }
+    }
+
+    // verdichten, sobald ein Viertel der Nummern entfernt ist
+    private void verdichtenWennNoetig() {
+        if (anzahlEntfernt > MIN_KAPAZITAET && anzahlEntfernt * 4 > naechsteNummer) {
+            verdichten();
+        }
+    }
+
+    // nummeriert die verbliebenen Eintraege fortlaufend neu, in der alten Reihenfolge, damit die Listen sortiert
+    // bleiben; entfernte Nummern verschwinden aus den Listen und Arrays
+    private void verdichten() {
+        int[] neueNummer = new int[naechsteNummer];
+        int lebend = 0;
+        for (int alt = 0; alt < naechsteNummer; alt++) {
+            neueNummer[alt] = entfernt.get(alt) ? -1 : lebend++;
+        }
+        int groesse = Math.max(MIN_KAPAZITAET, lebend + (lebend >> 1));
+        int[] neueAids = new int[groesse];
+        String[] neueBezeichnungen = new String[groesse];
+        String[] neuNormalisiert = new String[groesse];
+        long[] neueEnden = new long[groesse];
+        for (int alt = 0; alt < naechsteNummer; alt++) {
+            int neu = neueNummer[alt];
+            if (neu >= 0) {
+                neueAids[neu] = aids[alt];
+                neueBezeichnungen[neu] = bezeichnungen[alt];
+                neuNormalisiert[neu] = normalisiert[alt];
+                neueEnden[neu] = enden[alt];
+                aidZuNummer.put(aids[alt], neu);
+            }
+        }
+        postings.values().removeIf(p -> {
+            int j = 0;
+            for (int i = 0; i < p.anzahl; i++) {
+                int neu = neueNummer[p.nummern[i]];
+                if (neu >= 0) {
+                    p.nummern[j++] = neu;
+                }
+            }
+            p.anzahl = j;
+            if (j < p.nummern.length / 4) {
+                p.nummern = Arrays.copyOf(p.nummern, Math.max(j, 2));
+            }
+            return j == 0;
+        });
+        aids = neueAids;
+        bezeichnungen = neueBezeichnungen;
+        normalisiert = neuNormalisiert;
+        enden = neueEnden;
+        L.info("verdichtet: " + anzahlEntfernt + " entfernte eintraege, " + lebend + " verbleiben");
+        naechsteNummer = lebend;
+        entfernt = new BitSet();
+        anzahlEntfernt = 0;
+    }
+
+    /**
+     * Vergebene interne Nummern, einschliesslich der noch nicht verdichteten entfernten.
+     */
+    int anzahlNummern() {
+        sperre.readLock().lock();
+        try {
+            return naechsteNummer;
+        } finally {
+            sperre.readLock().unlock();
+        }
+    }
+
+    // schneidet die ersten anzahl Kandidaten mit der Liste p, Ergebnis steht vorne in kandidaten
+    private static int schneide(int[] kandidaten, int anzahl, Postings p) {
+        int[] liste = p.nummern;
+        int j = 0;
+        int ergebnis = 0;
+        for (int i = 0; i < anzahl && j < p.anzahl; i++) {
+            int k = kandidaten[i];
+            if (liste[j] < k) {
+                j = galopp(liste, j, p.anzahl, k);
+            }
+            if (j < p.anzahl && liste[j] == k) {
+                kandidaten[ergebnis++] = k;
+                j++;
+            }
+        }
+        return ergebnis;
+    }
+
+    // erste Position ab von mit liste[pos] >= k; springt in wachsenden Schritten, dann binaer
+    private static int galopp(int[] liste, int von, int bis, int k) {
+        int schritt = 1;
+        int oben = von + 1;
+        while (oben < bis && liste[oben] < k) {
+            von = oben;
+            schritt <<= 1;
+            oben = von + schritt;
+        }
+        int pos = Arrays.binarySearch(liste, von, Math.min(oben + 1, bis), k);
+        return pos >= 0 ? pos : -pos - 1;
+    }
+
+    private static boolean enthaeltAlle(String text, List<String> woerter) {
+        for (String w : woerter) {
+            if (!text.contains(w)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static String normalisiere(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2);
+        sb.append(' ');
+        boolean trenner = true;
+        for (int i = 0; i < s.length(); i++) {
+            char c = Character.toLowerCase(s.charAt(i));
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(c);
+                trenner = false;
+            } else if (!trenner) {
+                sb.append(' ');
+                trenner = true;
+            }
+        }
+        if (!trenner) {
+            sb.append(' ');
+        }
+        return sb.toString();
+    }
+
+    private static List<String> woerter(String normalisiert) {
+        List<String> woerter = new ArrayList<>();
+        for (String w : normalisiert.trim().split(" ")) {
+            if (!w.isEmpty()) {
+                woerter.add(w);
+            }
+        }
+        return woerter;
+    }
+
+    // Trigramme innerhalb der Woerter, je drei Zeichen in einem long
+    private static long[] trigramme(String text) {
+        if (text.length() < 3) {
+            return new long[0];
+        }
+        long[] t = new long[text.length() - 2];
+        int anzahl = 0;
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            char a = text.charAt(i);
+            char b = text.charAt(i + 1);
+            char c = text.charAt(i + 2);
+            if (a == ' ' || b == ' ' || c == ' ') {
+                continue;
+            }
+            t[anzahl++] = ((long) a << 32) | ((long) b << 16) | c;
+        }
+        return Arrays.copyOf(t, anzahl);
+    }
+}
@@ -0,0 +1,110 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ArtikelTrigrammIndexTest {
+    private static final String[] WOERTER = {"game", "of", "thrones", "staffel", "1", "2", "fahrrad", "rot",
+            "blau", "lampe", "sofa", "leder", "buch", "krimi", "uhr", "gold", "tisch", "eiche"};
+
+    /**
+     * Mehrere Woerter, Gross-/Kleinschreibung und Satzzeichen.
+     */
+    @org.junit.Test
+    public void sucheMehrereWoerter() {
+        ArtikelTrigrammIndex index = new ArtikelTrigrammIndex();
+        index.hinzufuegen(1, "Game of Thrones, Staffel 1", new Timestamp(3000));
+        index.hinzufuegen(2, "Game of Thrones, Staffel 2", new Timestamp(1000));
+        index.hinzufuegen(3, "Thronsessel", new Timestamp(2000));
+        assertEquals(List.of(2, 1), aids(index.suche("thrones staffel", 10)));
+        assertEquals(List.of(1), aids(index.suche("STAFFEL 1", 10)));
+        assertEquals(List.of(2), aids(index.suche("thron", 1)));
+        assertEquals(List.of(), aids(index.suche("krimi", 10)));
+    }
+
+    /**
+     * Entfernte und ersetzte Angebote werden nicht mehr gefunden.
+     */
+    @org.junit.Test
+    public void entfernen() {
+        ArtikelTrigrammIndex index = new ArtikelTrigrammIndex();
+        index.hinzufuegen(1, "Fahrrad rot", new Timestamp(1000));
+        index.hinzufuegen(2, "Fahrrad blau", new Timestamp(2000));
+        index.entfernen(List.of(1));
+        index.hinzufuegen(2, "Lampe blau", new Timestamp(2000));
+        assertEquals(List.of(), aids(index.suche("fahrrad", 10)));
+        assertEquals(List.of(2), aids(index.suche("blau", 10)));
+        assertEquals(1, index.anzahl());
+    }
+
+    /**
+     * Gleiche Treffer wie eine lineare Suche, auch nach dem Verdichten.
+     */
+    @org.junit.Test
+    public void wieLineareSuche() {
+        Random r = new Random(7);
+        ArtikelTrigrammIndex index = new ArtikelTrigrammIndex();
+        List<String> texte = new ArrayList<>();
+        List<Long> enden = new ArrayList<>();
+        for (int aid = 0; aid < 5000; aid++) {
+            String text = WOERTER[r.nextInt(WOERTER.length)] + " " + WOERTER[r.nextInt(WOERTER.length)] + " "
+                    + WOERTER[r.nextInt(WOERTER.length)];
+            long ende = r.nextInt(100_000);
+            texte.add(text);
+            enden.add(ende);
+            index.hinzufuegen(aid, text, new Timestamp(ende));
+        }
+        List<Integer> entfernt = new ArrayList<>();
+        for (int aid = 0; aid < 5000; aid += 2) {
+            entfernt.add(aid);
+        }
+        index.entfernen(entfernt);
+        // verdichtet und neu nummeriert
+        assertEquals(2500, index.anzahlNummern());
+
+        String[] suchen = {"game thrones", "eiche tisch", "old", "1 staffel", "rot", "of", "lampe buch krimi"};
+        for (String suche : suchen) {
+            List<Integer> erwartet = new ArrayList<>();
+            for (int aid = 1; aid < 5000; aid += 2) {
+                boolean passt = true;
+                for (String w : suche.split(" ")) {
+                    passt &= texte.get(aid).toLowerCase(Locale.ROOT).contains(w);
+                }
+                if (passt) {
+                    erwartet.add(aid);
+                }
+            }
+            erwartet.sort(Comparator.comparingLong((Integer aid) -> enden.get(aid)).thenComparingInt(aid -> aid));
+            assertEquals(suche, erwartet.subList(0, Math.min(20, erwartet.size())), aids(index.suche(suche, 20)));
+        }
+    }
+
+    /**
+     * Werden dieselben Angebote immer wieder ersetzt, bleiben die internen Nummern beschraenkt.
+     */
+    @org.junit.Test
+    public void ersetzenVerdichtet() {
+        ArtikelTrigrammIndex index = new ArtikelTrigrammIndex();
+        for (int runde = 0; runde < 100; runde++) {
+            for (int aid = 0; aid < 1000; aid++) {
+                index.hinzufuegen(aid, WOERTER[(aid + runde) % WOERTER.length] + " " + aid, new Timestamp(aid));
+            }
+        }
+        assertEquals(1000, index.anzahl());
+        assertTrue(String.valueOf(index.anzahlNummern()), index.anzahlNummern() < 3000);
+        assertEquals(List.of(17), aids(index.suche(WOERTER[(17 + 99) % WOERTER.length] + " 17", 1)));
+    }
+
+    private static List<Integer> aids(List<ArtikelTrigrammIndex.Treffer> treffer) {
+        List<Integer> aids = new ArrayList<>();
+        treffer.forEach(t -> aids.add(t.getAid()));
+        return aids;
+    }
+}
@@ -0,0 +1,169 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.exceptions.ServiceException;
+import de.htwberlin.dbtech.utils.DbCred;
+import de.htwberlin.dbtech.utils.JdbcUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Verschiebt abgerechnete Auktionen, deren Abrechnung laenger als eine Frist zurueckliegt, samt ihren Geboten
+ * nach Angebot_Archiv und Gebot_Archiv.
+ * <p>
+ * Gearbeitet wird in Bloecken von AIDs mit mengenorientierten Anweisungen (insert ... select und delete fuer
+ * beide Tabellen, dazu das Loeschen der Maximalgebote) in einer Transaktion, die am Ende des Blocks abgeschlossen wird. Das Undo je
+ * Commit ist dadurch durch die Blockgroesse begrenzt. Ein abgebrochener Lauf kann einfach neu gestartet werden:
+ * ein Block ist entweder ganz verschoben oder gar nicht, und ausgewaehlt wird nur, was noch in Angebot steht.
+ */
+public class AuktionsArchivierer {
+    private static final Logger L = LoggerFactory.getLogger(AuktionsArchivierer.class);
+
+    // Oracle erlaubt hoechstens 1000 Ausdruecke in einer in-Liste
+    private static final int MAX_BLOCKGROESSE = 1000;
+
+    private static final String ANGEBOT_SPALTEN =
+            "AID, ArtikelBez, AuktionEndeZeitpunkt, AuktionMinPreis, AktuellerPreis, AnzahlGebote, Version";
+    private static final String GEBOT_SPALTEN = "GID, AID, GebotsZeitpunkt, GebotsPreis, Bieter";
+
+    private Connection connection = null;
+    private int mindestAlterTage = 90;
+    private int blockGroesse = 500;
+    private final List<Consumer<List<Integer>>> archiviertListener = new CopyOnWriteArrayList<>();
+
+    public void setConnection(Connection connection) {
+        this.connection = connection;
+    }
+
+    private Connection useConnection() {
+        if (connection == null) {
+            throw new ServiceException("Service hat keine Connection");
+        }
+        return connection;
+    }
+
+    /**
+     * Wie viele Tage nach der Abrechnung eine Auktion archiviert wird.
+     */
+    public void setMindestAlterTage(int mindestAlterTage) {
+        this.mindestAlterTage = mindestAlterTage;
+    }
+
+    public void setBlockGroesse(int blockGroesse) {
+        if (blockGroesse < 1 || blockGroesse > MAX_BLOCKGROESSE) {
+            throw new IllegalArgumentException("blockGroesse muss zwischen 1 und " + MAX_BLOCKGROESSE + " liegen");
+        }
+        this.blockGroesse = blockGroesse;
+    }
+
+    /**
+     * Wird nach dem Commit jedes Blocks mit dessen AIDs aufgerufen.
+     */
+    public void addArchiviertListener(Consumer<List<Integer>> listener) {
+        archiviertListener.add(listener);
+    }
+
+    /**
+     * Archiviert alle faelligen Auktionen, Block fuer Block. Nach jedem Block wird committet, auch wenn die
+     * Connection nicht im Auto-Commit-Modus ist; offene Aenderungen des Aufrufers werden dabei mit festgeschrieben.
+     *
+     * @return Anzahl archivierter Angebote
+     */
+    public int archiviere() {
+        int anzahl = 0;
+        for (List<Integer> block = naechsterBlock(); !block.isEmpty(); block = naechsterBlock()) {
+            anzahl += verschiebe(block);
+            L.info("archiviert: " + anzahl);
+            for (Consumer<List<Integer>> listener : archiviertListener) {
+                listener.accept(block);
+            }
+        }
+        return anzahl;
+    }
+
+    private List<Integer> naechsterBlock() {
+        String sql = "select z.AID from Zuschlag z join Angebot a on a.AID = z.AID " +
+                "where z.AbrechnungZeitpunkt < current_timestamp - numtodsinterval(?, 'DAY') " +
+                "order by z.AID fetch first ? rows only";
+        L.info(sql);
+        List<Integer> aids = new ArrayList<>();
+        try (PreparedStatement ps = useConnection().prepareStatement(sql)) {
+            ps.setInt(1, mindestAlterTage);
+            ps.setInt(2, blockGroesse);
+            ps.setFetchSize(blockGroesse);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    aids.add(rs.getInt("AID"));
+                }
+            }
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        }
+        return aids;
+    }
+
+    private int verschiebe(List<Integer> aids) {
+        String inListe = "(" + String.join(",", Collections.nCopies(aids.size(), "?")) + ")";
+        int[] angebote = new int[1];
+        Connection c = useConnection();
+        JdbcUtils.executeInTransaction(c, () -> {
+            angebote[0] = fuehreAus("insert into Angebot_Archiv (" + ANGEBOT_SPALTEN + ") select " + ANGEBOT_SPALTEN +
+                    " from Angebot where AID in " + inListe, aids);
+            fuehreAus("insert into Gebot_Archiv (" + GEBOT_SPALTEN + ") select " + GEBOT_SPALTEN +
+                    " from Gebot where AID in " + inListe, aids);
+            fuehreAus("delete from Gebot where AID in " + inListe, aids);
+            fuehreAus("delete from Maximalgebot where AID in " + inListe, aids);
+            if (fuehreAus("delete from Angebot where AID in " + inListe, aids) != angebote[0]) {
+                throw new DataException("Angebote waehrend der Archivierung geaendert: " + aids);
+            }
+        });
+        try {
+            // ohne Auto-Commit endet executeInTransaction nur am Savepoint
+            if (!c.getAutoCommit()) {
+                c.commit();
+            }
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        }
+        return angebote[0];
+    }
+
+    private int fuehreAus(String sql, List<Integer> aids) {
+        L.info(sql);
+        try (PreparedStatement ps = useConnection().prepareStatement(sql)) {
+            for (int i = 0; i < aids.size(); i++) {
+                ps.setInt(i + 1, aids.get(i));
+            }
+            return ps.executeUpdate();
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        }
+    }
+
+    /**
+     * Aufruf: AuktionsArchivierer [mindestAlterTage]
+     */
+    public static void main(String[] args) throws SQLException {
+        try (Connection c = JdbcUtils.getConnectionViaDriverManager(DbCred.url, DbCred.user, DbCred.password)) {
+            AuktionsArchivierer archivierer = new AuktionsArchivierer();
+            archivierer.setConnection(c);
+            if (args.length > 0) {
+                archivierer.setMindestAlterTage(Integer.parseInt(args[0]));
+            }
+            archivierer.archiviere();
+        }
+    }
+}
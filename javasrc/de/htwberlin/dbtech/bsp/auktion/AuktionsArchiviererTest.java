@@ -0,0 +1,120 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import de.htwberlin.dbtech.utils.DbCred;
+import de.htwberlin.dbtech.utils.DbUnitUtils;
+import org.dbunit.IDatabaseTester;
+import org.dbunit.JdbcDatabaseTester;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.csv.CsvDataSet;
+import org.dbunit.operation.DatabaseOperation;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.runners.MethodSorters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In test-data/auktion-archiv sind die Auktionen 1 bis 3 im Jahr 2000 abgerechnet, Auktion 4 im Jahr 2020,
+ * Auktion 5 ist noch offen. Die Frist wird so gewaehlt, dass sie 2010 endet.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class AuktionsArchiviererTest {
+    private static final Logger L = LoggerFactory.getLogger(AuktionsArchiviererTest.class);
+    private static IDatabaseConnection dbTesterCon = null;
+
+    private static final AuktionsArchivierer archivierer = new AuktionsArchivierer();
+    private static final List<List<Integer>> gemeldet = new ArrayList<>();
+
+    @BeforeClass
+    public static void setUp() {
+        L.debug("setup: start");
+        try {
+            IDatabaseTester dbTester = new JdbcDatabaseTester(DbCred.driverClass, DbCred.url, DbCred.user, DbCred.password,
+                    DbCred.schema);
+            dbTesterCon = dbTester.getConnection();
+            IDataSet pre = new CsvDataSet(new File("test-data/auktion-archiv"));
+            dbTester.setDataSet(pre);
+            DatabaseOperation.CLEAN_INSERT.execute(dbTesterCon, pre);
+            archivierer.setConnection(dbTesterCon.getConnection());
+            archivierer.setMindestAlterTage((int) ChronoUnit.DAYS.between(LocalDate.of(2010, 1, 1), LocalDate.now()));
+            archivierer.setBlockGroesse(1);
+            archivierer.addArchiviertListener(gemeldet::add);
+        } catch (Exception e) {
+            DbUnitUtils.closeDbUnitConnectionQuietly(dbTesterCon);
+            throw new RuntimeException(e);
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        L.debug("tearDown: start");
+        DbUnitUtils.closeDbUnitConnectionQuietly(dbTesterCon);
+    }
+
+    /**
+     * Nur die vor der Frist abgerechneten Auktionen werden verschoben, in Bloecken zu je einer AID; ihre
+     * Maximalgebote werden geloescht. Jeder Block wird gemeldet.
+     */
+    @org.junit.Test
+    public void aaaArchivieren() throws SQLException {
+        Assert.assertEquals("anzahl falsch:", 3, archivierer.archiviere());
+        pruefeArchiviert();
+        Assert.assertEquals("gemeldet falsch:", List.of(List.of(1), List.of(2), List.of(3)), gemeldet);
+    }
+
+    /**
+     * Ein zweiter Lauf nach einem vollstaendigen findet nichts mehr.
+     */
+    @org.junit.Test
+    public void bbbZweiterLauf() throws SQLException {
+        Assert.assertEquals("anzahl falsch:", 0, archivierer.archiviere());
+        pruefeArchiviert();
+        Assert.assertEquals("gemeldet falsch:", 3, gemeldet.size());
+    }
+
+    /**
+     * Ueber Angebot_Alle und Gebot_Alle sind die verschobenen Zeilen weiter sichtbar.
+     */
+    @org.junit.Test
+    public void cccAlleSichten() throws SQLException {
+        Assert.assertEquals("Angebot_Alle falsch:", List.of(1, 2, 3, 4, 5, 100),
+                ids("select AID from Angebot_Alle order by AID"));
+        Assert.assertEquals("Gebot_Alle falsch:", List.of(1, 2, 3, 4, 5, 100),
+                ids("select GID from Gebot_Alle order by GID"));
+        Assert.assertEquals("Gebote der Auktion 1 falsch:", List.of(1, 2),
+                ids("select GID from Gebot_Alle where AID = 1 order by GID"));
+    }
+
+    private static void pruefeArchiviert() throws SQLException {
+        Assert.assertEquals("Angebot falsch:", List.of(4, 5), ids("select AID from Angebot order by AID"));
+        Assert.assertEquals("Angebot_Archiv falsch:", List.of(1, 2, 3, 100),
+                ids("select AID from Angebot_Archiv order by AID"));
+        Assert.assertEquals("Gebot falsch:", List.of(4, 5), ids("select GID from Gebot order by GID"));
+        Assert.assertEquals("Gebot_Archiv falsch:", List.of(1, 2, 3, 100),
+                ids("select GID from Gebot_Archiv order by GID"));
+        Assert.assertEquals("Maximalgebot falsch:", List.of(5), ids("select AID from Maximalgebot order by AID"));
+    }
+
+    private static List<Integer> ids(String sql) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (PreparedStatement ps = dbTesterCon.getConnection().prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        }
+        return ids;
+    }
+}
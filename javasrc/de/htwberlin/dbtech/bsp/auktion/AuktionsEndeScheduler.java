@@ -0,0 +1,215 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.exceptions.ServiceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Rechnet beendete Auktionen ab.
+ * <p>
+ * Die Endezeitpunkte der naechsten Zeit werden periodisch aus Angebot in ein {@link TimerRad} geladen. Ein
+ * einzelner Thread rueckt das Rad vor und schreibt fuer alle faelligen Auktionen eines Ticks den Zuschlag
+ * mengenorientiert, d.h. mit einem insert ... select je Block von AIDs. Die Connection wird nur von diesem
+ * Thread benutzt und darf nicht mit anderen Diensten geteilt werden.
+ */
+public class AuktionsEndeScheduler implements AutoCloseable {
+    private static final Logger L = LoggerFactory.getLogger(AuktionsEndeScheduler.class);
+
+    // Oracle erlaubt hoechstens 1000 Ausdruecke in einer in-Liste
+    private static final int MAX_BLOCKGROESSE = 1000;
+
+    private Connection connection = null;
+
+    private final TimerRad rad;
+    private final Set<Integer> eingeplant = new HashSet<>();
+    private long horizontMillis = TimeUnit.MINUTES.toMillis(10);
+    private long ladeIntervallMillis = TimeUnit.MINUTES.toMillis(1);
+    private long naechstesLaden = Long.MIN_VALUE;
+    private int blockGroesse = MAX_BLOCKGROESSE;
+    private ScheduledExecutorService executor = null;
+    private final List<Consumer<List<Integer>>> beendetListener = new CopyOnWriteArrayList<>();
+
+    public AuktionsEndeScheduler() {
+        this(TimeUnit.SECONDS.toMillis(1));
+    }
+
+    public AuktionsEndeScheduler(long tickMillis) {
+        this.rad = new TimerRad(tickMillis, System.currentTimeMillis());
+    }
+
+    public void setConnection(Connection connection) {
+        this.connection = connection;
+    }
+
+    private Connection useConnection() {
+        if (connection == null) {
+            throw new ServiceException("Service hat keine Connection");
+        }
+        return connection;
+    }
+
+    /**
+     * Wie weit im Voraus Endezeitpunkte in das Timer-Rad geladen werden.
+     */
+    public void setHorizontMillis(long horizontMillis) {
+        this.horizontMillis = horizontMillis;
+    }
+
+    /**
+     * Wie oft neu angelegte Angebote nachgeladen werden. Sollte kleiner als der Horizont sein.
+     */
+    public void setLadeIntervallMillis(long ladeIntervallMillis) {
+        this.ladeIntervallMillis = ladeIntervallMillis;
+    }
+
+    public void setBlockGroesse(int blockGroesse) {
+        if (blockGroesse < 1 || blockGroesse > MAX_BLOCKGROESSE) {
+            throw new IllegalArgumentException("blockGroesse muss zwischen 1 und " + MAX_BLOCKGROESSE + " liegen");
+        }
+        this.blockGroesse = blockGroesse;
+    }
+
+    /**
+     * Wird nach jedem Tick mit den faellig gewordenen AIDs aufgerufen, im Thread des Schedulers.
+     */
+    public void addBeendetListener(Consumer<List<Integer>> listener) {
+        beendetListener.add(listener);
+    }
+
+    public synchronized void starte() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "auktionsende");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleAtFixedRate(this::tickSicher, 0, rad.getTickMillis(), TimeUnit.MILLISECONDS);
+        L.info("gestartet, tick: " + rad.getTickMillis() + " ms");
+    }
+
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+            L.info("beendet");
+        }
+    }
+
+    private void tickSicher() {
+        try {
+            tick(System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            // der naechste Tick versucht es erneut, nicht abgerechnete Auktionen werden nachgeladen
+            L.error("tick gescheitert", e);
+        }
+    }
+
+    /**
+     * Laedt bei Bedarf nach und rechnet alle bis jetztMillis beendeten Auktionen ab.
+     */
+    public synchronized void tick(long jetztMillis) {
+        if (jetztMillis >= naechstesLaden) {
+            ladeAnstehende(jetztMillis);
+            naechstesLaden = jetztMillis + ladeIntervallMillis;
+        }
+        List<Integer> faellig = rad.vorruecken(jetztMillis);
+        if (!faellig.isEmpty()) {
+            faellig.forEach(eingeplant::remove);
+            abrechnen(faellig);
+            for (Consumer<List<Integer>> listener : beendetListener) {
+                listener.accept(faellig);
+            }
+        }
+    }
+
+    private void ladeAnstehende(long jetztMillis) {
+        String sql = "select AID, AuktionEndeZeitpunkt from Angebot a " +
+                "where AuktionEndeZeitpunkt < ? " +
+                "and not exists (select 1 from Zuschlag z where z.AID = a.AID)";
+        L.info(sql);
+        int neu = 0;
+        try (PreparedStatement ps = useConnection().prepareStatement(sql)) {
+            ps.setFetchSize(MAX_BLOCKGROESSE);
+            ps.setTimestamp(1, new Timestamp(jetztMillis + horizontMillis));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    int aid = rs.getInt("AID");
+                    if (eingeplant.add(aid)) {
+                        rad.einplanen(aid, rs.getTimestamp("AuktionEndeZeitpunkt").getTime());
+                        neu++;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        }
+        L.info("neu eingeplant: " + neu + "  insgesamt: " + rad.anzahl());
+    }
+
+    /**
+     * Schreibt den Zuschlag fuer die uebergebenen Auktionen: das hoechste Gebot je AID, sofern es
+     * AuktionMinPreis erreicht, sonst einen Zuschlag ohne GID ("kein Verkauf"). Auktionen, die laut
+     * Datenbankuhr noch offen oder schon abgerechnet sind, bleiben unberuehrt.
+     *
+     * @return Anzahl geschriebener Zuschlaege
+     */
+    public int abrechnen(List<Integer> aids) {
+        int anzahl = 0;
+        for (int von = 0; von < aids.size(); von += blockGroesse) {
+            anzahl += abrechnenBlock(aids.subList(von, Math.min(von + blockGroesse, aids.size())));
+        }
+        L.info("faellig: " + aids.size() + "  abgerechnet: " + anzahl);
+        return anzahl;
+    }
+
+    private int abrechnenBlock(List<Integer> aids) {
+        String inListe = String.join(",", Collections.nCopies(aids.size(), "?"));
+        String sql = "insert into Zuschlag (AID, GID, ZuschlagPreis, AbrechnungZeitpunkt) " +
+                "select a.AID, h.GID, h.GebotsPreis, current_timestamp " +
+                "from Angebot a left join " +
+                "  (select g.GID, g.AID, g.GebotsPreis, " +
+                "     row_number() over (partition by g.AID order by g.GebotsPreis desc, g.GebotsZeitpunkt, g.GID) as rn " +
+                "   from Gebot g where g.AID in (" + inListe + ")) h " +
+                "  on h.AID = a.AID and h.rn = 1 and h.GebotsPreis >= a.AuktionMinPreis " +
+                "where a.AID in (" + inListe + ") " +
+                "and a.AuktionEndeZeitpunkt < current_timestamp " +
+                "and not exists (select 1 from Zuschlag z where z.AID = a.AID)";
+        Connection c = useConnection();
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            int i = 1;
+            for (int k = 0; k < 2; k++) {
+                for (Integer aid : aids) {
+                    ps.setInt(i++, aid);
+                }
+            }
+            int anzahl = ps.executeUpdate();
+            if (!c.getAutoCommit()) {
+                c.commit();
+            }
+            return anzahl;
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        }
+    }
+}
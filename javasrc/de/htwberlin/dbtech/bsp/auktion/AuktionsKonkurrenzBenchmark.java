@@ -0,0 +1,104 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.exceptions.GebotsKonfliktException;
+import de.htwberlin.dbtech.exceptions.ServiceException;
+import de.htwberlin.dbtech.utils.DbCred;
+import de.htwberlin.dbtech.utils.JdbcUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Vergleicht den Durchsatz von optimistischem und pessimistischem Sperren, wenn viele Bieter gleichzeitig auf
+ * dasselbe Angebot bieten.
+ * <p>
+ * Aufruf: AuktionsKonkurrenzBenchmark [threads] [sekunden]. Legt das Angebot mit AID 99999 an und loescht es
+ * am Ende wieder.
+ */
+public class AuktionsKonkurrenzBenchmark {
+    private static final Logger L = LoggerFactory.getLogger(AuktionsKonkurrenzBenchmark.class);
+    private static final int AID = 99999;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int sekunden = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        try (Connection c = JdbcUtils.getConnectionViaDriverManager(DbCred.url, DbCred.user, DbCred.password)) {
+            messe("optimistisch", AuktionsService::new, threads, sekunden, c);
+            messe("pessimistisch", AuktionsServicePessimistisch::new, threads, sekunden, c);
+            loescheAngebot(c);
+        }
+    }
+
+    private static void messe(String name, Supplier<IAuktionsService> variante, int threads, int sekunden,
+                              Connection c) throws InterruptedException {
+        legeAngebotAn(c);
+        AtomicLong preisInCent = new AtomicLong(100);
+        LongAdder angenommen = new LongAdder();
+        LongAdder zuNiedrig = new LongAdder();
+        LongAdder konflikte = new LongAdder();
+        long ende = System.nanoTime() + TimeUnit.SECONDS.toNanos(sekunden);
+
+        List<Thread> bieter = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread t = new Thread(() -> {
+                try (Connection tc = JdbcUtils.getConnectionViaDriverManager(DbCred.url, DbCred.user, DbCred.password)) {
+                    IAuktionsService as = variante.get();
+                    as.setConnection(tc);
+                    while (System.nanoTime() < ende) {
+                        BigDecimal preis = BigDecimal.valueOf(preisInCent.incrementAndGet(), 2);
+                        try {
+                            as.biete(AID, preis);
+                            angenommen.increment();
+                        } catch (GebotsKonfliktException e) {
+                            konflikte.increment();
+                        } catch (ServiceException e) {
+                            zuNiedrig.increment();
+                        }
+                    }
+                } catch (SQLException e) {
+                    L.error("", e);
+                }
+            });
+            bieter.add(t);
+            t.start();
+        }
+        for (Thread t : bieter) {
+            t.join();
+        }
+        System.out.printf("%-14s threads: %3d  angenommen/s: %8.1f  zu niedrig: %7d  konflikte: %5d%n",
+                name, threads, angenommen.sum() / (double) sekunden, zuNiedrig.sum(), konflikte.sum());
+    }
+
+    private static void legeAngebotAn(Connection c) {
+        loescheAngebot(c);
+        fuehreAus(c, "insert into Angebot (AID, ArtikelBez, AuktionEndeZeitpunkt, AuktionMinPreis) " +
+                "values (" + AID + ", 'Benchmark', current_timestamp + 1, 1.00)");
+    }
+
+    private static void loescheAngebot(Connection c) {
+        fuehreAus(c, "delete from Gebot where AID = " + AID);
+        fuehreAus(c, "delete from Angebot where AID = " + AID);
+    }
+
+    private static void fuehreAus(Connection c, String sql) {
+        L.info(sql);
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        }
+    }
+}
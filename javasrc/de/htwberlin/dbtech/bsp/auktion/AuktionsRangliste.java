@@ -0,0 +1,231 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.exceptions.ServiceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Flow;
+
+/**
+ * Ranglisten der offenen Auktionen im Speicher: nach Auktionsende (endet bald) und nach aktuellem Preis.
+ * <p>
+ * {@link #laden()} liest den Stand einmal aus Angebot. Danach wird die Rangliste ueber die Gebotsereignisse
+ * (als Abonnent eines {@link GebotsEreignisPublisher}) und ueber {@link #beendet(Collection)} (z.B. vom
+ * {@link AuktionsEndeScheduler}) fortgeschrieben. Die ersten n Eintraege werden ohne Datenbankzugriff in O(n)
+ * geliefert, Aenderungen kosten O(log m) bei m offenen Auktionen. Auktionen ohne Gebot erscheinen nur in der
+ * Rangliste nach Auktionsende.
+ */
+public class AuktionsRangliste implements Flow.Subscriber<GebotsEreignis> {
+    private static final Logger L = LoggerFactory.getLogger(AuktionsRangliste.class);
+
+    public static class Eintrag {
+        private final int aid;
+        private final Timestamp auktionEndeZeitpunkt;
+        // null, solange kein Gebot vorliegt
+        private final BigDecimal aktuellerPreis;
+        private final int anzahlGebote;
+
+        public Eintrag(int aid, Timestamp auktionEndeZeitpunkt, BigDecimal aktuellerPreis, int anzahlGebote) {
+            this.aid = aid;
+            this.auktionEndeZeitpunkt = auktionEndeZeitpunkt;
+            this.aktuellerPreis = aktuellerPreis;
+            this.anzahlGebote = anzahlGebote;
+        }
+
+        public int getAid() {
+            return aid;
+        }
+
+        public Timestamp getAuktionEndeZeitpunkt() {
+            return auktionEndeZeitpunkt;
+        }
+
+        public BigDecimal getAktuellerPreis() {
+            return aktuellerPreis;
+        }
+
+        public int getAnzahlGebote() {
+            return anzahlGebote;
+        }
+
+        @Override
+        public String toString() {
+            return "Eintrag [aid=" + aid + ", auktionEndeZeitpunkt=" + auktionEndeZeitpunkt
+                    + ", aktuellerPreis=" + aktuellerPreis + ", anzahlGebote=" + anzahlGebote + "]";
+        }
+    }
+
+    private static final Comparator<Eintrag> NACH_ENDE =
+            Comparator.comparing(Eintrag::getAuktionEndeZeitpunkt).thenComparingInt(Eintrag::getAid);
+    private static final Comparator<Eintrag> NACH_PREIS =
+            Comparator.comparing(Eintrag::getAktuellerPreis, Comparator.reverseOrder()).thenComparingInt(Eintrag::getAid);
+
+    private Connection connection = null;
+
+    private final Map<Integer, Eintrag> eintraege = new HashMap<>();
+    private final TreeSet<Eintrag> nachEnde = new TreeSet<>(NACH_ENDE);
+    private final TreeSet<Eintrag> nachPreis = new TreeSet<>(NACH_PREIS);
+
+    public void setConnection(Connection connection) {
+        this.connection = connection;
+    }
+
+    private Connection useConnection() {
+        if (connection == null) {
+            throw new ServiceException("Service hat keine Connection");
+        }
+        return connection;
+    }
+
+    /**
+     * Ersetzt den Inhalt durch alle Angebote, deren Ende laut Datenbank noch nicht erreicht ist.
+     */
+    public void laden() {
+        String sql = "select AID, AuktionEndeZeitpunkt, AktuellerPreis, AnzahlGebote from Angebot " +
+                "where AuktionEndeZeitpunkt >= current_timestamp";
+        L.info(sql);
+        List<Eintrag> geladen = new ArrayList<>();
+        try (PreparedStatement ps = useConnection().prepareStatement(sql)) {
+            ps.setFetchSize(1000);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    geladen.add(new Eintrag(rs.getInt("AID"), rs.getTimestamp("AuktionEndeZeitpunkt"),
+                            rs.getBigDecimal("AktuellerPreis"), rs.getInt("AnzahlGebote")));
+                }
+            }
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        }
+        synchronized (this) {
+            eintraege.clear();
+            nachEnde.clear();
+            nachPreis.clear();
+            geladen.forEach(this::einfuegen);
+        }
+        L.info("geladen: " + geladen.size());
+    }
+
+    /**
+     * Die n Auktionen, die als naechste enden.
+     */
+    public synchronized List<Eintrag> endenBald(int n) {
+        return erste(nachEnde, n);
+    }
+
+    /**
+     * Die n Auktionen mit dem hoechsten aktuellen Preis.
+     */
+    public synchronized List<Eintrag> hoechstePreise(int n) {
+        return erste(nachPreis, n);
+    }
+
+    public synchronized int anzahl() {
+        return eintraege.size();
+    }
+
+    /**
+     * Uebernimmt ein angenommenes Gebot. Ereignisse mit nicht hoeherer Gebotsanzahl sind ueberholt und werden
+     * ignoriert, ebenso Ereignisse zu unbekannten oder beendeten Auktionen.
+     */
+    public synchronized void gebot(GebotsEreignis e) {
+        Eintrag alt = eintraege.get(e.getAid());
+        if (alt == null || e.getAnzahlGebote() <= alt.getAnzahlGebote()) {
+            return;
+        }
+        entfernen(alt);
+        einfuegen(new Eintrag(alt.getAid(), alt.getAuktionEndeZeitpunkt(), e.getPreis(), e.getAnzahlGebote()));
+    }
+
+    /**
+     * Nimmt neu angelegte Angebote auf.
+     */
+    public synchronized void neu(Eintrag e) {
+        Eintrag alt = eintraege.get(e.getAid());
+        if (alt != null) {
+            entfernen(alt);
+        }
+        einfuegen(e);
+    }
+
+    /**
+     * Entfernt beendete Auktionen.
+     */
+    public synchronized void beendet(Collection<Integer> aids) {
+        for (Integer aid : aids) {
+            Eintrag e = eintraege.get(aid);
+            if (e != null) {
+                entfernen(e);
+            }
+        }
+    }
+
+    /**
+     * Entfernt alle Auktionen mit Ende vor jetzt, falls Abrechnungen verpasst wurden.
+     */
+    public synchronized void entferneBeendete(Timestamp jetzt) {
+        while (!nachEnde.isEmpty() && nachEnde.first().getAuktionEndeZeitpunkt().before(jetzt)) {
+            entfernen(nachEnde.first());
+        }
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(GebotsEreignis item) {
+        gebot(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        L.error("gebotsereignisse abgebrochen", throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        L.info("gebotsereignisse beendet");
+    }
+
+    private void einfuegen(Eintrag e) {
+        eintraege.put(e.getAid(), e);
+        nachEnde.add(e);
+        if (e.getAktuellerPreis() != null) {
+            nachPreis.add(e);
+        }
+    }
+
+    private void entfernen(Eintrag e) {
+        eintraege.remove(e.getAid());
+        nachEnde.remove(e);
+        if (e.getAktuellerPreis() != null) {
+            nachPreis.remove(e);
+        }
+    }
+
+    private static List<Eintrag> erste(TreeSet<Eintrag> menge, int n) {
+        List<Eintrag> ergebnis = new ArrayList<>(Math.min(n, menge.size()));
+        Iterator<Eintrag> it = menge.iterator();
+        while (ergebnis.size() < n && it.hasNext()) {
+            ergebnis.add(it.next());
+        }
+        return ergebnis;
+    }
+}
@@ -0,0 +1,127 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import de.htwberlin.dbtech.utils.DbCred;
+import de.htwberlin.dbtech.utils.DbUnitUtils;
+import org.dbunit.IDatabaseTester;
+import org.dbunit.JdbcDatabaseTester;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.csv.CsvDataSet;
+import org.dbunit.operation.DatabaseOperation;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.runners.MethodSorters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class AuktionsRanglisteTest {
+    private static final Logger L = LoggerFactory.getLogger(AuktionsRanglisteTest.class);
+    private static IDatabaseConnection dbTesterCon = null;
+
+    private static final AuktionsRangliste rangliste = new AuktionsRangliste();
+    private static final AuktionsService as = new AuktionsService();
+
+    @BeforeClass
+    public static void setUp() {
+        L.debug("setup: start");
+        try {
+            IDatabaseTester dbTester = new JdbcDatabaseTester(DbCred.driverClass, DbCred.url, DbCred.user, DbCred.password,
+                    DbCred.schema);
+            dbTesterCon = dbTester.getConnection();
+            IDataSet pre = new CsvDataSet(new File("test-data/auktion"));
+            dbTester.setDataSet(pre);
+            DatabaseOperation.CLEAN_INSERT.execute(dbTesterCon, pre);
+            rangliste.setConnection(dbTesterCon.getConnection());
+            as.setConnection(dbTesterCon.getConnection());
+            // Zustellung im Bieter-Thread, damit die Rangliste nach biete sofort aktuell ist
+            GebotsEreignisPublisher p = new GebotsEreignisPublisher(Runnable::run, 16,
+                    GebotsEreignisPublisher.Ueberlauf.JE_AID_ZUSAMMENFASSEN);
+            p.subscribe(rangliste);
+            as.setGebotsEreignisse(p);
+        } catch (Exception e) {
+            DbUnitUtils.closeDbUnitConnectionQuietly(dbTesterCon);
+            throw new RuntimeException(e);
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        L.debug("tearDown: start");
+        DbUnitUtils.closeDbUnitConnectionQuietly(dbTesterCon);
+    }
+
+    /**
+     * Nach dem Laden entsprechen beide Ranglisten der Auswertung in SQL.
+     */
+    @org.junit.Test
+    public void aaaLaden() throws SQLException {
+        rangliste.laden();
+        Assert.assertEquals("anzahl falsch:", 5, rangliste.anzahl());
+        vergleicheMitSql(10);
+        vergleicheMitSql(2);
+    }
+
+    /**
+     * Ein angenommenes Gebot aendert die Preis-Rangliste ohne erneutes Laden.
+     */
+    @org.junit.Test
+    public void bbbGebot() throws SQLException {
+        as.biete(2, new BigDecimal("300.00"));
+        Assert.assertEquals("hoechster Preis falsch:", 2, rangliste.hoechstePreise(1).get(0).getAid());
+        as.biete(4, new BigDecimal("5.00"));
+        vergleicheMitSql(10);
+    }
+
+    /**
+     * Beendete Auktionen verschwinden aus beiden Ranglisten.
+     */
+    @org.junit.Test
+    public void cccBeendet() {
+        rangliste.beendet(List.of(2, 4));
+        Assert.assertEquals("endenBald falsch:", List.of(3, 1, 6), aids(rangliste.endenBald(10)));
+        Assert.assertEquals("hoechstePreise falsch:", List.of(3, 1, 6), aids(rangliste.hoechstePreise(10)));
+    }
+
+    private void vergleicheMitSql(int n) throws SQLException {
+        String endenBald = "select AID from Angebot where AuktionEndeZeitpunkt >= current_timestamp " +
+                "order by AuktionEndeZeitpunkt, AID";
+        // Preis bewusst aus Gebot aggregiert, nicht aus der denormalisierten Spalte AktuellerPreis
+        String hoechstePreise = "select g.AID, max(g.GebotsPreis) as MaxPreis from Gebot g join Angebot a on a.AID = g.AID " +
+                "where a.AuktionEndeZeitpunkt >= current_timestamp group by g.AID order by MaxPreis desc, g.AID";
+        Assert.assertEquals("endenBald falsch:", erste(sqlAids(endenBald), n), aids(rangliste.endenBald(n)));
+        Assert.assertEquals("hoechstePreise falsch:", erste(sqlAids(hoechstePreise), n), aids(rangliste.hoechstePreise(n)));
+    }
+
+    private static List<Integer> sqlAids(String sql) throws SQLException {
+        List<Integer> aids = new ArrayList<>();
+        try (PreparedStatement ps = dbTesterCon.getConnection().prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                aids.add(rs.getInt("AID"));
+            }
+        }
+        return aids;
+    }
+
+    private static List<Integer> erste(List<Integer> aids, int n) {
+        return aids.subList(0, Math.min(n, aids.size()));
+    }
+
+    private static List<Integer> aids(List<AuktionsRangliste.Eintrag> eintraege) {
+        List<Integer> aids = new ArrayList<>();
+        eintraege.forEach(e -> aids.add(e.getAid()));
+        return aids;
+    }
+}
@@ -1,20 +1,113 @@
 package de.htwberlin.dbtech.bsp.auktion;
 
+import de.htwberlin.dbtech.exceptions.AuktionBeendetException;
 import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.exceptions.GebotsKonfliktException;
+import de.htwberlin.dbtech.exceptions.GebotspreisZuNiedrigException;
 import de.htwberlin.dbtech.exceptions.ServiceException;
+import de.htwberlin.dbtech.exceptions.VersionskonfliktException;
+import de.htwberlin.dbtech.utils.ExistenzFilter;
+import de.htwberlin.dbtech.utils.JdbcUtils;
+import de.htwberlin.dbtech.utils.SingleFlight;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
 
 public class AuktionsService implements IAuktionsService {
     private static final Logger L = LoggerFactory.getLogger(AuktionsService.class);
+    // Oracle: ORA-00001 unique constraint violated
+    private static final int ORA_UNIQUE_CONSTRAINT = 1;
+
     private Connection connection = null;
+    private int maxVersuche = 5;
+    private DbUhr dbUhr = null;
+    private boolean eigeneDbUhr = false;
+    private GebotsEreignisPublisher gebotsEreignisse = null;
+    private ExistenzFilter angebotFilter = null;
+    private AutomatischesBieten automatischesBieten = null;
+    private SingleFlight<Integer, Angebot> gleicheAbfragen = null;
 
     @Override
     public void setConnection(Connection connection) {
         this.connection = connection;
+        if (eigeneDbUhr) {
+            dbUhr.setConnection(connection);
+        }
+        if (automatischesBieten != null) {
+            automatischesBieten.setConnection(connection);
+        }
+    }
+
+    /**
+     * Setzt die Uhr, mit der das Auktionsende geprueft wird. Ohne Aufruf wird eine eigene Uhr auf der
+     * Connection des Dienstes angelegt.
+     */
+    public void setDbUhr(DbUhr dbUhr) {
+        this.dbUhr = dbUhr;
+        this.eigeneDbUhr = false;
+    }
+
+    /**
+     * Publisher, an den jedes angenommene Gebot nach erfolgreicher Transaktion gemeldet wird. Mehrere Dienste
+     * koennen sich einen Publisher teilen. Ohne Aufruf werden keine Ereignisse erzeugt. Laeuft biete in einer
+     * Transaktion des Aufrufers (kein Auto-Commit), werden ebenfalls keine Ereignisse erzeugt, da das Gebot
+     * noch zurueckgerollt werden kann.
+     */
+    public void setGebotsEreignisse(GebotsEreignisPublisher gebotsEreignisse) {
+        this.gebotsEreignisse = gebotsEreignisse;
+    }
+
+    public Flow.Publisher<GebotsEreignis> getGebotsEreignisse() {
+        return gebotsEreignisse;
+    }
+
+    /**
+     * Filter, mit dem Gebote auf nicht existierende AIDs ohne Abfrage abgelehnt werden.
+     */
+    public void setAngebotFilter(ExistenzFilter angebotFilter) {
+        this.angebotFilter = angebotFilter;
+    }
+
+    /**
+     * Loest nach jedem Gebot die Maximalgebote der Auktion in derselben Transaktion auf. Der Dienst benutzt
+     * dafuer die Connection dieses Dienstes. Ohne Aufruf bleiben Maximalgebote bis zum naechsten
+     * {@link AutomatischesBieten#bieteBis} ueberboten.
+     */
+    public void setAutomatischesBieten(AutomatischesBieten automatischesBieten) {
+        this.automatischesBieten = automatischesBieten;
+        if (automatischesBieten != null && connection != null) {
+            automatischesBieten.setConnection(connection);
+        }
+    }
+
+    /**
+     * Buendelt gleichzeitiges Lesen desselben Angebots, auch ueber mehrere Dienste. Ein dabei veraltetes Angebot
+     * fuehrt wie sonst auch zu einem Versionskonflikt und einem neuen Versuch. Wirkt nicht, wenn beim Lesen
+     * gesperrt wird. Ohne Aufruf liest jeder Versuch selbst.
+     */
+    public void setGleicheAbfragen(SingleFlight<Integer, Angebot> gleicheAbfragen) {
+        this.gleicheAbfragen = gleicheAbfragen;
+    }
+
+    /**
+     * Ob {@link #leseAngebotSql()} die Zeile sperrt; dann liest jeder Aufruf selbst.
+     */
+    protected boolean sperrtBeimLesen() {
+        return false;
+    }
+
+    private DbUhr useDbUhr() {
+        if (dbUhr == null) {
+            dbUhr = new DbUhr();
+            dbUhr.setConnection(useConnection());
+            eigeneDbUhr = true;
+        }
+        return dbUhr;
     }
 
     private Connection useConnection() {
@@ -24,60 +117,97 @@ public class AuktionsService implements IAuktionsService {
         return connection;
     }
 
+    /**
+     * Wie oft ein Gebot bei konkurrierenden Aenderungen des Angebots wiederholt wird.
+     */
+    public void setMaxVersuche(int maxVersuche) {
+        this.maxVersuche = maxVersuche;
+    }
+
     @Override
     public void biete(Integer aid, BigDecimal gebotspreis) {
         L.info("aid: " + aid + "  gebotspreis: " + gebotspreis);
-        if (!existiertAidInDb(aid)) {
+        if (angebotFilter != null && aid != null && angebotFilter.sicherAbwesend(aid)) {
             throw new ServiceException("AID existiert nicht: " + aid);
         }
-        if (!istAuktionNochOffen(aid)) {
-            throw new ServiceException("Auktion bereits beendet");
+        for (int versuch = 1; ; versuch++) {
+            try {
+                List<GebotsEreignis> ereignisse = new ArrayList<>(2);
+                boolean festgeschrieben = JdbcUtils.executeInTransaction(useConnection(),
+                        () -> ereignisse.addAll(versucheGebot(aid, gebotspreis)));
+                if (gebotsEreignisse != null && !festgeschrieben) {
+                    L.info("transaktion des aufrufers, keine ereignisse: " + ereignisse.size());
+                } else if (gebotsEreignisse != null) {
+                    ereignisse.forEach(gebotsEreignisse::veroeffentliche);
+                }
+                return;
+            } catch (VersionskonfliktException e) {
+                L.info("versuch " + versuch + ": " + e.getMessage());
+                if (versuch >= maxVersuche) {
+                    throw new GebotsKonfliktException("Gebot nach " + versuch + " Versuchen wegen konkurrierender Gebote abgelehnt", e);
+                }
+            }
         }
-        if (!istGebotspreisOk(aid, gebotspreis)) {
-            throw new ServiceException("Gebotspreis zu niedrig");
+    }
+
+    // das Gebot und gegebenenfalls das Gegengebot aus einem Maximalgebot
+    private List<GebotsEreignis> versucheGebot(Integer aid, BigDecimal gebotspreis) {
+        SingleFlight<Integer, Angebot> sf = sperrtBeimLesen() ? null : gleicheAbfragen;
+        // das Angebot wird hier nur gelesen, kann also geteilt werden
+        Angebot angebot = sf == null ? leseAngebot(aid) : sf.ausfuehren(aid, () -> leseAngebot(aid));
+        if (angebot == null) {
+            if (angebotFilter != null) {
+                angebotFilter.nichtGefunden(aid);
+            }
+            throw new ServiceException("AID existiert nicht: " + aid);
+        }
+        if (!useDbUhr().istNochOffen(angebot.getAuktionEndeZeitpunkt())) {
+            throw new AuktionBeendetException("Auktion bereits beendet");
+        }
+        if (!istGebotspreisOk(angebot, gebotspreis)) {
+            throw new GebotspreisZuNiedrigException("Gebotspreis zu niedrig");
         }
 
+        aktualisiereAngebot(angebot, gebotspreis);
         speichereGebot(aid, gebotspreis);
+        // Zeitpunkt nach der DbUhr, GebotsZeitpunkt selbst setzt die Datenbank
+        Timestamp jetzt = useDbUhr().jetzt();
+        List<GebotsEreignis> ereignisse = new ArrayList<>(2);
+        ereignisse.add(new GebotsEreignis(aid, gebotspreis, angebot.getAnzahlGebote() + 1, jetzt));
+        Gebot gegengebot = automatischesBieten == null ? null : automatischesBieten.gegenbieten(aid);
+        if (gegengebot != null) {
+            ereignisse.add(new GebotsEreignis(aid, gegengebot.getGebotsPreis(), angebot.getAnzahlGebote() + 2, jetzt));
+        }
+        return ereignisse;
     }
 
-    private boolean existiertAidInDb(Integer aid) {
-        L.info("aid: " + aid);
-        String sql = "select AID from Angebot where AID=?";
-        L.info(sql);
-        try (PreparedStatement ps = useConnection().prepareStatement(sql)) {
-            ps.setInt(1, aid);
-            try (ResultSet rs = ps.executeQuery()) {
-                return rs.next();
-            }
-        } catch (SQLException e) {
-            L.error("", e);
-            throw new DataException(e);
-        }
+    /**
+     * Abfrage fuer den Stand eines Angebots. Unterklassen koennen die Zeile hier sperren.
+     */
+    protected String leseAngebotSql() {
+        return "select AuktionEndeZeitpunkt, AuktionMinPreis, AktuellerPreis, AnzahlGebote, Version " +
+                "from Angebot where AID=?";
     }
 
-    private boolean istGebotspreisOk(Integer aid, BigDecimal gebotspreis) {
-        L.info("aid: " + aid + "  gebotspreis: " + gebotspreis);
-        String sql = "select count(GebotsPreis) as anzahlGebote, " +
-                "  coalesce(max(GebotsPreis), max(AuktionMinPreis)) as aktuellerPreis " +
-                "from Angebot a left join Gebot g on a.aid=g.aid " +
-                "where a.aid = ?";
+    // liefert null, wenn die AID nicht existiert
+    private Angebot leseAngebot(Integer aid) {
+        L.info("aid: " + aid);
+        String sql = leseAngebotSql();
         L.info(sql);
         try (PreparedStatement ps = useConnection().prepareStatement(sql)) {
             ps.setInt(1, aid);
             try (ResultSet rs = ps.executeQuery()) {
-                rs.next();
-                int anzahlGebote = rs.getInt("anzahlGebote");
-                BigDecimal aktuellerPreis = rs.getBigDecimal("aktuellerPreis");
-                L.info("anzahlGebote: " + anzahlGebote);
-                L.info("aktuellerPreis: " + aktuellerPreis);
-                if (anzahlGebote == 0) {
-                    // keine Gebote bedeutet "gebotspreis" muss >= AuktionMinPreis sein
-                    return gebotspreis.compareTo(aktuellerPreis) >= 0;
-                } else {
-                    // Gebote vorhanden, dann muss "gebotspreis" echt groesser als der bisher hoechste
-                    // Gebotspreis sein
-                    return gebotspreis.compareTo(aktuellerPreis) > 0;
+                if (!rs.next()) {
+                    return null;
                 }
+                Angebot a = new Angebot();
+                a.setAid(aid);
+                a.setAuktionEndeZeitpunkt(rs.getTimestamp("AuktionEndeZeitpunkt"));
+                a.setAuktionMinPreis(rs.getBigDecimal("AuktionMinPreis"));
+                a.setAktuellerPreis(rs.getBigDecimal("AktuellerPreis"));
+                a.setAnzahlGebote(rs.getInt("AnzahlGebote"));
+                a.setVersion(rs.getInt("Version"));
+                return a;
             }
         } catch (SQLException e) {
             L.error("", e);
@@ -85,15 +215,23 @@ public class AuktionsService implements IAuktionsService {
         }
     }
 
-    private boolean istAuktionNochOffen(Integer aid) {
-        String sql = "select AuktionEndeZeitpunkt,  current_timestamp as AktuellerZeitpunkt from Angebot where AID=?";
+    private boolean istGebotspreisOk(Angebot angebot, BigDecimal gebotspreis) {
+        L.info("anzahlGebote: " + angebot.getAnzahlGebote());
+        L.info("aktuellerPreis: " + angebot.getAktuellerPreis());
+        return angebot.istGebotspreisOk(gebotspreis);
+    }
+
+    // compare-and-set auf (Version, AktuellerPreis)
+    private void aktualisiereAngebot(Angebot angebot, BigDecimal gebotspreis) {
+        String sql = "update Angebot set AktuellerPreis=?, AnzahlGebote=AnzahlGebote+1, Version=Version+1 " +
+                "where AID=? and Version=?";
+        L.info(sql);
         try (PreparedStatement ps = useConnection().prepareStatement(sql)) {
-            ps.setInt(1, aid);
-            try (ResultSet rs = ps.executeQuery()) {
-                rs.next();
-                Timestamp auktionEndeZeitpunkt = rs.getTimestamp("AuktionEndeZeitpunkt");
-                Timestamp aktuellerZeitpunkt = rs.getTimestamp("AktuellerZeitpunkt");
-                return aktuellerZeitpunkt.before(auktionEndeZeitpunkt) || aktuellerZeitpunkt.equals(auktionEndeZeitpunkt);
+            ps.setBigDecimal(1, gebotspreis);
+            ps.setInt(2, angebot.getAid());
+            ps.setInt(3, angebot.getVersion());
+            if (ps.executeUpdate() == 0) {
+                throw new VersionskonfliktException("Angebot " + angebot.getAid() + " wurde geaendert, gelesene Version: " + angebot.getVersion());
             }
         } catch (SQLException e) {
             L.error("", e);
@@ -102,7 +240,7 @@ public class AuktionsService implements IAuktionsService {
     }
 
     private void speichereGebot(Integer aid, BigDecimal gebotspreis) {
-        String sql = "insert into Gebot values " + "(?,?, current_timestamp,?)";
+        String sql = "insert into Gebot (GID, AID, GebotsZeitpunkt, GebotsPreis) values (?, ?, current_timestamp, ?)";
         Integer neueGid = neueGid();
         try (PreparedStatement ps = useConnection().prepareStatement(sql)) {
             ps.setInt(1, neueGid);
@@ -110,26 +248,18 @@ public class AuktionsService implements IAuktionsService {
             ps.setBigDecimal(3, gebotspreis);
             ps.executeUpdate();
         } catch (SQLException e) {
+            if (e.getErrorCode() == ORA_UNIQUE_CONSTRAINT) {
+                // konkurrierendes Gebot auf einem anderen Angebot hat dieselbe GID gezogen
+                throw new VersionskonfliktException("GID bereits vergeben: " + neueGid, e);
+            }
             L.error("", e);
             throw new DataException(e);
         }
     }
 
     private Integer neueGid() {
-        String sql = "select max(gid) as maxgid from gebot";
-        int neueGid = 1;
-        try (Statement stmt = useConnection().createStatement()) {
-            try (ResultSet rs = stmt.executeQuery(sql)) {
-                rs.next();
-                int maxGid = rs.getInt("maxgid");
-                if (!rs.wasNull()) {
-                    neueGid = maxGid + 1;
-                }
-            }
-            return neueGid;
-        } catch (SQLException e) {
-            L.error("", e);
-            throw new DataException(e);
-        }
+        GebotFinder gebotFinder = new GebotFinder();
+        gebotFinder.setConnection(useConnection());
+        return gebotFinder.neueGid();
     }
 }
@@ -1,20 +1,86 @@
 package de.htwberlin.dbtech.bsp.auktion;
 
+import de.htwberlin.dbtech.exceptions.AuktionBeendetException;
+import de.htwberlin.dbtech.exceptions.GebotsKonfliktException;
+import de.htwberlin.dbtech.exceptions.GebotspreisZuNiedrigException;
 import de.htwberlin.dbtech.exceptions.ServiceException;
+import de.htwberlin.dbtech.exceptions.VersionskonfliktException;
+import de.htwberlin.dbtech.utils.ExistenzFilter;
+import de.htwberlin.dbtech.utils.JdbcUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
 import java.sql.Connection;
-import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
 
 public class AuktionsServiceDao implements IAuktionsService {
     private static final Logger L = LoggerFactory.getLogger(AuktionsServiceDao.class);
 
     private Connection connection = null;
+    private DbUhr dbUhr = null;
+    private boolean eigeneDbUhr = false;
+    private GebotsEreignisPublisher gebotsEreignisse = null;
+    private ExistenzFilter angebotFilter = null;
+    private AutomatischesBieten automatischesBieten = null;
 
     public void setConnection(Connection connection) {
         this.connection = connection;
+        if (eigeneDbUhr) {
+            dbUhr.setConnection(connection);
+        }
+        if (automatischesBieten != null) {
+            automatischesBieten.setConnection(connection);
+        }
+    }
+
+    public void setDbUhr(DbUhr dbUhr) {
+        this.dbUhr = dbUhr;
+        this.eigeneDbUhr = false;
+    }
+
+    /**
+     * Publisher, an den jedes angenommene Gebot nach erfolgreicher Transaktion gemeldet wird. Mehrere Dienste
+     * koennen sich einen Publisher teilen. Ohne Aufruf werden keine Ereignisse erzeugt. Laeuft biete in einer
+     * Transaktion des Aufrufers (kein Auto-Commit), werden ebenfalls keine Ereignisse erzeugt, da das Gebot
+     * noch zurueckgerollt werden kann.
+     */
+    public void setGebotsEreignisse(GebotsEreignisPublisher gebotsEreignisse) {
+        this.gebotsEreignisse = gebotsEreignisse;
+    }
+
+    public Flow.Publisher<GebotsEreignis> getGebotsEreignisse() {
+        return gebotsEreignisse;
+    }
+
+    /**
+     * Filter, mit dem Gebote auf nicht existierende AIDs ohne Abfrage abgelehnt werden.
+     */
+    public void setAngebotFilter(ExistenzFilter angebotFilter) {
+        this.angebotFilter = angebotFilter;
+    }
+
+    /**
+     * Loest nach jedem Gebot die Maximalgebote der Auktion in derselben Transaktion auf. Der Dienst benutzt
+     * dafuer die Connection dieses Dienstes. Ohne Aufruf bleiben Maximalgebote bis zum naechsten
+     * {@link AutomatischesBieten#bieteBis} ueberboten.
+     */
+    public void setAutomatischesBieten(AutomatischesBieten automatischesBieten) {
+        this.automatischesBieten = automatischesBieten;
+        if (automatischesBieten != null && connection != null) {
+            automatischesBieten.setConnection(connection);
+        }
+    }
+
+    private DbUhr useDbUhr() {
+        if (dbUhr == null) {
+            dbUhr = new DbUhr();
+            dbUhr.setConnection(useConnection());
+            eigeneDbUhr = true;
+        }
+        return dbUhr;
     }
 
     private Connection useConnection() {
@@ -24,43 +90,85 @@ public class AuktionsServiceDao implements IAuktionsService {
         return connection;
     }
 
-    private AngebotFinder angebotFinder = null;
-    private Angebot angebot = null;
+    private int maxVersuche = 5;
+
+    /**
+     * Wie oft ein Gebot bei konkurrierenden Aenderungen des Angebots wiederholt wird.
+     */
+    public void setMaxVersuche(int maxVersuche) {
+        this.maxVersuche = maxVersuche;
+    }
 
     @Override
     public void biete(Integer aid, BigDecimal gebotspreis) {
         L.info("aid: " + aid + "  gebotspreis: " + gebotspreis);
+        if (angebotFilter != null && aid != null && angebotFilter.sicherAbwesend(aid)) {
+            throw new ServiceException("AID existiert nicht: " + aid);
+        }
 
-        angebotFinder = new AngebotFinder();
+        AngebotFinder angebotFinder = new AngebotFinder();
         angebotFinder.setConnection(useConnection());
+        GebotFinder gebotFinder = new GebotFinder();
+        gebotFinder.setConnection(useConnection());
+
+        for (int versuch = 1; ; versuch++) {
+            try {
+                List<GebotsEreignis> ereignisse = new ArrayList<>(2);
+                boolean festgeschrieben = JdbcUtils.executeInTransaction(useConnection(),
+                        () -> ereignisse.addAll(versucheGebot(angebotFinder, gebotFinder, aid, gebotspreis)));
+                if (gebotsEreignisse != null && !festgeschrieben) {
+                    L.info("transaktion des aufrufers, keine ereignisse: " + ereignisse.size());
+                } else if (gebotsEreignisse != null) {
+                    ereignisse.forEach(gebotsEreignisse::veroeffentliche);
+                }
+                return;
+            } catch (VersionskonfliktException e) {
+                L.info("versuch " + versuch + ": " + e.getMessage());
+                if (versuch >= maxVersuche) {
+                    throw new GebotsKonfliktException("Gebot nach " + versuch + " Versuchen wegen konkurrierender Gebote abgelehnt", e);
+                }
+            }
+        }
+    }
 
-        angebot = angebotFinder.findById(aid);
+    // das Gebot und gegebenenfalls das Gegengebot aus einem Maximalgebot
+    private List<GebotsEreignis> versucheGebot(AngebotFinder angebotFinder, GebotFinder gebotFinder, Integer aid, BigDecimal gebotspreis) {
+        Angebot angebot = angebotFinder.findById(aid);
 
         if (angebot == null) {
+            if (angebotFilter != null) {
+                angebotFilter.nichtGefunden(aid);
+            }
             throw new ServiceException("AID existiert nicht: " + aid);
         }
 
-        Timestamp aktuellerZeitpunkt = null;
-        // hier Code zum Beschaffen des aktuellen Zeitpunkts
-
-        if (angebot.getAuktionEndeZeitpunkt().before(aktuellerZeitpunkt)) {
-            throw new ServiceException("Auktion bereits beendet");
+        if (!useDbUhr().istNochOffen(angebot.getAuktionEndeZeitpunkt())) {
+            throw new AuktionBeendetException("Auktion bereits beendet");
         }
 
-        if (gebotspreis.compareTo(angebot.getAktuellerPreis()) > 0) {
-            throw new ServiceException("Gebotspreis zu niedrig");
+        if (!angebot.istGebotspreisOk(gebotspreis)) {
+            throw new GebotspreisZuNiedrigException("Gebotspreis zu niedrig");
         }
 
+        // compare-and-set auf (Version, AktuellerPreis), danach das Gebot in derselben Transaktion
+        angebot.uebernimmGebot(gebotspreis);
+        angebot.update();
+
         Gebot gebot = new Gebot();
         gebot.setConnection(useConnection());
-        Integer gid = null;
-        // hier Code zum Beschaffen einer neuen gid
-
-        gebot.setGid(gid);
+        gebot.setGid(gebotFinder.neueGid());
         gebot.setAid(aid);
-        gebot.setGebotsZeitpunkt(aktuellerZeitpunkt);
+        gebot.setGebotsZeitpunkt(useDbUhr().jetzt());
         gebot.setGebotsPreis(gebotspreis);
         gebot.insert();
+        List<GebotsEreignis> ereignisse = new ArrayList<>(2);
+        ereignisse.add(new GebotsEreignis(aid, gebotspreis, angebot.getAnzahlGebote(), gebot.getGebotsZeitpunkt()));
+        Gebot gegengebot = automatischesBieten == null ? null : automatischesBieten.gegenbieten(aid);
+        if (gegengebot != null) {
+            ereignisse.add(new GebotsEreignis(aid, gegengebot.getGebotsPreis(), angebot.getAnzahlGebote() + 1,
+                    gebot.getGebotsZeitpunkt()));
+        }
+        return ereignisse;
     }
 
 }
@@ -0,0 +1,20 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+/**
+ * Variante von {@link AuktionsService}, die das Angebot beim Lesen mit select ... for update sperrt.
+ * Konkurrierende Gebote auf dieselbe AID warten dadurch aufeinander, statt wiederholt zu werden.
+ * Dient als Vergleich fuer das optimistische Verfahren.
+ */
+public class AuktionsServicePessimistisch extends AuktionsService {
+
+    @Override
+    protected String leseAngebotSql() {
+        return super.leseAngebotSql() + " for update";
+    }
+
+    @Override
+    protected boolean sperrtBeimLesen() {
+        return true;
+    }
+
+}
@@ -0,0 +1,332 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import de.htwberlin.dbtech.exceptions.AuktionBeendetException;
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.exceptions.GebotsKonfliktException;
+import de.htwberlin.dbtech.exceptions.ServiceException;
+import de.htwberlin.dbtech.exceptions.VersionskonfliktException;
+import de.htwberlin.dbtech.utils.JdbcUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Automatisches Bieten bis zu einem Maximalbetrag je Bieter.
+ * <p>
+ * Die Maximalgebote stehen in der Tabelle Maximalgebot. Kommt ein neues hinzu, werden alle Maximalgebote der
+ * Auktion im Speicher gegeneinander aufgeloest: das hoechste (bei Gleichstand das fruehere) gewinnt zum
+ * zweithoechsten Betrag plus Schrittweite, hoechstens aber zu seinem eigenen Maximum. Geschrieben wird je
+ * Auktion nur das Ergebnis als ein Gebot, nicht jeder Zwischenschritt. Mehrere Maximalgebote auf verschiedene
+ * Auktionen werden gemeinsam verarbeitet; Angebote, Maximalgebote und die neuen Gebote werden dabei jeweils
+ * als ein Batch geschrieben.
+ * <p>
+ * Nach einem Gebot ohne Maximalgebot loest {@link #gegenbieten} die Maximalgebote der Auktion in der
+ * Transaktion dieses Gebots auf, damit ein hoeheres Maximum sofort wieder fuehrt.
+ */
+public class AutomatischesBieten {
+    private static final Logger L = LoggerFactory.getLogger(AutomatischesBieten.class);
+
+    // Oracle erlaubt hoechstens 1000 Ausdruecke in einer in-Liste
+    private static final int MAX_BLOCKGROESSE = 1000;
+
+    // hoechster Betrag zuerst, bei Gleichstand das fruehere Maximalgebot
+    static final Comparator<Maximalgebot> RANG = Comparator.comparing(Maximalgebot::getMaxPreis).reversed()
+            .thenComparing(Maximalgebot::getZeitpunkt, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Maximalgebot::getBieter);
+
+    private Connection connection = null;
+    private int maxVersuche = 5;
+    private BigDecimal schrittweite = new BigDecimal("0.50");
+    private DbUhr dbUhr = null;
+    private boolean eigeneDbUhr = false;
+    private GebotsEreignisPublisher gebotsEreignisse = null;
+
+    public void setConnection(Connection connection) {
+        this.connection = connection;
+        if (eigeneDbUhr) {
+            dbUhr.setConnection(connection);
+        }
+    }
+
+    private Connection useConnection() {
+        if (connection == null) {
+            throw new ServiceException("Service hat keine Connection");
+        }
+        return connection;
+    }
+
+    public void setDbUhr(DbUhr dbUhr) {
+        this.dbUhr = dbUhr;
+        this.eigeneDbUhr = false;
+    }
+
+    private DbUhr useDbUhr() {
+        if (dbUhr == null) {
+            dbUhr = new DbUhr();
+            dbUhr.setConnection(useConnection());
+            eigeneDbUhr = true;
+        }
+        return dbUhr;
+    }
+
+    /**
+     * Meldet die Gebote aus {@link #bieteBis}, aber nur, wenn bieteBis selbst committet hat.
+     */
+    public void setGebotsEreignisse(GebotsEreignisPublisher gebotsEreignisse) {
+        this.gebotsEreignisse = gebotsEreignisse;
+    }
+
+    public void setMaxVersuche(int maxVersuche) {
+        this.maxVersuche = maxVersuche;
+    }
+
+    /**
+     * Um wie viel ein automatisches Gebot das naechstniedrigere Maximalgebot uebersteigt.
+     */
+    public void setSchrittweite(BigDecimal schrittweite) {
+        this.schrittweite = schrittweite;
+    }
+
+    /**
+     * Speichert das Maximalgebot und bietet, falls noetig, sofort fuer den fuehrenden Bieter.
+     *
+     * @return das neue Gebot oder null, wenn sich der Preis nicht aendert
+     */
+    public Gebot bieteBis(Integer aid, String bieter, BigDecimal maxPreis) {
+        List<Gebot> gebote = bieteBis(List.of(new Maximalgebot(aid, bieter, maxPreis)));
+        return gebote.isEmpty() ? null : gebote.get(0);
+    }
+
+    /**
+     * Speichert mehrere Maximalgebote und loest jede betroffene Auktion auf. Ein niedrigeres Maximalgebot
+     * ersetzt kein hoeheres desselben Bieters. Existiert eine Auktion nicht oder ist sie beendet, wird nichts
+     * gespeichert.
+     *
+     * @return die neuen Gebote, hoechstens eines je Auktion
+     */
+    public List<Gebot> bieteBis(List<Maximalgebot> neue) {
+        for (Maximalgebot m : neue) {
+            if (m.getBieter() == null || m.getMaxPreis() == null || m.getMaxPreis().signum() <= 0) {
+                throw new ServiceException("Maximalgebot unvollstaendig: " + m);
+            }
+        }
+        L.info("maximalgebote: " + neue.size());
+        for (int versuch = 1; ; versuch++) {
+            UnitOfWork uow = new UnitOfWork();
+            uow.setConnection(useConnection());
+            List<Gebot> gebote = new ArrayList<>();
+            Map<Integer, Angebot> angebote = new HashMap<>();
+            boolean festgeschrieben;
+            try {
+                festgeschrieben = JdbcUtils.executeInTransaction(useConnection(),
+                        () -> gebote.addAll(loeseAuf(uow, neue, angebote)));
+            } catch (VersionskonfliktException e) {
+                L.info("versuch " + versuch + ": " + e.getMessage());
+                if (versuch >= maxVersuche) {
+                    throw new GebotsKonfliktException("Maximalgebote nach " + versuch + " Versuchen wegen konkurrierender Gebote abgelehnt", e);
+                }
+                continue;
+            }
+            if (gebotsEreignisse != null && !festgeschrieben) {
+                L.info("transaktion des aufrufers, keine ereignisse: " + gebote.size());
+            } else if (gebotsEreignisse != null) {
+                Timestamp jetzt = useDbUhr().jetzt();
+                for (Gebot g : gebote) {
+                    gebotsEreignisse.veroeffentliche(new GebotsEreignis(g.getAid(), g.getGebotsPreis(),
+                            angebote.get(g.getAid()).getAnzahlGebote(), jetzt));
+                }
+            }
+            return gebote;
+        }
+    }
+
+    /**
+     * Loest die Maximalgebote einer Auktion auf, nachdem dort ohne Maximalgebot geboten wurde. Laeuft in der
+     * Transaktion des Aufrufers auf der Connection dieses Dienstes; das Angebot muss das Gebot schon enthalten.
+     * Ein Versionskonflikt geht an den Aufrufer, der dann das ganze Gebot wiederholt.
+     *
+     * @return das Gegengebot oder null, wenn kein Maximalgebot den neuen Preis ueberbietet
+     */
+    public Gebot gegenbieten(Integer aid) {
+        Map<Integer, List<Maximalgebot>> maxima = new HashMap<>();
+        Map<Integer, String> fuehrende = new HashMap<>();
+        leseMaximaUndFuehrende(List.of(aid), maxima, fuehrende);
+        if (!maxima.containsKey(aid)) {
+            return null;
+        }
+        UnitOfWork uow = new UnitOfWork();
+        uow.setConnection(useConnection());
+        Angebot a = uow.angebotFinder().findById(aid);
+        Gebot g = ermittleGebot(a, fuehrende.get(aid), maxima.get(aid), schrittweite);
+        if (g == null) {
+            return null;
+        }
+        g.setGid(uow.gebotFinder().neueGid());
+        a.uebernimmGebot(g.getGebotsPreis());
+        uow.registriereNeu(g);
+        uow.flush();
+        L.info("gegengebot: " + g.getBieter() + " " + g.getGebotsPreis());
+        return g;
+    }
+
+    private List<Gebot> loeseAuf(UnitOfWork uow, List<Maximalgebot> neue, Map<Integer, Angebot> angebote) {
+        Set<Integer> aids = new LinkedHashSet<>();
+        neue.forEach(m -> aids.add(m.getAid()));
+        angebote.putAll(uow.angebotFinder().findByIds(aids));
+        for (Integer aid : aids) {
+            Angebot a = angebote.get(aid);
+            if (a == null) {
+                throw new ServiceException("AID existiert nicht: " + aid);
+            }
+            if (!useDbUhr().istNochOffen(a.getAuktionEndeZeitpunkt())) {
+                throw new AuktionBeendetException("Auktion bereits beendet: " + aid);
+            }
+        }
+
+        Map<Integer, List<Maximalgebot>> maxima = new HashMap<>();
+        Map<Integer, String> fuehrende = new HashMap<>();
+        leseMaximaUndFuehrende(new ArrayList<>(aids), maxima, fuehrende);
+
+        Timestamp jetzt = useDbUhr().jetzt();
+        for (Maximalgebot m : neue) {
+            List<Maximalgebot> liste = maxima.computeIfAbsent(m.getAid(), k -> new ArrayList<>());
+            Maximalgebot alt = null;
+            for (Maximalgebot x : liste) {
+                if (x.getBieter().equals(m.getBieter())) {
+                    alt = x;
+                }
+            }
+            if (alt == null || m.getMaxPreis().compareTo(alt.getMaxPreis()) > 0) {
+                liste.remove(alt);
+                liste.add(new Maximalgebot(m.getAid(), m.getBieter(), m.getMaxPreis(), jetzt));
+            }
+        }
+        speichereMaxima(neue, jetzt);
+
+        List<Gebot> gebote = new ArrayList<>();
+        int gid = uow.gebotFinder().neueGid();
+        for (Integer aid : aids) {
+            Angebot a = angebote.get(aid);
+            // Version auch ohne neues Gebot pruefen und erhoehen, damit sich gleichzeitige Maximalgebote
+            // auf dieselbe Auktion sehen
+            a.alsGeaendertMarkieren();
+            Gebot g = ermittleGebot(a, fuehrende.get(aid), maxima.get(aid), schrittweite);
+            if (g != null) {
+                g.setGid(gid++);
+                a.uebernimmGebot(g.getGebotsPreis());
+                uow.registriereNeu(g);
+                gebote.add(g);
+            }
+        }
+        uow.flush();
+        L.info("neue gebote: " + gebote.size());
+        return gebote;
+    }
+
+    /**
+     * Loest die Maximalgebote einer Auktion auf.
+     *
+     * @param fuehrender Bieter des aktuell hoechsten Gebots, null bei Geboten ohne Bieter
+     * @return das Gebot fuer den Gewinner oder null, wenn sich der Preis nicht aendert
+     */
+    static Gebot ermittleGebot(Angebot a, String fuehrender, List<Maximalgebot> maxima, BigDecimal schrittweite) {
+        if (maxima == null || maxima.isEmpty()) {
+            return null;
+        }
+        List<Maximalgebot> sortiert = new ArrayList<>(maxima);
+        sortiert.sort(RANG);
+        Maximalgebot erster = sortiert.get(0);
+        BigDecimal preis = a.getAnzahlGebote() == 0 ? null : a.getAktuellerPreis();
+        boolean fuehrt = preis != null && erster.getBieter().equals(fuehrender);
+
+        // was der Gewinner mindestens bieten muss: Mindestpreis, Ueberbieten des aktuellen Preises
+        // (ausser er fuehrt schon) und Ueberbieten des Zweitplatzierten
+        BigDecimal untergrenze = preis == null ? a.getAuktionMinPreis() : fuehrt ? preis : preis.add(schrittweite);
+        if (sortiert.size() > 1) {
+            untergrenze = untergrenze.max(sortiert.get(1).getMaxPreis().add(schrittweite));
+        }
+        BigDecimal neuerPreis = untergrenze.min(erster.getMaxPreis());
+        if (fuehrt ? neuerPreis.compareTo(preis) <= 0 : !a.istGebotspreisOk(neuerPreis)) {
+            return null;
+        }
+        Gebot g = new Gebot();
+        g.setAid(a.getAid());
+        g.setBieter(erster.getBieter());
+        g.setGebotsPreis(neuerPreis);
+        return g;
+    }
+
+    private void leseMaximaUndFuehrende(List<Integer> aids, Map<Integer, List<Maximalgebot>> maxima,
+                                        Map<Integer, String> fuehrende) {
+        for (int von = 0; von < aids.size(); von += MAX_BLOCKGROESSE) {
+            List<Integer> block = aids.subList(von, Math.min(von + MAX_BLOCKGROESSE, aids.size()));
+            String inListe = "(" + String.join(",", Collections.nCopies(block.size(), "?")) + ")";
+            String maxSql = "select AID, Bieter, MaxPreis, Zeitpunkt from Maximalgebot where AID in " + inListe;
+            String fuehrendeSql = "select g.AID, g.Bieter from Gebot g join Angebot a on a.AID = g.AID " +
+                    "and g.GebotsPreis = a.AktuellerPreis where a.AID in " + inListe;
+            L.info(maxSql);
+            L.info(fuehrendeSql);
+            try (PreparedStatement psMax = useConnection().prepareStatement(maxSql);
+                 PreparedStatement psFuehrende = useConnection().prepareStatement(fuehrendeSql)) {
+                for (int i = 0; i < block.size(); i++) {
+                    psMax.setInt(i + 1, block.get(i));
+                    psFuehrende.setInt(i + 1, block.get(i));
+                }
+                psMax.setFetchSize(MAX_BLOCKGROESSE);
+                try (ResultSet rs = psMax.executeQuery()) {
+                    while (rs.next()) {
+                        int aid = rs.getInt("AID");
+                        maxima.computeIfAbsent(aid, k -> new ArrayList<>()).add(new Maximalgebot(aid,
+                                rs.getString("Bieter"), rs.getBigDecimal("MaxPreis"), rs.getTimestamp("Zeitpunkt")));
+                    }
+                }
+                psFuehrende.setFetchSize(MAX_BLOCKGROESSE);
+                try (ResultSet rs = psFuehrende.executeQuery()) {
+                    while (rs.next()) {
+                        fuehrende.put(rs.getInt("AID"), rs.getString("Bieter"));
+                    }
+                }
+            } catch (SQLException e) {
+                L.error("", e);
+                throw new DataException(e);
+            }
+        }
+    }
+
+    private void speichereMaxima(List<Maximalgebot> neue, Timestamp jetzt) {
+        String sql = "merge into Maximalgebot m " +
+                "using (select ? as AID, ? as Bieter, ? as MaxPreis from dual) n " +
+                "on (m.AID = n.AID and m.Bieter = n.Bieter) " +
+                "when matched then update set m.MaxPreis = n.MaxPreis, m.Zeitpunkt = ? where n.MaxPreis > m.MaxPreis " +
+                "when not matched then insert (AID, Bieter, MaxPreis, Zeitpunkt) values (n.AID, n.Bieter, n.MaxPreis, ?)";
+        L.info(sql);
+        try (PreparedStatement ps = useConnection().prepareStatement(sql)) {
+            for (Maximalgebot m : neue) {
+                ps.setInt(1, m.getAid());
+                ps.setString(2, m.getBieter());
+                ps.setBigDecimal(3, m.getMaxPreis());
+                ps.setTimestamp(4, jetzt);
+                ps.setTimestamp(5, jetzt);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class AutomatischesBietenTest {
+
+    private static final BigDecimal SCHRITT = new BigDecimal("0.50");
+
+    private static Angebot angebot(String minPreis, String aktuellerPreis, int anzahlGebote) {
+        Angebot a = new Angebot();
+        a.setAid(1);
+        a.setAuktionMinPreis(new BigDecimal(minPreis));
+        a.setAktuellerPreis(aktuellerPreis == null ? null : new BigDecimal(aktuellerPreis));
+        a.setAnzahlGebote(anzahlGebote);
+        return a;
+    }
+
+    private static Maximalgebot max(String bieter, String preis, long zeitpunkt) {
+        return new Maximalgebot(1, bieter, new BigDecimal(preis), new Timestamp(zeitpunkt));
+    }
+
+    private static String ergebnis(Gebot g) {
+        return g == null ? null : g.getBieter() + " " + g.getGebotsPreis();
+    }
+
+    /**
+     * Der Hoechstbietende gewinnt zum zweithoechsten Maximum plus Schrittweite, hoechstens zu seinem Maximum.
+     */
+    @org.junit.Test
+    public void zweitesMaximumPlusSchritt() {
+        Angebot a = angebot("10.00", null, 0);
+        assertEquals("anna 10.00", ergebnis(AutomatischesBieten.ermittleGebot(a, null,
+                List.of(max("anna", "50.00", 1)), SCHRITT)));
+        assertEquals("anna 30.50", ergebnis(AutomatischesBieten.ermittleGebot(a, null,
+                List.of(max("bert", "30.00", 2), max("anna", "50.00", 1)), SCHRITT)));
+        assertEquals("anna 30.20", ergebnis(AutomatischesBieten.ermittleGebot(a, null,
+                List.of(max("bert", "30.00", 2), max("anna", "30.20", 1)), SCHRITT)));
+    }
+
+    /**
+     * Bei gleichem Maximum gewinnt das fruehere Maximalgebot.
+     */
+    @org.junit.Test
+    public void gleichstandFruehererGewinnt() {
+        Angebot a = angebot("10.00", "20.00", 3);
+        assertEquals("bert 30.00", ergebnis(AutomatischesBieten.ermittleGebot(a, "anna",
+                List.of(max("anna", "30.00", 5), max("bert", "30.00", 2)), SCHRITT)));
+    }
+
+    /**
+     * Wer schon fuehrt, ueberbietet sich nicht selbst; ohne hoeheres Maximum entsteht kein Gebot.
+     */
+    @org.junit.Test
+    public void fuehrenderBietetNurBeiBedarf() {
+        Angebot a = angebot("10.00", "20.00", 3);
+        assertNull(AutomatischesBieten.ermittleGebot(a, "anna", List.of(max("anna", "50.00", 1)), SCHRITT));
+        assertEquals("anna 25.50", ergebnis(AutomatischesBieten.ermittleGebot(a, "anna",
+                List.of(max("anna", "50.00", 1), max("bert", "25.00", 2)), SCHRITT)));
+        assertEquals("anna 20.50", ergebnis(AutomatischesBieten.ermittleGebot(a, null,
+                List.of(max("anna", "50.00", 1)), SCHRITT)));
+        assertNull(AutomatischesBieten.ermittleGebot(a, null, List.of(max("anna", "20.00", 1)), SCHRITT));
+    }
+}
@@ -0,0 +1,189 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.exceptions.ServiceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Liefert die Uhrzeit der Datenbank, ohne sie bei jedem Aufruf abzufragen.
+ * <p>
+ * Beim Abgleich wird current_timestamp mehrfach gelesen und die Messung mit der kuerzesten Laufzeit
+ * verwendet. Der Datenbankzeitpunkt wird der Mitte der Laufzeit zugeordnet, der Fehler ist daher hoechstens
+ * die halbe Laufzeit plus die Drift der lokalen Uhr seit dem Abgleich. Fortgeschrieben wird mit
+ * System.nanoTime, damit Spruenge der JVM-Uhrzeit keine Rolle spielen.
+ * <p>
+ * Der Abgleich erfolgt bei Bedarf im aufrufenden Thread, die Connection kann daher mit dem Dienst geteilt
+ * werden, der die Uhr benutzt.
+ */
+public class DbUhr {
+    private static final Logger L = LoggerFactory.getLogger(DbUhr.class);
+
+    private static final class Abgleich {
+        final long dbMillis;
+        final long basisNanos;
+        final long fehlerMillis;
+
+        Abgleich(long dbMillis, long basisNanos, long fehlerMillis) {
+            this.dbMillis = dbMillis;
+            this.basisNanos = basisNanos;
+            this.fehlerMillis = fehlerMillis;
+        }
+    }
+
+    private Connection connection = null;
+
+    private long abgleichIntervallMillis = TimeUnit.SECONDS.toMillis(30);
+    private long sicherheitsabstandMillis = TimeUnit.SECONDS.toMillis(2);
+    private int messungenJeAbgleich = 5;
+    // Gangabweichung einer gewoehnlichen Rechneruhr, grosszuegig bemessen
+    private double driftJeMillisekunde = 200e-6;
+
+    private volatile Abgleich abgleich = null;
+    private long abfragenGesamt = 0;
+    private long abfragenImSicherheitsabstand = 0;
+
+    public void setConnection(Connection connection) {
+        this.connection = connection;
+    }
+
+    private Connection useConnection() {
+        if (connection == null) {
+            throw new ServiceException("Service hat keine Connection");
+        }
+        return connection;
+    }
+
+    public void setAbgleichIntervallMillis(long abgleichIntervallMillis) {
+        this.abgleichIntervallMillis = abgleichIntervallMillis;
+    }
+
+    /**
+     * Liegt ein Auktionsende naeher als Fehlerschranke plus Sicherheitsabstand am geschaetzten Zeitpunkt,
+     * wird die Datenbank direkt gefragt.
+     */
+    public void setSicherheitsabstandMillis(long sicherheitsabstandMillis) {
+        this.sicherheitsabstandMillis = sicherheitsabstandMillis;
+    }
+
+    public void setMessungenJeAbgleich(int messungenJeAbgleich) {
+        if (messungenJeAbgleich < 1) {
+            throw new IllegalArgumentException("mindestens eine Messung: " + messungenJeAbgleich);
+        }
+        this.messungenJeAbgleich = messungenJeAbgleich;
+    }
+
+    /**
+     * Aktueller Zeitpunkt der Datenbank, geschaetzt mit einer Abweichung von hoechstens {@link #fehlerMillis()}.
+     */
+    public Timestamp jetzt() {
+        return new Timestamp(jetztMillis(aktuellerAbgleich()));
+    }
+
+    public long fehlerMillis() {
+        return fehlerMillis(aktuellerAbgleich());
+    }
+
+    /**
+     * Prueft, ob ein Gebot zum aktuellen Zeitpunkt noch zulaessig ist (Zeitpunkt &lt;= Auktionsende).
+     * Nur wenn das Ende innerhalb der Fehlerschranke plus Sicherheitsabstand liegt, wird die Datenbank gefragt.
+     */
+    public boolean istNochOffen(Timestamp auktionEndeZeitpunkt) {
+        Abgleich a = aktuellerAbgleich();
+        long geschaetzt = jetztMillis(a);
+        long unsicherheit = fehlerMillis(a) + sicherheitsabstandMillis;
+        long ende = auktionEndeZeitpunkt.getTime();
+        synchronized (this) {
+            abfragenGesamt++;
+        }
+        if (geschaetzt + unsicherheit < ende) {
+            return true;
+        }
+        if (geschaetzt - unsicherheit > ende) {
+            return false;
+        }
+        synchronized (this) {
+            abfragenImSicherheitsabstand++;
+        }
+        Timestamp dbJetzt = leseDbZeitpunkt();
+        return !dbJetzt.after(auktionEndeZeitpunkt);
+    }
+
+    /**
+     * Erzwingt einen neuen Abgleich mit der Datenbankuhr.
+     */
+    public synchronized void abgleichen() {
+        Abgleich bester = null;
+        long besteLaufzeit = Long.MAX_VALUE;
+        for (int i = 0; i < messungenJeAbgleich; i++) {
+            long vorher = System.nanoTime();
+            Timestamp db = leseDbZeitpunkt();
+            long nachher = System.nanoTime();
+            long laufzeit = nachher - vorher;
+            if (laufzeit < besteLaufzeit) {
+                besteLaufzeit = laufzeit;
+                long mitte = vorher + laufzeit / 2;
+                // plus 1 ms fuer die Aufloesung von Timestamp
+                long fehler = TimeUnit.NANOSECONDS.toMillis(laufzeit / 2) + 1;
+                bester = new Abgleich(db.getTime(), mitte, fehler);
+            }
+        }
+        abgleich = bester;
+        L.info("abgleich: offset " + (bester.dbMillis - System.currentTimeMillis()) + " ms, fehler " + bester.fehlerMillis + " ms");
+    }
+
+    public synchronized long getAbfragenGesamt() {
+        return abfragenGesamt;
+    }
+
+    public synchronized long getAbfragenImSicherheitsabstand() {
+        return abfragenImSicherheitsabstand;
+    }
+
+    private Abgleich aktuellerAbgleich() {
+        Abgleich a = abgleich;
+        if (!istAbgelaufen(a)) {
+            return a;
+        }
+        synchronized (this) {
+            // wer hier gewartet hat, nimmt den Abgleich des Vorgaengers, statt selbst zu messen
+            if (istAbgelaufen(abgleich)) {
+                abgleichen();
+            }
+            return abgleich;
+        }
+    }
+
+    private boolean istAbgelaufen(Abgleich a) {
+        return a == null || TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - a.basisNanos) >= abgleichIntervallMillis;
+    }
+
+    private long jetztMillis(Abgleich a) {
+        return a.dbMillis + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - a.basisNanos);
+    }
+
+    private long fehlerMillis(Abgleich a) {
+        long vergangen = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - a.basisNanos);
+        return a.fehlerMillis + (long) Math.ceil(vergangen * driftJeMillisekunde);
+    }
+
+    private Timestamp leseDbZeitpunkt() {
+        String sql = "select current_timestamp as AktuellerZeitpunkt from dual";
+        try (PreparedStatement ps = useConnection().prepareStatement(sql)) {
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getTimestamp("AktuellerZeitpunkt");
+            }
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class DbUhrTest {
+
+    // current_timestamp mit 20 ms Laufzeit; zaehlt die Abfragen
+    private static Connection datenbank(AtomicInteger abfragen) {
+        ClassLoader lader = DbUhrTest.class.getClassLoader();
+        return (Connection) Proxy.newProxyInstance(lader, new Class<?>[]{Connection.class}, (c, m, a) -> {
+            if (!m.getName().equals("prepareStatement")) {
+                throw new UnsupportedOperationException(m.getName());
+            }
+            return Proxy.newProxyInstance(lader, new Class<?>[]{PreparedStatement.class}, (ps, pm, pa) -> {
+                switch (pm.getName()) {
+                    case "executeQuery":
+                        abfragen.incrementAndGet();
+                        Thread.sleep(20);
+                        Timestamp jetzt = new Timestamp(System.currentTimeMillis());
+                        return Proxy.newProxyInstance(lader, new Class<?>[]{ResultSet.class}, (rs, rm, ra) -> {
+                            switch (rm.getName()) {
+                                case "next":
+                                    return true;
+                                case "getTimestamp":
+                                    return jetzt;
+                                case "close":
+                                    return null;
+                                default:
+                                    throw new UnsupportedOperationException(rm.getName());
+                            }
+                        });
+                    case "close":
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(pm.getName());
+                }
+            });
+        });
+    }
+
+    /**
+     * Gleichzeitige Aufrufe bei abgelaufenem Abgleich: nur einer misst, die anderen nehmen sein Ergebnis.
+     */
+    @org.junit.Test
+    public void abgleichNurEinmal() throws Exception {
+        AtomicInteger abfragen = new AtomicInteger();
+        DbUhr uhr = new DbUhr();
+        uhr.setConnection(datenbank(abfragen));
+        uhr.setMessungenJeAbgleich(2);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                uhr.jetzt();
+            });
+            t.start();
+            threads.add(t);
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(2, abfragen.get());
+    }
+}
@@ -1,16 +1,44 @@
 package de.htwberlin.dbtech.bsp.auktion;
 
+import de.htwberlin.dbtech.exceptions.DataException;
 import de.htwberlin.dbtech.exceptions.ServiceException;
+import de.htwberlin.dbtech.exceptions.VersionskonfliktException;
+import de.htwberlin.dbtech.utils.mapper.Abbildbar;
+import de.htwberlin.dbtech.utils.mapper.Spalte;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 
+@Abbildbar
 public class Gebot {
+    private static final Logger L = LoggerFactory.getLogger(Gebot.class);
+
+    // Oracle: ORA-00001 unique constraint violated
+    private static final int ORA_UNIQUE_CONSTRAINT = 1;
+
+    @Spalte
     private Integer gid;
+    @Spalte
     private Integer aid;
+    @Spalte
     private Timestamp gebotsZeitpunkt;
+    @Spalte
     private BigDecimal gebotsPreis;
+    // nur bei automatischen Geboten gesetzt, sonst null
+    @Spalte
+    private String bieter;
+
+    // geaenderte Spalten seit dem Laden bzw. dem letzten update
+    static final int AID = 1;
+    static final int GEBOTS_ZEITPUNKT = 1 << 1;
+    static final int GEBOTS_PREIS = 1 << 2;
+    static final int BIETER = 1 << 3;
+    private int geaendert = 0;
 
     private Connection connection = null;
 
@@ -18,7 +46,6 @@ public class Gebot {
         this.connection = connection;
     }
 
-    @SuppressWarnings("unused")
     private Connection useConnection() {
         if (connection == null) {
             throw new ServiceException("Service hat keine Connection");
@@ -40,6 +67,7 @@ public class Gebot {
 
     public void setAid(Integer aid) {
         this.aid = aid;
+        geaendert |= AID;
     }
 
     public Timestamp getGebotsZeitpunkt() {
@@ -48,6 +76,7 @@ public class Gebot {
 
     public void setGebotsZeitpunkt(Timestamp gebotsZeitpunkt) {
         this.gebotsZeitpunkt = gebotsZeitpunkt;
+        geaendert |= GEBOTS_ZEITPUNKT;
     }
 
     public BigDecimal getGebotsPreis() {
@@ -56,14 +85,122 @@ public class Gebot {
 
     public void setGebotsPreis(BigDecimal gebotsPreis) {
         this.gebotsPreis = gebotsPreis;
+        geaendert |= GEBOTS_PREIS;
+    }
+
+    public String getBieter() {
+        return bieter;
+    }
+
+    public void setBieter(String bieter) {
+        this.bieter = bieter;
+        geaendert |= BIETER;
+    }
+
+    public boolean istGeaendert() {
+        return geaendert != 0;
     }
 
+    /**
+     * Speichert das Gebot. Ist kein Gebotszeitpunkt gesetzt, wird der aktuelle Zeitpunkt der Datenbank verwendet.
+     *
+     * @throws VersionskonfliktException wenn die GID inzwischen von einem anderen Gebot belegt ist.
+     */
     public void insert() {
-        // SQL-Code zum Speichern dieses Gebots in der Datenbank
+        L.info(INSERT_SQL);
+        try (PreparedStatement ps = useConnection().prepareStatement(INSERT_SQL)) {
+            bindeInsert(ps);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw insertFehler(e, String.valueOf(gid));
+        }
+        geaendert = 0;
     }
 
+    /**
+     * Schreibt die geaenderten Spalten des Gebots. Ohne Aenderungen passiert nichts.
+     */
     public void update() {
-        // SQL-Code zum Aendern dieses Gebots in der Datenbank
+        if (!istGeaendert()) {
+            return;
+        }
+        String sql = updateSql(geaendert);
+        L.info(sql);
+        int anzahl;
+        try (PreparedStatement ps = useConnection().prepareStatement(sql)) {
+            bindeUpdate(ps);
+            anzahl = ps.executeUpdate();
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        }
+        if (anzahl == 0) {
+            throw new DataException("Gebot existiert nicht: " + gid);
+        }
+        geaendert = 0;
+    }
+
+    static final String INSERT_SQL = "insert into Gebot (GID, AID, GebotsPreis, GebotsZeitpunkt, Bieter) " +
+            "values (?, ?, ?, coalesce(?, current_timestamp), ?)";
+
+    void bindeInsert(PreparedStatement ps) throws SQLException {
+        ps.setInt(1, gid);
+        ps.setInt(2, aid);
+        ps.setBigDecimal(3, gebotsPreis);
+        ps.setTimestamp(4, gebotsZeitpunkt);
+        ps.setString(5, bieter);
+    }
+
+    static RuntimeException insertFehler(SQLException e, String gids) {
+        if (e.getErrorCode() == ORA_UNIQUE_CONSTRAINT) {
+            return new VersionskonfliktException("GID bereits vergeben: " + gids, e);
+        }
+        L.error("", e);
+        return new DataException(e);
+    }
+
+    int getGeaenderteSpalten() {
+        return geaendert;
+    }
+
+    // nach dem Laden oder Schreiben
+    void alsUnveraendertMarkieren() {
+        geaendert = 0;
+    }
+
+    static String updateSql(int spalten) {
+        StringBuilder sql = new StringBuilder("update Gebot set ");
+        if ((spalten & AID) != 0) {
+            sql.append("AID=?, ");
+        }
+        if ((spalten & GEBOTS_ZEITPUNKT) != 0) {
+            sql.append("GebotsZeitpunkt=?, ");
+        }
+        if ((spalten & GEBOTS_PREIS) != 0) {
+            sql.append("GebotsPreis=?, ");
+        }
+        if ((spalten & BIETER) != 0) {
+            sql.append("Bieter=?, ");
+        }
+        sql.setLength(sql.length() - 2);
+        return sql.append(" where GID=?").toString();
+    }
+
+    void bindeUpdate(PreparedStatement ps) throws SQLException {
+        int i = 1;
+        if ((geaendert & AID) != 0) {
+            ps.setInt(i++, aid);
+        }
+        if ((geaendert & GEBOTS_ZEITPUNKT) != 0) {
+            ps.setTimestamp(i++, gebotsZeitpunkt);
+        }
+        if ((geaendert & GEBOTS_PREIS) != 0) {
+            ps.setBigDecimal(i++, gebotsPreis);
+        }
+        if ((geaendert & BIETER) != 0) {
+            ps.setString(i++, bieter);
+        }
+        ps.setInt(i, gid);
     }
 
     public void delete() {
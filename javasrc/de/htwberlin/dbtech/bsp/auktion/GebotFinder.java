@@ -1,16 +1,35 @@
 package de.htwberlin.dbtech.bsp.auktion;
 
+import de.htwberlin.dbtech.exceptions.DataException;
 import de.htwberlin.dbtech.exceptions.ServiceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 
 public class GebotFinder {
+    private static final Logger L = LoggerFactory.getLogger(GebotFinder.class);
+
     private Connection connection = null;
+    private UnitOfWork unitOfWork = null;
 
     public void setConnection(Connection connection) {
         this.connection = connection;
     }
 
+    /**
+     * Mit Unit of Work wird jedes Gebot nur einmal geladen, weitere Anfragen liefern dasselbe Objekt.
+     */
+    public void setUnitOfWork(UnitOfWork unitOfWork) {
+        this.unitOfWork = unitOfWork;
+    }
+
     private Connection useConnection() {
         if (connection == null) {
             throw new ServiceException("Service hat keine Connection");
@@ -18,11 +37,95 @@ public class GebotFinder {
         return connection;
     }
 
+    /**
+     * Liefert das Gebot oder null, wenn die GID nicht existiert.
+     */
     public Gebot findById(Integer gid) {
-        Gebot g = new Gebot();
+        if (unitOfWork != null && unitOfWork.getGebot(gid) != null) {
+            return unitOfWork.getGebot(gid);
+        }
+        String sql = "select GID, AID, GebotsZeitpunkt, GebotsPreis, Bieter from Gebot where GID=?";
+        L.info(sql);
+        try (PreparedStatement ps = useConnection().prepareStatement(sql)) {
+            ps.setInt(1, gid);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? uebernehme(new GebotMapper(rs), rs) : null;
+            }
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        }
+    }
+
+    /**
+     * Gebote einer Auktion in zeitlicher Reihenfolge, seitenweise. Fuer die erste Seite ist nach null, sonst
+     * das letzte Gebot der vorherigen Seite. Jede Seite ist ein Bereichszugriff auf ix_gebot_aid_zeit_gid,
+     * unabhaengig davon, wie weit schon geblaettert wurde. Gebote ohne GebotsZeitpunkt sind nicht enthalten.
+     * Gelesen wird ueber Gebot_Alle, archivierte Auktionen sind also eingeschlossen; deren Gebote koennen nicht
+     * geaendert werden.
+     */
+    public Seite<Gebot> findSeiteByAid(Integer aid, Gebot nach, int groesse) {
+        String sql = "select GID, AID, GebotsZeitpunkt, GebotsPreis, Bieter from Gebot_Alle where AID=? " +
+                (nach == null
+                        ? "and GebotsZeitpunkt is not null "
+                        : "and GebotsZeitpunkt >= ? and (GebotsZeitpunkt > ? or GID > ?) ") +
+                "order by GebotsZeitpunkt, GID fetch first ? rows only";
+        L.info(sql);
+        try (PreparedStatement ps = useConnection().prepareStatement(sql)) {
+            int i = 1;
+            ps.setInt(i++, aid);
+            if (nach != null) {
+                ps.setTimestamp(i++, nach.getGebotsZeitpunkt());
+                ps.setTimestamp(i++, nach.getGebotsZeitpunkt());
+                ps.setInt(i++, nach.getGid());
+            }
+            // ein Gebot mehr lesen, um zu erkennen, ob es eine weitere Seite gibt
+            ps.setInt(i, groesse + 1);
+            ps.setFetchSize(groesse + 1);
+            List<Gebot> gebote = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                GebotMapper mapper = new GebotMapper(rs);
+                while (rs.next()) {
+                    gebote.add(uebernehme(mapper, rs));
+                }
+            }
+            boolean weitere = gebote.size() > groesse;
+            if (weitere) {
+                gebote.remove(groesse);
+            }
+            return new Seite<>(gebote, weitere);
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        }
+    }
+
+    private Gebot uebernehme(GebotMapper mapper, ResultSet rs) throws SQLException {
+        Gebot g = mapper.abbilden(rs);
         g.setConnection(useConnection());
-        // Sql-Code zum Befuellen des Gebotsobjekts
-        return g;
+        g.alsUnveraendertMarkieren();
+        return unitOfWork == null ? g : unitOfWork.registriere(g);
+    }
+
+    /**
+     * Naechste freie GID. Nicht konkurrenzsicher, eine doppelt vergebene GID faellt beim insert auf.
+     */
+    public Integer neueGid() {
+        // GIDs archivierter Gebote duerfen nicht erneut vergeben werden; max ueber den Primaerschluessel
+        // ist je Tabelle ein einzelner Indexzugriff
+        String sql = "select greatest(coalesce((select max(GID) from Gebot), 0), " +
+                "coalesce((select max(GID) from Gebot_Archiv), 0)) as maxgid from dual";
+        int neueGid = 1;
+        try (Statement stmt = useConnection().createStatement()) {
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                rs.next();
+                neueGid = rs.getInt("maxgid") + 1;
+            }
+            return neueGid;
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        }
     }
 
 }
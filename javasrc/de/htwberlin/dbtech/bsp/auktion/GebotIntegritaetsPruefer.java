@@ -0,0 +1,243 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.utils.DbCred;
+import de.htwberlin.dbtech.utils.JdbcUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Prueft die Invarianten der Gebote in einem linearen Durchlauf ueber Gebot, sortiert nach
+ * (AID, GebotsZeitpunkt, GID):
+ * <ul>
+ * <li>kein Gebot ist niedriger oder gleich einem zeitlich frueheren Gebot derselben Auktion</li>
+ * <li>keine zwei Gebote einer Auktion haben denselben Zeitpunkt</li>
+ * <li>kein Gebot liegt nach dem Auktionsende</li>
+ * <li>kein Gebot liegt unter AuktionMinPreis</li>
+ * </ul>
+ * Je Gebot wird hoechstens ein Partner gemeldet (das hoechste fruehere bzw. das erste gleichzeitige Gebot),
+ * nicht wie bei den Self-Joins in cmds.sql jedes Paar. Der Speicherbedarf ist unabhaengig von der Anzahl der
+ * Gebote. Verletzungen werden sofort an den Melder uebergeben.
+ */
+public class GebotIntegritaetsPruefer {
+    private static final Logger L = LoggerFactory.getLogger(GebotIntegritaetsPruefer.class);
+
+    private static final int FETCH_SIZE = 10000;
+
+    public enum Art {
+        NICHT_STEIGEND, GLEICHER_ZEITPUNKT, NACH_AUKTIONSENDE, UNTER_MINDESTPREIS
+    }
+
+    public static class Verletzung {
+        private final Art art;
+        private final int aid;
+        private final int gid;
+        // frueheres bzw. gleichzeitiges Gebot, sonst null
+        private final Integer partnerGid;
+
+        public Verletzung(Art art, int aid, int gid, Integer partnerGid) {
+            this.art = art;
+            this.aid = aid;
+            this.gid = gid;
+            this.partnerGid = partnerGid;
+        }
+
+        public Art getArt() {
+            return art;
+        }
+
+        public int getAid() {
+            return aid;
+        }
+
+        public int getGid() {
+            return gid;
+        }
+
+        public Integer getPartnerGid() {
+            return partnerGid;
+        }
+
+        @Override
+        public String toString() {
+            return "Verletzung [art=" + art + ", aid=" + aid + ", gid=" + gid + ", partnerGid=" + partnerGid + "]";
+        }
+    }
+
+    /**
+     * Zustand fuer den Durchlauf, enthaelt nur das aktuelle Angebot und die aktuelle Zeitpunktgruppe.
+     */
+    static class Durchlauf {
+        private final Consumer<Verletzung> melder;
+        private boolean erstes = true;
+        private int aid;
+        // hoechstes Gebot mit echt frueherem Zeitpunkt
+        private BigDecimal maxVorher;
+        private int maxVorherGid;
+        // Gebote mit gleichem Zeitpunkt
+        private Timestamp gruppenZeitpunkt;
+        private int gruppenErsteGid;
+        private BigDecimal gruppenMax;
+        private int gruppenMaxGid;
+        private long anzahl = 0;
+
+        Durchlauf(Consumer<Verletzung> melder) {
+            this.melder = melder;
+        }
+
+        void pruefe(int gid, int aid, Timestamp zeitpunkt, BigDecimal preis, Timestamp ende, BigDecimal minPreis) {
+            anzahl++;
+            if (erstes || aid != this.aid) {
+                erstes = false;
+                this.aid = aid;
+                maxVorher = null;
+                gruppenZeitpunkt = null;
+                gruppenMax = null;
+            }
+            if (preis.compareTo(minPreis) < 0) {
+                melder.accept(new Verletzung(Art.UNTER_MINDESTPREIS, aid, gid, null));
+            }
+            // ohne Zeitpunkt greifen die zeitbezogenen Regeln nicht (wie bei den Vergleichen in SQL)
+            if (zeitpunkt == null) {
+                return;
+            }
+            if (zeitpunkt.after(ende)) {
+                melder.accept(new Verletzung(Art.NACH_AUKTIONSENDE, aid, gid, null));
+            }
+            if (gruppenZeitpunkt != null && gruppenZeitpunkt.equals(zeitpunkt)) {
+                melder.accept(new Verletzung(Art.GLEICHER_ZEITPUNKT, aid, gid, gruppenErsteGid));
+            } else {
+                if (gruppenMax != null && (maxVorher == null || gruppenMax.compareTo(maxVorher) > 0)) {
+                    maxVorher = gruppenMax;
+                    maxVorherGid = gruppenMaxGid;
+                }
+                gruppenZeitpunkt = zeitpunkt;
+                gruppenErsteGid = gid;
+                gruppenMax = null;
+            }
+            if (maxVorher != null && maxVorher.compareTo(preis) >= 0) {
+                melder.accept(new Verletzung(Art.NICHT_STEIGEND, aid, gid, maxVorherGid));
+            }
+            if (gruppenMax == null || preis.compareTo(gruppenMax) > 0) {
+                gruppenMax = preis;
+                gruppenMaxGid = gid;
+            }
+        }
+
+        long getAnzahl() {
+            return anzahl;
+        }
+    }
+
+    /**
+     * Prueft alle Gebote mit AID zwischen vonAid und bisAid (jeweils einschliesslich).
+     *
+     * @return Anzahl gepruefter Gebote
+     */
+    public long pruefe(Connection connection, int vonAid, int bisAid, Consumer<Verletzung> melder) {
+        String sql = "select g.GID, g.AID, g.GebotsZeitpunkt, g.GebotsPreis, a.AuktionEndeZeitpunkt, a.AuktionMinPreis " +
+                "from Gebot g join Angebot a on a.AID = g.AID " +
+                "where g.AID between ? and ? " +
+                "order by g.AID, g.GebotsZeitpunkt, g.GID";
+        L.info(sql + "  [" + vonAid + ", " + bisAid + "]");
+        Durchlauf d = new Durchlauf(melder);
+        try (PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(FETCH_SIZE);
+            ps.setInt(1, vonAid);
+            ps.setInt(2, bisAid);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    d.pruefe(rs.getInt(1), rs.getInt(2), rs.getTimestamp(3), rs.getBigDecimal(4),
+                            rs.getTimestamp(5), rs.getBigDecimal(6));
+                }
+            }
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        }
+        L.info("geprueft: " + d.getAnzahl() + "  [" + vonAid + ", " + bisAid + "]");
+        return d.getAnzahl();
+    }
+
+    /**
+     * Teilt den AID-Bereich von Gebot in gleich grosse Abschnitte und prueft sie parallel, jeden mit einer
+     * eigenen Connection. Der Melder wird aus mehreren Threads aufgerufen und muss threadsicher sein.
+     *
+     * @return Anzahl gepruefter Gebote
+     */
+    public long pruefeParallel(Supplier<Connection> verbindungen, int abschnitte, Consumer<Verletzung> melder) {
+        int minAid;
+        int maxAid;
+        try (Connection c = verbindungen.get();
+             PreparedStatement ps = c.prepareStatement("select min(AID), max(AID) from Gebot");
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            minAid = rs.getInt(1);
+            if (rs.wasNull()) {
+                return 0;
+            }
+            maxAid = rs.getInt(2);
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        }
+
+        long breite = ((long) maxAid - minAid) / abschnitte + 1;
+        ExecutorService pool = Executors.newFixedThreadPool(abschnitte);
+        try {
+            List<Future<Long>> ergebnisse = new ArrayList<>();
+            for (long von = minAid; von <= maxAid; von += breite) {
+                int vonAid = (int) von;
+                int bisAid = (int) Math.min(von + breite - 1, maxAid);
+                ergebnisse.add(pool.submit(() -> {
+                    try (Connection c = verbindungen.get()) {
+                        return pruefe(c, vonAid, bisAid, melder);
+                    }
+                }));
+            }
+            long anzahl = 0;
+            for (Future<Long> f : ergebnisse) {
+                anzahl += f.get();
+            }
+            return anzahl;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new DataException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Aufruf: GebotIntegritaetsPruefer [abschnitte]
+     */
+    public static void main(String[] args) {
+        int abschnitte = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        long start = System.nanoTime();
+        long anzahl = new GebotIntegritaetsPruefer().pruefeParallel(
+                () -> JdbcUtils.getConnectionViaDriverManager(DbCred.url, DbCred.user, DbCred.password),
+                abschnitte,
+                v -> System.out.println(v));
+        L.info(anzahl + " Gebote in " + (System.nanoTime() - start) / 1_000_000 + " ms geprueft");
+    }
+}
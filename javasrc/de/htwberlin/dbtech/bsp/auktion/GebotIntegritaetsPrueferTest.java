@@ -0,0 +1,108 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+
+public class GebotIntegritaetsPrueferTest {
+    private static final Timestamp ENDE = new Timestamp(100_000L);
+    private static final BigDecimal MIN_PREIS = new BigDecimal("10.00");
+
+    private static class Zeile {
+        final int gid;
+        final int aid;
+        final Timestamp zeitpunkt;
+        final BigDecimal preis;
+
+        Zeile(int gid, int aid, Timestamp zeitpunkt, BigDecimal preis) {
+            this.gid = gid;
+            this.aid = aid;
+            this.zeitpunkt = zeitpunkt;
+            this.preis = preis;
+        }
+    }
+
+    /**
+     * Jede Regel wird fuer genau die betroffenen Gebote gemeldet.
+     */
+    @org.junit.Test
+    public void einzelneVerletzungen() {
+        List<GebotIntegritaetsPruefer.Verletzung> gemeldet = new ArrayList<>();
+        GebotIntegritaetsPruefer.Durchlauf d = new GebotIntegritaetsPruefer.Durchlauf(gemeldet::add);
+        d.pruefe(1, 1, new Timestamp(1000), new BigDecimal("20.00"), ENDE, MIN_PREIS);
+        d.pruefe(2, 1, new Timestamp(2000), new BigDecimal("20.00"), ENDE, MIN_PREIS);
+        d.pruefe(3, 1, new Timestamp(2000), new BigDecimal("30.00"), ENDE, MIN_PREIS);
+        d.pruefe(4, 1, new Timestamp(200_000), new BigDecimal("40.00"), ENDE, MIN_PREIS);
+        d.pruefe(5, 2, new Timestamp(1000), new BigDecimal("5.00"), ENDE, MIN_PREIS);
+
+        assertEquals(4, gemeldet.size());
+        assertEquals("NICHT_STEIGEND 2 1", kurz(gemeldet.get(0)));
+        assertEquals("GLEICHER_ZEITPUNKT 3 2", kurz(gemeldet.get(1)));
+        assertEquals("NACH_AUKTIONSENDE 4 null", kurz(gemeldet.get(2)));
+        assertEquals("UNTER_MINDESTPREIS 5 null", kurz(gemeldet.get(3)));
+        assertEquals(5, d.getAnzahl());
+    }
+
+    /**
+     * Der lineare Durchlauf meldet dieselben Gebote wie die Self-Joins aus cmds.sql.
+     */
+    @org.junit.Test
+    public void wieSelfJoin() {
+        Random r = new Random(42);
+        List<Zeile> zeilen = new ArrayList<>();
+        int gid = 1;
+        for (int aid = 1; aid <= 50; aid++) {
+            int anzahl = r.nextInt(30);
+            for (int i = 0; i < anzahl; i++) {
+                Timestamp t = r.nextInt(20) == 0 ? null : new Timestamp(1000L * r.nextInt(20));
+                zeilen.add(new Zeile(gid++, aid, t, BigDecimal.valueOf(r.nextInt(20), 0)));
+            }
+        }
+        zeilen.sort(Comparator.<Zeile>comparingInt(z -> z.aid)
+                .thenComparing(z -> z.zeitpunkt, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparingInt(z -> z.gid));
+
+        Set<Integer> nichtSteigend = new TreeSet<>();
+        Set<Integer> gleicherZeitpunkt = new TreeSet<>();
+        GebotIntegritaetsPruefer.Durchlauf d = new GebotIntegritaetsPruefer.Durchlauf(v -> {
+            if (v.getArt() == GebotIntegritaetsPruefer.Art.NICHT_STEIGEND) {
+                nichtSteigend.add(v.getGid());
+            } else if (v.getArt() == GebotIntegritaetsPruefer.Art.GLEICHER_ZEITPUNKT) {
+                gleicherZeitpunkt.add(v.getGid());
+                gleicherZeitpunkt.add(v.getPartnerGid());
+            }
+        });
+        for (Zeile z : zeilen) {
+            d.pruefe(z.gid, z.aid, z.zeitpunkt, z.preis, ENDE, BigDecimal.ZERO);
+        }
+
+        Set<Integer> erwartetNichtSteigend = new TreeSet<>();
+        Set<Integer> erwartetGleicherZeitpunkt = new TreeSet<>();
+        for (Zeile g1 : zeilen) {
+            for (Zeile g2 : zeilen) {
+                if (g1.aid != g2.aid || g1.zeitpunkt == null || g2.zeitpunkt == null) {
+                    continue;
+                }
+                if (g1.zeitpunkt.before(g2.zeitpunkt) && g1.preis.compareTo(g2.preis) >= 0) {
+                    erwartetNichtSteigend.add(g2.gid);
+                }
+                if (g1.zeitpunkt.equals(g2.zeitpunkt) && g1.gid != g2.gid) {
+                    erwartetGleicherZeitpunkt.add(g2.gid);
+                }
+            }
+        }
+        assertEquals(erwartetNichtSteigend, nichtSteigend);
+        assertEquals(erwartetGleicherZeitpunkt, gleicherZeitpunkt);
+    }
+
+    private static String kurz(GebotIntegritaetsPruefer.Verletzung v) {
+        return v.getArt() + " " + v.getGid() + " " + v.getPartnerGid();
+    }
+}
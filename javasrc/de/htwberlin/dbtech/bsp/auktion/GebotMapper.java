@@ -0,0 +1,35 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+/**
+ * Erzeugt von MapperProzessor aus Gebot.
+ */
+@javax.annotation.processing.Generated("de.htwberlin.dbtech.utils.mapper.MapperProzessor")
+public final class GebotMapper implements de.htwberlin.dbtech.utils.mapper.ZeilenMapper<Gebot> {
+    private final int gidIndex;
+    private final int aidIndex;
+    private final int gebotsZeitpunktIndex;
+    private final int gebotsPreisIndex;
+    private final int bieterIndex;
+
+    public GebotMapper(java.sql.ResultSet rs) throws java.sql.SQLException {
+        de.htwberlin.dbtech.utils.mapper.Spalten s = de.htwberlin.dbtech.utils.mapper.Spalten.von(rs);
+        gidIndex = s.pflicht("gid");
+        aidIndex = s.pflicht("aid");
+        gebotsZeitpunktIndex = s.pflicht("gebotsZeitpunkt");
+        gebotsPreisIndex = s.pflicht("gebotsPreis");
+        bieterIndex = s.pflicht("bieter");
+    }
+
+    @Override
+    public Gebot abbilden(java.sql.ResultSet rs) throws java.sql.SQLException {
+        Gebot o = new Gebot();
+        int gidWert = rs.getInt(gidIndex);
+        o.setGid(rs.wasNull() ? null : gidWert);
+        int aidWert = rs.getInt(aidIndex);
+        o.setAid(rs.wasNull() ? null : aidWert);
+        o.setGebotsZeitpunkt(rs.getTimestamp(gebotsZeitpunktIndex));
+        o.setGebotsPreis(rs.getBigDecimal(gebotsPreisIndex));
+        o.setBieter(rs.getString(bieterIndex));
+        return o;
+    }
+}
@@ -0,0 +1,278 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.exceptions.GebotZuSpaetException;
+import de.htwberlin.dbtech.exceptions.ServiceException;
+import de.htwberlin.dbtech.utils.LatenzHistogramm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Nimmt Gebote entgegen und laesst sie von mehreren Worker-Threads in der Reihenfolge des Auktionsendes
+ * bearbeiten (earliest deadline first): ein Gebot auf eine Auktion, die in zwei Sekunden endet, wird vor
+ * einem Gebot auf eine Auktion bearbeitet, die erst in einem Monat endet.
+ * <p>
+ * Jeder Worker benutzt einen eigenen {@link IAuktionsService}. Aus den bisherigen Bearbeitungszeiten wird ein
+ * gleitender Mittelwert gebildet. Reicht die Restzeit bis zum Auktionsende dafuer nicht mehr aus, wird das
+ * Gebot sofort mit {@link GebotZuSpaetException} abgelehnt, beim Einreichen ebenso wie bei der Entnahme aus
+ * der Warteschlange. Die Wartezeit bis zum Abschluss wird je Fristklasse in einem {@link LatenzHistogramm}
+ * erfasst.
+ */
+public class GebotsEinplaner implements AutoCloseable {
+    private static final Logger L = LoggerFactory.getLogger(GebotsEinplaner.class);
+
+    /**
+     * Einteilung der Gebote nach der Restzeit der Auktion beim Einreichen.
+     */
+    public enum Frist {
+        UNTER_1S(TimeUnit.SECONDS.toMillis(1)),
+        UNTER_10S(TimeUnit.SECONDS.toMillis(10)),
+        UNTER_1MIN(TimeUnit.MINUTES.toMillis(1)),
+        UNTER_1H(TimeUnit.HOURS.toMillis(1)),
+        LAENGER(Long.MAX_VALUE);
+
+        private final long bisMillis;
+
+        Frist(long bisMillis) {
+            this.bisMillis = bisMillis;
+        }
+
+        public static Frist zu(long restMillis) {
+            for (Frist f : values()) {
+                if (restMillis < f.bisMillis) {
+                    return f;
+                }
+            }
+            return LAENGER;
+        }
+    }
+
+    private static final class Auftrag {
+        final Integer aid;
+        final BigDecimal preis;
+        final Frist frist;
+        final long eingangNanos;
+        final long endeNanos;
+        final long nr;
+        final CompletableFuture<Void> ergebnis = new CompletableFuture<>();
+
+        Auftrag(Integer aid, BigDecimal preis, long restMillis, long nr) {
+            this.aid = aid;
+            this.preis = preis;
+            this.frist = Frist.zu(restMillis);
+            this.eingangNanos = System.nanoTime();
+            // begrenzt, damit die Differenzen zweier Enden nicht ueberlaufen
+            this.endeNanos = eingangNanos + TimeUnit.MILLISECONDS.toNanos(Math.min(restMillis, MAX_REST_MILLIS));
+            this.nr = nr;
+        }
+
+        long restNanos() {
+            return endeNanos - System.nanoTime();
+        }
+    }
+
+    // nanoTime-Werte nur ueber die Differenz vergleichen; bei gleichem Ende in Eingangsreihenfolge
+    private static final Comparator<Auftrag> NACH_ENDE = (a, b) -> {
+        int c = Long.signum(a.endeNanos - b.endeNanos);
+        return c != 0 ? c : Long.compare(a.nr, b.nr);
+    };
+
+    // Gewicht des letzten Messwerts im gleitenden Mittelwert der Bearbeitungszeit
+    private static final double GEWICHT = 0.2;
+    private static final long MAX_REST_MILLIS = TimeUnit.DAYS.toMillis(100 * 365);
+
+    private final PriorityBlockingQueue<Auftrag> warteschlange = new PriorityBlockingQueue<>(64, NACH_ENDE);
+    private final ToLongFunction<Integer> restMillis;
+    private final List<Thread> worker = new ArrayList<>();
+    private final AtomicLong naechsteNr = new AtomicLong();
+    private volatile boolean geschlossen = false;
+    private volatile double bearbeitungNanos = 0;
+
+    private final Map<Frist, LatenzHistogramm> latenzen = new EnumMap<>(Frist.class);
+    private final Map<Frist, AtomicLong> abgelehnt = new EnumMap<>(Frist.class);
+
+    /**
+     * @param dienste    liefert je Worker einen Dienst mit eigener Connection
+     * @param anzahl     Anzahl der Worker-Threads
+     * @param restMillis Millisekunden bis zum Ende der Auktion zu einer AID, z.B. {@link #restzeitAusDb};
+     *                   Long.MAX_VALUE fuer eine AID ohne bekanntes Ende, der Dienst entscheidet dann selbst
+     */
+    public GebotsEinplaner(Supplier<IAuktionsService> dienste, int anzahl, ToLongFunction<Integer> restMillis) {
+        this.restMillis = restMillis;
+        for (Frist f : Frist.values()) {
+            latenzen.put(f, new LatenzHistogramm());
+            abgelehnt.put(f, new AtomicLong());
+        }
+        for (int i = 0; i < anzahl; i++) {
+            Thread t = new Thread(() -> arbeite(dienste.get()), "gebotseinplaner-" + i);
+            t.setDaemon(true);
+            worker.add(t);
+            t.start();
+        }
+    }
+
+    /**
+     * Reiht ein Gebot ein. Das Ergebnis wird mit der Ausnahme von {@link IAuktionsService#biete} abgeschlossen,
+     * mit {@link GebotZuSpaetException}, wenn die Restzeit nicht reicht.
+     */
+    public CompletableFuture<Void> biete(Integer aid, BigDecimal angebotspreis) {
+        if (geschlossen) {
+            throw new ServiceException("Einplaner ist geschlossen");
+        }
+        Auftrag a = new Auftrag(aid, angebotspreis, restMillis.applyAsLong(aid), naechsteNr.getAndIncrement());
+        if (!reichtRestzeit(a)) {
+            lehneAb(a);
+        } else {
+            warteschlange.add(a);
+            // close kann die Warteschlange zwischen der Pruefung oben und add schon geleert haben
+            if (geschlossen && warteschlange.remove(a)) {
+                a.ergebnis.completeExceptionally(new ServiceException("Einplaner ist geschlossen"));
+            }
+        }
+        return a.ergebnis;
+    }
+
+    public int getWartend() {
+        return warteschlange.size();
+    }
+
+    public LatenzHistogramm getLatenz(Frist frist) {
+        return latenzen.get(frist);
+    }
+
+    public long getAbgelehnt(Frist frist) {
+        return abgelehnt.get(frist).get();
+    }
+
+    /**
+     * Gleitender Mittelwert der Bearbeitungszeit eines Gebots in Nanosekunden.
+     */
+    public long getBearbeitungNanos() {
+        return (long) bearbeitungNanos;
+    }
+
+    /**
+     * Latenzverteilung (Eingang bis Abschluss) und Ablehnungen je Fristklasse, eine Zeile je Klasse.
+     */
+    public String bericht() {
+        StringBuilder sb = new StringBuilder();
+        for (Frist f : Frist.values()) {
+            sb.append(String.format("%-10s %s abgelehnt=%d%n", f, latenzen.get(f).zusammenfassung(),
+                    abgelehnt.get(f).get()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Beendet die Worker. Noch wartende Gebote werden mit {@link ServiceException} abgeschlossen.
+     */
+    @Override
+    public void close() {
+        geschlossen = true;
+        worker.forEach(Thread::interrupt);
+        try {
+            for (Thread t : worker) {
+                t.join();
+            }
+        } catch (InterruptedException e) {
+            // nicht laenger auf die Worker warten, die Warteschlange aber trotzdem abschliessen
+            Thread.currentThread().interrupt();
+        }
+        List<Auftrag> rest = new ArrayList<>();
+        warteschlange.drainTo(rest);
+        rest.forEach(a -> a.ergebnis.completeExceptionally(new ServiceException("Einplaner ist geschlossen")));
+    }
+
+    private void arbeite(IAuktionsService dienst) {
+        while (!geschlossen) {
+            Auftrag a;
+            try {
+                a = warteschlange.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (!reichtRestzeit(a)) {
+                lehneAb(a);
+                continue;
+            }
+            long start = System.nanoTime();
+            RuntimeException fehler = null;
+            try {
+                dienst.biete(a.aid, a.preis);
+            } catch (RuntimeException e) {
+                fehler = e;
+            }
+            erfasse(a, start, System.nanoTime());
+            if (fehler == null) {
+                a.ergebnis.complete(null);
+            } else {
+                a.ergebnis.completeExceptionally(fehler);
+            }
+        }
+    }
+
+    private void erfasse(Auftrag a, long start, long ende) {
+        synchronized (this) {
+            bearbeitungNanos = bearbeitungNanos == 0 ? ende - start
+                    : (1 - GEWICHT) * bearbeitungNanos + GEWICHT * (ende - start);
+        }
+        latenzen.get(a.frist).erfasse(ende - a.eingangNanos);
+    }
+
+    private boolean reichtRestzeit(Auftrag a) {
+        return a.restNanos() > bearbeitungNanos;
+    }
+
+    private void lehneAb(Auftrag a) {
+        abgelehnt.get(a.frist).incrementAndGet();
+        a.ergebnis.completeExceptionally(new GebotZuSpaetException(a.aid, TimeUnit.NANOSECONDS.toMillis(a.restNanos())));
+    }
+
+    /**
+     * Restzeit bis AuktionEndeZeitpunkt nach der Datenbankuhr. Das Auktionsende wird je AID nur einmal gelesen,
+     * die Connection wird dafuer synchronisiert benutzt. Unbekannte AIDs werden nicht gemerkt und bekommen
+     * Long.MAX_VALUE, damit der Dienst sie mit seiner eigenen Meldung ablehnt.
+     */
+    public static ToLongFunction<Integer> restzeitAusDb(Connection connection, DbUhr uhr) {
+        Map<Integer, Timestamp> enden = new ConcurrentHashMap<>();
+        return aid -> {
+            Timestamp ende = aid == null ? null : enden.computeIfAbsent(aid, k -> leseAuktionsEnde(connection, k));
+            return ende == null ? Long.MAX_VALUE : ende.getTime() - uhr.jetzt().getTime();
+        };
+    }
+
+    private static Timestamp leseAuktionsEnde(Connection connection, Integer aid) {
+        String sql = "select AuktionEndeZeitpunkt from Angebot where AID = ?";
+        L.info(sql);
+        synchronized (connection) {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setInt(1, aid);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getTimestamp("AuktionEndeZeitpunkt") : null;
+                }
+            } catch (SQLException e) {
+                L.error("", e);
+                throw new DataException(e);
+            }
+        }
+    }
+}
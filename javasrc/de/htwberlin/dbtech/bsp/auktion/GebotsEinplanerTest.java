@@ -0,0 +1,146 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import de.htwberlin.dbtech.exceptions.GebotZuSpaetException;
+import de.htwberlin.dbtech.exceptions.ServiceException;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GebotsEinplanerTest {
+
+    // haelt beim ersten Gebot an, bis freigegeben wird, und merkt sich die Reihenfolge der AIDs
+    private static class Dienst implements IAuktionsService {
+        final List<Integer> aids = new ArrayList<>();
+        final CountDownLatch begonnen = new CountDownLatch(1);
+        final CountDownLatch freigabe = new CountDownLatch(1);
+
+        @Override
+        public void setConnection(Connection connection) {
+        }
+
+        @Override
+        public void biete(Integer aid, BigDecimal angebotspreis) {
+            synchronized (aids) {
+                aids.add(aid);
+            }
+            begonnen.countDown();
+            try {
+                freigabe.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final Map<Integer, Long> REST_MILLIS = Map.of(1, 60_000L, 2, 3_600_000L, 3, 5_000L,
+            4, 60_000L, 5, 0L, 6, 50L);
+
+    /**
+     * Wartende Gebote werden nach Auktionsende bearbeitet, bei gleichem Ende in Eingangsreihenfolge.
+     */
+    @org.junit.Test
+    public void fruehestesEndeZuerst() throws Exception {
+        Dienst dienst = new Dienst();
+        try (GebotsEinplaner einplaner = new GebotsEinplaner(() -> dienst, 1, REST_MILLIS::get)) {
+            List<CompletableFuture<Void>> ergebnisse = new ArrayList<>();
+            ergebnisse.add(einplaner.biete(1, BigDecimal.ONE));
+            assertTrue(dienst.begonnen.await(5, TimeUnit.SECONDS));
+            ergebnisse.add(einplaner.biete(2, BigDecimal.ONE));
+            ergebnisse.add(einplaner.biete(3, BigDecimal.ONE));
+            ergebnisse.add(einplaner.biete(4, BigDecimal.ONE));
+            dienst.freigabe.countDown();
+            for (CompletableFuture<Void> e : ergebnisse) {
+                e.get(5, TimeUnit.SECONDS);
+            }
+            assertEquals(List.of(1, 3, 4, 2), dienst.aids);
+            assertEquals(2, einplaner.getLatenz(GebotsEinplaner.Frist.UNTER_1H).getAnzahl());
+        }
+    }
+
+    /**
+     * Gebote, deren Auktion vor der Bearbeitung endet, werden beim Einreichen oder bei der Entnahme abgelehnt.
+     */
+    @org.junit.Test
+    public void zuSpaeteGeboteAblehnen() throws Exception {
+        Dienst dienst = new Dienst();
+        try (GebotsEinplaner einplaner = new GebotsEinplaner(() -> dienst, 1, REST_MILLIS::get)) {
+            pruefeZuSpaet(einplaner.biete(5, BigDecimal.ONE));
+
+            CompletableFuture<Void> erstes = einplaner.biete(1, BigDecimal.ONE);
+            assertTrue(dienst.begonnen.await(5, TimeUnit.SECONDS));
+            CompletableFuture<Void> knapp = einplaner.biete(6, BigDecimal.ONE);
+            Thread.sleep(100);
+            dienst.freigabe.countDown();
+            erstes.get(5, TimeUnit.SECONDS);
+            pruefeZuSpaet(knapp);
+            assertEquals(List.of(1), dienst.aids);
+            assertEquals(2, einplaner.getAbgelehnt(GebotsEinplaner.Frist.UNTER_1S));
+        }
+    }
+
+    /**
+     * AIDs ohne bekanntes Ende kommen hinter alle anderen und werden vom Dienst beurteilt, nicht abgelehnt.
+     */
+    @org.junit.Test
+    public void unbekannteAidAnDenDienst() throws Exception {
+        Dienst dienst = new Dienst();
+        try (GebotsEinplaner einplaner = new GebotsEinplaner(() -> dienst, 1,
+                aid -> REST_MILLIS.getOrDefault(aid, Long.MAX_VALUE))) {
+            CompletableFuture<Void> erstes = einplaner.biete(1, BigDecimal.ONE);
+            assertTrue(dienst.begonnen.await(5, TimeUnit.SECONDS));
+            CompletableFuture<Void> unbekannt = einplaner.biete(99, BigDecimal.ONE);
+            CompletableFuture<Void> bekannt = einplaner.biete(2, BigDecimal.ONE);
+            dienst.freigabe.countDown();
+            erstes.get(5, TimeUnit.SECONDS);
+            bekannt.get(5, TimeUnit.SECONDS);
+            unbekannt.get(5, TimeUnit.SECONDS);
+            assertEquals(List.of(1, 2, 99), dienst.aids);
+        }
+    }
+
+    /**
+     * Wird der Einplaner geschlossen, waehrend ein Gebot eingereiht wird, bleibt dessen Ergebnis nicht offen.
+     */
+    @org.junit.Test
+    public void schliessenWaehrendBiete() throws Exception {
+        Dienst dienst = new Dienst();
+        AtomicReference<GebotsEinplaner> ref = new AtomicReference<>();
+        // die Restzeit wird nach der Pruefung auf geschlossen und vor dem Einreihen erfragt
+        GebotsEinplaner einplaner = new GebotsEinplaner(() -> dienst, 1, aid -> {
+            ref.get().close();
+            return 60_000L;
+        });
+        ref.set(einplaner);
+        CompletableFuture<Void> ergebnis = einplaner.biete(1, BigDecimal.ONE);
+        try {
+            ergebnis.get(5, TimeUnit.SECONDS);
+            fail("Gebot haette abgelehnt werden muessen");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ServiceException);
+        }
+        assertEquals(0, einplaner.getWartend());
+    }
+
+    private static void pruefeZuSpaet(CompletableFuture<Void> ergebnis) throws InterruptedException {
+        try {
+            ergebnis.get(5, TimeUnit.SECONDS);
+            fail("Gebot haette abgelehnt werden muessen");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof GebotZuSpaetException);
+        } catch (java.util.concurrent.TimeoutException e) {
+            fail("keine Antwort");
+        }
+    }
+}
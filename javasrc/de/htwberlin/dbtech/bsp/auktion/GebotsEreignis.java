@@ -0,0 +1,43 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+/**
+ * Preisaenderung eines Angebots durch ein angenommenes Gebot.
+ */
+public class GebotsEreignis {
+    private final int aid;
+    private final BigDecimal preis;
+    private final int anzahlGebote;
+    private final Timestamp zeitpunkt;
+
+    public GebotsEreignis(int aid, BigDecimal preis, int anzahlGebote, Timestamp zeitpunkt) {
+        this.aid = aid;
+        this.preis = preis;
+        this.anzahlGebote = anzahlGebote;
+        this.zeitpunkt = zeitpunkt;
+    }
+
+    public int getAid() {
+        return aid;
+    }
+
+    public BigDecimal getPreis() {
+        return preis;
+    }
+
+    public int getAnzahlGebote() {
+        return anzahlGebote;
+    }
+
+    public Timestamp getZeitpunkt() {
+        return zeitpunkt;
+    }
+
+    @Override
+    public String toString() {
+        return "GebotsEreignis [aid=" + aid + ", preis=" + preis + ", anzahlGebote=" + anzahlGebote
+                + ", zeitpunkt=" + zeitpunkt + "]";
+    }
+}
@@ -0,0 +1,115 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Misst die Verteilung von Gebotsereignissen an viele Abonnenten, ohne Datenbank.
+ * <p>
+ * Aufruf: GebotsEreignisBenchmark [abonnenten] [ereignisse] [langsameProzent]. Langsame Abonnenten fordern nur
+ * alle 10 ms zehn neue Ereignisse an, ohne dabei einen Thread des Executors zu blockieren. Gemessen wird, wie
+ * lange veroeffentliche im Bieter-Thread braucht und wann alle Abonnenten fertig sind.
+ */
+public class GebotsEreignisBenchmark {
+    private static final int AIDS = 100;
+
+    public static void main(String[] args) throws InterruptedException {
+        int abonnenten = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int ereignisse = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+        int langsameProzent = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        for (GebotsEreignisPublisher.Ueberlauf u : GebotsEreignisPublisher.Ueberlauf.values()) {
+            messe(u, abonnenten, ereignisse, langsameProzent);
+        }
+    }
+
+    private static void messe(GebotsEreignisPublisher.Ueberlauf ueberlauf, int abonnenten, int ereignisse,
+                              int langsameProzent) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        GebotsEreignisPublisher p = new GebotsEreignisPublisher(pool, 64, ueberlauf);
+        CountDownLatch fertig = new CountDownLatch(abonnenten);
+        LongAdder zugestellt = new LongAdder();
+        List<Abonnent> langsame = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < abonnenten; i++) {
+            boolean langsam = i % 100 < langsameProzent;
+            Abonnent a = new Abonnent(langsam, zugestellt, fertig);
+            if (langsam) {
+                langsame.add(a);
+            }
+            p.subscribe(a);
+        }
+        ScheduledExecutorService takt = Executors.newSingleThreadScheduledExecutor();
+        takt.scheduleAtFixedRate(() -> langsame.forEach(a -> a.anfordern(10)), 10, 10, TimeUnit.MILLISECONDS);
+
+        long start = System.nanoTime();
+        long maxVeroeffentlichen = 0;
+        for (int i = 0; i < ereignisse; i++) {
+            GebotsEreignis e = new GebotsEreignis(i % AIDS, BigDecimal.valueOf(i, 2), i / AIDS + 1,
+                    new Timestamp(System.currentTimeMillis()));
+            long vorher = System.nanoTime();
+            p.veroeffentliche(e);
+            maxVeroeffentlichen = Math.max(maxVeroeffentlichen, System.nanoTime() - vorher);
+        }
+        long veroeffentlicht = System.nanoTime() - start;
+        p.close();
+        fertig.await(5, TimeUnit.MINUTES);
+        long gesamt = System.nanoTime() - start;
+        takt.shutdown();
+        pool.shutdown();
+
+        System.out.printf("%-22s abonnenten: %6d  ereignisse: %6d  veroeffentliche: %7.1f us/ereignis (max %7.1f ms)"
+                        + "  zugestellt/s: %12.0f  verworfen: %9d%n",
+                ueberlauf, abonnenten, ereignisse, veroeffentlicht / 1000.0 / ereignisse, maxVeroeffentlichen / 1e6,
+                zugestellt.sum() / (gesamt / 1e9), p.getVerworfen());
+    }
+
+    private static class Abonnent implements Flow.Subscriber<GebotsEreignis> {
+        private final boolean langsam;
+        private final LongAdder zugestellt;
+        private final CountDownLatch fertig;
+        private volatile Flow.Subscription subscription;
+
+        Abonnent(boolean langsam, LongAdder zugestellt, CountDownLatch fertig) {
+            this.langsam = langsam;
+            this.zugestellt = zugestellt;
+            this.fertig = fertig;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(langsam ? 10 : Long.MAX_VALUE);
+        }
+
+        void anfordern(long n) {
+            Flow.Subscription s = subscription;
+            if (s != null) {
+                s.request(n);
+            }
+        }
+
+        @Override
+        public void onNext(GebotsEreignis item) {
+            zugestellt.increment();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            fertig.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            fertig.countDown();
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Verteilt Gebotsereignisse an beliebig viele Abonnenten.
+ * <p>
+ * {@link #veroeffentliche(GebotsEreignis)} blockiert nie: jedes Abonnement hat einen eigenen begrenzten Puffer,
+ * und ist er voll, greift die eingestellte {@link Ueberlauf}-Regel. Ein langsamer Abonnent verliert dadurch
+ * Ereignisse, haelt aber weder die Bieter noch die anderen Abonnenten auf. Zugestellt wird auf dem Executor,
+ * je Abonnement immer nur in einem Thread zur Zeit.
+ */
+public class GebotsEreignisPublisher implements Flow.Publisher<GebotsEreignis>, AutoCloseable {
+    private static final Logger L = LoggerFactory.getLogger(GebotsEreignisPublisher.class);
+
+    public enum Ueberlauf {
+        /**
+         * Das aelteste gepufferte Ereignis wird verworfen.
+         */
+        AELTESTES_VERWERFEN,
+        /**
+         * Je AID bleibt nur das neueste Ereignis im Puffer, an der Stelle des aeltesten. Ist der Puffer mit
+         * verschiedenen AIDs gefuellt, wird das aelteste verworfen.
+         */
+        JE_AID_ZUSAMMENFASSEN
+    }
+
+    private final Executor executor;
+    private final int pufferGroesse;
+    private final Ueberlauf ueberlauf;
+    private final CopyOnWriteArrayList<Abonnement> abonnements = new CopyOnWriteArrayList<>();
+    private final LongAdder veroeffentlicht = new LongAdder();
+    private final LongAdder verworfen = new LongAdder();
+    private volatile boolean geschlossen = false;
+
+    public GebotsEreignisPublisher(int pufferGroesse, Ueberlauf ueberlauf) {
+        this(ForkJoinPool.commonPool(), pufferGroesse, ueberlauf);
+    }
+
+    public GebotsEreignisPublisher(Executor executor, int pufferGroesse, Ueberlauf ueberlauf) {
+        if (pufferGroesse < 1) {
+            throw new IllegalArgumentException("pufferGroesse muss positiv sein: " + pufferGroesse);
+        }
+        this.executor = executor;
+        this.pufferGroesse = pufferGroesse;
+        this.ueberlauf = ueberlauf;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super GebotsEreignis> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        Abonnement a = new Abonnement(subscriber);
+        abonnements.add(a);
+        // onSubscribe wird wie alle weiteren Signale beim Abarbeiten zugestellt
+        a.planen();
+    }
+
+    /**
+     * Reicht das Ereignis an alle Abonnenten weiter, ohne auf sie zu warten.
+     */
+    public void veroeffentliche(GebotsEreignis ereignis) {
+        if (geschlossen) {
+            L.info("publisher geschlossen, ereignis verworfen: " + ereignis);
+            return;
+        }
+        veroeffentlicht.increment();
+        for (Abonnement a : abonnements) {
+            a.anbieten(ereignis);
+        }
+    }
+
+    /**
+     * Stellt die gepufferten Ereignisse noch zu und beendet dann alle Abonnements mit onComplete.
+     */
+    @Override
+    public void close() {
+        geschlossen = true;
+        for (Abonnement a : abonnements) {
+            a.planen();
+        }
+    }
+
+    public int getAnzahlAbonnenten() {
+        return abonnements.size();
+    }
+
+    public long getVeroeffentlicht() {
+        return veroeffentlicht.sum();
+    }
+
+    /**
+     * Summe ueber alle Abonnenten, die wegen vollem Puffer verworfen oder zusammengefasst wurden.
+     */
+    public long getVerworfen() {
+        return verworfen.sum();
+    }
+
+    private class Abonnement implements Flow.Subscription {
+        private final Flow.Subscriber<? super GebotsEreignis> subscriber;
+        // je nach Ueberlauf-Regel genau einer der beiden Puffer, geschuetzt durch this
+        private final ArrayDeque<GebotsEreignis> schlange;
+        private final LinkedHashMap<Integer, GebotsEreignis> jeAid;
+
+        private final AtomicLong nachfrage = new AtomicLong();
+        // Anzahl ausstehender Anstoesse; nur wer sie von 0 erhoeht, startet das Abarbeiten
+        private final AtomicInteger arbeit = new AtomicInteger();
+        private volatile boolean beendet = false;
+        private volatile Throwable fehler = null;
+        private boolean angemeldet = false;
+
+        Abonnement(Flow.Subscriber<? super GebotsEreignis> subscriber) {
+            this.subscriber = subscriber;
+            if (ueberlauf == Ueberlauf.AELTESTES_VERWERFEN) {
+                schlange = new ArrayDeque<>(Math.min(pufferGroesse, 1024));
+                jeAid = null;
+            } else {
+                schlange = null;
+                jeAid = new LinkedHashMap<>();
+            }
+        }
+
+        void anbieten(GebotsEreignis e) {
+            if (beendet) {
+                return;
+            }
+            synchronized (this) {
+                if (schlange != null) {
+                    if (schlange.size() >= pufferGroesse) {
+                        schlange.pollFirst();
+                        verworfen.increment();
+                    }
+                    schlange.addLast(e);
+                } else {
+                    // put auf einen vorhandenen Schluessel behaelt dessen Position
+                    if (jeAid.put(e.getAid(), e) != null) {
+                        verworfen.increment();
+                    } else if (jeAid.size() > pufferGroesse) {
+                        Iterator<GebotsEreignis> it = jeAid.values().iterator();
+                        it.next();
+                        it.remove();
+                        verworfen.increment();
+                    }
+                }
+            }
+            planen();
+        }
+
+        private synchronized GebotsEreignis naechstes() {
+            if (schlange != null) {
+                return schlange.pollFirst();
+            }
+            Iterator<GebotsEreignis> it = jeAid.values().iterator();
+            if (!it.hasNext()) {
+                return null;
+            }
+            GebotsEreignis e = it.next();
+            it.remove();
+            return e;
+        }
+
+        private synchronized boolean istLeer() {
+            return schlange != null ? schlange.isEmpty() : jeAid.isEmpty();
+        }
+
+        private synchronized void leeren() {
+            if (schlange != null) {
+                schlange.clear();
+            } else {
+                jeAid.clear();
+            }
+        }
+
+        void planen() {
+            if (arbeit.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this::abarbeiten);
+                } catch (RejectedExecutionException e) {
+                    L.error("", e);
+                    cancel();
+                }
+            }
+        }
+
+        private void abarbeiten() {
+            int anstoesse = arbeit.get();
+            do {
+                if (!angemeldet) {
+                    angemeldet = true;
+                    try {
+                        subscriber.onSubscribe(this);
+                    } catch (Throwable t) {
+                        L.error("onSubscribe", t);
+                        cancel();
+                    }
+                }
+                while (!beendet) {
+                    Throwable f = fehler;
+                    if (f != null) {
+                        cancel();
+                        subscriber.onError(f);
+                        break;
+                    }
+                    if (geschlossen && istLeer()) {
+                        cancel();
+                        subscriber.onComplete();
+                        break;
+                    }
+                    if (nachfrage.get() == 0) {
+                        break;
+                    }
+                    GebotsEreignis e = naechstes();
+                    if (e == null) {
+                        break;
+                    }
+                    if (nachfrage.get() != Long.MAX_VALUE) {
+                        nachfrage.decrementAndGet();
+                    }
+                    try {
+                        subscriber.onNext(e);
+                    } catch (Throwable t) {
+                        // ein Abonnent, der in onNext wirft, gilt als abgemeldet
+                        L.error("onNext", t);
+                        cancel();
+                    }
+                }
+                anstoesse = arbeit.addAndGet(-anstoesse);
+            } while (anstoesse != 0);
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fehler = new IllegalArgumentException("request muss positiv sein: " + n);
+            } else {
+                nachfrage.accumulateAndGet(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+            }
+            planen();
+        }
+
+        @Override
+        public void cancel() {
+            beendet = true;
+            abonnements.remove(this);
+            leeren();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GebotsEreignisPublisherTest {
+
+    private static class Sammler implements Flow.Subscriber<GebotsEreignis> {
+        final List<GebotsEreignis> erhalten = new ArrayList<>();
+        Flow.Subscription subscription;
+        boolean beendet = false;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(GebotsEreignis item) {
+            erhalten.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            beendet = true;
+        }
+
+        @Override
+        public void onComplete() {
+            beendet = true;
+        }
+
+        String ergebnis() {
+            StringBuilder sb = new StringBuilder();
+            for (GebotsEreignis e : erhalten) {
+                sb.append(e.getAid()).append(':').append(e.getPreis()).append(' ');
+            }
+            return sb.toString().trim();
+        }
+    }
+
+    private static GebotsEreignis ereignis(int aid, int preis) {
+        return new GebotsEreignis(aid, BigDecimal.valueOf(preis), 1, null);
+    }
+
+    /**
+     * Ohne Nachfrage bleiben nur die neuesten Ereignisse im Puffer.
+     */
+    @org.junit.Test
+    public void aeltestesVerwerfen() {
+        GebotsEreignisPublisher p = new GebotsEreignisPublisher(Runnable::run, 3,
+                GebotsEreignisPublisher.Ueberlauf.AELTESTES_VERWERFEN);
+        Sammler s = new Sammler();
+        p.subscribe(s);
+        for (int i = 1; i <= 5; i++) {
+            p.veroeffentliche(ereignis(1, i));
+        }
+        assertTrue(s.erhalten.isEmpty());
+        s.subscription.request(10);
+        assertEquals("1:3 1:4 1:5", s.ergebnis());
+        assertEquals(2, p.getVerworfen());
+    }
+
+    /**
+     * Je AID wird nur der neueste Preis zugestellt, die Reihenfolge richtet sich nach dem aeltesten Eintrag.
+     */
+    @org.junit.Test
+    public void jeAidZusammenfassen() {
+        GebotsEreignisPublisher p = new GebotsEreignisPublisher(Runnable::run, 2,
+                GebotsEreignisPublisher.Ueberlauf.JE_AID_ZUSAMMENFASSEN);
+        Sammler s = new Sammler();
+        p.subscribe(s);
+        p.veroeffentliche(ereignis(1, 10));
+        p.veroeffentliche(ereignis(2, 10));
+        p.veroeffentliche(ereignis(1, 11));
+        s.subscription.request(1);
+        p.veroeffentliche(ereignis(3, 10));
+        p.veroeffentliche(ereignis(2, 12));
+        s.subscription.request(Long.MAX_VALUE);
+        assertEquals("1:11 2:12 3:10", s.ergebnis());
+    }
+
+    /**
+     * Nach close werden gepufferte Ereignisse noch zugestellt, danach folgt onComplete.
+     */
+    @org.junit.Test
+    public void schliessen() {
+        GebotsEreignisPublisher p = new GebotsEreignisPublisher(Runnable::run, 8,
+                GebotsEreignisPublisher.Ueberlauf.AELTESTES_VERWERFEN);
+        Sammler s = new Sammler();
+        p.subscribe(s);
+        p.veroeffentliche(ereignis(1, 1));
+        p.close();
+        assertEquals(false, s.beendet);
+        s.subscription.request(1);
+        assertEquals("1:1", s.ergebnis());
+        assertTrue(s.beendet);
+        assertEquals(0, p.getAnzahlAbonnenten());
+    }
+}
@@ -0,0 +1,36 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import de.htwberlin.dbtech.exceptions.UeberlastException;
+import de.htwberlin.dbtech.utils.AdaptivesLimit;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+
+/**
+ * Leitet Gebote nur im Rahmen eines {@link AdaptivesLimit} an den eigentlichen Dienst weiter. Das Limit wird
+ * ueblicherweise von allen Instanzen geteilt, die auf dieselbe Datenbank zugreifen; ueberzaehlige Gebote
+ * werden mit {@link UeberlastException} abgelehnt.
+ */
+public class LimitierterAuktionsService implements IAuktionsService {
+    private final IAuktionsService dienst;
+    private final AdaptivesLimit limit;
+
+    public LimitierterAuktionsService(IAuktionsService dienst, AdaptivesLimit limit) {
+        this.dienst = dienst;
+        this.limit = limit;
+    }
+
+    @Override
+    public void setConnection(Connection connection) {
+        dienst.setConnection(connection);
+    }
+
+    @Override
+    public void biete(Integer aid, BigDecimal angebotspreis) {
+        limit.ausfuehren(() -> dienst.biete(aid, angebotspreis));
+    }
+
+    public AdaptivesLimit getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,174 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import de.htwberlin.dbtech.utils.mapper.Spalten;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Vergleicht das Abbilden von Gebot-Zeilen: von Hand ueber Spaltennamen wie bisher im GebotFinder, per
+ * Reflection und mit dem erzeugten {@link GebotMapper}.
+ * <p>
+ * Gelesen wird aus einem ResultSet im Speicher, das Spaltennamen wie ein Treiber je Aufruf gross schreibt und
+ * nachschlaegt; gemessen wird also nur das Abbilden ohne Netz und Datenbank. Je Variante wird erst aufgewaermt,
+ * dann werden mehrere Durchlaeufe gemessen und der beste ausgegeben.
+ * <p>
+ * Aufruf: MapperBenchmark [zeilen] [durchlaeufe]
+ */
+public class MapperBenchmark {
+
+    private static final String[] SPALTEN = {"GID", "AID", "GEBOTSZEITPUNKT", "GEBOTSPREIS", "BIETER"};
+
+    private interface Variante {
+        Gebot abbilden(ResultSet rs) throws SQLException;
+    }
+
+    private interface VarianteFabrik {
+        Variante fuer(ResultSet rs) throws SQLException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int zeilen = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int durchlaeufe = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        Object[][] daten = new Object[zeilen][];
+        for (int i = 0; i < zeilen; i++) {
+            daten[i] = new Object[]{i + 1, i / 10 + 1, new Timestamp(1_700_000_000_000L + i * 1000L),
+                    BigDecimal.valueOf(100 + i, 2), i % 4 == 0 ? "bieter" + (i % 100) : null};
+        }
+        Map<String, VarianteFabrik> varianten = new LinkedHashMap<>();
+        varianten.put("von Hand", rs -> MapperBenchmark::vonHand);
+        varianten.put("Reflection", Reflektiv::new);
+        varianten.put("erzeugt", rs -> new GebotMapper(rs)::abbilden);
+        for (Map.Entry<String, VarianteFabrik> v : varianten.entrySet()) {
+            messe(v.getKey(), v.getValue(), daten, durchlaeufe);
+        }
+    }
+
+    private static void messe(String name, VarianteFabrik fabrik, Object[][] daten, int durchlaeufe)
+            throws SQLException {
+        long besteNanos = Long.MAX_VALUE;
+        long pruefsumme = 0;
+        for (int d = -durchlaeufe; d < durchlaeufe; d++) {
+            ResultSet rs = resultSet(daten);
+            long start = System.nanoTime();
+            Variante v = fabrik.fuer(rs);
+            List<Gebot> gebote = new ArrayList<>(daten.length);
+            while (rs.next()) {
+                gebote.add(v.abbilden(rs));
+            }
+            long nanos = System.nanoTime() - start;
+            // negative Durchlaeufe waermen nur auf
+            if (d >= 0) {
+                besteNanos = Math.min(besteNanos, nanos);
+            }
+            pruefsumme += gebote.get(gebote.size() - 1).getGid();
+        }
+        System.out.printf("%-12s %8.1f ns/zeile  %,12.0f zeilen/s  (pruefsumme %d)%n", name,
+                (double) besteNanos / daten.length, daten.length * 1e9 / besteNanos, pruefsumme);
+    }
+
+    private static Gebot vonHand(ResultSet rs) throws SQLException {
+        Gebot g = new Gebot();
+        g.setGid(rs.getInt("GID"));
+        g.setAid(rs.getInt("AID"));
+        g.setGebotsZeitpunkt(rs.getTimestamp("GebotsZeitpunkt"));
+        g.setGebotsPreis(rs.getBigDecimal("GebotsPreis"));
+        g.setBieter(rs.getString("Bieter"));
+        return g;
+    }
+
+    // uebliches Abbilden per Reflection: Felder nach Spaltennamen einmal suchen, je Zeile per Field.set setzen
+    private static final class Reflektiv implements Variante {
+        private final Field[] felder;
+        private final int[] indizes;
+
+        Reflektiv(ResultSet rs) throws SQLException {
+            Spalten spalten = Spalten.von(rs);
+            List<Field> f = new ArrayList<>();
+            List<Integer> i = new ArrayList<>();
+            for (Field feld : Gebot.class.getDeclaredFields()) {
+                int index = spalten.index(feld.getName());
+                if (index > 0 && !Modifier.isStatic(feld.getModifiers())) {
+                    feld.setAccessible(true);
+                    f.add(feld);
+                    i.add(index);
+                }
+            }
+            felder = f.toArray(new Field[0]);
+            indizes = i.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        @Override
+        public Gebot abbilden(ResultSet rs) throws SQLException {
+            Gebot g = new Gebot();
+            try {
+                for (int k = 0; k < felder.length; k++) {
+                    felder[k].set(g, rs.getObject(indizes[k], felder[k].getType()));
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+            return g;
+        }
+    }
+
+    // ResultSet ueber einem Array; Zugriffe ueber den Namen werden wie im Treiber je Aufruf aufgeloest
+    private static ResultSet resultSet(Object[][] daten) {
+        Map<String, Integer> indizes = new HashMap<>();
+        for (int i = 0; i < SPALTEN.length; i++) {
+            indizes.put(SPALTEN[i], i + 1);
+        }
+        int[] zeile = {-1};
+        boolean[] warNull = {false};
+        ResultSetMetaData md = (ResultSetMetaData) Proxy.newProxyInstance(MapperBenchmark.class.getClassLoader(),
+                new Class<?>[]{ResultSetMetaData.class}, (p, m, a) -> {
+                    switch (m.getName()) {
+                        case "getColumnCount":
+                            return SPALTEN.length;
+                        case "getColumnLabel":
+                            return SPALTEN[(Integer) a[0] - 1];
+                        default:
+                            throw new UnsupportedOperationException(m.getName());
+                    }
+                });
+        return (ResultSet) Proxy.newProxyInstance(MapperBenchmark.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (p, m, a) -> {
+                    if (m.getName().equals("next")) {
+                        return ++zeile[0] < daten.length;
+                    }
+                    if (m.getName().equals("getMetaData")) {
+                        return md;
+                    }
+                    if (m.getName().equals("wasNull")) {
+                        return warNull[0];
+                    }
+                    int index = a[0] instanceof String
+                            ? indizes.get(((String) a[0]).toUpperCase(Locale.ROOT)) : (Integer) a[0];
+                    Object wert = daten[zeile[0]][index - 1];
+                    warNull[0] = wert == null;
+                    switch (m.getName()) {
+                        case "getInt":
+                            return wert == null ? 0 : wert;
+                        case "getTimestamp":
+                        case "getBigDecimal":
+                        case "getString":
+                        case "getObject":
+                            return wert;
+                        default:
+                            throw new UnsupportedOperationException(m.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,47 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+/**
+ * Betrag, bis zu dem fuer einen Bieter automatisch geboten wird.
+ */
+public class Maximalgebot {
+    private final int aid;
+    private final String bieter;
+    private final BigDecimal maxPreis;
+    // bei gleichem Maximalbetrag gewinnt das fruehere; null bei neuen Maximalgeboten
+    private final Timestamp zeitpunkt;
+
+    public Maximalgebot(int aid, String bieter, BigDecimal maxPreis) {
+        this(aid, bieter, maxPreis, null);
+    }
+
+    public Maximalgebot(int aid, String bieter, BigDecimal maxPreis, Timestamp zeitpunkt) {
+        this.aid = aid;
+        this.bieter = bieter;
+        this.maxPreis = maxPreis;
+        this.zeitpunkt = zeitpunkt;
+    }
+
+    public int getAid() {
+        return aid;
+    }
+
+    public String getBieter() {
+        return bieter;
+    }
+
+    public BigDecimal getMaxPreis() {
+        return maxPreis;
+    }
+
+    public Timestamp getZeitpunkt() {
+        return zeitpunkt;
+    }
+
+    @Override
+    public String toString() {
+        return "Maximalgebot [aid=" + aid + ", bieter=" + bieter + ", maxPreis=" + maxPreis + ", zeitpunkt=" + zeitpunkt + "]";
+    }
+}
@@ -0,0 +1,37 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import java.util.List;
+
+/**
+ * Eine Seite einer nach Schluessel sortierten Abfrage. Der letzte Eintrag dient als Cursor fuer die
+ * naechste Seite.
+ */
+public class Seite<T> {
+    private final List<T> eintraege;
+    private final boolean weitere;
+
+    public Seite(List<T> eintraege, boolean weitere) {
+        this.eintraege = eintraege;
+        this.weitere = weitere;
+    }
+
+    public List<T> getEintraege() {
+        return eintraege;
+    }
+
+    public boolean hatWeitere() {
+        return weitere;
+    }
+
+    /**
+     * Letzter Eintrag der Seite oder null, wenn die Seite leer ist.
+     */
+    public T getLetzter() {
+        return eintraege.isEmpty() ? null : eintraege.get(eintraege.size() - 1);
+    }
+
+    @Override
+    public String toString() {
+        return "Seite [eintraege=" + eintraege.size() + ", weitere=" + weitere + "]";
+    }
+}
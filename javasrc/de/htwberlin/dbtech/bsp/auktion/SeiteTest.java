@@ -0,0 +1,142 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import de.htwberlin.dbtech.utils.DbCred;
+import de.htwberlin.dbtech.utils.DbUnitUtils;
+import org.dbunit.IDatabaseTester;
+import org.dbunit.JdbcDatabaseTester;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.csv.CsvDataSet;
+import org.dbunit.operation.DatabaseOperation;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.runners.MethodSorters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keyset-Blaettern in {@link AngebotFinder#findOffeneSeite} und {@link GebotFinder#findSeiteByAid}. In
+ * test-data/auktion-seiten enden die Auktionen 2, 3 und 6 gleichzeitig, ebenso die Gebote 10, 12 und 13 auf
+ * Auktion 3; Seitengrenzen liegen so auch mitten in einer Gruppe mit gleichem Sortierschluessel.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class SeiteTest {
+    private static final Logger L = LoggerFactory.getLogger(SeiteTest.class);
+    private static IDatabaseConnection dbTesterCon = null;
+
+    private static final AngebotFinder af = new AngebotFinder();
+    private static final GebotFinder gf = new GebotFinder();
+
+    @BeforeClass
+    public static void setUp() {
+        L.debug("setup: start");
+        try {
+            IDatabaseTester dbTester = new JdbcDatabaseTester(DbCred.driverClass, DbCred.url, DbCred.user, DbCred.password,
+                    DbCred.schema);
+            dbTesterCon = dbTester.getConnection();
+            IDataSet pre = new CsvDataSet(new File("test-data/auktion-seiten"));
+            dbTester.setDataSet(pre);
+            DatabaseOperation.CLEAN_INSERT.execute(dbTesterCon, pre);
+            af.setConnection(dbTesterCon.getConnection());
+            gf.setConnection(dbTesterCon.getConnection());
+        } catch (Exception e) {
+            DbUnitUtils.closeDbUnitConnectionQuietly(dbTesterCon);
+            throw new RuntimeException(e);
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        L.debug("tearDown: start");
+        DbUnitUtils.closeDbUnitConnectionQuietly(dbTesterCon);
+    }
+
+    /**
+     * Die Seitengrenze faellt zwischen gleichzeitig endende Auktionen; beendete Auktionen fehlen.
+     */
+    @org.junit.Test
+    public void aaaAngeboteGleichstandAnDerSeitengrenze() {
+        Assert.assertEquals("seiten falsch:", List.of(List.of(2, 3), List.of(6, 1), List.of(4, 7)), angebotsSeiten(2));
+    }
+
+    /**
+     * Die Seitengrenze faellt genau ans Ende einer Gruppe, die letzte Seite ist voll.
+     */
+    @org.junit.Test
+    public void bbbAngeboteSeitengrenzeAmGruppenende() {
+        Assert.assertEquals("seiten falsch:", List.of(List.of(2, 3, 6), List.of(1, 4, 7)), angebotsSeiten(3));
+        Seite<Angebot> zweite = af.findOffeneSeite(af.findOffeneSeite(null, 3).getLetzter(), 3);
+        Seite<Angebot> danach = af.findOffeneSeite(zweite.getLetzter(), 3);
+        Assert.assertTrue("nach der letzten Seite nicht leer:", danach.getEintraege().isEmpty());
+        Assert.assertFalse("weitere falsch:", danach.hatWeitere());
+    }
+
+    /**
+     * Die letzte Seite ist kuerzer als die Seitengroesse.
+     */
+    @org.junit.Test
+    public void cccAngeboteKurzeLetzteSeite() {
+        Assert.assertEquals("seiten falsch:", List.of(List.of(2, 3, 6, 1), List.of(4, 7)), angebotsSeiten(4));
+    }
+
+    /**
+     * Gebote mit gleichem Zeitpunkt werden nach GID geblaettert; Gebote ohne Zeitpunkt und die anderer
+     * Auktionen fehlen.
+     */
+    @org.junit.Test
+    public void dddGeboteGleichstandAnDerSeitengrenze() {
+        Assert.assertEquals("seiten falsch:", List.of(List.of(11, 10), List.of(12, 13), List.of(15)), gebotsSeiten(3, 2));
+    }
+
+    /**
+     * Alle Gebote passen auf eine Seite, danach und fuer eine Auktion ohne Gebote gibt es eine leere Seite.
+     */
+    @org.junit.Test
+    public void eeeGeboteLeereSeite() {
+        Assert.assertEquals("seiten falsch:", List.of(List.of(11, 10, 12, 13, 15)), gebotsSeiten(3, 5));
+        Seite<Gebot> erste = gf.findSeiteByAid(3, null, 5);
+        Seite<Gebot> danach = gf.findSeiteByAid(3, erste.getLetzter(), 5);
+        Assert.assertTrue("nach der letzten Seite nicht leer:", danach.getEintraege().isEmpty());
+        Assert.assertFalse("weitere falsch:", danach.hatWeitere());
+        Assert.assertEquals("seiten falsch:", List.of(List.of()), gebotsSeiten(4, 2));
+    }
+
+    // blaettert bis zur letzten Seite; alle Seiten davor muessen voll sein
+    private static List<List<Integer>> angebotsSeiten(int groesse) {
+        List<List<Integer>> seiten = new ArrayList<>();
+        Angebot nach = null;
+        while (true) {
+            Seite<Angebot> s = af.findOffeneSeite(nach, groesse);
+            List<Integer> aids = new ArrayList<>();
+            s.getEintraege().forEach(a -> aids.add(a.getAid()));
+            seiten.add(aids);
+            if (!s.hatWeitere()) {
+                return seiten;
+            }
+            Assert.assertEquals("seite nicht voll:", groesse, aids.size());
+            nach = s.getLetzter();
+        }
+    }
+
+    private static List<List<Integer>> gebotsSeiten(Integer aid, int groesse) {
+        List<List<Integer>> seiten = new ArrayList<>();
+        Gebot nach = null;
+        while (true) {
+            Seite<Gebot> s = gf.findSeiteByAid(aid, nach, groesse);
+            List<Integer> gids = new ArrayList<>();
+            s.getEintraege().forEach(g -> gids.add(g.getGid()));
+            seiten.add(gids);
+            if (!s.hatWeitere()) {
+                return seiten;
+            }
+            Assert.assertEquals("seite nicht voll:", groesse, gids.size());
+            nach = s.getLetzter();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchisches Timer-Rad fuer Auktionsenden.
+ * <p>
+ * Jede Stufe hat 64 Slots, ein Slot der Stufe n umfasst 64^n Ticks. Einplanen ist O(1), beim Vorruecken
+ * werden Eintraege hoeherer Stufen in die darunterliegenden Stufen umgehaengt, sobald ihr Block erreicht ist.
+ * Eintraege jenseits der obersten Stufe liegen in einer Ueberlaufliste.
+ * <p>
+ * Die Klasse ist nicht threadsicher.
+ */
+public class TimerRad {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASKE = SLOTS - 1;
+    private static final int STUFEN = 4;
+
+    private static final class Eintrag {
+        final int aid;
+        final long tick;
+
+        Eintrag(int aid, long tick) {
+            this.aid = aid;
+            this.tick = tick;
+        }
+    }
+
+    private final long tickMillis;
+    private final List<List<Eintrag>> slots = new ArrayList<>(STUFEN * SLOTS);
+    private List<Eintrag> ueberlauf = new ArrayList<>();
+    private List<Eintrag> sofortFaellig = new ArrayList<>();
+    private long aktuellerTick;
+    private int anzahl = 0;
+
+    public TimerRad(long tickMillis, long startMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis muss positiv sein: " + tickMillis);
+        }
+        this.tickMillis = tickMillis;
+        this.aktuellerTick = Math.floorDiv(startMillis, tickMillis);
+        for (int i = 0; i < STUFEN * SLOTS; i++) {
+            slots.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Plant eine Auktion ein. Sie wird mit dem ersten Tick faellig, der nach endeMillis beginnt,
+     * denn Gebote genau zum Endezeitpunkt sind noch zulaessig.
+     */
+    public void einplanen(int aid, long endeMillis) {
+        einhaengen(new Eintrag(aid, Math.floorDiv(endeMillis, tickMillis) + 1));
+        anzahl++;
+    }
+
+    /**
+     * Rueckt das Rad bis jetztMillis vor und liefert alle dabei faellig gewordenen AIDs.
+     */
+    public List<Integer> vorruecken(long jetztMillis) {
+        List<Integer> faellig = new ArrayList<>();
+        long zielTick = Math.floorDiv(jetztMillis, tickMillis);
+        while (aktuellerTick < zielTick) {
+            aktuellerTick++;
+            kaskadieren();
+            List<Eintrag> slot = slot(0, aktuellerTick);
+            for (Eintrag e : slot) {
+                faellig.add(e.aid);
+            }
+            slot.clear();
+        }
+        // beim Kaskadieren koennen Eintraege genau auf dem aktuellen Tick landen
+        for (Eintrag e : sofortFaellig) {
+            faellig.add(e.aid);
+        }
+        sofortFaellig = new ArrayList<>();
+        anzahl -= faellig.size();
+        return faellig;
+    }
+
+    public int anzahl() {
+        return anzahl;
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    private void kaskadieren() {
+        if ((aktuellerTick & ((1L << (SLOT_BITS * STUFEN)) - 1)) == 0 && !ueberlauf.isEmpty()) {
+            List<Eintrag> alt = ueberlauf;
+            ueberlauf = new ArrayList<>();
+            alt.forEach(this::einhaengen);
+        }
+        // von oben nach unten, damit umgehaengte Eintraege im selben Tick weiter nach unten wandern
+        for (int stufe = STUFEN - 1; stufe >= 1; stufe--) {
+            if ((aktuellerTick & ((1L << (SLOT_BITS * stufe)) - 1)) == 0) {
+                List<Eintrag> slot = slot(stufe, aktuellerTick);
+                if (!slot.isEmpty()) {
+                    List<Eintrag> umzuhaengen = new ArrayList<>(slot);
+                    slot.clear();
+                    umzuhaengen.forEach(this::einhaengen);
+                }
+            }
+        }
+    }
+
+    private void einhaengen(Eintrag e) {
+        if (e.tick <= aktuellerTick) {
+            sofortFaellig.add(e);
+            return;
+        }
+        // kleinste Stufe, in deren Umlauf der Tick noch liegt
+        for (int stufe = 0; stufe < STUFEN; stufe++) {
+            int shift = SLOT_BITS * (stufe + 1);
+            if ((e.tick >>> shift) == (aktuellerTick >>> shift)) {
+                slot(stufe, e.tick).add(e);
+                return;
+            }
+        }
+        ueberlauf.add(e);
+    }
+
+    private List<Eintrag> slot(int stufe, long tick) {
+        int index = (int) ((tick >>> (SLOT_BITS * stufe)) & SLOT_MASKE);
+        return slots.get(stufe * SLOTS + index);
+    }
+}
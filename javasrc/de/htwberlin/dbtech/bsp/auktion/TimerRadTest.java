@@ -0,0 +1,76 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimerRadTest {
+    private static final long START = 1_000_000L;
+
+    /**
+     * Eine Auktion wird erst nach ihrem Endezeitpunkt faellig.
+     */
+    @org.junit.Test
+    public void faelligNachEnde() {
+        TimerRad rad = new TimerRad(1000, START);
+        rad.einplanen(1, START + 5000);
+        assertTrue(rad.vorruecken(START + 5000).isEmpty());
+        assertEquals(List.of(1), rad.vorruecken(START + 6000));
+        assertEquals(0, rad.anzahl());
+    }
+
+    /**
+     * Bereits beendete Auktionen werden beim naechsten Vorruecken geliefert.
+     */
+    @org.junit.Test
+    public void vergangenesEndeSofortFaellig() {
+        TimerRad rad = new TimerRad(1000, START);
+        rad.einplanen(7, START - 60_000);
+        assertEquals(List.of(7), rad.vorruecken(START));
+    }
+
+    /**
+     * Eintraege in hoeheren Stufen und im Ueberlauf werden weder zu frueh noch zu spaet geliefert.
+     */
+    @org.junit.Test
+    public void kaskadierung() {
+        long tick = 1000;
+        TimerRad rad = new TimerRad(tick, START);
+        Random r = new Random(42);
+        int n = 5000;
+        long[] ende = new long[n];
+        for (int aid = 0; aid < n; aid++) {
+            // bis ueber die oberste Stufe (64^4 Ticks) hinaus
+            ende[aid] = START + (long) (r.nextDouble() * 20_000_000L) * tick;
+            rad.einplanen(aid, ende[aid]);
+        }
+        List<Integer> geliefert = new ArrayList<>();
+        long jetzt = START;
+        while (geliefert.size() < n) {
+            jetzt += 997 * tick;
+            for (Integer aid : rad.vorruecken(jetzt)) {
+                assertTrue("zu frueh: " + aid, ende[aid] < jetzt);
+                assertTrue("zu spaet: " + aid, ende[aid] >= jetzt - 998 * tick);
+                geliefert.add(aid);
+            }
+        }
+        assertEquals(n, geliefert.size());
+        assertEquals(0, rad.anzahl());
+    }
+
+    /**
+     * Viele Auktionen mit demselben Ende werden in einem Schritt geliefert.
+     */
+    @org.junit.Test
+    public void vieleGleichzeitig() {
+        TimerRad rad = new TimerRad(1000, START);
+        for (int aid = 0; aid < 50_000; aid++) {
+            rad.einplanen(aid, START + 90_000 + aid % 1000);
+        }
+        assertEquals(0, rad.vorruecken(START + 90_000).size());
+        assertEquals(50_000, rad.vorruecken(START + 91_000).size());
+    }
+}
@@ -0,0 +1,190 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.exceptions.ServiceException;
+import de.htwberlin.dbtech.exceptions.VersionskonfliktException;
+import de.htwberlin.dbtech.utils.JdbcUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit of Work fuer Angebote und Gebote.
+ * <p>
+ * Enthaelt die Identity Map der geladenen Objekte und die neu angelegten Gebote. {@link #flush()} schreibt alle
+ * geaenderten Angebote und Gebote sowie die neuen Gebote als JDBC-Batches in einer Transaktion. Angebote
+ * werden dabei wie in {@link Angebot#update()} per Version geprueft. Nach einem Fehler ist der Stand der Objekte
+ * nicht mehr verlaesslich, die Unit of Work sollte dann verworfen werden.
+ */
+public class UnitOfWork {
+    private static final Logger L = LoggerFactory.getLogger(UnitOfWork.class);
+
+    private Connection connection = null;
+
+    private final Map<Integer, Angebot> angebote = new HashMap<>();
+    private final Map<Integer, Gebot> gebote = new HashMap<>();
+    private final List<Gebot> neueGebote = new ArrayList<>();
+
+    public void setConnection(Connection connection) {
+        this.connection = connection;
+    }
+
+    private Connection useConnection() {
+        if (connection == null) {
+            throw new ServiceException("Service hat keine Connection");
+        }
+        return connection;
+    }
+
+    public AngebotFinder angebotFinder() {
+        AngebotFinder f = new AngebotFinder();
+        f.setConnection(useConnection());
+        f.setUnitOfWork(this);
+        return f;
+    }
+
+    public GebotFinder gebotFinder() {
+        GebotFinder f = new GebotFinder();
+        f.setConnection(useConnection());
+        f.setUnitOfWork(this);
+        return f;
+    }
+
+    Angebot getAngebot(Integer aid) {
+        return angebote.get(aid);
+    }
+
+    Gebot getGebot(Integer gid) {
+        return gebote.get(gid);
+    }
+
+    // liefert das bereits bekannte Objekt, falls die AID schon geladen wurde
+    Angebot registriere(Angebot a) {
+        Angebot vorhanden = angebote.putIfAbsent(a.getAid(), a);
+        return vorhanden == null ? a : vorhanden;
+    }
+
+    Gebot registriere(Gebot g) {
+        Gebot vorhanden = gebote.putIfAbsent(g.getGid(), g);
+        return vorhanden == null ? g : vorhanden;
+    }
+
+    /**
+     * Merkt ein neues Gebot zum Einfuegen beim naechsten {@link #flush()} vor.
+     */
+    public void registriereNeu(Gebot g) {
+        g.setConnection(useConnection());
+        neueGebote.add(g);
+    }
+
+    public void flush() {
+        List<Angebot> geaenderteAngebote = new ArrayList<>();
+        angebote.values().stream().filter(Angebot::istGeaendert).forEach(geaenderteAngebote::add);
+        List<Gebot> geaenderteGebote = new ArrayList<>();
+        gebote.values().stream().filter(Gebot::istGeaendert).forEach(geaenderteGebote::add);
+        if (geaenderteAngebote.isEmpty() && geaenderteGebote.isEmpty() && neueGebote.isEmpty()) {
+            return;
+        }
+        L.info("angebote: " + geaenderteAngebote.size() + "  gebote: " + geaenderteGebote.size()
+                + "  neue gebote: " + neueGebote.size());
+
+        JdbcUtils.executeInTransaction(useConnection(), () -> {
+            schreibeAngebote(geaenderteAngebote);
+            schreibeGebote(geaenderteGebote);
+            fuegeGeboteEin(neueGebote);
+        });
+
+        // erst nach dem Commit den neuen Stand uebernehmen
+        geaenderteAngebote.forEach(Angebot::nachUpdate);
+        geaenderteGebote.forEach(Gebot::alsUnveraendertMarkieren);
+        for (Gebot g : neueGebote) {
+            g.alsUnveraendertMarkieren();
+            registriere(g);
+        }
+        neueGebote.clear();
+    }
+
+    /**
+     * Vergisst alle geladenen Objekte und nicht geschriebenen Aenderungen.
+     */
+    public void verwerfen() {
+        angebote.clear();
+        gebote.clear();
+        neueGebote.clear();
+    }
+
+    private void schreibeAngebote(List<Angebot> geaendert) {
+        // ein Batch je Kombination geaenderter Spalten
+        Map<Integer, List<Angebot>> nachSpalten = new LinkedHashMap<>();
+        for (Angebot a : geaendert) {
+            nachSpalten.computeIfAbsent(a.getGeaenderteSpalten(), k -> new ArrayList<>()).add(a);
+        }
+        for (Map.Entry<Integer, List<Angebot>> e : nachSpalten.entrySet()) {
+            String sql = Angebot.updateSql(e.getKey());
+            L.info(sql);
+            List<Angebot> batch = e.getValue();
+            try (PreparedStatement ps = useConnection().prepareStatement(sql)) {
+                for (Angebot a : batch) {
+                    a.bindeUpdate(ps);
+                    ps.addBatch();
+                }
+                int[] anzahl = ps.executeBatch();
+                for (int i = 0; i < anzahl.length; i++) {
+                    // SUCCESS_NO_INFO liefern aeltere Treiber, dann ist keine Pruefung moeglich
+                    if (anzahl[i] == 0) {
+                        Angebot a = batch.get(i);
+                        throw new VersionskonfliktException("Angebot " + a.getAid() + " wurde geaendert, gelesene Version: " + a.getVersion());
+                    }
+                }
+            } catch (SQLException ex) {
+                L.error("", ex);
+                throw new DataException(ex);
+            }
+        }
+    }
+
+    private void schreibeGebote(List<Gebot> geaendert) {
+        Map<Integer, List<Gebot>> nachSpalten = new LinkedHashMap<>();
+        for (Gebot g : geaendert) {
+            nachSpalten.computeIfAbsent(g.getGeaenderteSpalten(), k -> new ArrayList<>()).add(g);
+        }
+        for (Map.Entry<Integer, List<Gebot>> e : nachSpalten.entrySet()) {
+            String sql = Gebot.updateSql(e.getKey());
+            L.info(sql);
+            try (PreparedStatement ps = useConnection().prepareStatement(sql)) {
+                for (Gebot g : e.getValue()) {
+                    g.bindeUpdate(ps);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            } catch (SQLException ex) {
+                L.error("", ex);
+                throw new DataException(ex);
+            }
+        }
+    }
+
+    private void fuegeGeboteEin(List<Gebot> neu) {
+        if (neu.isEmpty()) {
+            return;
+        }
+        L.info(Gebot.INSERT_SQL);
+        try (PreparedStatement ps = useConnection().prepareStatement(Gebot.INSERT_SQL)) {
+            for (Gebot g : neu) {
+                g.bindeInsert(ps);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        } catch (SQLException ex) {
+            throw Gebot.insertFehler(ex, neu.size() + " neue Gebote");
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package de.htwberlin.dbtech.bsp.auktion.last;
+
+import de.htwberlin.dbtech.exceptions.AuktionBeendetException;
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.exceptions.GebotZuSpaetException;
+import de.htwberlin.dbtech.exceptions.GebotsKonfliktException;
+import de.htwberlin.dbtech.exceptions.GebotspreisZuNiedrigException;
+import de.htwberlin.dbtech.exceptions.UeberlastException;
+
+/**
+ * Grund, aus dem ein Gebot unter Last abgelehnt wurde, abgeleitet aus der Art der Ausnahme des Dienstes.
+ */
+public enum Ablehnung {
+    ZU_NIEDRIG, BEENDET, KONFLIKT, UEBERLAST, ZU_SPAET, DATENFEHLER, SONSTIGE;
+
+    public static Ablehnung von(RuntimeException e) {
+        if (e instanceof UeberlastException) {
+            return UEBERLAST;
+        }
+        if (e instanceof GebotZuSpaetException) {
+            return ZU_SPAET;
+        }
+        if (e instanceof GebotspreisZuNiedrigException) {
+            return ZU_NIEDRIG;
+        }
+        if (e instanceof AuktionBeendetException) {
+            return BEENDET;
+        }
+        if (e instanceof GebotsKonfliktException) {
+            return KONFLIKT;
+        }
+        if (e instanceof DataException) {
+            return DATENFEHLER;
+        }
+        return SONSTIGE;
+    }
+}
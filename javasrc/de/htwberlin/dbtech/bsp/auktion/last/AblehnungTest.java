@@ -0,0 +1,40 @@
+package de.htwberlin.dbtech.bsp.auktion.last;
+
+import de.htwberlin.dbtech.exceptions.AuktionBeendetException;
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.exceptions.GebotZuSpaetException;
+import de.htwberlin.dbtech.exceptions.GebotsKonfliktException;
+import de.htwberlin.dbtech.exceptions.GebotspreisZuNiedrigException;
+import de.htwberlin.dbtech.exceptions.ServiceException;
+import de.htwberlin.dbtech.exceptions.UeberlastException;
+import de.htwberlin.dbtech.exceptions.VersionskonfliktException;
+
+import static org.junit.Assert.assertEquals;
+
+public class AblehnungTest {
+
+    /**
+     * Eingeteilt wird nach der Art der Ausnahme, nicht nach dem Text der Meldung.
+     */
+    @org.junit.Test
+    public void nachArt() {
+        assertEquals(Ablehnung.ZU_NIEDRIG, Ablehnung.von(new GebotspreisZuNiedrigException("anders formuliert")));
+        assertEquals(Ablehnung.BEENDET, Ablehnung.von(new AuktionBeendetException("Auktion bereits beendet: 1")));
+        assertEquals(Ablehnung.KONFLIKT, Ablehnung.von(new GebotsKonfliktException("x",
+                new VersionskonfliktException("Angebot 1 wurde geaendert"))));
+        assertEquals(Ablehnung.UEBERLAST, Ablehnung.von(new UeberlastException("voll")));
+        assertEquals(Ablehnung.ZU_SPAET, Ablehnung.von(new GebotZuSpaetException(1, 0)));
+        assertEquals(Ablehnung.DATENFEHLER, Ablehnung.von(new VersionskonfliktException("Angebot 1 wurde geaendert")));
+        assertEquals(Ablehnung.DATENFEHLER, Ablehnung.von(new DataException("kaputt")));
+    }
+
+    /**
+     * Eine ServiceException mit dem Text einer bekannten Ablehnung zaehlt nicht als diese.
+     */
+    @org.junit.Test
+    public void textAlleinZaehltNicht() {
+        assertEquals(Ablehnung.SONSTIGE, Ablehnung.von(new ServiceException("Gebotspreis zu niedrig")));
+        assertEquals(Ablehnung.SONSTIGE, Ablehnung.von(new ServiceException("AID existiert nicht: 7")));
+        assertEquals(Ablehnung.SONSTIGE, Ablehnung.von(new IllegalStateException()));
+    }
+}
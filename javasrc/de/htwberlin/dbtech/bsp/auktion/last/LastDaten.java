@@ -0,0 +1,130 @@
+package de.htwberlin.dbtech.bsp.auktion.last;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.SplittableRandom;
+
+/**
+ * Legt Angebote und Gebote in einem eigenen AID-Bereich an und loescht sie wieder.
+ * <p>
+ * Artikelbezeichnungen und Mindestpreise folgen den Daten aus db/auktion/data-insert.sql. Jedes Angebot hat
+ * einige aeltere Gebote, AktuellerPreis und AnzahlGebote sind dazu passend gesetzt. Ein Teil der Angebote
+ * (jedes teiler-te) endet nach einer vorgegebenen Anzahl Sekunden, die uebrigen in 30 Tagen.
+ */
+public class LastDaten {
+    private static final Logger L = LoggerFactory.getLogger(LastDaten.class);
+
+    private static final String[] ARTIKEL = {"Harry Potter Band 1", "Game of Thrones, Staffel 1",
+            "Avengers: Age of Ultron", "Homeland, Staffel 1", "Das Boot", "Inception", "Enders Game"};
+    private static final int BATCH = 1000;
+
+    private final Connection connection;
+    private final int aidBasis;
+    private final int anzahl;
+
+    public LastDaten(Connection connection, int aidBasis, int anzahl) {
+        this.connection = connection;
+        this.aidBasis = aidBasis;
+        this.anzahl = anzahl;
+    }
+
+    public int getAidBasis() {
+        return aidBasis;
+    }
+
+    public int getAnzahl() {
+        return anzahl;
+    }
+
+    /**
+     * Ob das Angebot mit Index i (0..anzahl-1) zu den bald endenden gehoert.
+     */
+    public static boolean endetBald(int i, int teiler) {
+        return i % teiler == 0;
+    }
+
+    /**
+     * Ersetzt den AID-Bereich durch neue Angebote mit je gebote Geboten.
+     *
+     * @return AktuellerPreis je Angebot in Cent, Index = AID - aidBasis
+     */
+    public long[] anlegen(int gebote, int teiler, int endeInSekunden, long seed) {
+        loeschen();
+        SplittableRandom zufall = new SplittableRandom(seed);
+        long[] preise = new long[anzahl];
+        String angebotSql = "insert into Angebot (AID, ArtikelBez, AuktionEndeZeitpunkt, AuktionMinPreis, " +
+                "AktuellerPreis, AnzahlGebote) values (?, ?, current_timestamp + numtodsinterval(?, 'SECOND'), ?, ?, ?)";
+        String gebotSql = "insert into Gebot (GID, AID, GebotsZeitpunkt, GebotsPreis) " +
+                "values (?, ?, current_timestamp - numtodsinterval(?, 'SECOND'), ?)";
+        L.info(angebotSql);
+        L.info(gebotSql);
+        try (PreparedStatement psAngebot = connection.prepareStatement(angebotSql);
+             PreparedStatement psGebot = connection.prepareStatement(gebotSql)) {
+            for (int i = 0; i < anzahl; i++) {
+                int aid = aidBasis + i;
+                long minPreis = 100 * (1 + zufall.nextInt(5));
+                long preis = minPreis;
+                for (int j = 0; j < gebote; j++) {
+                    psGebot.setInt(1, aid * 100 + j);
+                    psGebot.setInt(2, aid);
+                    psGebot.setInt(3, (gebote - j) * 60);
+                    psGebot.setBigDecimal(4, BigDecimal.valueOf(preis, 2));
+                    psGebot.addBatch();
+                    preise[i] = preis;
+                    preis += 50 * (1 + zufall.nextInt(4));
+                }
+                psAngebot.setInt(1, aid);
+                psAngebot.setString(2, ARTIKEL[i % ARTIKEL.length] + " #" + aid);
+                psAngebot.setInt(3, endetBald(i, teiler) ? endeInSekunden : 30 * 24 * 3600);
+                psAngebot.setBigDecimal(4, BigDecimal.valueOf(minPreis, 2));
+                psAngebot.setBigDecimal(5, gebote == 0 ? null : BigDecimal.valueOf(preise[i], 2));
+                psAngebot.setInt(6, gebote);
+                psAngebot.addBatch();
+                if ((i + 1) % BATCH == 0 || i == anzahl - 1) {
+                    // Angebote vor ihren Geboten wegen des Fremdschluessels
+                    psAngebot.executeBatch();
+                    psGebot.executeBatch();
+                    commitOhneAutoCommit();
+                }
+            }
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        }
+        L.info("angelegt: " + anzahl + " angebote mit je " + gebote + " geboten");
+        return preise;
+    }
+
+    public void loeschen() {
+        for (String tabelle : new String[]{"Gebot", "Maximalgebot", "Zuschlag", "Angebot"}) {
+            String sql = "delete from " + tabelle + " where AID between ? and ?";
+            L.info(sql);
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setInt(1, aidBasis);
+                ps.setInt(2, aidBasis + anzahl - 1);
+                ps.executeUpdate();
+            } catch (SQLException e) {
+                L.error("", e);
+                throw new DataException(e);
+            }
+        }
+        commitOhneAutoCommit();
+    }
+
+    private void commitOhneAutoCommit() {
+        try {
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package de.htwberlin.dbtech.bsp.auktion.last;
+
+import de.htwberlin.dbtech.bsp.auktion.AuktionsService;
+import de.htwberlin.dbtech.bsp.auktion.AuktionsServicePessimistisch;
+import de.htwberlin.dbtech.bsp.auktion.IAuktionsService;
+import de.htwberlin.dbtech.bsp.auktion.LimitierterAuktionsService;
+import de.htwberlin.dbtech.utils.AdaptivesLimit;
+import de.htwberlin.dbtech.utils.DbCred;
+import de.htwberlin.dbtech.utils.JdbcUtils;
+import de.htwberlin.dbtech.utils.LatenzHistogramm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Simuliert viele Bieter gegen einen {@link IAuktionsService} und misst Durchsatz, Ablehnungsgruende und
+ * Latenzen.
+ * <p>
+ * Jeder Bieter ist ein Thread mit eigener Connection und eigenem Dienst. Die AID wird nach einer
+ * Zipf-Verteilung gezogen, wenige Angebote bekommen also die meisten Gebote. Ein Teil der Angebote endet mit
+ * dem Ende des Laufs; in dessen letzten Sekunden bieten die Bieter ueberwiegend auf diese (Schlussspurt).
+ * Geboten wird knapp ueber dem zuletzt bekannten Preis, so wie ein Bieter ihn auf der Seite sieht.
+ * <p>
+ * Aufruf: LastGenerator [bieter] [sekunden] [angebote] [zipfExponent]. Die Daten liegen in einem eigenen
+ * AID-Bereich, werden vor jeder Variante neu angelegt und am Ende geloescht.
+ */
+public class LastGenerator {
+    private static final Logger L = LoggerFactory.getLogger(LastGenerator.class);
+
+    private static final int AID_BASIS = 1_000_000;
+    private static final long SCHRITT_CENT = 50;
+
+    /**
+     * Messwerte eines Laufs.
+     */
+    public static class Ergebnis {
+        private final String name;
+        private final LatenzHistogramm latenz = new LatenzHistogramm();
+        private final LongAdder angenommen = new LongAdder();
+        private final Map<Ablehnung, LongAdder> abgelehnt = new EnumMap<>(Ablehnung.class);
+        private double sekunden;
+
+        Ergebnis(String name) {
+            this.name = name;
+            for (Ablehnung a : Ablehnung.values()) {
+                abgelehnt.put(a, new LongAdder());
+            }
+        }
+
+        public LatenzHistogramm getLatenz() {
+            return latenz;
+        }
+
+        public long getAngenommen() {
+            return angenommen.sum();
+        }
+
+        public long getAbgelehnt(Ablehnung grund) {
+            return abgelehnt.get(grund).sum();
+        }
+
+        public double getDurchsatz() {
+            return angenommen.sum() / sekunden;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(String.format("%-14s angenommen/s=%8.1f %s%n", name, getDurchsatz(),
+                    latenz.zusammenfassung()));
+            sb.append("               abgelehnt:");
+            abgelehnt.forEach((grund, n) -> {
+                if (n.sum() > 0) {
+                    sb.append(' ').append(grund).append('=').append(n.sum());
+                }
+            });
+            return sb.toString();
+        }
+    }
+
+    private int bieter = 32;
+    private int sekunden = 30;
+    private int angebote = 10_000;
+    private double zipfExponent = 1.1;
+    // jedes wievielte Angebot mit dem Lauf endet
+    private int teilerBaldEndend = 100;
+    private int schlussspurtSekunden = 5;
+    private double schlussspurtAnteil = 0.8;
+    private int geboteJeAngebot = 5;
+    private long seed = 42;
+
+    public void setBieter(int bieter) {
+        this.bieter = bieter;
+    }
+
+    public void setSekunden(int sekunden) {
+        this.sekunden = sekunden;
+    }
+
+    public void setAngebote(int angebote) {
+        this.angebote = angebote;
+    }
+
+    public void setZipfExponent(double zipfExponent) {
+        this.zipfExponent = zipfExponent;
+    }
+
+    public void setTeilerBaldEndend(int teilerBaldEndend) {
+        this.teilerBaldEndend = teilerBaldEndend;
+    }
+
+    /**
+     * In den letzten sekunden des Laufs geht der angegebene Anteil der Gebote auf bald endende Angebote.
+     */
+    public void setSchlussspurt(int sekunden, double anteil) {
+        this.schlussspurtSekunden = sekunden;
+        this.schlussspurtAnteil = anteil;
+    }
+
+    public void setGeboteJeAngebot(int geboteJeAngebot) {
+        this.geboteJeAngebot = geboteJeAngebot;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Legt die Daten neu an und laesst die Bieter einen Lauf lang gegen die Variante bieten.
+     */
+    public Ergebnis messe(String name, Supplier<IAuktionsService> variante, Connection verwaltung)
+            throws InterruptedException {
+        LastDaten daten = new LastDaten(verwaltung, AID_BASIS, angebote);
+        AtomicLongArray preise = new AtomicLongArray(daten.anlegen(geboteJeAngebot, teilerBaldEndend, sekunden, seed));
+        int[] baldEndend = new int[(angebote + teilerBaldEndend - 1) / teilerBaldEndend];
+        for (int i = 0, j = 0; i < angebote; i++) {
+            if (LastDaten.endetBald(i, teilerBaldEndend)) {
+                baldEndend[j++] = i;
+            }
+        }
+        Zipf zipf = new Zipf(angebote, zipfExponent);
+        Ergebnis ergebnis = new Ergebnis(name);
+
+        long start = System.nanoTime();
+        long ende = start + TimeUnit.SECONDS.toNanos(sekunden);
+        long schlussspurt = ende - TimeUnit.SECONDS.toNanos(schlussspurtSekunden);
+        List<Thread> threads = new ArrayList<>();
+        for (int b = 0; b < bieter; b++) {
+            SplittableRandom zufall = new SplittableRandom(seed + b);
+            Thread t = new Thread(() -> {
+                try (Connection c = JdbcUtils.getConnectionViaDriverManager(DbCred.url, DbCred.user, DbCred.password)) {
+                    IAuktionsService dienst = variante.get();
+                    dienst.setConnection(c);
+                    for (long jetzt = System.nanoTime(); jetzt < ende; jetzt = System.nanoTime()) {
+                        int i = jetzt >= schlussspurt && zufall.nextDouble() < schlussspurtAnteil
+                                ? baldEndend[zufall.nextInt(baldEndend.length)] : zipf.ziehe(zufall);
+                        long preis = preise.get(i) + SCHRITT_CENT * (1 + zufall.nextInt(3));
+                        biete(dienst, AID_BASIS + i, preis, preise, i, ergebnis);
+                    }
+                } catch (SQLException e) {
+                    L.error("", e);
+                }
+            }, "bieter-" + b);
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        ergebnis.sekunden = (System.nanoTime() - start) / 1e9;
+        daten.loeschen();
+        return ergebnis;
+    }
+
+    private static void biete(IAuktionsService dienst, int aid, long preis, AtomicLongArray preise, int i,
+                              Ergebnis ergebnis) {
+        long beginn = System.nanoTime();
+        try {
+            dienst.biete(aid, BigDecimal.valueOf(preis, 2));
+            ergebnis.angenommen.increment();
+            preise.accumulateAndGet(i, preis, Math::max);
+        } catch (RuntimeException e) {
+            Ablehnung grund = Ablehnung.von(e);
+            ergebnis.abgelehnt.get(grund).increment();
+            if (grund == Ablehnung.ZU_NIEDRIG) {
+                // jemand war schneller: wie nach dem Neuladen der Seite hoeher bieten
+                preise.accumulateAndGet(i, preis, Math::max);
+            }
+        } finally {
+            ergebnis.latenz.erfasse(System.nanoTime() - beginn);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LastGenerator g = new LastGenerator();
+        if (args.length > 0) {
+            g.setBieter(Integer.parseInt(args[0]));
+        }
+        if (args.length > 1) {
+            g.setSekunden(Integer.parseInt(args[1]));
+        }
+        if (args.length > 2) {
+            g.setAngebote(Integer.parseInt(args[2]));
+        }
+        if (args.length > 3) {
+            g.setZipfExponent(Double.parseDouble(args[3]));
+        }
+        AdaptivesLimit limit = new AdaptivesLimit(8, 2, 64, 16, 50);
+        try (Connection c = JdbcUtils.getConnectionViaDriverManager(DbCred.url, DbCred.user, DbCred.password)) {
+            List<Ergebnis> ergebnisse = new ArrayList<>();
+            ergebnisse.add(g.messe("optimistisch", AuktionsService::new, c));
+            ergebnisse.add(g.messe("pessimistisch", AuktionsServicePessimistisch::new, c));
+            ergebnisse.add(g.messe("limitiert", () -> new LimitierterAuktionsService(new AuktionsService(), limit), c));
+            ergebnisse.forEach(System.out::println);
+        }
+    }
+}
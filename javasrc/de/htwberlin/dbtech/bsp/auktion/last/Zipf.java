@@ -0,0 +1,29 @@
+package de.htwberlin.dbtech.bsp.auktion.last;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Zieht Raenge 0..n-1 nach einer Zipf-Verteilung: Rang k wird mit einer Wahrscheinlichkeit proportional zu
+ * 1/(k+1)^s gezogen. Die Verteilungsfunktion wird einmal berechnet, jede Ziehung ist eine binaere Suche.
+ */
+public class Zipf {
+    private final double[] verteilung;
+
+    public Zipf(int n, double exponent) {
+        verteilung = new double[n];
+        double summe = 0;
+        for (int k = 0; k < n; k++) {
+            summe += 1 / Math.pow(k + 1, exponent);
+            verteilung[k] = summe;
+        }
+        for (int k = 0; k < n; k++) {
+            verteilung[k] /= summe;
+        }
+    }
+
+    public int ziehe(SplittableRandom zufall) {
+        int i = Arrays.binarySearch(verteilung, zufall.nextDouble());
+        return Math.min(i >= 0 ? i : -i - 1, verteilung.length - 1);
+    }
+}
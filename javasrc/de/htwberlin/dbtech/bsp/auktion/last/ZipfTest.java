@@ -0,0 +1,58 @@
+package de.htwberlin.dbtech.bsp.auktion.last;
+
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.assertEquals;
+
+public class ZipfTest {
+    private static final int ZIEHUNGEN = 200_000;
+
+    private static int[] haeufigkeiten(int n, double exponent) {
+        Zipf zipf = new Zipf(n, exponent);
+        SplittableRandom zufall = new SplittableRandom(3);
+        int[] h = new int[n];
+        for (int i = 0; i < ZIEHUNGEN; i++) {
+            h[zipf.ziehe(zufall)]++;
+        }
+        return h;
+    }
+
+    /**
+     * Rang k kommt etwa mit Anteil 1/(k+1) / H(n) vor, bei Exponent 1 also Rang 0 doppelt so oft wie Rang 1.
+     */
+    @org.junit.Test
+    public void verteilungWieZipf() {
+        int n = 100;
+        int[] h = haeufigkeiten(n, 1.0);
+        double harmonisch = 0;
+        for (int k = 1; k <= n; k++) {
+            harmonisch += 1.0 / k;
+        }
+        for (int k : new int[]{0, 1, 9, 99}) {
+            double erwartet = ZIEHUNGEN / (k + 1.0) / harmonisch;
+            assertEquals("rang " + k, erwartet, h[k], 5 * Math.sqrt(erwartet));
+        }
+    }
+
+    /**
+     * Exponent 0 ist die Gleichverteilung; jeder Rang wird gezogen.
+     */
+    @org.junit.Test
+    public void exponentNullGleichverteilt() {
+        int n = 10;
+        int[] h = haeufigkeiten(n, 0);
+        double erwartet = ZIEHUNGEN / (double) n;
+        for (int k = 0; k < n; k++) {
+            assertEquals("rang " + k, erwartet, h[k], 5 * Math.sqrt(erwartet));
+        }
+    }
+
+    /**
+     * Bei nur einem Rang ist jede Ziehung 0.
+     */
+    @org.junit.Test
+    public void einRang() {
+        int[] h = haeufigkeiten(1, 1.2);
+        assertEquals(ZIEHUNGEN, h[0]);
+    }
+}
@@ -6,4 +6,15 @@ public interface IRaumService {
     void setConnection(Connection connection);
 
     Integer findAnzahlPlaetzeInRaum(int rid);
-}
\ No newline at end of file
+
+    /**
+     * Anzahl der Sitze je RID, in der Reihenfolge der uebergebenen RIDs.
+     */
+    default int[] findAnzahlPlaetze(int[] rids) {
+        int[] anzahl = new int[rids.length];
+        for (int i = 0; i < rids.length; i++) {
+            anzahl[i] = findAnzahlPlaetzeInRaum(rids[i]);
+        }
+        return anzahl;
+    }
+}
@@ -1,8 +1,15 @@
 package de.htwberlin.dbtech.bsp.raum;
 
+import de.htwberlin.dbtech.utils.mapper.Abbildbar;
+import de.htwberlin.dbtech.utils.mapper.Spalte;
+
+@Abbildbar
 public class Raum {
+    @Spalte
     private int rid;
+    @Spalte
     private String raumNr;
+    @Spalte
     private int anzahlSitze;
 
     @Override
@@ -10,6 +17,9 @@ public class Raum {
         return "Raum [rid=" + rid + ", raumNr=" + raumNr + ", anzahlSitze=" + anzahlSitze + "]";
     }
 
+    public Raum() {
+    }
+
     public Raum(int rid, String raumNr, int anzahlSitze) {
         this.rid = rid;
         this.raumNr = raumNr;
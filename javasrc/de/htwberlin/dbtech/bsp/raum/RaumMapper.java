@@ -0,0 +1,27 @@
+package de.htwberlin.dbtech.bsp.raum;
+
+/**
+ * Erzeugt von MapperProzessor aus Raum.
+ */
+@javax.annotation.processing.Generated("de.htwberlin.dbtech.utils.mapper.MapperProzessor")
+public final class RaumMapper implements de.htwberlin.dbtech.utils.mapper.ZeilenMapper<Raum> {
+    private final int ridIndex;
+    private final int raumNrIndex;
+    private final int anzahlSitzeIndex;
+
+    public RaumMapper(java.sql.ResultSet rs) throws java.sql.SQLException {
+        de.htwberlin.dbtech.utils.mapper.Spalten s = de.htwberlin.dbtech.utils.mapper.Spalten.von(rs);
+        ridIndex = s.pflicht("rid");
+        raumNrIndex = s.pflicht("raumNr");
+        anzahlSitzeIndex = s.pflicht("anzahlSitze");
+    }
+
+    @Override
+    public Raum abbilden(java.sql.ResultSet rs) throws java.sql.SQLException {
+        Raum o = new Raum();
+        o.setRid(rs.getInt(ridIndex));
+        o.setRaumNr(rs.getString(raumNrIndex));
+        o.setAnzahlSitze(rs.getInt(anzahlSitzeIndex));
+        return o;
+    }
+}
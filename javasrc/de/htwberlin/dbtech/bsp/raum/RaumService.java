@@ -2,6 +2,7 @@ package de.htwberlin.dbtech.bsp.raum;
 
 import de.htwberlin.dbtech.exceptions.DataException;
 import de.htwberlin.dbtech.exceptions.RaumException;
+import de.htwberlin.dbtech.utils.SingleFlight;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -13,6 +14,7 @@ import java.sql.SQLException;
 public class RaumService implements IRaumService {
     private static final Logger L = LoggerFactory.getLogger(RaumService.class);
     private Connection connection;
+    private SingleFlight<Integer, Integer> gleicheAbfragen = null;
 
     @Override
     public void setConnection(Connection connection) {
@@ -28,8 +30,21 @@ public class RaumService implements IRaumService {
         }
     }
 
+    /**
+     * Buendelt gleichzeitige Abfragen nach derselben RID, auch ueber mehrere Dienste. Ohne Aufruf fragt jeder
+     * Aufruf selbst.
+     */
+    public void setGleicheAbfragen(SingleFlight<Integer, Integer> gleicheAbfragen) {
+        this.gleicheAbfragen = gleicheAbfragen;
+    }
+
     @Override
     public Integer findAnzahlPlaetzeInRaum(int rid) {
+        SingleFlight<Integer, Integer> sf = gleicheAbfragen;
+        return sf == null ? leseAnzahlPlaetze(rid) : sf.ausfuehren(rid, () -> leseAnzahlPlaetze(rid));
+    }
+
+    private Integer leseAnzahlPlaetze(int rid) {
         String sql = "select AnzahlSitze from Raum where RID=?";
         L.info(sql);
         try (PreparedStatement ps = useConnection().prepareStatement(sql)) {
@@ -0,0 +1,219 @@
+package de.htwberlin.dbtech.bsp.raum;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.exceptions.RaumException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Haelt die Sitzanzahl aller Raeume im Speicher, fuer Aufrufer wie Stundenplan-Solver, die sehr oft nachfragen.
+ * <p>
+ * Der Stand wird als unveraenderlicher Schnappschuss gelesen: eine Hashtabelle mit offener Adressierung
+ * (RID auf AnzahlSitze, nur int-Arrays) und nach AnzahlSitze sortierte Arrays fuer Bereichsabfragen.
+ * {@link #laden()} baut einen neuen Schnappschuss und tauscht ihn ueber eine volatile Referenz aus, Leser sehen
+ * also immer einen vollstaendigen Stand. {@link #ladenFallsGeaendert()} laedt nur, wenn sich Raum laut
+ * ora_rowscn und Zeilenzahl seit dem letzten Laden geaendert hat. Unbekannte RIDs fuehren wie bei
+ * {@link RaumService} zu einer {@link RaumException}.
+ */
+public class RaumServiceCache implements IRaumService {
+    private static final Logger L = LoggerFactory.getLogger(RaumServiceCache.class);
+
+    static final class Schnappschuss {
+        private final int[] schluessel;
+        private final int[] werte;
+        private final boolean[] belegt;
+        private final int maske;
+        private final int verschiebung;
+        // aufsteigend nach AnzahlSitze, bei Gleichheit nach RID
+        private final int[] sitzeSortiert;
+        private final int[] ridsSortiert;
+        private final long[] stand;
+
+        Schnappschuss(int[] rids, int[] sitze, long[] stand) {
+            int kapazitaet = Integer.highestOneBit(Math.max(2, rids.length * 2 - 1)) << 1;
+            schluessel = new int[kapazitaet];
+            werte = new int[kapazitaet];
+            belegt = new boolean[kapazitaet];
+            maske = kapazitaet - 1;
+            verschiebung = Integer.numberOfLeadingZeros(kapazitaet) + 1;
+            for (int i = 0; i < rids.length; i++) {
+                int p = position(rids[i]);
+                schluessel[p] = rids[i];
+                werte[p] = sitze[i];
+                belegt[p] = true;
+            }
+
+            long[] sortiert = new long[rids.length];
+            for (int i = 0; i < rids.length; i++) {
+                // Sitze in den oberen, RID in den unteren 32 Bit; Vorzeichen der RID fuer die Sortierung umkehren
+                sortiert[i] = ((long) sitze[i] << 32) | ((rids[i] ^ Integer.MIN_VALUE) & 0xffffffffL);
+            }
+            Arrays.sort(sortiert);
+            sitzeSortiert = new int[rids.length];
+            ridsSortiert = new int[rids.length];
+            for (int i = 0; i < sortiert.length; i++) {
+                sitzeSortiert[i] = (int) (sortiert[i] >> 32);
+                ridsSortiert[i] = (int) sortiert[i] ^ Integer.MIN_VALUE;
+            }
+            this.stand = stand;
+        }
+
+        private int position(int rid) {
+            // Fibonacci-Hashing verteilt auch fortlaufende RIDs gleichmaessig
+            int p = (rid * 0x9E3779B9) >>> verschiebung;
+            while (belegt[p] && schluessel[p] != rid) {
+                p = (p + 1) & maske;
+            }
+            return p;
+        }
+
+        int anzahlSitze(int rid) {
+            int p = position(rid);
+            if (!belegt[p]) {
+                throw new RaumException("rid doesn't exist in db: " + rid);
+            }
+            return werte[p];
+        }
+
+        int[] mitMindestens(int sitze) {
+            int von = 0;
+            int bis = sitzeSortiert.length;
+            while (von < bis) {
+                int mitte = (von + bis) >>> 1;
+                if (sitzeSortiert[mitte] < sitze) {
+                    von = mitte + 1;
+                } else {
+                    bis = mitte;
+                }
+            }
+            return Arrays.copyOfRange(ridsSortiert, von, ridsSortiert.length);
+        }
+
+        int anzahl() {
+            return ridsSortiert.length;
+        }
+    }
+
+    private Connection connection;
+    private volatile Schnappschuss schnappschuss = null;
+
+    @Override
+    public void setConnection(Connection connection) {
+        this.connection = connection;
+        L.debug("connection set");
+    }
+
+    protected Connection useConnection() {
+        if (connection != null) {
+            return this.connection;
+        } else {
+            throw new RuntimeException("Connection not existing");
+        }
+    }
+
+    /**
+     * Liest alle Raeume und ersetzt den Schnappschuss.
+     */
+    public void laden() {
+        long[] stand = leseStand();
+        String sql = "select RID, AnzahlSitze from Raum";
+        L.info(sql);
+        int[] rids = new int[64];
+        int[] sitze = new int[64];
+        int n = 0;
+        try (PreparedStatement ps = useConnection().prepareStatement(sql)) {
+            ps.setFetchSize(1000);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (n == rids.length) {
+                        rids = Arrays.copyOf(rids, n * 2);
+                        sitze = Arrays.copyOf(sitze, n * 2);
+                    }
+                    rids[n] = rs.getInt("RID");
+                    // wie RaumService: fehlende AnzahlSitze als 0
+                    sitze[n] = rs.getInt("AnzahlSitze");
+                    n++;
+                }
+            }
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        }
+        schnappschuss = new Schnappschuss(Arrays.copyOf(rids, n), Arrays.copyOf(sitze, n), stand);
+        L.info("raeume geladen: " + n);
+    }
+
+    /**
+     * Laedt nur, wenn Raum seit dem letzten Laden geaendert wurde.
+     *
+     * @return ob neu geladen wurde
+     */
+    public boolean ladenFallsGeaendert() {
+        Schnappschuss s = schnappschuss;
+        if (s != null && Arrays.equals(s.stand, leseStand())) {
+            return false;
+        }
+        laden();
+        return true;
+    }
+
+    @Override
+    public Integer findAnzahlPlaetzeInRaum(int rid) {
+        return aktuell().anzahlSitze(rid);
+    }
+
+    @Override
+    public int[] findAnzahlPlaetze(int[] rids) {
+        Schnappschuss s = aktuell();
+        int[] anzahl = new int[rids.length];
+        for (int i = 0; i < rids.length; i++) {
+            anzahl[i] = s.anzahlSitze(rids[i]);
+        }
+        return anzahl;
+    }
+
+    /**
+     * RIDs aller Raeume mit mindestens der angegebenen Sitzanzahl, aufsteigend nach AnzahlSitze.
+     */
+    public int[] findRaeumeMitMindestens(int anzahlSitze) {
+        return aktuell().mitMindestens(anzahlSitze);
+    }
+
+    public int getAnzahlRaeume() {
+        return aktuell().anzahl();
+    }
+
+    private Schnappschuss aktuell() {
+        Schnappschuss s = schnappschuss;
+        if (s == null) {
+            synchronized (this) {
+                if (schnappschuss == null) {
+                    laden();
+                }
+                s = schnappschuss;
+            }
+        }
+        return s;
+    }
+
+    private long[] leseStand() {
+        // ora_rowscn aendert sich mit jedem Schreiben in einen Block der Tabelle; das Loeschen der einzigen
+        // Zeile eines Blocks erkennt man nur an der Anzahl
+        String sql = "select coalesce(max(ora_rowscn), 0) as Scn, count(*) as Anzahl from Raum";
+        L.info(sql);
+        try (PreparedStatement ps = useConnection().prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return new long[]{rs.getLong("Scn"), rs.getLong("Anzahl")};
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package de.htwberlin.dbtech.bsp.raum;
+
+import de.htwberlin.dbtech.exceptions.RaumException;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class RaumServiceCacheTest {
+
+    private static final long[] STAND = {1, 3};
+
+    /**
+     * Stand wie in test-data/raum/pre: Abfrage je RID und unbekannte RID mit derselben Meldung wie RaumService.
+     */
+    @org.junit.Test
+    public void anzahlSitze() {
+        RaumServiceCache.Schnappschuss s = new RaumServiceCache.Schnappschuss(new int[]{1, 2, 3},
+                new int[]{60, 30, 40}, STAND);
+        assertEquals(30, s.anzahlSitze(2));
+        try {
+            s.anzahlSitze(4);
+            fail();
+        } catch (RaumException e) {
+            assertEquals("rid doesn't exist in db: 4", e.getMessage());
+        }
+    }
+
+    /**
+     * Bereichsabfrage liefert aufsteigend nach Sitzen, bei Gleichheit nach RID.
+     */
+    @org.junit.Test
+    public void mitMindestens() {
+        RaumServiceCache.Schnappschuss s = new RaumServiceCache.Schnappschuss(new int[]{1, 2, 3, -5, 7},
+                new int[]{60, 30, 40, 40, 0}, STAND);
+        assertArrayEquals(new int[]{-5, 3, 1}, s.mitMindestens(31));
+        assertArrayEquals(new int[]{7, 2, -5, 3, 1}, s.mitMindestens(0));
+        assertArrayEquals(new int[]{}, s.mitMindestens(61));
+    }
+
+    /**
+     * Viele zufaellige RIDs: jede wird gefunden, andere nicht.
+     */
+    @org.junit.Test
+    public void vieleRids() {
+        Random zufall = new Random(1);
+        int n = 10_000;
+        int[] rids = zufall.ints(0, Integer.MAX_VALUE).distinct().limit(n).toArray();
+        int[] sitze = new int[n];
+        for (int i = 0; i < n; i++) {
+            sitze[i] = rids[i] % 500;
+        }
+        RaumServiceCache.Schnappschuss s = new RaumServiceCache.Schnappschuss(rids, sitze, STAND);
+        for (int i = 0; i < n; i++) {
+            assertEquals(sitze[i], s.anzahlSitze(rids[i]));
+        }
+        assertEquals(n, s.mitMindestens(Integer.MIN_VALUE).length);
+        try {
+            s.anzahlSitze(-1);
+            fail();
+        } catch (RaumException e) {
+            // erwartet
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package de.htwberlin.dbtech.bsp.raum;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Misst den Durchsatz der Sitzbelegung im Speicher, wenn viele Buchende gleichzeitig Sitze kaufen.
+ * <p>
+ * Je Durchlauf werden alle Raeume und Zeitfenster ausverkauft: jeder Buchende waehlt ein zufaelliges
+ * Zeitfenster und kauft 1 bis 4 Sitze, zur Haelfte nebeneinander. Gibt es keinen passenden Block mehr, nimmt
+ * er beliebige Sitze, zuletzt einzelne. Ausgegeben werden Reservierungen und Sitze je Sekunde sowie die
+ * vergeblichen Versuche auf schon volle Zeitfenster.
+ * <p>
+ * Aufruf: SitzplatzBenchmark [zeitfenster] [sitze je raum]
+ */
+public class SitzplatzBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int zeitfenster = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int sitze = args.length > 1 ? Integer.parseInt(args[1]) : 400;
+        for (int threads : new int[]{1, 2, 4, 8, 16, 64}) {
+            messe(threads, zeitfenster, sitze);
+        }
+    }
+
+    private static void messe(int threads, int zeitfenster, int sitze) throws InterruptedException {
+        SitzplatzBitset[] belegungen = new SitzplatzBitset[zeitfenster];
+        for (int i = 0; i < zeitfenster; i++) {
+            belegungen[i] = new SitzplatzBitset(sitze);
+        }
+        AtomicIntegerArray voll = new AtomicIntegerArray(zeitfenster);
+        AtomicInteger anzahlVoll = new AtomicInteger();
+        LongAdder reservierungen = new LongAdder();
+        LongAdder verkauft = new LongAdder();
+        LongAdder vergeblich = new LongAdder();
+
+        long start = System.nanoTime();
+        List<Thread> buchende = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom zufall = ThreadLocalRandom.current();
+                while (anzahlVoll.get() < zeitfenster) {
+                    int z = zufall.nextInt(zeitfenster);
+                    if (voll.get(z) != 0) {
+                        continue;
+                    }
+                    SitzplatzBitset b = belegungen[z];
+                    int n = 1 + zufall.nextInt(4);
+                    int gekauft = 0;
+                    if (zufall.nextBoolean() && b.belegeZusammenhaengend(n) >= 0) {
+                        gekauft = n;
+                    } else {
+                        for (int m = n; m > 0 && gekauft == 0; m--) {
+                            if (b.belegeBeliebige(m) != null) {
+                                gekauft = m;
+                            }
+                        }
+                    }
+                    if (gekauft > 0) {
+                        reservierungen.increment();
+                        verkauft.add(gekauft);
+                    } else {
+                        vergeblich.increment();
+                        if (b.getFrei() == 0 && voll.compareAndSet(z, 0, 1)) {
+                            anzahlVoll.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            buchende.add(thread);
+            thread.start();
+        }
+        for (Thread t : buchende) {
+            t.join();
+        }
+        double sekunden = (System.nanoTime() - start) / 1e9;
+        System.out.printf("threads: %3d  reservierungen/s: %,12.0f  sitze/s: %,12.0f  verkauft: %,d von %,d  vergeblich: %,d%n",
+                threads, reservierungen.sum() / sekunden, verkauft.sum() / sekunden, verkauft.sum(),
+                (long) zeitfenster * sitze, vergeblich.sum());
+    }
+}
@@ -0,0 +1,197 @@
+package de.htwberlin.dbtech.bsp.raum;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Belegung der Sitze eines Raums in einem Zeitfenster, ein Bit je Sitz, ohne Sperren.
+ * <p>
+ * Belegt wird mit compareAndSet je 64er-Wort. Erstreckt sich eine Belegung ueber mehrere Woerter, werden sie
+ * nacheinander belegt; scheitert ein spaeteres Wort, weil ein anderer Thread schneller war, werden die bereits
+ * belegten Bits wieder freigegeben und die Suche beginnt von vorn. Andere Threads koennen daher kurzzeitig
+ * Bits einer Belegung sehen, die danach doch nicht zustande kommt, aber nie einen Sitz doppelt belegen.
+ */
+public class SitzplatzBitset {
+    private final AtomicLongArray woerter;
+    private final int anzahl;
+
+    public SitzplatzBitset(int anzahl) {
+        this.anzahl = anzahl;
+        this.woerter = new AtomicLongArray((anzahl + 63) >>> 6);
+    }
+
+    public int getAnzahl() {
+        return anzahl;
+    }
+
+    public boolean istBelegt(int sitz) {
+        return (woerter.get(sitz >>> 6) & (1L << sitz)) != 0;
+    }
+
+    public int getFrei() {
+        int belegt = 0;
+        for (int i = 0; i < woerter.length(); i++) {
+            belegt += Long.bitCount(woerter.get(i));
+        }
+        return anzahl - belegt;
+    }
+
+    /**
+     * Belegt einen bestimmten Sitz.
+     *
+     * @return false, wenn er schon belegt ist
+     */
+    public boolean belege(int sitz) {
+        pruefe(sitz, 1);
+        return belegeWort(sitz >>> 6, 1L << sitz);
+    }
+
+    /**
+     * Belegt n nebeneinanderliegende Sitze, den ersten passenden Block von vorn.
+     *
+     * @return der erste Sitz oder -1, wenn es keinen freien Block gibt
+     */
+    public int belegeZusammenhaengend(int n) {
+        if (n < 1 || n > anzahl) {
+            return -1;
+        }
+        int start = 0;
+        while (true) {
+            start = sucheFreienBlock(start, n);
+            if (start < 0) {
+                return -1;
+            }
+            if (belegeBereich(start, n)) {
+                return start;
+            }
+            // ein anderer Thread war schneller, ab derselben Stelle neu suchen
+        }
+    }
+
+    /**
+     * Belegt n beliebige freie Sitze, moeglichst weit vorn.
+     *
+     * @return die Sitznummern aufsteigend oder null, wenn nicht genug frei sind
+     */
+    public int[] belegeBeliebige(int n) {
+        int[] sitze = new int[n];
+        int gefunden = 0;
+        for (int w = 0; w < woerter.length() && gefunden < n; w++) {
+            while (gefunden < n) {
+                long alt = woerter.get(w);
+                long frei = ~alt & gueltig(w);
+                if (frei == 0) {
+                    break;
+                }
+                // die niedrigsten freien Bits bis zur benoetigten Anzahl
+                long maske = 0;
+                for (int k = gefunden; k < n && frei != 0; k++) {
+                    long bit = Long.lowestOneBit(frei);
+                    maske |= bit;
+                    frei &= ~bit;
+                }
+                if (woerter.compareAndSet(w, alt, alt | maske)) {
+                    for (long m = maske; m != 0; m &= m - 1) {
+                        sitze[gefunden++] = (w << 6) + Long.numberOfTrailingZeros(m);
+                    }
+                }
+            }
+        }
+        if (gefunden < n) {
+            for (int k = 0; k < gefunden; k++) {
+                freigeben(sitze[k]);
+            }
+            return null;
+        }
+        return sitze;
+    }
+
+    public void freigeben(int sitz) {
+        pruefe(sitz, 1);
+        long bit = 1L << sitz;
+        woerter.getAndUpdate(sitz >>> 6, w -> w & ~bit);
+    }
+
+    public void freigeben(int[] sitze) {
+        for (int sitz : sitze) {
+            freigeben(sitz);
+        }
+    }
+
+    private boolean belegeWort(int w, long maske) {
+        while (true) {
+            long alt = woerter.get(w);
+            if ((alt & maske) != 0) {
+                return false;
+            }
+            if (woerter.compareAndSet(w, alt, alt | maske)) {
+                return true;
+            }
+        }
+    }
+
+    private boolean belegeBereich(int start, int n) {
+        int ende = start + n;
+        for (int w = start >>> 6; w <= (ende - 1) >>> 6; w++) {
+            if (!belegeWort(w, maske(w, start, ende))) {
+                for (int v = start >>> 6; v < w; v++) {
+                    long m = maske(v, start, ende);
+                    woerter.getAndUpdate(v, x -> x & ~m);
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Bits von [start, ende) im Wort w
+    private static long maske(int w, int start, int ende) {
+        int von = Math.max(start, w << 6) - (w << 6);
+        int bis = Math.min(ende, (w + 1) << 6) - (w << 6);
+        long oben = bis == 64 ? -1L : (1L << bis) - 1;
+        return oben & (-1L << von);
+    }
+
+    // Bits, die zu vorhandenen Sitzen gehoeren
+    private long gueltig(int w) {
+        int rest = anzahl - (w << 6);
+        return rest >= 64 ? -1L : (1L << rest) - 1;
+    }
+
+    private int sucheFreienBlock(int ab, int n) {
+        int laenge = 0;
+        for (int sitz = ab; sitz < anzahl; ) {
+            long frei = ~woerter.get(sitz >>> 6) & gueltig(sitz >>> 6) & (-1L << sitz);
+            if (frei == 0) {
+                // Rest des Wortes belegt
+                laenge = 0;
+                sitz = ((sitz >>> 6) + 1) << 6;
+                continue;
+            }
+            int naechsterFreier = ((sitz >>> 6) << 6) + Long.numberOfTrailingZeros(frei);
+            if (naechsterFreier != sitz) {
+                laenge = 0;
+                sitz = naechsterFreier;
+            }
+            // Laenge der freien Folge ab sitz innerhalb des Wortes
+            long belegtAb = ~frei & (-1L << sitz);
+            int wortEnde = ((sitz >>> 6) + 1) << 6;
+            int folgeEnde = belegtAb == 0 ? wortEnde : ((sitz >>> 6) << 6) + Long.numberOfTrailingZeros(belegtAb);
+            folgeEnde = Math.min(folgeEnde, anzahl);
+            laenge += folgeEnde - sitz;
+            if (laenge >= n) {
+                return folgeEnde - laenge;
+            }
+            if (folgeEnde < wortEnde) {
+                laenge = 0;
+            }
+            sitz = folgeEnde;
+        }
+        return -1;
+    }
+
+    private void pruefe(int sitz, int n) {
+        if (sitz < 0 || sitz + n > anzahl) {
+            throw new IndexOutOfBoundsException("Sitz " + sitz + " bei " + anzahl + " Sitzen");
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package de.htwberlin.dbtech.bsp.raum;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SitzplatzBitsetTest {
+
+    /**
+     * Zusammenhaengende Bloecke auch ueber Wortgrenzen, Luecken werden genutzt, zu grosse Bloecke abgelehnt.
+     */
+    @org.junit.Test
+    public void zusammenhaengend() {
+        SitzplatzBitset b = new SitzplatzBitset(130);
+        assertEquals(0, b.belegeZusammenhaengend(60));
+        assertEquals(60, b.belegeZusammenhaengend(10));
+        assertTrue(b.belege(71));
+        assertEquals(72, b.belegeZusammenhaengend(58));
+        assertEquals(-1, b.belegeZusammenhaengend(2));
+        assertEquals(70, b.belegeZusammenhaengend(1));
+        b.freigeben(new int[]{5, 6, 7});
+        assertEquals(5, b.belegeZusammenhaengend(3));
+        assertEquals(0, b.getFrei());
+        assertFalse(b.belege(129));
+    }
+
+    /**
+     * Beliebige Sitze werden von vorn vergeben; reicht es nicht, bleibt nichts belegt.
+     */
+    @org.junit.Test
+    public void beliebige() {
+        SitzplatzBitset b = new SitzplatzBitset(70);
+        assertTrue(b.belege(1));
+        assertTrue(b.belege(3));
+        assertArrayEquals(new int[]{0, 2, 4}, b.belegeBeliebige(3));
+        assertNull(b.belegeBeliebige(66));
+        assertEquals(65, b.getFrei());
+        assertEquals(65, b.belegeBeliebige(65).length);
+        assertEquals(0, b.getFrei());
+    }
+
+    /**
+     * Viele Threads belegen gleichzeitig, bis alles voll ist: kein Sitz doppelt, keiner uebrig.
+     */
+    @org.junit.Test
+    public void nebenlaeufigOhneDoppelbelegung() throws InterruptedException {
+        SitzplatzBitset b = new SitzplatzBitset(1000);
+        List<Thread> threads = new ArrayList<>();
+        List<BitSet> ergebnisse = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            BitSet eigene = new BitSet();
+            ergebnisse.add(eigene);
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom zufall = ThreadLocalRandom.current();
+                while (b.getFrei() > 0) {
+                    int n = 1 + zufall.nextInt(4);
+                    if (zufall.nextBoolean()) {
+                        int start = b.belegeZusammenhaengend(n);
+                        if (start >= 0) {
+                            eigene.set(start, start + n);
+                        }
+                    } else {
+                        int[] sitze = b.belegeBeliebige(Math.min(n, Math.max(1, b.getFrei())));
+                        if (sitze != null) {
+                            for (int s : sitze) {
+                                eigene.set(s);
+                            }
+                        }
+                    }
+                    // Einzelplaetze fuellen die Luecken, damit der Raum sicher voll wird
+                    int einzeln = b.belegeZusammenhaengend(1);
+                    if (einzeln >= 0) {
+                        eigene.set(einzeln);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        BitSet alle = new BitSet();
+        int summe = 0;
+        for (BitSet e : ergebnisse) {
+            summe += e.cardinality();
+            alle.or(e);
+        }
+        assertEquals(1000, summe);
+        assertEquals(1000, alle.cardinality());
+    }
+}
@@ -0,0 +1,353 @@
+package de.htwberlin.dbtech.bsp.raum;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.exceptions.RaumException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Verkauft einzelne Sitze eines Raums fuer ein Zeitfenster (z.B. einen Pruefungstermin).
+ * <p>
+ * Je Raum und Zeitfenster gibt es ein {@link SitzplatzBitset}, das beim ersten Zugriff mit AnzahlSitze aus
+ * dem {@link IRaumService} angelegt wird. Reservierungen werden im Speicher ohne Sperren belegt und in eine
+ * Warteschlange gestellt, die {@link #schreibeAus()} per Batch-Insert nach Sitzreservierung schreibt, bei
+ * {@link #starte(long)} regelmaessig im Hintergrund. Schlaegt ein Batch fehl, wird er halbiert und erneut
+ * geschrieben, bis die fehlerhaften Reservierungen einzeln feststehen; nur deren Sitze werden wieder
+ * freigegeben. Ob eine Reservierung gespeichert ist, zeigt {@link Reservierung#getGespeichert()}.
+ * {@link #laden()} baut die Belegung der kommenden Zeitfenster aus der Tabelle neu auf.
+ */
+public class SitzplatzReservierung implements AutoCloseable {
+    private static final Logger L = LoggerFactory.getLogger(SitzplatzReservierung.class);
+
+    private static final int BATCH = 1000;
+    // Inhaber ist varchar2(30), in Byte
+    private static final int MAX_INHABER_BYTES = 30;
+
+    private static final class Schluessel {
+        final int rid;
+        final long zeitfenster;
+
+        Schluessel(int rid, Timestamp zeitfenster) {
+            this.rid = rid;
+            // Zeitfenster ist in der Tabelle ein date, also sekundengenau
+            this.zeitfenster = Math.floorDiv(zeitfenster.getTime(), 1000);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Schluessel)) {
+                return false;
+            }
+            Schluessel s = (Schluessel) o;
+            return rid == s.rid && zeitfenster == s.zeitfenster;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(rid, zeitfenster);
+        }
+    }
+
+    /**
+     * Im Speicher belegte Sitze eines Inhabers in einem Raum und Zeitfenster. Gespeichert ist die Reservierung
+     * erst, wenn {@link #getGespeichert()} erfuellt ist.
+     */
+    public static class Reservierung {
+        private final int rid;
+        private final Timestamp zeitfenster;
+        private final String inhaber;
+        private final int[] sitze;
+        private final CompletableFuture<Reservierung> gespeichert = new CompletableFuture<>();
+
+        Reservierung(int rid, Timestamp zeitfenster, String inhaber, int[] sitze) {
+            this.rid = rid;
+            this.zeitfenster = zeitfenster;
+            this.inhaber = inhaber;
+            this.sitze = sitze;
+        }
+
+        public int getRid() {
+            return rid;
+        }
+
+        public Timestamp getZeitfenster() {
+            return zeitfenster;
+        }
+
+        public String getInhaber() {
+            return inhaber;
+        }
+
+        public int[] getSitze() {
+            return sitze.clone();
+        }
+
+        /**
+         * Wird erfuellt, sobald die Reservierung in der Datenbank steht, oder mit einer {@link DataException}
+         * beendet, wenn sie nicht geschrieben werden konnte; ihre Sitze sind dann wieder frei.
+         */
+        public CompletableFuture<Reservierung> getGespeichert() {
+            return gespeichert;
+        }
+
+        @Override
+        public String toString() {
+            return "Reservierung [rid=" + rid + ", zeitfenster=" + zeitfenster + ", inhaber=" + inhaber
+                    + ", sitze=" + Arrays.toString(sitze) + "]";
+        }
+    }
+
+    private Connection connection;
+    private final IRaumService raumService;
+    private final Map<Schluessel, SitzplatzBitset> belegungen = new ConcurrentHashMap<>();
+    private final LinkedBlockingQueue<Reservierung> ausstehend = new LinkedBlockingQueue<>();
+    private final AtomicLong geschrieben = new AtomicLong();
+    private final AtomicLong fehlgeschlagen = new AtomicLong();
+    private ScheduledExecutorService schreiber = null;
+
+    /**
+     * @param raumService liefert AnzahlSitze, z.B. ein {@link RaumServiceCache}
+     */
+    public SitzplatzReservierung(IRaumService raumService) {
+        this.raumService = raumService;
+    }
+
+    public void setConnection(Connection connection) {
+        this.connection = connection;
+    }
+
+    protected Connection useConnection() {
+        if (connection != null) {
+            return this.connection;
+        } else {
+            throw new RuntimeException("Connection not existing");
+        }
+    }
+
+    /**
+     * Reserviert anzahl Sitze, auf Wunsch nebeneinander.
+     *
+     * @return die noch nicht gespeicherte Reservierung oder null, wenn nicht genug (zusammenhaengende) Sitze
+     * frei sind
+     * @throws RaumException wenn es den Raum nicht gibt oder die Angaben nicht gespeichert werden koennen
+     */
+    public Reservierung reserviere(int rid, Timestamp zeitfenster, String inhaber, int anzahl, boolean nebeneinander) {
+        if (zeitfenster == null) {
+            throw new RaumException("Zeitfenster fehlt");
+        }
+        if (inhaber == null || inhaber.isBlank()) {
+            throw new RaumException("Inhaber fehlt");
+        }
+        if (inhaber.getBytes(StandardCharsets.UTF_8).length > MAX_INHABER_BYTES) {
+            throw new RaumException("Inhaber laenger als " + MAX_INHABER_BYTES + " Byte: " + inhaber);
+        }
+        if (anzahl < 1) {
+            throw new RaumException("anzahl muss mindestens 1 sein: " + anzahl);
+        }
+        SitzplatzBitset belegung = belegung(rid, zeitfenster);
+        int[] sitze;
+        if (nebeneinander) {
+            int start = belegung.belegeZusammenhaengend(anzahl);
+            if (start < 0) {
+                return null;
+            }
+            sitze = new int[anzahl];
+            for (int i = 0; i < anzahl; i++) {
+                sitze[i] = start + i;
+            }
+        } else {
+            sitze = belegung.belegeBeliebige(anzahl);
+            if (sitze == null) {
+                return null;
+            }
+        }
+        Reservierung r = new Reservierung(rid, zeitfenster, inhaber, sitze);
+        ausstehend.add(r);
+        return r;
+    }
+
+    public int getFrei(int rid, Timestamp zeitfenster) {
+        return belegung(rid, zeitfenster).getFrei();
+    }
+
+    public int getAusstehend() {
+        return ausstehend.size();
+    }
+
+    public long getGeschrieben() {
+        return geschrieben.get();
+    }
+
+    public long getFehlgeschlagen() {
+        return fehlgeschlagen.get();
+    }
+
+    /**
+     * Schreibt alle ausstehenden Reservierungen in Batches von hoechstens 1000 Reservierungen.
+     *
+     * @return Anzahl geschriebener Reservierungen
+     */
+    public synchronized int schreibeAus() {
+        int anzahl = 0;
+        List<Reservierung> batch = new ArrayList<>();
+        while (ausstehend.drainTo(batch, BATCH) > 0) {
+            anzahl += schreibeGeteilt(batch);
+            batch.clear();
+        }
+        return anzahl;
+    }
+
+    // ein fehlgeschlagener Batch wird halbiert, bis die fehlerhaften Reservierungen einzeln feststehen
+    private int schreibeGeteilt(List<Reservierung> batch) {
+        try {
+            schreibe(batch);
+        } catch (DataException e) {
+            if (batch.size() > 1) {
+                int mitte = batch.size() / 2;
+                return schreibeGeteilt(batch.subList(0, mitte)) + schreibeGeteilt(batch.subList(mitte, batch.size()));
+            }
+            // zurueckgerollt, die Sitze sind also wieder frei
+            Reservierung r = batch.get(0);
+            fehlgeschlagen.incrementAndGet();
+            belegung(r.rid, r.zeitfenster).freigeben(r.sitze);
+            r.gespeichert.completeExceptionally(e);
+            return 0;
+        }
+        geschrieben.addAndGet(batch.size());
+        for (Reservierung r : batch) {
+            r.gespeichert.complete(r);
+        }
+        return batch.size();
+    }
+
+    /**
+     * Schreibt im Hintergrund alle intervallMillis aus.
+     */
+    public synchronized void starte(long intervallMillis) {
+        if (schreiber != null) {
+            return;
+        }
+        schreiber = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sitzreservierung-schreiber");
+            t.setDaemon(true);
+            return t;
+        });
+        schreiber.scheduleWithFixedDelay(() -> {
+            try {
+                schreibeAus();
+            } catch (RuntimeException e) {
+                L.error("", e);
+            }
+        }, intervallMillis, intervallMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Beendet das Schreiben im Hintergrund und schreibt den Rest aus.
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService s;
+        synchronized (this) {
+            s = schreiber;
+            schreiber = null;
+        }
+        if (s != null) {
+            s.shutdown();
+            try {
+                s.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                // schreibeAus ist synchronisiert, ein noch laufender Durchgang wird abgewartet
+                Thread.currentThread().interrupt();
+            }
+        }
+        schreibeAus();
+    }
+
+    /**
+     * Ersetzt die Belegungen durch die Reservierungen der noch nicht begonnenen Zeitfenster aus der Datenbank.
+     * Gedacht fuer den Start, bevor reserviert wird.
+     */
+    public synchronized void laden() {
+        String sql = "select RID, Zeitfenster, SitzNr from Sitzreservierung where Zeitfenster >= current_date";
+        L.info(sql);
+        Map<Schluessel, SitzplatzBitset> neu = new ConcurrentHashMap<>();
+        int anzahl = 0;
+        try (PreparedStatement ps = useConnection().prepareStatement(sql)) {
+            ps.setFetchSize(BATCH);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    int rid = rs.getInt("RID");
+                    Timestamp zeitfenster = rs.getTimestamp("Zeitfenster");
+                    neu.computeIfAbsent(new Schluessel(rid, zeitfenster), k -> neueBelegung(rid))
+                            .belege(rs.getInt("SitzNr"));
+                    anzahl++;
+                }
+            }
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        }
+        belegungen.clear();
+        belegungen.putAll(neu);
+        L.info("sitzreservierungen geladen: " + anzahl);
+    }
+
+    private SitzplatzBitset belegung(int rid, Timestamp zeitfenster) {
+        return belegungen.computeIfAbsent(new Schluessel(rid, zeitfenster), k -> neueBelegung(rid));
+    }
+
+    private SitzplatzBitset neueBelegung(int rid) {
+        return new SitzplatzBitset(raumService.findAnzahlPlaetzeInRaum(rid));
+    }
+
+    private void schreibe(List<Reservierung> batch) {
+        String sql = "insert into Sitzreservierung (RID, Zeitfenster, SitzNr, Inhaber, Zeitpunkt) " +
+                "values (?, ?, ?, ?, current_timestamp)";
+        L.info(sql);
+        Connection c = useConnection();
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            boolean autoCommit = c.getAutoCommit();
+            c.setAutoCommit(false);
+            try {
+                for (Reservierung r : batch) {
+                    for (int sitz : r.sitze) {
+                        ps.setInt(1, r.rid);
+                        ps.setTimestamp(2, r.zeitfenster);
+                        ps.setInt(3, sitz);
+                        ps.setString(4, r.inhaber);
+                        ps.addBatch();
+                    }
+                }
+                ps.executeBatch();
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package de.htwberlin.dbtech.bsp.raum;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.exceptions.RaumException;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SitzplatzReservierungTest {
+
+    private static final Timestamp ZEITFENSTER = Timestamp.valueOf("2030-01-15 09:00:00");
+
+    private static class Raeume implements IRaumService {
+        @Override
+        public void setConnection(Connection connection) {
+        }
+
+        @Override
+        public Integer findAnzahlPlaetzeInRaum(int rid) {
+            return 20;
+        }
+    }
+
+    // Sitzreservierung, in der jeder Batch mit einem Inhaber "kaputt..." scheitert; zaehlt die Batches
+    private static Connection tabelle(AtomicInteger batches) {
+        ClassLoader lader = SitzplatzReservierungTest.class.getClassLoader();
+        return (Connection) Proxy.newProxyInstance(lader, new Class<?>[]{Connection.class}, (c, m, a) -> {
+            switch (m.getName()) {
+                case "getAutoCommit":
+                    return true;
+                case "setAutoCommit":
+                case "commit":
+                case "rollback":
+                    return null;
+                case "prepareStatement":
+                    List<String> inhaber = new ArrayList<>();
+                    return Proxy.newProxyInstance(lader, new Class<?>[]{PreparedStatement.class}, (ps, pm, pa) -> {
+                        switch (pm.getName()) {
+                            case "setString":
+                                inhaber.add((String) pa[1]);
+                                return null;
+                            case "executeBatch":
+                                batches.incrementAndGet();
+                                boolean kaputt = inhaber.stream().anyMatch(i -> i.startsWith("kaputt"));
+                                inhaber.clear();
+                                if (kaputt) {
+                                    throw new SQLException("ORA-12899: value too large for column");
+                                }
+                                return new int[0];
+                            case "setInt":
+                            case "setTimestamp":
+                            case "addBatch":
+                            case "close":
+                                return null;
+                            default:
+                                throw new UnsupportedOperationException(pm.getName());
+                        }
+                    });
+                default:
+                    throw new UnsupportedOperationException(m.getName());
+            }
+        });
+    }
+
+    /**
+     * Ein fehlerhafter Batch wird geteilt: nur die fehlerhafte Reservierung scheitert, ihre Sitze sind wieder
+     * frei, alle anderen werden geschrieben.
+     */
+    @org.junit.Test
+    public void fehlerhafteReservierungWirdIsoliert() throws Exception {
+        AtomicInteger batches = new AtomicInteger();
+        SitzplatzReservierung s = new SitzplatzReservierung(new Raeume());
+        s.setConnection(tabelle(batches));
+        List<SitzplatzReservierung.Reservierung> reservierungen = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            reservierungen.add(s.reserviere(1, ZEITFENSTER, i == 5 ? "kaputt" : "inhaber" + i, 2, true));
+        }
+        assertEquals(4, s.getFrei(1, ZEITFENSTER));
+
+        assertEquals(7, s.schreibeAus());
+        assertEquals(7, s.getGeschrieben());
+        assertEquals(1, s.getFehlgeschlagen());
+        assertEquals(6, s.getFrei(1, ZEITFENSTER));
+        // 8 -> 4 + 4 -> 2 + 2 -> 1 + 1
+        assertEquals(7, batches.get());
+        for (int i = 0; i < 8; i++) {
+            SitzplatzReservierung.Reservierung r = reservierungen.get(i);
+            if (i == 5) {
+                try {
+                    r.getGespeichert().get();
+                    fail();
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof DataException);
+                }
+            } else {
+                assertEquals(r, r.getGespeichert().get());
+            }
+        }
+    }
+
+    /**
+     * Was nicht in Sitzreservierung passt, wird schon beim Reservieren abgelehnt.
+     */
+    @org.junit.Test
+    public void ungueltigeAngabenWerdenAbgelehnt() {
+        SitzplatzReservierung s = new SitzplatzReservierung(new Raeume());
+        String[] inhaber = {null, " ", "x".repeat(31), "ä".repeat(16)};
+        for (String i : inhaber) {
+            try {
+                s.reserviere(1, ZEITFENSTER, i, 1, false);
+                fail(i);
+            } catch (RaumException e) {
+                assertNotNull(e.getMessage());
+            }
+        }
+        try {
+            s.reserviere(1, ZEITFENSTER, "inhaber", 0, false);
+            fail();
+        } catch (RaumException e) {
+            assertEquals("anzahl muss mindestens 1 sein: 0", e.getMessage());
+        }
+        assertEquals(20, s.getFrei(1, ZEITFENSTER));
+        assertNotNull(s.reserviere(1, ZEITFENSTER, "x".repeat(30), 1, false));
+    }
+}
@@ -0,0 +1,12 @@
+package de.htwberlin.dbtech.exceptions;
+
+/**
+ * Ein Gebot wurde abgelehnt, weil die Auktion schon beendet ist.
+ */
+public class AuktionBeendetException extends ServiceException {
+
+    public AuktionBeendetException(String msg) {
+        super(msg, null, !Fachfehler.isOhneStacktrace());
+    }
+
+}
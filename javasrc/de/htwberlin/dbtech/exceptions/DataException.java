@@ -39,4 +39,15 @@ public class DataException extends RuntimeException {
         super(msg, t);
     }
 
+    /**
+     * Fuer Unterklassen, die ohne Stacktrace erzeugt werden koennen, siehe {@link Fachfehler}.
+     *
+     * @param msg                - die Nachricht
+     * @param t                  - das Throwable.
+     * @param writableStackTrace - false, um den Stacktrace nicht zu erfassen
+     */
+    protected DataException(String msg, Throwable t, boolean writableStackTrace) {
+        super(msg, t, true, writableStackTrace);
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package de.htwberlin.dbtech.exceptions;
+
+/**
+ * Schalter fuer Ausnahmen, die ein erwartetes fachliches Ergebnis melden, z.B. {@link VersicherungException}
+ * und ihre Unterklassen oder {@link VersionskonfliktException}.
+ * <p>
+ * Ohne Stacktrace entfaellt beim Werfen das Erfassen des Aufrufstapels, der teuerste Teil einer Ausnahme. Das
+ * lohnt sich fuer Massenaufrufe, bei denen ein guter Teil der Eingaben abgelehnt wird. Technische Fehler wie
+ * {@link DataException} behalten ihren Stacktrace immer. Voreinstellung ueber die System-Property
+ * dbtech.fachfehler.ohneStacktrace, sonst mit Stacktrace.
+ */
+public final class Fachfehler {
+    private static volatile boolean ohneStacktrace = Boolean.getBoolean("dbtech.fachfehler.ohneStacktrace");
+
+    private Fachfehler() {
+    }
+
+    public static boolean isOhneStacktrace() {
+        return ohneStacktrace;
+    }
+
+    /**
+     * Gilt fuer alle danach erzeugten Ausnahmen.
+     */
+    public static void setOhneStacktrace(boolean ohneStacktrace) {
+        Fachfehler.ohneStacktrace = ohneStacktrace;
+    }
+}
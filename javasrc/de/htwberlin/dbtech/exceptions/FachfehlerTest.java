@@ -0,0 +1,30 @@
+package de.htwberlin.dbtech.exceptions;
+
+import org.junit.After;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FachfehlerTest {
+
+    @After
+    public void zuruecksetzen() {
+        Fachfehler.setOhneStacktrace(false);
+    }
+
+    @org.junit.Test
+    public void fachlicheAusnahmenOhneStacktrace() {
+        Fachfehler.setOhneStacktrace(true);
+        assertEquals(0, new VertragExistiertNichtException(1).getStackTrace().length);
+        assertEquals(0, new VersionskonfliktException("Angebot 1 geaendert").getStackTrace().length);
+        assertEquals(0, new GebotZuSpaetException(1, 0).getStackTrace().length);
+        assertEquals(0, new UeberlastException("voll").getStackTrace().length);
+        // technische Fehler behalten ihren Stacktrace
+        assertTrue(new DataException("kaputt").getStackTrace().length > 0);
+    }
+
+    @org.junit.Test
+    public void vorgabeMitStacktrace() {
+        assertTrue(new VertragExistiertNichtException(1).getStackTrace().length > 0);
+    }
+}
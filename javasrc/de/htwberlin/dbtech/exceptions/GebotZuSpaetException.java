@@ -0,0 +1,14 @@
+package de.htwberlin.dbtech.exceptions;
+
+/**
+ * Ein Gebot wurde abgelehnt, weil es vor dem Ende der Auktion nicht mehr verarbeitet werden kann.
+ */
+public class GebotZuSpaetException extends ServiceException {
+
+    public GebotZuSpaetException(Integer aid, long restMillis) {
+        // ohne Stacktrace, wenn eingeschaltet, siehe Fachfehler
+        super("Gebot kann vor Auktionsende nicht mehr verarbeitet werden: aid " + aid + ", restMillis " + restMillis,
+                null, !Fachfehler.isOhneStacktrace());
+    }
+
+}
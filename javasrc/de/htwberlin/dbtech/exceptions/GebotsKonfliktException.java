@@ -0,0 +1,12 @@
+package de.htwberlin.dbtech.exceptions;
+
+/**
+ * Ein Gebot wurde abgelehnt, weil es auch nach mehreren Versuchen an konkurrierenden Geboten scheiterte.
+ */
+public class GebotsKonfliktException extends ServiceException {
+
+    public GebotsKonfliktException(String msg, Throwable t) {
+        super(msg, t, !Fachfehler.isOhneStacktrace());
+    }
+
+}
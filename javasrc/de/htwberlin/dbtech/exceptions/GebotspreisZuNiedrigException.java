@@ -0,0 +1,12 @@
+package de.htwberlin.dbtech.exceptions;
+
+/**
+ * Ein Gebot wurde abgelehnt, weil es den Mindestpreis oder den aktuellen Preis nicht erreicht.
+ */
+public class GebotspreisZuNiedrigException extends ServiceException {
+
+    public GebotspreisZuNiedrigException(String msg) {
+        super(msg, null, !Fachfehler.isOhneStacktrace());
+    }
+
+}
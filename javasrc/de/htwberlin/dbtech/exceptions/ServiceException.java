@@ -17,4 +17,9 @@ public class ServiceException extends RuntimeException {
         super(msg, t);
     }
 
+    // fuer Unterklassen, die ohne Stacktrace erzeugt werden koennen, siehe Fachfehler
+    protected ServiceException(String msg, Throwable t, boolean writableStackTrace) {
+        super(msg, t, true, writableStackTrace);
+    }
+
 }
@@ -0,0 +1,13 @@
+package de.htwberlin.dbtech.exceptions;
+
+/**
+ * Ein Aufruf wurde abgelehnt, weil das Nebenlaeufigkeitslimit erreicht und die Warteschlange voll ist.
+ */
+public class UeberlastException extends ServiceException {
+
+    // ohne Stacktrace, wenn eingeschaltet, siehe Fachfehler
+    public UeberlastException(String msg) {
+        super(msg, null, !Fachfehler.isOhneStacktrace());
+    }
+
+}
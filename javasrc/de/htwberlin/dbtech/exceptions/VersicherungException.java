@@ -6,18 +6,20 @@ package de.htwberlin.dbtech.exceptions;
 public class VersicherungException extends RuntimeException {
 
     public VersicherungException() {
+        this(null, null);
     }
 
     public VersicherungException(String msg) {
-        super(msg);
+        this(msg, null);
     }
 
     public VersicherungException(Throwable t) {
-        super(t);
+        this(t == null ? null : t.toString(), t);
     }
 
+    // ohne Stacktrace, wenn eingeschaltet, siehe Fachfehler
     public VersicherungException(String msg, Throwable t) {
-        super(msg, t);
+        super(msg, t, true, !Fachfehler.isOhneStacktrace());
     }
 
 }
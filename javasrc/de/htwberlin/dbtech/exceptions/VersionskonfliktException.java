@@ -0,0 +1,17 @@
+package de.htwberlin.dbtech.exceptions;
+
+/**
+ * Ein Datensatz wurde seit dem Lesen von einer anderen Transaktion geaendert.
+ */
+public class VersionskonfliktException extends DataException {
+
+    public VersionskonfliktException(String msg) {
+        this(msg, null);
+    }
+
+    // ohne Stacktrace, wenn eingeschaltet, siehe Fachfehler
+    public VersionskonfliktException(String msg, Throwable t) {
+        super(msg, t, !Fachfehler.isOhneStacktrace());
+    }
+
+}
@@ -0,0 +1,196 @@
+package de.htwberlin.dbtech.utils;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.exceptions.UeberlastException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Begrenzt die Anzahl gleichzeitiger Aufrufe und passt die Grenze an die beobachtete Latenz an (AIMD).
+ * <p>
+ * Als Bezug dient die kleinste Latenz der letzten Zeit, die langsam nach oben nachgefuehrt wird. Liegt ein
+ * Aufruf um mehr als den Toleranzfaktor darueber oder endet er mit einer {@link DataException}, sinkt das Limit
+ * um einen festen Anteil, hoechstens einmal je Bezugslatenz. Sonst steigt es bei ausgelastetem Limit um etwa
+ * eins je Limit Aufrufe. Ueberzaehlige Aufrufe warten begrenzt lange in einer begrenzten Warteschlange und
+ * werden danach mit {@link UeberlastException} abgelehnt.
+ */
+public class AdaptivesLimit {
+    private static final double VERRINGERUNG = 0.9;
+    // Anteil, mit dem eine hoehere Latenz in die Bezugslatenz eingeht
+    private static final double NACHFUEHRUNG = 0.01;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxWartend;
+    private final long maxWarteNanos;
+    private double toleranz = 2.0;
+    private LongSupplier uhr = System::nanoTime;
+
+    private final ReentrantLock sperre = new ReentrantLock();
+    private final Condition frei = sperre.newCondition();
+    private double limit;
+    private int laufend = 0;
+    private int wartend = 0;
+    private long abgelehnt = 0;
+    private double bezugNanos = 0;
+    private long letzteVerringerungNanos = 0;
+
+    public AdaptivesLimit(int anfangsLimit, int minLimit, int maxLimit, int maxWartend, long maxWarteMillis) {
+        if (minLimit < 1 || anfangsLimit < minLimit || maxLimit < anfangsLimit) {
+            throw new IllegalArgumentException("es muss 1 <= minLimit <= anfangsLimit <= maxLimit gelten");
+        }
+        this.limit = anfangsLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxWartend = maxWartend;
+        this.maxWarteNanos = TimeUnit.MILLISECONDS.toNanos(maxWarteMillis);
+    }
+
+    /**
+     * Um welchen Faktor die Latenz die Bezugslatenz uebersteigen darf, bevor das Limit sinkt.
+     */
+    public void setToleranz(double toleranz) {
+        this.toleranz = toleranz;
+    }
+
+    void setUhr(LongSupplier uhr) {
+        this.uhr = uhr;
+    }
+
+    public void ausfuehren(Runnable aufruf) {
+        ausfuehren(() -> {
+            aufruf.run();
+            return null;
+        });
+    }
+
+    public <T> T ausfuehren(Supplier<T> aufruf) {
+        belege();
+        long start = uhr.getAsLong();
+        boolean fehler = true;
+        try {
+            T ergebnis = aufruf.get();
+            fehler = false;
+            return ergebnis;
+        } catch (DataException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // fachliche Ablehnungen sagen nichts ueber die Last aus
+            fehler = false;
+            throw e;
+        } finally {
+            freigeben(uhr.getAsLong() - start, fehler);
+        }
+    }
+
+    public int getLimit() {
+        sperre.lock();
+        try {
+            return (int) limit;
+        } finally {
+            sperre.unlock();
+        }
+    }
+
+    public int getLaufend() {
+        sperre.lock();
+        try {
+            return laufend;
+        } finally {
+            sperre.unlock();
+        }
+    }
+
+    public int getWartend() {
+        sperre.lock();
+        try {
+            return wartend;
+        } finally {
+            sperre.unlock();
+        }
+    }
+
+    public long getAbgelehnt() {
+        sperre.lock();
+        try {
+            return abgelehnt;
+        } finally {
+            sperre.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        sperre.lock();
+        try {
+            return "AdaptivesLimit [limit=" + (int) limit + ", laufend=" + laufend + ", wartend=" + wartend
+                    + ", abgelehnt=" + abgelehnt + "]";
+        } finally {
+            sperre.unlock();
+        }
+    }
+
+    private void belege() {
+        sperre.lock();
+        try {
+            if (laufend < (int) limit) {
+                laufend++;
+                return;
+            }
+            if (wartend >= maxWartend) {
+                abgelehnt++;
+                throw new UeberlastException("Limit " + (int) limit + " erreicht, " + wartend + " Aufrufe warten");
+            }
+            wartend++;
+            try {
+                long rest = maxWarteNanos;
+                while (laufend >= (int) limit) {
+                    if (rest <= 0) {
+                        abgelehnt++;
+                        throw new UeberlastException("Limit " + (int) limit + " nach Wartezeit weiter erreicht");
+                    }
+                    rest = frei.awaitNanos(rest);
+                }
+                laufend++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                abgelehnt++;
+                throw new UeberlastException("Warten auf freien Platz unterbrochen");
+            } finally {
+                wartend--;
+            }
+        } finally {
+            sperre.unlock();
+        }
+    }
+
+    private void freigeben(long latenzNanos, boolean fehler) {
+        sperre.lock();
+        try {
+            boolean ausgelastet = laufend >= (int) limit;
+            laufend--;
+            if (bezugNanos == 0 || latenzNanos < bezugNanos) {
+                bezugNanos = latenzNanos;
+            } else {
+                bezugNanos += NACHFUEHRUNG * (latenzNanos - bezugNanos);
+            }
+            long jetzt = uhr.getAsLong();
+            if (fehler || latenzNanos > toleranz * bezugNanos) {
+                // eine Spitze betrifft alle gerade laufenden Aufrufe, daher nur einmal je Bezugslatenz verringern
+                if (jetzt - letzteVerringerungNanos > bezugNanos) {
+                    limit = Math.max(minLimit, limit * VERRINGERUNG);
+                    letzteVerringerungNanos = jetzt;
+                }
+            } else if (ausgelastet) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            frei.signalAll();
+        } finally {
+            sperre.unlock();
+        }
+    }
+}
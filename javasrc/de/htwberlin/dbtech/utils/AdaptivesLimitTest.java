@@ -0,0 +1,86 @@
+package de.htwberlin.dbtech.utils;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.exceptions.ServiceException;
+import de.htwberlin.dbtech.exceptions.UeberlastException;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class AdaptivesLimitTest {
+
+    private final long[] zeit = {0};
+
+    private AdaptivesLimit limit(int anfang, int min, int max, int maxWartend) {
+        AdaptivesLimit l = new AdaptivesLimit(anfang, min, max, maxWartend, 0);
+        l.setUhr(() -> zeit[0]);
+        return l;
+    }
+
+    private void rufeAuf(AdaptivesLimit l, long millis) {
+        l.ausfuehren(() -> zeit[0] += TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /**
+     * Bei ausgeschoepftem Limit und unauffaelliger Latenz steigt das Limit, bis zum Maximum.
+     */
+    @org.junit.Test
+    public void steigtBeiAuslastung() {
+        AdaptivesLimit l = limit(1, 1, 2, 0);
+        rufeAuf(l, 1);
+        assertEquals(2, l.getLimit());
+        rufeAuf(l, 1);
+        assertEquals(2, l.getLimit());
+    }
+
+    /**
+     * Hohe Latenz und Datenbankfehler verringern das Limit, fachliche Fehler nicht; nie unter das Minimum.
+     */
+    @org.junit.Test
+    public void sinktBeiHoherLatenzUndDatenfehler() {
+        AdaptivesLimit l = limit(10, 8, 20, 0);
+        rufeAuf(l, 1);
+        assertEquals(10, l.getLimit());
+        rufeAuf(l, 10);
+        assertEquals(9, l.getLimit());
+        try {
+            l.ausfuehren(() -> {
+                throw new ServiceException("zu niedrig");
+            });
+            fail();
+        } catch (ServiceException e) {
+            assertEquals(9, l.getLimit());
+        }
+        zeit[0] += TimeUnit.MILLISECONDS.toNanos(10);
+        try {
+            l.ausfuehren(() -> {
+                throw new DataException("timeout");
+            });
+            fail();
+        } catch (DataException e) {
+            assertEquals(8, l.getLimit());
+        }
+        rufeAuf(l, 100);
+        assertEquals(8, l.getLimit());
+    }
+
+    /**
+     * Ohne freien Platz und ohne Warteplatz wird sofort abgelehnt.
+     */
+    @org.junit.Test
+    public void lehntUeberzaehligeAb() {
+        AdaptivesLimit l = limit(1, 1, 1, 0);
+        l.ausfuehren(() -> {
+            assertEquals(1, l.getLaufend());
+            try {
+                rufeAuf(l, 1);
+                fail();
+            } catch (UeberlastException e) {
+                assertEquals(1, l.getAbgelehnt());
+            }
+        });
+        assertEquals(0, l.getLaufend());
+    }
+}
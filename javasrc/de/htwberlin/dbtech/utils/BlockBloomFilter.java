@@ -0,0 +1,101 @@
+package de.htwberlin.dbtech.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom-Filter fuer long-Schluessel, aufgeteilt in Bloecke von 512 Bit (eine Cache-Line). Alle Bits eines
+ * Schluessels liegen im selben Block, eine Abfrage liest also nur einen Block. Dafuer ist die
+ * Falsch-Positiv-Rate etwas hoeher als beim klassischen Bloom-Filter gleicher Groesse.
+ * <p>
+ * Einfuegen und Abfragen sind ohne Sperren aus mehreren Threads moeglich. Entfernen geht nicht.
+ */
+public class BlockBloomFilter {
+    private static final int WOERTER_JE_BLOCK = 8;
+    private static final int BITS_JE_BLOCK = WOERTER_JE_BLOCK * 64;
+    // Bits je Schluessel im Block; bei 10 Bit je Schluessel liegt die Falsch-Positiv-Rate um 1%
+    private static final int K = 6;
+    private static final int MAX_BLOECKE = 1 << 22;
+
+    private final AtomicLongArray bits;
+    private final int blockMaske;
+
+    /**
+     * @param erwarteteSchluessel fuer wie viele Schluessel der Filter ausgelegt wird
+     * @param bitsJeSchluessel    Speicher je Schluessel, mehr Bits senken die Falsch-Positiv-Rate
+     */
+    public BlockBloomFilter(long erwarteteSchluessel, int bitsJeSchluessel) {
+        if (erwarteteSchluessel < 0 || bitsJeSchluessel < 1) {
+            throw new IllegalArgumentException("es muss erwarteteSchluessel >= 0 und bitsJeSchluessel >= 1 gelten");
+        }
+        long bloecke = Math.max(1, (erwarteteSchluessel * bitsJeSchluessel + BITS_JE_BLOCK - 1) / BITS_JE_BLOCK);
+        // Zweierpotenz, damit der Block ueber eine Maske bestimmt wird; hoechstens 256 MB
+        int anzahl = 1;
+        while (anzahl < bloecke && anzahl < MAX_BLOECKE) {
+            anzahl <<= 1;
+        }
+        this.bits = new AtomicLongArray(anzahl * WOERTER_JE_BLOCK);
+        this.blockMaske = anzahl - 1;
+    }
+
+    public void fuegeHinzu(long schluessel) {
+        long h = mische(schluessel);
+        int block = blockVon(h);
+        for (int i = 0; i < K; i++) {
+            int bit = (int) (h >>> (9 * i)) & (BITS_JE_BLOCK - 1);
+            long maske = 1L << bit;
+            int wort = block + (bit >>> 6);
+            if ((bits.get(wort) & maske) == 0) {
+                bits.accumulateAndGet(wort, maske, (a, b) -> a | b);
+            }
+        }
+    }
+
+    /**
+     * false heisst: sicher nie eingefuegt. true kann auch fuer nicht eingefuegte Schluessel vorkommen.
+     */
+    public boolean vielleichtEnthalten(long schluessel) {
+        long h = mische(schluessel);
+        int block = blockVon(h);
+        for (int i = 0; i < K; i++) {
+            int bit = (int) (h >>> (9 * i)) & (BITS_JE_BLOCK - 1);
+            if ((bits.get(block + (bit >>> 6)) & 1L << bit) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Falsch-Positiv-Rate nach dem aktuellen Fuellgrad der Bloecke, fuer gleichverteilte Abfragen.
+     */
+    public double geschaetzteFalschPositivRate() {
+        double summe = 0;
+        int bloecke = blockMaske + 1;
+        for (int b = 0; b < bloecke; b++) {
+            int gesetzt = 0;
+            for (int w = 0; w < WOERTER_JE_BLOCK; w++) {
+                gesetzt += Long.bitCount(bits.get(b * WOERTER_JE_BLOCK + w));
+            }
+            summe += Math.pow((double) gesetzt / BITS_JE_BLOCK, K);
+        }
+        return summe / bloecke;
+    }
+
+    public long getSpeicherBytes() {
+        return bits.length() * 8L;
+    }
+
+    // erstes Wort des Blocks; die unteren 54 Bit von h waehlen die Bits im Block, der Block kommt daher aus
+    // einer weiteren Mischung ueber alle Bits
+    private int blockVon(long h) {
+        return ((int) ((h * 0x9E3779B97F4A7C15L) >>> 38) & blockMaske) * WOERTER_JE_BLOCK;
+    }
+
+    // splitmix64, damit auch fortlaufende IDs gleichmaessig verteilt werden
+    private static long mische(long x) {
+        long z = x + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,43 @@
+package de.htwberlin.dbtech.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BlockBloomFilterTest {
+
+    @org.junit.Test
+    public void keineFalschNegativen() {
+        BlockBloomFilter f = new BlockBloomFilter(100_000, 10);
+        for (long id = 1; id <= 100_000; id++) {
+            f.fuegeHinzu(id);
+        }
+        for (long id = 1; id <= 100_000; id++) {
+            assertTrue("id " + id, f.vielleichtEnthalten(id));
+        }
+    }
+
+    @org.junit.Test
+    public void falschPositivRateWieGeschaetzt() {
+        BlockBloomFilter f = new BlockBloomFilter(100_000, 10);
+        for (long id = 1; id <= 100_000; id++) {
+            f.fuegeHinzu(id);
+        }
+        int falsch = 0;
+        for (long id = 1_000_001; id <= 1_100_000; id++) {
+            falsch += f.vielleichtEnthalten(id) ? 1 : 0;
+        }
+        double rate = falsch / 100_000.0;
+        assertTrue("rate " + rate, rate < 0.02);
+        assertEquals(rate, f.geschaetzteFalschPositivRate(), rate / 2);
+    }
+
+    @org.junit.Test
+    public void leererFilterEnthaeltNichts() {
+        BlockBloomFilter f = new BlockBloomFilter(0, 10);
+        assertEquals(64, f.getSpeicherBytes());
+        assertEquals(0.0, f.geschaetzteFalschPositivRate(), 0.0);
+        for (long id = -50; id < 50; id++) {
+            assertTrue(!f.vielleichtEnthalten(id));
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package de.htwberlin.dbtech.utils;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.utils.mapper.ZeilenMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Streams ueber offene Cursor: Zeilen werden erst beim Verbrauch des Streams mit der angegebenen Fetch-Size
+ * geholt, nicht vorab in eine Liste.
+ * <p>
+ * Ein Cursor wird geschlossen, sobald er ausgelesen ist, alle noch offenen spaetestens mit {@link Stream#close()}.
+ * Streams daher in try-with-resources verwenden, wenn sie nicht sicher bis zum Ende gelesen werden.
+ * <p>
+ * {@link #nachSchluessel} kann fuer parallele Streams in Teilstreams ueber Schluesselbereiche zerfallen; jeder
+ * Teil oeffnet dann einen eigenen Cursor auf derselben Connection. Die Datenbankzugriffe laufen so nicht
+ * unbedingt schneller, aber die Verarbeitung danach verteilt sich auf mehrere Threads.
+ */
+public final class CursorStream {
+    private static final Logger L = LoggerFactory.getLogger(CursorStream.class);
+
+    /**
+     * Legt den Mapper fuer ein ResultSet an, z.B. KundeMapper::new.
+     */
+    public interface MapperFabrik<T> {
+        ZeilenMapper<T> fuer(ResultSet rs) throws SQLException;
+    }
+
+    private CursorStream() {
+    }
+
+    /**
+     * Stream ueber das Ergebnis eines Selects, nicht teilbar.
+     */
+    public static <T> Stream<T> von(Connection connection, String sql, int fetchSize, MapperFabrik<T> fabrik,
+                                    Object... parameter) {
+        Abfrage<T> a = new Abfrage<>(connection, sql, fetchSize, fabrik, parameter, false, 0);
+        return StreamSupport.stream(new Teil<>(a, 0, 0), false).onClose(a::schliesseAlle);
+    }
+
+    /**
+     * Stream ueber einen Schluesselbereich [von, bis]. Die letzten beiden Platzhalter des Selects sind die
+     * Bereichsgrenzen, z.B. "... where ID between ? and ? order by ID"; parameter belegt die davor.
+     * Teilbereiche werden nicht kleiner als minBereich Schluessel.
+     */
+    public static <T> Stream<T> nachSchluessel(Connection connection, String sql, long von, long bis, long minBereich,
+                                               int fetchSize, MapperFabrik<T> fabrik, Object... parameter) {
+        Abfrage<T> a = new Abfrage<>(connection, sql, fetchSize, fabrik, parameter, true, Math.max(1, minBereich));
+        return StreamSupport.stream(new Teil<>(a, von, bis), false).onClose(a::schliesseAlle);
+    }
+
+    // was alle Teile eines Streams gemeinsam haben
+    private static final class Abfrage<T> {
+        final Connection connection;
+        final String sql;
+        final int fetchSize;
+        final MapperFabrik<T> fabrik;
+        final Object[] parameter;
+        final boolean bereich;
+        final long minBereich;
+        final Set<Teil<T>> offen = ConcurrentHashMap.newKeySet();
+
+        Abfrage(Connection connection, String sql, int fetchSize, MapperFabrik<T> fabrik, Object[] parameter,
+                boolean bereich, long minBereich) {
+            this.connection = connection;
+            this.sql = sql;
+            this.fetchSize = fetchSize;
+            this.fabrik = fabrik;
+            this.parameter = parameter;
+            this.bereich = bereich;
+            this.minBereich = minBereich;
+        }
+
+        void schliesseAlle() {
+            for (Teil<T> t : new ArrayList<>(offen)) {
+                t.schliesse();
+            }
+        }
+    }
+
+    private static final class Teil<T> implements Spliterator<T> {
+        private final Abfrage<T> abfrage;
+        private long von;
+        private final long bis;
+        private PreparedStatement ps = null;
+        private ResultSet rs = null;
+        private ZeilenMapper<T> mapper = null;
+        private boolean fertig;
+
+        Teil(Abfrage<T> abfrage, long von, long bis) {
+            this.abfrage = abfrage;
+            this.von = von;
+            this.bis = bis;
+            this.fertig = abfrage.bereich && von > bis;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (fertig) {
+                return false;
+            }
+            T t;
+            try {
+                if (rs == null) {
+                    oeffne();
+                }
+                if (!rs.next()) {
+                    schliesse();
+                    return false;
+                }
+                t = mapper.abbilden(rs);
+            } catch (SQLException e) {
+                schliesse();
+                L.error("", e);
+                throw new DataException(e);
+            }
+            action.accept(t);
+            return true;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            // ein geoeffneter Cursor laesst sich nicht mehr teilen
+            if (!abfrage.bereich || rs != null || fertig || bis - von < 2 * abfrage.minBereich - 1) {
+                return null;
+            }
+            long mitte = von + (bis - von) / 2;
+            Teil<T> vorn = new Teil<>(abfrage, von, mitte);
+            von = mitte + 1;
+            return vorn;
+        }
+
+        @Override
+        public long estimateSize() {
+            // Schluessel im Bereich, nicht Zeilen
+            return abfrage.bereich && !fertig ? bis - von + 1 : fertig ? 0 : Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL;
+        }
+
+        private void oeffne() throws SQLException {
+            L.info(abfrage.sql);
+            abfrage.offen.add(this);
+            ps = abfrage.connection.prepareStatement(abfrage.sql, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(abfrage.fetchSize);
+            int i = 1;
+            for (Object p : abfrage.parameter) {
+                ps.setObject(i++, p);
+            }
+            if (abfrage.bereich) {
+                ps.setLong(i++, von);
+                ps.setLong(i, bis);
+            }
+            rs = ps.executeQuery();
+            mapper = abfrage.fabrik.fuer(rs);
+        }
+
+        void schliesse() {
+            fertig = true;
+            abfrage.offen.remove(this);
+            // Statement auch schliessen, wenn das Schliessen des Cursors scheitert
+            try {
+                if (rs != null) {
+                    rs.close();
+                }
+            } catch (SQLException e) {
+                L.error("", e);
+            } finally {
+                try {
+                    if (ps != null) {
+                        ps.close();
+                    }
+                } catch (SQLException e) {
+                    L.error("", e);
+                }
+            }
+            L.debug("cursor geschlossen");
+            rs = null;
+            ps = null;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package de.htwberlin.dbtech.utils;
+
+import de.htwberlin.dbtech.utils.mapper.ZeilenMapper;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CursorStreamTest {
+
+    private static final String SQL = "select ID from T where ID between ? and ? order by ID";
+
+    // Tabelle T mit den IDs 1..anzahl; zaehlt geoeffnete und geschlossene Statements
+    private static final class Tabelle {
+        final int anzahl;
+        final AtomicInteger geoeffnet = new AtomicInteger();
+        final AtomicInteger geschlossen = new AtomicInteger();
+        final List<Integer> fetchSizes = new ArrayList<>();
+
+        Tabelle(int anzahl) {
+            this.anzahl = anzahl;
+        }
+
+        Connection connection() {
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (p, m, a) -> {
+                        if (m.getName().equals("prepareStatement")) {
+                            geoeffnet.incrementAndGet();
+                            return statement();
+                        }
+                        throw new UnsupportedOperationException(m.getName());
+                    });
+        }
+
+        private PreparedStatement statement() {
+            long[] grenzen = new long[3];
+            return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, (p, m, a) -> {
+                        switch (m.getName()) {
+                            case "setFetchSize":
+                                synchronized (fetchSizes) {
+                                    fetchSizes.add((Integer) a[0]);
+                                }
+                                return null;
+                            case "setLong":
+                                grenzen[(Integer) a[0]] = (Long) a[1];
+                                return null;
+                            case "executeQuery":
+                                return resultSet(Math.max(1, grenzen[1]), Math.min(anzahl, grenzen[2]));
+                            case "close":
+                                geschlossen.incrementAndGet();
+                                return null;
+                            default:
+                                throw new UnsupportedOperationException(m.getName());
+                        }
+                    });
+        }
+
+        private ResultSet resultSet(long von, long bis) {
+            long[] id = {von - 1};
+            return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ResultSet.class},
+                    (p, m, a) -> {
+                        switch (m.getName()) {
+                            case "next":
+                                return ++id[0] <= bis;
+                            case "getLong":
+                                return id[0];
+                            case "close":
+                                return null;
+                            default:
+                                throw new UnsupportedOperationException(m.getName());
+                        }
+                    });
+        }
+    }
+
+    private static ZeilenMapper<Long> idMapper(ResultSet rs) {
+        return r -> r.getLong(1);
+    }
+
+    @org.junit.Test
+    public void liestAllesUndSchliesstAmEnde() {
+        Tabelle t = new Tabelle(2500);
+        List<Long> ids;
+        try (Stream<Long> s = CursorStream.nachSchluessel(t.connection(), SQL, 1, 2500, 1000, 100,
+                CursorStreamTest::idMapper)) {
+            ids = s.collect(Collectors.toList());
+            // ausgelesen, also schon vor close geschlossen
+            assertEquals(1, t.geschlossen.get());
+        }
+        assertEquals(2500, ids.size());
+        assertEquals(Long.valueOf(1), ids.get(0));
+        assertEquals(Long.valueOf(2500), ids.get(2499));
+        assertEquals(1, t.geoeffnet.get());
+        assertEquals(100, (int) t.fetchSizes.get(0));
+    }
+
+    @org.junit.Test
+    public void parallelInSchluesselbereichen() {
+        Tabelle t = new Tabelle(100_000);
+        List<Long> ids;
+        try (Stream<Long> s = CursorStream.nachSchluessel(t.connection(), SQL, 1, 100_000, 1000, 500,
+                CursorStreamTest::idMapper)) {
+            ids = s.parallel().map(id -> id * 2).collect(Collectors.toList());
+        }
+        assertEquals(100_000, ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            // Reihenfolge bleibt erhalten
+            assertEquals(2L * (i + 1), (long) ids.get(i));
+        }
+        assertTrue("geoeffnet: " + t.geoeffnet.get(), t.geoeffnet.get() > 1);
+        assertEquals(t.geoeffnet.get(), t.geschlossen.get());
+    }
+
+    @org.junit.Test
+    public void closeSchliesstOffeneCursor() {
+        Tabelle t = new Tabelle(5000);
+        Stream<Long> s = CursorStream.nachSchluessel(t.connection(), SQL, 1, 5000, 1000, 10,
+                CursorStreamTest::idMapper);
+        Iterator<Long> it = s.iterator();
+        assertEquals(Long.valueOf(1), it.next());
+        assertEquals(Long.valueOf(2), it.next());
+        assertEquals(0, t.geschlossen.get());
+        s.close();
+        assertEquals(1, t.geschlossen.get());
+    }
+}
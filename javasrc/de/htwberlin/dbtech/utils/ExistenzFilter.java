@@ -0,0 +1,259 @@
+package de.htwberlin.dbtech.utils;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.exceptions.ServiceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Weiss fuer die Schluessel einer Tabelle, welche sicher nicht existieren, ohne die Datenbank zu fragen
+ * ({@link BlockBloomFilter} ueber die Schluesselspalte).
+ * <p>
+ * Der Filter wird mit {@link #neuAufbauen} aus der Tabelle aufgebaut, nach {@link #starte} periodisch in einem
+ * eigenen Thread. Dafuer hat er eine eigene Connection, die nicht mit anderen Diensten geteilt werden darf; die
+ * pruefenden Aufrufer warten nie auf einen Aufbau. Bis zum ersten Aufbau ist kein Schluessel sicher abwesend.
+ * <p>
+ * Sicher abwesend kann nur ein Schluessel sein, der nicht groesser ist als der groesste beim Aufbau gelesene.
+ * Neue Zeilen mit aufsteigend vergebenen Schluesseln (Sequenz, max+1) sind damit ohne weiteres bis zum
+ * naechsten Aufbau "vielleicht vorhanden". Wer kleinere Schluessel einfuegt, meldet sie nach dem Commit mit
+ * {@link #hinzugefuegt}; auch waehrend eines Aufbaus geht dabei nichts verloren. Geloeschte Zeilen bleiben bis
+ * zum naechsten Aufbau "vielleicht vorhanden", das kostet nur die Abfrage.
+ * <p>
+ * Dienste bekommen den Filter ueber einen Setter; mehrere Dienste koennen sich einen Filter teilen, ohne
+ * Filter fragen sie immer die Datenbank. Nicht gefundene Schluessel melden sie mit {@link #nichtGefunden},
+ * daraus ergibt sich die gemessene Falsch-Positiv-Rate.
+ */
+public class ExistenzFilter implements AutoCloseable {
+    private static final Logger L = LoggerFactory.getLogger(ExistenzFilter.class);
+    private static final int FETCH_SIZE = 1000;
+    private static final int BITS_JE_SCHLUESSEL = 10;
+    // Reserve fuer Einfuegungen bis zum naechsten Neuaufbau
+    private static final double RESERVE = 1.25;
+
+    private final String tabelle;
+    private final String spalte;
+    private final long intervallNanos;
+
+    private Connection connection = null;
+    private ScheduledExecutorService executor = null;
+
+    private final ReentrantLock aufbau = new ReentrantLock();
+    private volatile Stand aktuell = null;
+    private BlockBloomFilter imAufbau = null;
+
+    private final AtomicLong abfragen = new AtomicLong();
+    private final AtomicLong sicherAbwesend = new AtomicLong();
+    private final AtomicLong falschPositiv = new AtomicLong();
+
+    // Filter und groesster Schluessel eines Aufbaus
+    private static final class Stand {
+        final BlockBloomFilter filter;
+        final long maxSchluessel;
+
+        Stand(BlockBloomFilter filter, long maxSchluessel) {
+            this.filter = filter;
+            this.maxSchluessel = maxSchluessel;
+        }
+    }
+
+    /**
+     * @param tabelle   Tabelle, z.B. "Vertrag"
+     * @param spalte    ganzzahlige Schluesselspalte, z.B. "ID"
+     * @param neuaufbau nach welcher Zeit der Filter nach {@link #starte} neu aus der Tabelle aufgebaut wird
+     */
+    public ExistenzFilter(String tabelle, String spalte, Duration neuaufbau) {
+        this.tabelle = tabelle;
+        this.spalte = spalte;
+        this.intervallNanos = neuaufbau.toNanos();
+    }
+
+    public void setConnection(Connection connection) {
+        this.connection = connection;
+    }
+
+    private Connection useConnection() {
+        if (connection == null) {
+            throw new ServiceException("Service hat keine Connection");
+        }
+        return connection;
+    }
+
+    /**
+     * Baut den Filter im Hintergrund sofort und danach nach jedem Intervall neu auf.
+     */
+    public synchronized void starte() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "existenzfilter-" + tabelle);
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleWithFixedDelay(this::neuAufbauenSicher, 0, intervallNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /**
+     * true heisst: der Schluessel existiert sicher nicht, die Abfrage kann entfallen.
+     */
+    public boolean sicherAbwesend(long schluessel) {
+        Stand s = aktuell;
+        if (s == null) {
+            return false;
+        }
+        abfragen.incrementAndGet();
+        if (schluessel > s.maxSchluessel || s.filter.vielleichtEnthalten(schluessel)) {
+            return false;
+        }
+        sicherAbwesend.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Meldet einen in der Datenbank nicht gefundenen Schluessel, den der Filter nicht ausgeschlossen hatte.
+     */
+    public void nichtGefunden(long schluessel) {
+        Stand s = aktuell;
+        if (s != null && schluessel <= s.maxSchluessel && s.filter.vielleichtEnthalten(schluessel)) {
+            falschPositiv.incrementAndGet();
+        }
+    }
+
+    /**
+     * Meldet einen eingefuegten Schluessel, nach dem Commit.
+     */
+    public synchronized void hinzugefuegt(long schluessel) {
+        Stand s = aktuell;
+        if (s != null) {
+            s.filter.fuegeHinzu(schluessel);
+        }
+        if (imAufbau != null) {
+            imAufbau.fuegeHinzu(schluessel);
+        }
+    }
+
+    /**
+     * Baut den Filter sofort aus der Tabelle neu auf, im Thread des Aufrufers auf der Connection des Filters.
+     */
+    public void neuAufbauen() {
+        aufbau.lock();
+        try {
+            String anzahlSql = "select count(*) from " + tabelle;
+            String sql = "select " + spalte + " from " + tabelle;
+            L.info(anzahlSql);
+            long start = System.nanoTime();
+            long n = 0;
+            long max = Long.MIN_VALUE;
+            Connection c = useConnection();
+            try (PreparedStatement zaehle = c.prepareStatement(anzahlSql);
+                 ResultSet rs = zaehle.executeQuery()) {
+                rs.next();
+                long anzahl = rs.getLong(1);
+                BlockBloomFilter neu = new BlockBloomFilter((long) (Math.max(anzahl, 1000) * RESERVE),
+                        BITS_JE_SCHLUESSEL);
+                synchronized (this) {
+                    imAufbau = neu;
+                }
+                L.info(sql);
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    ps.setFetchSize(FETCH_SIZE);
+                    try (ResultSet schluessel = ps.executeQuery()) {
+                        while (schluessel.next()) {
+                            long k = schluessel.getLong(1);
+                            neu.fuegeHinzu(k);
+                            max = Math.max(max, k);
+                            n++;
+                        }
+                    }
+                }
+                // die Abfrage sieht den Stand ihres Beginns, spaeter aufsteigend vergebene Schluessel sind groesser
+                synchronized (this) {
+                    aktuell = new Stand(neu, max);
+                    imAufbau = null;
+                }
+            } catch (SQLException e) {
+                synchronized (this) {
+                    imAufbau = null;
+                }
+                L.error("", e);
+                throw new DataException(e);
+            }
+            L.info(tabelle + ": " + n + " Schluessel in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } finally {
+            aufbau.unlock();
+        }
+    }
+
+    private void neuAufbauenSicher() {
+        try {
+            neuAufbauen();
+        } catch (RuntimeException e) {
+            // die Aufrufer fragen dann eben die Datenbank, mit dem alten Filter oder ganz ohne
+            L.warn(tabelle + ": Neuaufbau gescheitert", e);
+        }
+    }
+
+    public String getTabelle() {
+        return tabelle;
+    }
+
+    public long getAbfragen() {
+        return abfragen.get();
+    }
+
+    /**
+     * Abfragen, die der Filter der Datenbank erspart hat.
+     */
+    public long getSicherAbwesend() {
+        return sicherAbwesend.get();
+    }
+
+    public long getFalschPositiv() {
+        return falschPositiv.get();
+    }
+
+    /**
+     * Anteil der nicht vorhandenen Schluessel, die der Filter nicht ausgeschlossen hat; 0 ohne solche.
+     */
+    public double gemesseneFalschPositivRate() {
+        long fp = falschPositiv.get();
+        long abwesend = fp + sicherAbwesend.get();
+        return abwesend == 0 ? 0 : (double) fp / abwesend;
+    }
+
+    /**
+     * Falsch-Positiv-Rate nach dem Fuellgrad des Filters, 0 vor dem ersten Aufbau.
+     */
+    public double geschaetzteFalschPositivRate() {
+        Stand s = aktuell;
+        return s == null ? 0 : s.filter.geschaetzteFalschPositivRate();
+    }
+
+    /**
+     * Kurzfassung, z.B. fuer das Log.
+     */
+    public String zusammenfassung() {
+        return String.format("%s: abfragen=%d gespart=%d falschPositiv=%d fpRate=%.4f geschaetzt=%.4f", tabelle,
+                getAbfragen(), getSicherAbwesend(), getFalschPositiv(), gemesseneFalschPositivRate(),
+                geschaetzteFalschPositivRate());
+    }
+}
@@ -0,0 +1,123 @@
+package de.htwberlin.dbtech.utils;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ExistenzFilterTest {
+
+    // Tabelle mit den geraden IDs 2..2*anzahl; zaehlt die Abfragen
+    private static Connection tabelle(int anzahl, AtomicInteger abfragen) {
+        ClassLoader lader = ExistenzFilterTest.class.getClassLoader();
+        return (Connection) Proxy.newProxyInstance(lader, new Class<?>[]{Connection.class}, (p, m, a) -> {
+            if (!m.getName().equals("prepareStatement")) {
+                throw new UnsupportedOperationException(m.getName());
+            }
+            boolean zaehlen = ((String) a[0]).contains("count(*)");
+            return Proxy.newProxyInstance(lader, new Class<?>[]{PreparedStatement.class}, (ps, pm, pa) -> {
+                switch (pm.getName()) {
+                    case "executeQuery":
+                        abfragen.incrementAndGet();
+                        long[] zeile = {0};
+                        return Proxy.newProxyInstance(lader, new Class<?>[]{ResultSet.class}, (rs, rm, ra) -> {
+                            switch (rm.getName()) {
+                                case "next":
+                                    return ++zeile[0] <= (zaehlen ? 1 : anzahl);
+                                case "getLong":
+                                    return zaehlen ? anzahl : 2 * zeile[0];
+                                case "close":
+                                    return null;
+                                default:
+                                    throw new UnsupportedOperationException(rm.getName());
+                            }
+                        });
+                    case "setFetchSize":
+                    case "close":
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(pm.getName());
+                }
+            });
+        });
+    }
+
+    private static ExistenzFilter filter(Connection c) {
+        ExistenzFilter f = new ExistenzFilter("T", "ID", Duration.ofHours(1));
+        f.setConnection(c);
+        return f;
+    }
+
+    @org.junit.Test
+    public void ungeradeIdsSindMeistSicherAbwesend() {
+        AtomicInteger abfragen = new AtomicInteger();
+        ExistenzFilter f = filter(tabelle(10_000, abfragen));
+        for (long id = 2; id <= 20_000; id += 2) {
+            assertFalse(f.sicherAbwesend(id));
+        }
+        // vor dem Aufbau ist nichts sicher abwesend
+        assertEquals(0, f.getAbfragen());
+        f.neuAufbauen();
+        for (long id = 2; id <= 20_000; id += 2) {
+            assertFalse(f.sicherAbwesend(id));
+        }
+        int abwesend = 0;
+        for (long id = 1; id < 20_000; id += 2) {
+            if (f.sicherAbwesend(id)) {
+                abwesend++;
+            } else {
+                f.nichtGefunden(id);
+            }
+        }
+        // einmal aufgebaut: Anzahl und Schluessel
+        assertEquals(2, abfragen.get());
+        assertTrue("abwesend " + abwesend, abwesend > 9_800);
+        assertEquals(20_000, f.getAbfragen());
+        assertEquals(abwesend, f.getSicherAbwesend());
+        assertEquals(10_000 - abwesend, f.getFalschPositiv());
+        assertEquals((10_000 - abwesend) / 10_000.0, f.gemesseneFalschPositivRate(), 1e-9);
+    }
+
+    @org.junit.Test
+    public void schluesselUeberDemMaximumSindNichtAbwesend() {
+        ExistenzFilter f = filter(tabelle(100, new AtomicInteger()));
+        f.neuAufbauen();
+        // nach dem Aufbau eingefuegt, ohne Meldung
+        for (long id = 201; id <= 100_000; id++) {
+            assertFalse(f.sicherAbwesend(id));
+        }
+        assertEquals(0, f.getSicherAbwesend());
+    }
+
+    @org.junit.Test
+    public void hinzugefuegteSchluesselSindNichtAbwesend() {
+        ExistenzFilter f = filter(tabelle(1_000, new AtomicInteger()));
+        f.neuAufbauen();
+        for (long id = 1; id < 2_000; id += 2) {
+            f.hinzugefuegt(id);
+        }
+        for (long id = 1; id < 2_000; id += 2) {
+            assertFalse(f.sicherAbwesend(id));
+        }
+    }
+
+    @org.junit.Test
+    public void gestarteterFilterWirdImHintergrundAufgebaut() throws InterruptedException {
+        AtomicInteger abfragen = new AtomicInteger();
+        try (ExistenzFilter f = new ExistenzFilter("T", "ID", Duration.ofMillis(10))) {
+            f.setConnection(tabelle(100, abfragen));
+            f.starte();
+            long ende = System.currentTimeMillis() + 5_000;
+            while (abfragen.get() < 4 && System.currentTimeMillis() < ende) {
+                Thread.sleep(5);
+            }
+        }
+        assertTrue("abfragen " + abfragen.get(), abfragen.get() >= 4);
+    }
+}
@@ -0,0 +1,133 @@
+package de.htwberlin.dbtech.utils;
+
+import java.math.BigDecimal;
+
+/**
+ * Geldbetraege als long in Cent, fuer Rechnungen und Vergleiche ohne BigDecimal-Objekte.
+ * <p>
+ * Die Tabellen speichern Betraege als decimal(9,2) bzw. decimal(13,2), also hoechstens 2 Nachkommastellen;
+ * als Cent passt das immer in einen long. Umgerechnet wird nur an der JDBC-Grenze, exakt: Betraege mit mehr als
+ * 2 Nachkommastellen oder ausserhalb des long-Bereichs fuehren zu einer ArithmeticException statt gerundet zu
+ * werden. Auch plus, minus und mal werfen bei Ueberlauf eine ArithmeticException.
+ */
+public final class Geld {
+
+    private static final long CENT_JE_EINHEIT = 100;
+    // bis hierhin ist der Weg ueber double exakt, siehe cent(BigDecimal)
+    private static final int MAX_STELLEN_DOUBLE = 15;
+
+    private Geld() {
+    }
+
+    /**
+     * Betrag in Cent.
+     *
+     * @throws ArithmeticException bei mehr als 2 Nachkommastellen oder Ueberlauf
+     */
+    public static long cent(BigDecimal betrag) {
+        int scale = betrag.scale();
+        if (scale >= 0 && scale <= 2 && betrag.precision() - scale + 2 <= MAX_STELLEN_DOUBLE) {
+            // BigDecimal.doubleValue rechnet kleine Werte ohne neue Objekte; bei hoechstens 15 Stellen in Cent
+            // ist der Fehler weit unter einem halben Cent, das Runden also exakt
+            return Math.round(betrag.doubleValue() * CENT_JE_EINHEIT);
+        }
+        return betrag.setScale(2).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Betrag mit 2 Nachkommastellen, z.B. zum Binden an decimal(p,2).
+     */
+    public static BigDecimal alsBigDecimal(long cent) {
+        return BigDecimal.valueOf(cent, 2);
+    }
+
+    /**
+     * Betrag ohne Nachkomma-Nullen, so wie Oracle NUMBER-Werte ueber getBigDecimal liefert (19.00 wird 19).
+     */
+    public static BigDecimal alsNumber(long cent) {
+        if (cent % CENT_JE_EINHEIT == 0) {
+            return BigDecimal.valueOf(cent / CENT_JE_EINHEIT);
+        }
+        return cent % 10 == 0 ? BigDecimal.valueOf(cent / 10, 1) : BigDecimal.valueOf(cent, 2);
+    }
+
+    /**
+     * Ob der Betrag in eine Spalte decimal(praezision,2) passt. null passt nicht.
+     */
+    public static boolean passtIn(BigDecimal betrag, int praezision) {
+        if (betrag == null || betrag.scale() > 2 && betrag.stripTrailingZeros().scale() > 2) {
+            return false;
+        }
+        // Stellen vor dem Komma
+        return betrag.precision() - betrag.scale() <= praezision - 2;
+    }
+
+    /**
+     * Liest einen Betrag wie "1500", "-3.5" oder "300000.00" ohne BigDecimal.
+     *
+     * @throws NumberFormatException bei anderem Format oder mehr als 2 Nachkommastellen
+     * @throws ArithmeticException   bei Ueberlauf
+     */
+    public static long parse(CharSequence text) {
+        int i = 0;
+        int n = text.length();
+        boolean negativ = n > 0 && text.charAt(0) == '-';
+        if (negativ || n > 0 && text.charAt(0) == '+') {
+            i++;
+        }
+        long einheiten = 0;
+        int ziffern = 0;
+        for (; i < n && text.charAt(i) != '.'; i++) {
+            einheiten = Math.addExact(Math.multiplyExact(einheiten, 10), ziffer(text, i));
+            ziffern++;
+        }
+        long cent = 0;
+        int nachkomma = 0;
+        if (i < n) {
+            for (i++; i < n; i++, nachkomma++) {
+                if (nachkomma == 2) {
+                    throw new NumberFormatException("mehr als 2 Nachkommastellen: " + text);
+                }
+                cent = cent * 10 + ziffer(text, i);
+                ziffern++;
+            }
+        }
+        if (ziffern == 0) {
+            throw new NumberFormatException("kein Betrag: " + text);
+        }
+        for (; nachkomma < 2; nachkomma++) {
+            cent *= 10;
+        }
+        long betrag = Math.addExact(Math.multiplyExact(einheiten, CENT_JE_EINHEIT), cent);
+        return negativ ? -betrag : betrag;
+    }
+
+    public static long plus(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long minus(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    public static long mal(long cent, long faktor) {
+        return Math.multiplyExact(cent, faktor);
+    }
+
+    /**
+     * Betrag als Text mit 2 Nachkommastellen, fuer Meldungen.
+     */
+    public static String text(long cent) {
+        long rest = Math.abs(cent % CENT_JE_EINHEIT);
+        String einheiten = Long.toString(cent / CENT_JE_EINHEIT);
+        return (cent < 0 && cent > -CENT_JE_EINHEIT ? "-" : "") + einheiten + (rest < 10 ? ".0" : ".") + rest;
+    }
+
+    private static int ziffer(CharSequence text, int i) {
+        char c = text.charAt(i);
+        if (c < '0' || c > '9') {
+            throw new NumberFormatException("keine Ziffer an Stelle " + i + ": " + text);
+        }
+        return c - '0';
+    }
+}
@@ -0,0 +1,116 @@
+package de.htwberlin.dbtech.utils;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.function.LongSupplier;
+
+/**
+ * Vergleicht Zeit und Speicherbedarf von BigDecimal und {@link Geld} fuer die Rechnungen auf den heissen Pfaden:
+ * Summe der Deckungspreise (calcMonatsrate), Betragsregel ("&gt;= 300000" gegen den Deckungsbetrag) und
+ * Gebotsvergleich (istGebotspreisOk).
+ * <p>
+ * Die Werte kommen wie aus JDBC schon als BigDecimal bzw. long an, gemessen wird nur die Rechnung. Die
+ * Speicherangabe ist die je Operation im messenden Thread angelegte Menge (ThreadMXBean).
+ * <p>
+ * Aufruf: GeldBenchmark [operationen]
+ */
+public class GeldBenchmark {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        BigDecimal[] preise = new BigDecimal[1024];
+        long[] preiseCent = new long[preise.length];
+        BigDecimal[] betraege = new BigDecimal[preise.length];
+        long[] betraegeCent = new long[preise.length];
+        for (int i = 0; i < preise.length; i++) {
+            preise[i] = BigDecimal.valueOf(900 + i * 7L, 2);
+            preiseCent[i] = 900 + i * 7L;
+            betraege[i] = BigDecimal.valueOf(100_000 + i * 300L);
+            betraegeCent[i] = Geld.cent(betraege[i]);
+        }
+        String[] regeln = {">= 300000", ">= 200000", ">= 150000.50"};
+        BigDecimal minPreis = new BigDecimal("10.00");
+        BigDecimal aktuell = new BigDecimal("55.50");
+        long minPreisCent = Geld.cent(minPreis);
+        long aktuellCent = Geld.cent(aktuell);
+
+        for (int runde = 0; runde < 2; runde++) {
+            // erste Runde waermt auf
+            boolean ausgeben = runde == 1;
+            messe(ausgeben, "summe BigDecimal", n, () -> {
+                BigDecimal summe = BigDecimal.ZERO;
+                for (int i = 0; i < n; i++) {
+                    summe = summe.add(preise[i & 1023]);
+                }
+                return summe.longValue();
+            });
+            messe(ausgeben, "summe Geld", n, () -> {
+                long summe = 0;
+                for (int i = 0; i < n; i++) {
+                    summe = Geld.plus(summe, preiseCent[i & 1023]);
+                }
+                return summe;
+            });
+            messe(ausgeben, "regel BigDecimal", n, () -> {
+                long verletzt = 0;
+                for (int i = 0; i < n; i++) {
+                    BigDecimal grenze = new BigDecimal(regeln[i % 3].substring(2).trim());
+                    verletzt += betraege[i & 1023].compareTo(grenze) >= 0 ? 1 : 0;
+                }
+                return verletzt;
+            });
+            messe(ausgeben, "regel Geld", n, () -> {
+                long verletzt = 0;
+                for (int i = 0; i < n; i++) {
+                    long grenze = Geld.parse(regeln[i % 3].substring(2).trim());
+                    verletzt += betraegeCent[i & 1023] >= grenze ? 1 : 0;
+                }
+                return verletzt;
+            });
+            messe(ausgeben, "gebot BigDecimal", n, () -> {
+                long ok = 0;
+                for (int i = 0; i < n; i++) {
+                    BigDecimal gebot = preise[i & 1023];
+                    ok += (i & 1) == 0 ? (gebot.compareTo(minPreis) >= 0 ? 1 : 0)
+                            : (gebot.compareTo(aktuell) > 0 ? 1 : 0);
+                }
+                return ok;
+            });
+            messe(ausgeben, "gebot Geld", n, () -> {
+                long ok = 0;
+                for (int i = 0; i < n; i++) {
+                    // mit Umrechnung an der Grenze, wie Angebot.istGebotspreisOk(BigDecimal)
+                    BigDecimal gebot = preise[i & 1023];
+                    long cent = Geld.passtIn(gebot, 9) ? Geld.cent(gebot) : -1;
+                    ok += (i & 1) == 0 ? (cent >= minPreisCent ? 1 : 0) : (cent > aktuellCent ? 1 : 0);
+                }
+                return ok;
+            });
+            messe(ausgeben, "gebot Geld, Cent", n, () -> {
+                long ok = 0;
+                for (int i = 0; i < n; i++) {
+                    // Gebot schon in Cent, wie Angebot.istGebotspreisOk(long)
+                    long cent = preiseCent[i & 1023];
+                    ok += (i & 1) == 0 ? (cent >= minPreisCent ? 1 : 0) : (cent > aktuellCent ? 1 : 0);
+                }
+                return ok;
+            });
+        }
+    }
+
+    private static void messe(boolean ausgeben, String name, int n, LongSupplier rechnung) {
+        long id = Thread.currentThread().getId();
+        long bytes = THREADS.getThreadAllocatedBytes(id);
+        long start = System.nanoTime();
+        long ergebnis = rechnung.getAsLong();
+        long nanos = System.nanoTime() - start;
+        bytes = THREADS.getThreadAllocatedBytes(id) - bytes;
+        if (ausgeben) {
+            System.out.printf("%-18s %7.1f ns/op %8.1f bytes/op  (ergebnis %d)%n", name, (double) nanos / n,
+                    (double) bytes / n, ergebnis);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package de.htwberlin.dbtech.utils;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GeldTest {
+
+    @org.junit.Test
+    public void centIstExakt() {
+        assertEquals(150000, Geld.cent(BigDecimal.valueOf(1500)));
+        assertEquals(1999, Geld.cent(new BigDecimal("19.99")));
+        assertEquals(-5, Geld.cent(new BigDecimal("-0.05")));
+        assertEquals(150, Geld.cent(new BigDecimal("1.500")));
+        assertEquals(100000, Geld.cent(new BigDecimal("1E+3")));
+        // alle Betraege aus decimal(13,2) ueberstehen den Weg ueber double
+        SplittableRandom zufall = new SplittableRandom(42);
+        for (int i = 0; i < 1_000_000; i++) {
+            long cent = zufall.nextLong(-9_999_999_999_999L, 10_000_000_000_000L);
+            assertEquals(cent, Geld.cent(BigDecimal.valueOf(cent, 2)));
+            assertEquals(cent, Geld.cent(Geld.alsBigDecimal(cent)));
+        }
+        try {
+            Geld.cent(new BigDecimal("0.005"));
+            fail();
+        } catch (ArithmeticException e) {
+            // erwartet
+        }
+        try {
+            Geld.cent(new BigDecimal("1E+30"));
+            fail();
+        } catch (ArithmeticException e) {
+            // erwartet
+        }
+    }
+
+    @org.junit.Test
+    public void umwandlungWieOracle() {
+        assertEquals(BigDecimal.valueOf(19), Geld.alsNumber(1900));
+        assertEquals(BigDecimal.ZERO, Geld.alsNumber(0));
+        assertEquals(new BigDecimal("19.5"), Geld.alsNumber(1950));
+        assertEquals(new BigDecimal("-0.05"), Geld.alsNumber(-5));
+        assertEquals(new BigDecimal("19.00"), Geld.alsBigDecimal(1900));
+        assertEquals("-0.05", Geld.text(-5));
+        assertEquals("1500.50", Geld.text(150050));
+        assertEquals("-12.07", Geld.text(-1207));
+    }
+
+    @org.junit.Test
+    public void parseUndUeberlauf() {
+        assertEquals(30000000, Geld.parse("300000"));
+        assertEquals(30000000, Geld.parse("300000.00"));
+        assertEquals(-350, Geld.parse("-3.5"));
+        assertEquals(5, Geld.parse(".05"));
+        for (String falsch : new String[]{"", "-", "1.234", "1,5", "abc", "1.2.3"}) {
+            try {
+                Geld.parse(falsch);
+                fail(falsch);
+            } catch (NumberFormatException e) {
+                // erwartet
+            }
+        }
+        try {
+            Geld.parse("99999999999999999999");
+            fail();
+        } catch (ArithmeticException e) {
+            // erwartet
+        }
+        try {
+            Geld.plus(Long.MAX_VALUE, 1);
+            fail();
+        } catch (ArithmeticException e) {
+            // erwartet
+        }
+        assertTrue(Geld.passtIn(new BigDecimal("99999999999.99"), 13));
+        assertFalse(Geld.passtIn(new BigDecimal("100000000000"), 13));
+        assertTrue(Geld.passtIn(new BigDecimal("1.500"), 13));
+        assertFalse(Geld.passtIn(new BigDecimal("1.505"), 13));
+        assertFalse(Geld.passtIn(null, 13));
+    }
+}
@@ -7,6 +7,7 @@ import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
+import java.sql.Savepoint;
 import java.sql.Statement;
 
 public class JdbcUtils {
@@ -101,4 +102,62 @@ public class JdbcUtils {
         }
     }
 
+    /**
+     * Fuehrt work atomar aus. Im Auto-Commit-Modus wird eine eigene Transaktion gestartet und abgeschlossen,
+     * sonst gehoert die Transaktion dem Aufrufer und es wird nur bis zu einem Savepoint zurueckgerollt.
+     * Eine RuntimeException aus work fuehrt zum Rollback und wird unveraendert weitergeworfen.
+     *
+     * @return true, wenn hier committet wurde; false, wenn die Aenderungen noch in der Transaktion des
+     * Aufrufers liegen und mit ihr zurueckgerollt werden koennen
+     */
+    public static boolean executeInTransaction(final Connection connection, final Runnable work) {
+        boolean autoCommit;
+        Savepoint savepoint = null;
+        try {
+            autoCommit = connection.getAutoCommit();
+            if (autoCommit) {
+                connection.setAutoCommit(false);
+            } else {
+                savepoint = connection.setSavepoint();
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        try {
+            work.run();
+            if (autoCommit) {
+                connection.commit();
+            }
+            return autoCommit;
+        } catch (RuntimeException e) {
+            rollbackQuietly(connection, savepoint);
+            throw e;
+        } catch (Exception e) {
+            rollbackQuietly(connection, savepoint);
+            throw new RuntimeException(e);
+        } finally {
+            if (autoCommit) {
+                try {
+                    connection.setAutoCommit(true);
+                } catch (Exception e) {
+                    // ignore exception, just log
+                    L.error("unhandled", e);
+                }
+            }
+        }
+    }
+
+    private static void rollbackQuietly(final Connection connection, final Savepoint savepoint) {
+        try {
+            if (savepoint == null) {
+                connection.rollback();
+            } else {
+                connection.rollback(savepoint);
+            }
+        } catch (Exception e) {
+            // ignore exception, just log
+            L.error("unhandled", e);
+        }
+    }
+
 }
@@ -0,0 +1,79 @@
+package de.htwberlin.dbtech.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Haeufigkeitsverteilung von Laufzeiten in Nanosekunden mit fester Speichergroesse.
+ * <p>
+ * Jede Zweierpotenz ist in 16 gleich breite Klassen geteilt, Perzentile sind daher auf etwa 6% genau. Erfassen
+ * ist ohne Sperren aus mehreren Threads moeglich.
+ */
+public class LatenzHistogramm {
+    private static final int UNTERTEILUNG_BITS = 4;
+    private static final int UNTERTEILUNG = 1 << UNTERTEILUNG_BITS;
+
+    private final AtomicLongArray zaehler = new AtomicLongArray(64 << UNTERTEILUNG_BITS);
+    private final AtomicLong anzahl = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void erfasse(long nanos) {
+        long wert = Math.max(0, nanos);
+        zaehler.incrementAndGet(klasse(wert));
+        anzahl.incrementAndGet();
+        max.accumulateAndGet(wert, Math::max);
+    }
+
+    public long getAnzahl() {
+        return anzahl.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Obere Grenze der Klasse, in die das p-Perzentil (0 < p <= 100) faellt; 0 ohne Messwerte.
+     */
+    public long perzentil(double p) {
+        long n = anzahl.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rang = Math.max(1, (long) Math.ceil(p / 100.0 * n));
+        long summe = 0;
+        for (int i = 0; i < zaehler.length(); i++) {
+            summe += zaehler.get(i);
+            if (summe >= rang) {
+                return Math.min(obereGrenze(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Kurzfassung in Millisekunden, z.B. fuer das Log.
+     */
+    public String zusammenfassung() {
+        return String.format("n=%d p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms", getAnzahl(),
+                perzentil(50) / 1e6, perzentil(90) / 1e6, perzentil(99) / 1e6, getMax() / 1e6);
+    }
+
+    static int klasse(long wert) {
+        if (wert < UNTERTEILUNG) {
+            return (int) wert;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(wert);
+        int unterklasse = (int) (wert >>> (exponent - UNTERTEILUNG_BITS)) & (UNTERTEILUNG - 1);
+        return ((exponent - UNTERTEILUNG_BITS + 1) << UNTERTEILUNG_BITS) + unterklasse;
+    }
+
+    static long obereGrenze(int klasse) {
+        if (klasse < UNTERTEILUNG) {
+            return klasse;
+        }
+        int exponent = (klasse >>> UNTERTEILUNG_BITS) + UNTERTEILUNG_BITS - 1;
+        long untereGrenze = (long) (UNTERTEILUNG + (klasse & (UNTERTEILUNG - 1))) << (exponent - UNTERTEILUNG_BITS);
+        return untereGrenze + (1L << (exponent - UNTERTEILUNG_BITS)) - 1;
+    }
+}
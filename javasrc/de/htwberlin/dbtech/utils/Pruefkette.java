@@ -0,0 +1,140 @@
+package de.htwberlin.dbtech.utils;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Entscheidet, ob eine Kette voneinander unabhaengiger Pruefungen insgesamt besteht, und probiert die
+ * Pruefungen dabei in der Reihenfolge, die am schnellsten zu einer Ablehnung fuehrt.
+ * <p>
+ * Je Pruefung werden Fehlerquote und Dauer als gleitende Mittelwerte beobachtet; zuerst kommen die Pruefungen
+ * mit der hoechsten Fehlerquote je Nanosekunde. Damit auch selten erreichte Pruefungen aktuelle Werte haben,
+ * laeuft jeder {@code erkunden}-te Aufruf ueber alle Pruefungen.
+ * <p>
+ * Gedacht nur fuer Ja/Nein-Entscheidungen. Wird die erste fehlschlagende Pruefung einer festgelegten
+ * Reihenfolge gebraucht (z.B. fuer die passende Ausnahme), muessen ohnehin alle davor liegenden ausgefuehrt
+ * werden; dafuer ist die feste Reihenfolge schon die guenstigste.
+ * <p>
+ * Voraussetzung: jede Pruefung ist fuer sich ausfuehrbar, auch wenn eine andere fehlschlagen wuerde, und hat
+ * keine Seiteneffekte.
+ */
+public class Pruefkette {
+    // Anteil, mit dem eine neue Beobachtung in die Mittelwerte eingeht
+    private static final double GEWICHT = 0.05;
+    // so oft wird die Reihenfolge neu bestimmt, in Aufrufen
+    private static final int NEU_ORDNEN = 8;
+
+    private final int anzahl;
+    private final int erkunden;
+    private LongSupplier uhr = System::nanoTime;
+
+    private final double[] fehlerquote;
+    private final double[] nanos;
+    private volatile int[] reihenfolge;
+    private long aufrufe = 0;
+
+    /**
+     * @param anzahl   Anzahl der Pruefungen
+     * @param erkunden jeder wievielte Aufruf alle Pruefungen ausfuehrt, 0 fuer nie
+     */
+    public Pruefkette(int anzahl, int erkunden) {
+        if (anzahl < 1 || erkunden < 0) {
+            throw new IllegalArgumentException("es muss anzahl >= 1 und erkunden >= 0 gelten");
+        }
+        this.anzahl = anzahl;
+        this.erkunden = erkunden;
+        this.fehlerquote = new double[anzahl];
+        this.nanos = new double[anzahl];
+        int[] r = new int[anzahl];
+        for (int i = 0; i < anzahl; i++) {
+            // ohne Beobachtung gilt die angegebene Reihenfolge
+            fehlerquote[i] = 0.5;
+            nanos[i] = 1 + i;
+            r[i] = i;
+        }
+        this.reihenfolge = r;
+    }
+
+    void setUhr(LongSupplier uhr) {
+        this.uhr = uhr;
+    }
+
+    /**
+     * @param pruefungen die Pruefungen, true heisst bestanden
+     * @return ob alle Pruefungen bestehen
+     */
+    public boolean alleBestanden(BooleanSupplier... pruefungen) {
+        if (pruefungen.length != anzahl) {
+            throw new IllegalArgumentException("erwartet " + anzahl + " Pruefungen, nicht " + pruefungen.length);
+        }
+        long aufruf = naechsterAufruf();
+        if (aufruf % NEU_ORDNEN == 0) {
+            ordne();
+        }
+        if (erkunden > 0 && aufruf % erkunden == 0) {
+            boolean alle = true;
+            for (int i = 0; i < anzahl; i++) {
+                alle &= fuehreAus(pruefungen, i);
+            }
+            return alle;
+        }
+        for (int i : reihenfolge) {
+            if (!fuehreAus(pruefungen, i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Aktuelle Reihenfolge als Indizes der angegebenen Pruefungen.
+     */
+    public int[] getReihenfolge() {
+        return reihenfolge.clone();
+    }
+
+    public synchronized double getFehlerquote(int pruefung) {
+        return fehlerquote[pruefung];
+    }
+
+    public synchronized double getNanos(int pruefung) {
+        return nanos[pruefung];
+    }
+
+    private synchronized long naechsterAufruf() {
+        return aufrufe++;
+    }
+
+    private boolean fuehreAus(BooleanSupplier[] pruefungen, int i) {
+        long start = uhr.getAsLong();
+        boolean bestanden = pruefungen[i].getAsBoolean();
+        beobachte(i, uhr.getAsLong() - start, bestanden);
+        return bestanden;
+    }
+
+    private synchronized void beobachte(int i, long dauer, boolean bestanden) {
+        fehlerquote[i] += GEWICHT * ((bestanden ? 0 : 1) - fehlerquote[i]);
+        nanos[i] += GEWICHT * (Math.max(dauer, 1) - nanos[i]);
+    }
+
+    private synchronized void ordne() {
+        int[] r = reihenfolge.clone();
+        // wenige Pruefungen, Einfuegen genuegt; bei Gleichstand bleibt die angegebene Reihenfolge
+        for (int j = 1; j < anzahl; j++) {
+            int p = r[j];
+            int k = j - 1;
+            while (k >= 0 && vorher(p, r[k])) {
+                r[k + 1] = r[k];
+                k--;
+            }
+            r[k + 1] = p;
+        }
+        reihenfolge = r;
+    }
+
+    private boolean vorher(int a, int b) {
+        double ga = fehlerquote[a] / nanos[a];
+        double gb = fehlerquote[b] / nanos[b];
+        return ga > gb || ga == gb && a < b;
+    }
+}
@@ -0,0 +1,97 @@
+package de.htwberlin.dbtech.utils;
+
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Vergleicht feste und adaptive Reihenfolge der sechs Deckungspruefungen auf ablehnungslastigen Lasten.
+ * <p>
+ * Die Pruefungen sind durch aktives Warten nachgebildet, die Dauern stehen im Verhaeltnis der Abfragen von
+ * VersicherungService (Existenz einfach, Produktpruefung und Preis mit Join, Ablehnungsregeln mit
+ * MONTHS_BETWEEN ueber drei Tabellen), um den Faktor 100 verkleinert. Je Last legt eine Verteilung fest, an
+ * welcher Pruefung ein Antrag scheitert; alle anderen bestehen.
+ * <p>
+ * Aufruf: PruefketteBenchmark [antraege]
+ */
+public class PruefketteBenchmark {
+
+    private static final String[] NAMEN = {"vertrag", "deckungsart", "produkt", "betrag", "preis", "regel"};
+    private static final long[] DAUER_NANOS = {1_500, 1_500, 2_000, 1_500, 4_000, 8_000};
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        // Anteil in Prozent je scheiternder Pruefung, Rest wird angenommen
+        messe("regel-lastig", n, new int[]{0, 0, 0, 0, 20, 60});
+        messe("gemischt", n, new int[]{25, 0, 15, 10, 0, 30});
+        messe("frueh scheiternd", n, new int[]{60, 10, 10, 0, 0, 0});
+        messe("ohne ablehnung", n, new int[]{0, 0, 0, 0, 0, 0});
+    }
+
+    private static void messe(String last, int n, int[] anteile) {
+        Random zufall = new Random(4711);
+        int[] scheitert = new int[n];
+        for (int i = 0; i < n; i++) {
+            int z = zufall.nextInt(100);
+            scheitert[i] = -1;
+            for (int j = 0, summe = 0; j < anteile.length; j++) {
+                summe += anteile[j];
+                if (z < summe) {
+                    scheitert[i] = j;
+                    break;
+                }
+            }
+        }
+        int[] aktuell = {0};
+        BooleanSupplier[] pruefungen = new BooleanSupplier[NAMEN.length];
+        for (int j = 0; j < pruefungen.length; j++) {
+            int k = j;
+            pruefungen[j] = () -> {
+                warte(DAUER_NANOS[k]);
+                return scheitert[aktuell[0]] != k;
+            };
+        }
+
+        LatenzHistogramm fest = new LatenzHistogramm();
+        LatenzHistogramm adaptiv = new LatenzHistogramm();
+        Pruefkette kette = new Pruefkette(pruefungen.length, 64);
+        for (int runde = 0; runde < 2; runde++) {
+            // erste Runde waermt auf
+            for (int i = 0; i < n; i++) {
+                aktuell[0] = i;
+                long start = System.nanoTime();
+                boolean ok = true;
+                for (BooleanSupplier p : pruefungen) {
+                    if (!p.getAsBoolean()) {
+                        ok = false;
+                        break;
+                    }
+                }
+                long mitte = System.nanoTime();
+                boolean okAdaptiv = kette.alleBestanden(pruefungen);
+                long ende = System.nanoTime();
+                if (ok != okAdaptiv) {
+                    throw new IllegalStateException("abweichendes Ergebnis bei Antrag " + i);
+                }
+                if (runde == 1) {
+                    fest.erfasse(mitte - start);
+                    adaptiv.erfasse(ende - mitte);
+                }
+            }
+        }
+        StringBuilder reihenfolge = new StringBuilder();
+        for (int j : kette.getReihenfolge()) {
+            reihenfolge.append(reihenfolge.length() == 0 ? "" : ",").append(NAMEN[j]);
+        }
+        System.out.printf("%-16s fest     p50 %6.1f us  p99 %6.1f us%n", last, fest.perzentil(50) / 1e3,
+                fest.perzentil(99) / 1e3);
+        System.out.printf("%-16s adaptiv  p50 %6.1f us  p99 %6.1f us  (%s)%n", last, adaptiv.perzentil(50) / 1e3,
+                adaptiv.perzentil(99) / 1e3, reihenfolge);
+    }
+
+    private static void warte(long nanos) {
+        long ende = System.nanoTime() + nanos;
+        while (System.nanoTime() < ende) {
+            Thread.onSpinWait();
+        }
+    }
+}
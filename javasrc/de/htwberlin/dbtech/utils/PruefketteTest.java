@@ -0,0 +1,71 @@
+package de.htwberlin.dbtech.utils;
+
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class PruefketteTest {
+
+    // Pruefungen mit fester Dauer auf einer kuenstlichen Uhr; bestanden[i] legt das Ergebnis fest
+    private static BooleanSupplier[] pruefungen(long[] zeit, long[] dauer, boolean[] bestanden, int[] ausgefuehrt) {
+        BooleanSupplier[] p = new BooleanSupplier[dauer.length];
+        for (int i = 0; i < p.length; i++) {
+            int j = i;
+            p[i] = () -> {
+                zeit[0] += dauer[j];
+                ausgefuehrt[0]++;
+                return bestanden[j];
+            };
+        }
+        return p;
+    }
+
+    @org.junit.Test
+    public void ergebnisWieBeiFesterReihenfolge() {
+        long[] zeit = {0};
+        Pruefkette kette = new Pruefkette(4, 8);
+        kette.setUhr(() -> zeit[0]);
+        boolean[] bestanden = new boolean[4];
+        BooleanSupplier[] p = pruefungen(zeit, new long[]{1, 5, 20, 50}, bestanden, new int[1]);
+        Random zufall = new Random(47);
+        for (int n = 0; n < 2000; n++) {
+            boolean alle = true;
+            for (int i = 0; i < 4; i++) {
+                bestanden[i] = zufall.nextInt(10) > i;
+                alle &= bestanden[i];
+            }
+            assertEquals(alle, kette.alleBestanden(p));
+        }
+    }
+
+    @org.junit.Test
+    public void haeufigAblehnendeBilligePruefungKommtNachVorn() {
+        long[] zeit = {0};
+        int[] ausgefuehrt = {0};
+        Pruefkette kette = new Pruefkette(3, 0);
+        kette.setUhr(() -> zeit[0]);
+        // die letzte Pruefung lehnt immer ab und ist am billigsten
+        BooleanSupplier[] p = pruefungen(zeit, new long[]{100, 100, 10}, new boolean[]{true, true, false},
+                ausgefuehrt);
+        for (int n = 0; n < 100; n++) {
+            kette.alleBestanden(p);
+        }
+        assertArrayEquals(new int[]{2, 0, 1}, kette.getReihenfolge());
+        ausgefuehrt[0] = 0;
+        kette.alleBestanden(p);
+        assertEquals(1, ausgefuehrt[0]);
+    }
+
+    @org.junit.Test
+    public void erkundenFuehrtAllePruefungenAus() {
+        long[] zeit = {0};
+        int[] ausgefuehrt = {0};
+        Pruefkette kette = new Pruefkette(3, 1);
+        kette.setUhr(() -> zeit[0]);
+        BooleanSupplier[] p = pruefungen(zeit, new long[]{1, 1, 1}, new boolean[]{false, true, true}, ausgefuehrt);
+        assertEquals(false, kette.alleBestanden(p));
+        assertEquals(3, ausgefuehrt[0]);
+    }
+}
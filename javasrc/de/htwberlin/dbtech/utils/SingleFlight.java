@@ -0,0 +1,87 @@
+package de.htwberlin.dbtech.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Buendelt gleiche gleichzeitige Abfragen: Solange fuer einen Schluessel eine Abfrage laeuft, warten weitere
+ * Aufrufer mit demselben Schluessel auf deren Ergebnis, statt selbst abzufragen. Ein Ergebnis wird nicht
+ * aufgehoben; der naechste Aufruf nach Ende der Abfrage fragt wieder selbst.
+ * <p>
+ * Die Abfrage laeuft im Thread (und damit auf der Connection) des ersten Aufrufers. Wer wartet, bekommt
+ * dasselbe Objekt bzw. dieselbe Ausnahme wie dieser; Ergebnisse sollten daher nicht veraendert werden. Das
+ * Ergebnis kann um bis zu eine Abfragedauer aelter sein als der Aufruf, der es bekommt. Fuer Abfragen, die
+ * sperren (select ... for update) oder Ungespeichertes der eigenen Transaktion sehen muessen, ist das nicht
+ * geeignet.
+ * <p>
+ * Mehrere Dienste auf verschiedenen Connections koennen sich ein SingleFlight teilen.
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, CompletableFuture<V>> laufend = new ConcurrentHashMap<>();
+    private final AtomicLong aufrufe = new AtomicLong();
+    private final AtomicLong geteilt = new AtomicLong();
+
+    public V ausfuehren(K schluessel, Supplier<V> abfrage) {
+        aufrufe.incrementAndGet();
+        CompletableFuture<V> eigene = new CompletableFuture<>();
+        CompletableFuture<V> vorhandene = laufend.putIfAbsent(schluessel, eigene);
+        if (vorhandene != null) {
+            geteilt.incrementAndGet();
+            return warte(vorhandene);
+        }
+        try {
+            V ergebnis = abfrage.get();
+            eigene.complete(ergebnis);
+            return ergebnis;
+        } catch (RuntimeException | Error e) {
+            eigene.completeExceptionally(e);
+            throw e;
+        } finally {
+            laufend.remove(schluessel, eigene);
+        }
+    }
+
+    private static <V> V warte(CompletableFuture<V> abfrage) {
+        try {
+            return abfrage.join();
+        } catch (CompletionException e) {
+            Throwable ursache = e.getCause();
+            if (ursache instanceof RuntimeException) {
+                throw (RuntimeException) ursache;
+            }
+            if (ursache instanceof Error) {
+                throw (Error) ursache;
+            }
+            throw e;
+        }
+    }
+
+    public long getAufrufe() {
+        return aufrufe.get();
+    }
+
+    /**
+     * Aufrufe, die das Ergebnis einer laufenden Abfrage bekommen haben.
+     */
+    public long getGeteilt() {
+        return geteilt.get();
+    }
+
+    /**
+     * Ausgefuehrte Abfragen.
+     */
+    public long getAbfragen() {
+        return aufrufe.get() - geteilt.get();
+    }
+
+    /**
+     * Anteil der Aufrufe ohne eigene Abfrage, 0 ohne Aufrufe.
+     */
+    public double getBuendelungsQuote() {
+        long n = aufrufe.get();
+        return n == 0 ? 0 : (double) geteilt.get() / n;
+    }
+}
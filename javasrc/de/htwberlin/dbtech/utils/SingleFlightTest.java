@@ -0,0 +1,99 @@
+package de.htwberlin.dbtech.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+
+    private static final int THREADS = 8;
+
+    // startet THREADS Aufrufe mit demselben Schluessel, waehrend die erste Abfrage bis zur Freigabe haengt
+    private static List<Future<Integer>> gleichzeitig(SingleFlight<String, Integer> sf, ExecutorService pool,
+                                                      CountDownLatch frei, AtomicInteger abfragen,
+                                                      RuntimeException fehler) throws Exception {
+        CountDownLatch gestartet = new CountDownLatch(1);
+        List<Future<Integer>> ergebnisse = new ArrayList<>();
+        ergebnisse.add(pool.submit(() -> sf.ausfuehren("raum-1", () -> {
+            gestartet.countDown();
+            abfragen.incrementAndGet();
+            try {
+                frei.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            if (fehler != null) {
+                throw fehler;
+            }
+            return 60;
+        })));
+        gestartet.await();
+        for (int i = 1; i < THREADS; i++) {
+            ergebnisse.add(pool.submit(() -> sf.ausfuehren("raum-1", () -> {
+                abfragen.incrementAndGet();
+                return -1;
+            })));
+        }
+        // warten, bis alle anderen an der laufenden Abfrage haengen
+        while (sf.getGeteilt() < THREADS - 1) {
+            Thread.sleep(1);
+        }
+        return ergebnisse;
+    }
+
+    @org.junit.Test
+    public void gleicheAufrufeTeilenEineAbfrage() throws Exception {
+        SingleFlight<String, Integer> sf = new SingleFlight<>();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            AtomicInteger abfragen = new AtomicInteger();
+            CountDownLatch frei = new CountDownLatch(1);
+            List<Future<Integer>> ergebnisse = gleichzeitig(sf, pool, frei, abfragen, null);
+            frei.countDown();
+            for (Future<Integer> f : ergebnisse) {
+                assertEquals(Integer.valueOf(60), f.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, abfragen.get());
+            assertEquals(THREADS - 1, sf.getGeteilt());
+            assertEquals(1, sf.getAbfragen());
+            assertEquals((THREADS - 1) / (double) THREADS, sf.getBuendelungsQuote(), 1e-9);
+
+            // nach dem Ende fragt der naechste Aufruf wieder selbst
+            assertEquals(Integer.valueOf(40), sf.ausfuehren("raum-1", () -> 40));
+            assertEquals(2, sf.getAbfragen());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @org.junit.Test
+    public void ausnahmeGiltFuerAlleWartenden() throws Exception {
+        SingleFlight<String, Integer> sf = new SingleFlight<>();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            RuntimeException fehler = new IllegalStateException("rid doesn't exist in db: 1");
+            CountDownLatch frei = new CountDownLatch(1);
+            List<Future<Integer>> ergebnisse = gleichzeitig(sf, pool, frei, new AtomicInteger(), fehler);
+            frei.countDown();
+            for (Future<Integer> f : ergebnisse) {
+                try {
+                    f.get(5, TimeUnit.SECONDS);
+                    fail();
+                } catch (java.util.concurrent.ExecutionException e) {
+                    assertSame(fehler, e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
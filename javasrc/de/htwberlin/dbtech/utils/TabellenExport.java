@@ -0,0 +1,513 @@
+package de.htwberlin.dbtech.utils;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Exportiert eine Tabelle oder das Ergebnis einer Abfrage in eine Datei, mit konstantem Speicherbedarf.
+ * <p>
+ * Gelesen wird mit einem forward-only Cursor und grosser Fetch-Groesse, geschrieben ueber einen
+ * wiederverwendeten Zeilenpuffer und einen ByteBuffer in einen FileChannel. Formate:
+ * <ul>
+ * <li>CSV im Aufbau von test-data/ (Kopfzeile mit Spaltennamen, Trenner ", ", null fuer SQL NULL), direkt
+ * mit CsvDataSet lesbar, wenn der Dateiname dem Tabellennamen entspricht.</li>
+ * <li>BINAER: je Spalte eine feste Kodierung (Ganzzahlen als varint, Dezimalzahlen als Skala und
+ * Zweierkomplement, Zeitpunkte als Millisekunden, Text als UTF-8), NULL als Bitmaske je Zeile. Lesbar mit
+ * {@link #leseBinaer(Path, Consumer)}.</li>
+ * </ul>
+ * Aufruf: TabellenExport tabelle|"select ..." datei [csv|binaer]
+ */
+public class TabellenExport {
+    private static final Logger L = LoggerFactory.getLogger(TabellenExport.class);
+
+    public enum Format {
+        CSV, BINAER
+    }
+
+    // Kodierung einer Spalte im Binaerformat
+    private static final byte GANZZAHL = 1;
+    private static final byte DEZIMAL = 2;
+    private static final byte FLIESSKOMMA = 3;
+    private static final byte ZEITPUNKT = 4;
+    private static final byte TEXT = 5;
+
+    private static final byte[] MAGIC = {'D', 'B', 'T', 'X', 1};
+    private static final byte ZEILE = 1;
+    private static final byte ENDE = 0;
+
+    private static final Pattern TABELLENNAME = Pattern.compile("[A-Za-z][A-Za-z0-9_$#.]*");
+    private static final long BERICHT_ALLE = 1_000_000;
+
+    private int fetchSize = 10_000;
+    private int pufferGroesse = 1 << 20;
+
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    public void setPufferGroesse(int pufferGroesse) {
+        this.pufferGroesse = pufferGroesse;
+    }
+
+    /**
+     * @param tabelleOderSelect Tabellenname oder vollstaendige select-Anweisung
+     * @return Anzahl exportierter Zeilen
+     */
+    public long exportiere(Connection connection, String tabelleOderSelect, Path ziel, Format format) {
+        String sql;
+        if (tabelleOderSelect.trim().toLowerCase().startsWith("select")) {
+            sql = tabelleOderSelect;
+        } else if (TABELLENNAME.matcher(tabelleOderSelect).matches()) {
+            sql = "select * from " + tabelleOderSelect;
+        } else {
+            throw new IllegalArgumentException("weder Tabellenname noch select: " + tabelleOderSelect);
+        }
+        L.info(sql);
+        long start = System.nanoTime();
+        long zeilen;
+        try (PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY);
+             FileChannel kanal = FileChannel.open(ziel, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            ps.setFetchSize(fetchSize);
+            try (ResultSet rs = ps.executeQuery()) {
+                Schreiber s = format == Format.CSV ? new CsvSchreiber(kanal, pufferGroesse)
+                        : new BinaerSchreiber(kanal, pufferGroesse);
+                zeilen = s.schreibe(rs, start);
+            }
+        } catch (SQLException e) {
+            L.error("", e);
+            throw new DataException(e);
+        } catch (IOException e) {
+            L.error("", e);
+            throw new UncheckedIOException(e);
+        }
+        L.info(String.format("exportiert: %d zeilen, %.0f zeilen/s", zeilen, zeilenJeSekunde(zeilen, start)));
+        return zeilen;
+    }
+
+    private static double zeilenJeSekunde(long zeilen, long startNanos) {
+        return zeilen / Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+    }
+
+    private abstract static class Schreiber {
+        final FileChannel kanal;
+        final ByteBuffer puffer;
+
+        Schreiber(FileChannel kanal, int pufferGroesse) {
+            this.kanal = kanal;
+            this.puffer = ByteBuffer.allocateDirect(pufferGroesse);
+        }
+
+        long schreibe(ResultSet rs, long start) throws SQLException, IOException {
+            ResultSetMetaData md = rs.getMetaData();
+            kopf(md);
+            long zeilen = 0;
+            while (rs.next()) {
+                zeile(rs, md.getColumnCount());
+                if (++zeilen % BERICHT_ALLE == 0) {
+                    L.info(String.format("%d zeilen, %.0f zeilen/s", zeilen, zeilenJeSekunde(zeilen, start)));
+                }
+            }
+            ende();
+            leeren();
+            return zeilen;
+        }
+
+        abstract void kopf(ResultSetMetaData md) throws SQLException, IOException;
+
+        abstract void zeile(ResultSet rs, int spalten) throws SQLException, IOException;
+
+        void ende() throws IOException {
+        }
+
+        void leeren() throws IOException {
+            puffer.flip();
+            while (puffer.hasRemaining()) {
+                kanal.write(puffer);
+            }
+            puffer.clear();
+        }
+
+        void platz(int bytes) throws IOException {
+            if (puffer.remaining() < bytes) {
+                leeren();
+            }
+        }
+    }
+
+    private static final class CsvSchreiber extends Schreiber {
+        private final StringBuilder zeile = new StringBuilder(256);
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private int[] typen;
+
+        CsvSchreiber(FileChannel kanal, int pufferGroesse) {
+            super(kanal, pufferGroesse);
+        }
+
+        @Override
+        void kopf(ResultSetMetaData md) throws SQLException, IOException {
+            typen = new int[md.getColumnCount()];
+            zeile.setLength(0);
+            for (int i = 1; i <= typen.length; i++) {
+                typen[i - 1] = md.getColumnType(i);
+                zeile.append(i > 1 ? ", " : "").append(md.getColumnLabel(i));
+            }
+            schreibeZeile();
+        }
+
+        @Override
+        void zeile(ResultSet rs, int spalten) throws SQLException, IOException {
+            zeile.setLength(0);
+            for (int i = 1; i <= spalten; i++) {
+                if (i > 1) {
+                    zeile.append(", ");
+                }
+                wert(rs, i);
+            }
+            schreibeZeile();
+        }
+
+        private void wert(ResultSet rs, int i) throws SQLException {
+            switch (typen[i - 1]) {
+                case Types.NUMERIC:
+                case Types.DECIMAL:
+                    BigDecimal d = rs.getBigDecimal(i);
+                    zeile.append(d == null ? "null" : d.toPlainString());
+                    return;
+                case Types.DATE:
+                case Types.TIMESTAMP:
+                    Timestamp t = rs.getTimestamp(i);
+                    zeile.append(t == null ? "null" : t.toString());
+                    return;
+                default:
+                    String s = rs.getString(i);
+                    if (s == null) {
+                        zeile.append("null");
+                    } else if (mussQuotieren(s)) {
+                        zeile.append('"');
+                        for (int k = 0; k < s.length(); k++) {
+                            char c = s.charAt(k);
+                            if (c == '"' || c == '\\') {
+                                zeile.append('\\');
+                            }
+                            zeile.append(c);
+                        }
+                        zeile.append('"');
+                    } else {
+                        zeile.append(s);
+                    }
+            }
+        }
+
+        // der CSV-Parser von DbUnit entfernt Leerraum am Rand und liest null als SQL NULL
+        private static boolean mussQuotieren(String s) {
+            if (s.isEmpty() || s.equals("null") || Character.isWhitespace(s.charAt(0))
+                    || Character.isWhitespace(s.charAt(s.length() - 1))) {
+                return true;
+            }
+            for (int k = 0; k < s.length(); k++) {
+                char c = s.charAt(k);
+                if (c == ',' || c == '"' || c == '\\' || c == '\n' || c == '\r') {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void schreibeZeile() throws IOException {
+            zeile.append('\n');
+            CharBuffer zeichen = CharBuffer.wrap(zeile);
+            while (true) {
+                CoderResult r = encoder.encode(zeichen, puffer, true);
+                if (r.isOverflow()) {
+                    leeren();
+                } else {
+                    if (r.isError()) {
+                        r.throwException();
+                    }
+                    break;
+                }
+            }
+            encoder.reset();
+        }
+    }
+
+    private static final class BinaerSchreiber extends Schreiber {
+        // nimmt eine Zeile auf, bevor sie mit vorangestellter NULL-Maske in den Ausgabepuffer kommt
+        private ByteBuffer zeile = ByteBuffer.allocate(4096);
+        private byte[] arten;
+        private byte[] nullMaske;
+
+        BinaerSchreiber(FileChannel kanal, int pufferGroesse) {
+            super(kanal, pufferGroesse);
+        }
+
+        @Override
+        void kopf(ResultSetMetaData md) throws SQLException, IOException {
+            int n = md.getColumnCount();
+            arten = new byte[n];
+            nullMaske = new byte[(n + 7) / 8];
+            zeile.clear();
+            sichere(MAGIC.length);
+            zeile.put(MAGIC);
+            varlong(n);
+            for (int i = 1; i <= n; i++) {
+                arten[i - 1] = art(md, i);
+                sichere(1);
+                zeile.put(arten[i - 1]);
+                bytes(md.getColumnLabel(i).getBytes(StandardCharsets.UTF_8));
+            }
+            ausgeben();
+        }
+
+        private static byte art(ResultSetMetaData md, int i) throws SQLException {
+            switch (md.getColumnType(i)) {
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                case Types.INTEGER:
+                case Types.BIGINT:
+                    return GANZZAHL;
+                case Types.NUMERIC:
+                case Types.DECIMAL:
+                    // Oracle meldet integer als number(38, 0) und number ohne Angaben mit Praezision 0; Werte
+                    // ausserhalb von long lehnt getLong mit einer SQLException ab
+                    return md.getScale(i) == 0 && md.getPrecision(i) > 0 ? GANZZAHL : DEZIMAL;
+                case Types.REAL:
+                case Types.FLOAT:
+                case Types.DOUBLE:
+                    return FLIESSKOMMA;
+                case Types.DATE:
+                case Types.TIMESTAMP:
+                    return ZEITPUNKT;
+                default:
+                    return TEXT;
+            }
+        }
+
+        @Override
+        void zeile(ResultSet rs, int spalten) throws SQLException, IOException {
+            Arrays.fill(nullMaske, (byte) 0);
+            zeile.clear();
+            sichere(1 + nullMaske.length);
+            zeile.put(ZEILE);
+            zeile.position(1 + nullMaske.length);
+            for (int i = 1; i <= spalten; i++) {
+                if (!wert(rs, i)) {
+                    nullMaske[(i - 1) >>> 3] |= (byte) (1 << ((i - 1) & 7));
+                }
+            }
+            zeile.put(1, nullMaske);
+            ausgeben();
+        }
+
+        // schreibt den Wert und liefert false bei NULL
+        private boolean wert(ResultSet rs, int i) throws SQLException {
+            switch (arten[i - 1]) {
+                case GANZZAHL:
+                    long l = rs.getLong(i);
+                    if (rs.wasNull()) {
+                        return false;
+                    }
+                    varlong(l);
+                    return true;
+                case DEZIMAL:
+                    BigDecimal d = rs.getBigDecimal(i);
+                    if (d == null) {
+                        return false;
+                    }
+                    varlong(d.scale());
+                    bytes(d.unscaledValue().toByteArray());
+                    return true;
+                case FLIESSKOMMA:
+                    double f = rs.getDouble(i);
+                    if (rs.wasNull()) {
+                        return false;
+                    }
+                    sichere(8);
+                    zeile.putDouble(f);
+                    return true;
+                case ZEITPUNKT:
+                    Timestamp t = rs.getTimestamp(i);
+                    if (t == null) {
+                        return false;
+                    }
+                    varlong(t.getTime());
+                    varlong(t.getNanos() % 1_000_000);
+                    return true;
+                default:
+                    String s = rs.getString(i);
+                    if (s == null) {
+                        return false;
+                    }
+                    bytes(s.getBytes(StandardCharsets.UTF_8));
+                    return true;
+            }
+        }
+
+        @Override
+        void ende() throws IOException {
+            zeile.clear();
+            zeile.put(ENDE);
+            ausgeben();
+        }
+
+        private void ausgeben() throws IOException {
+            zeile.flip();
+            if (zeile.remaining() > puffer.capacity()) {
+                leeren();
+                while (zeile.hasRemaining()) {
+                    kanal.write(zeile);
+                }
+            } else {
+                platz(zeile.remaining());
+                puffer.put(zeile);
+            }
+        }
+
+        private void sichere(int bytes) {
+            if (zeile.remaining() < bytes) {
+                ByteBuffer groesser = ByteBuffer.allocate(Math.max(zeile.capacity() * 2, zeile.position() + bytes));
+                zeile.flip();
+                groesser.put(zeile);
+                zeile = groesser;
+            }
+        }
+
+        private void varlong(long wert) {
+            sichere(10);
+            // zigzag, damit kleine negative Werte kurz bleiben
+            long v = (wert << 1) ^ (wert >> 63);
+            while ((v & ~0x7FL) != 0) {
+                zeile.put((byte) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            zeile.put((byte) v);
+        }
+
+        private void bytes(byte[] b) {
+            varlong(b.length);
+            sichere(b.length);
+            zeile.put(b);
+        }
+    }
+
+    /**
+     * Liest eine Binaerdatei und uebergibt jede Zeile; der Zeilenpuffer wird fuer alle Zeilen wiederverwendet.
+     * Werte sind Long, BigDecimal, Double, Timestamp oder String, NULL ist null.
+     *
+     * @return die Spaltennamen
+     */
+    public static List<String> leseBinaer(Path quelle, Consumer<Object[]> zeile) {
+        try (FileChannel kanal = FileChannel.open(quelle, StandardOpenOption.READ);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(kanal), 1 << 16))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("kein TabellenExport-Binaerformat: " + quelle);
+            }
+            int n = (int) varlong(in);
+            byte[] arten = new byte[n];
+            List<String> spalten = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                arten[i] = in.readByte();
+                spalten.add(new String(bytes(in), StandardCharsets.UTF_8));
+            }
+            byte[] nullMaske = new byte[(n + 7) / 8];
+            Object[] werte = new Object[n];
+            while (in.readByte() == ZEILE) {
+                in.readFully(nullMaske);
+                for (int i = 0; i < n; i++) {
+                    werte[i] = (nullMaske[i >>> 3] & (1 << (i & 7))) != 0 ? null : lese(in, arten[i]);
+                }
+                zeile.accept(werte);
+            }
+            return spalten;
+        } catch (EOFException e) {
+            throw new UncheckedIOException("Datei endet vor der Endemarke: " + quelle, e);
+        } catch (IOException e) {
+            L.error("", e);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Object lese(DataInputStream in, byte art) throws IOException {
+        switch (art) {
+            case GANZZAHL:
+                return varlong(in);
+            case DEZIMAL:
+                int skala = (int) varlong(in);
+                return new BigDecimal(new BigInteger(bytes(in)), skala);
+            case FLIESSKOMMA:
+                return in.readDouble();
+            case ZEITPUNKT:
+                Timestamp t = new Timestamp(varlong(in));
+                t.setNanos(t.getNanos() + (int) varlong(in));
+                return t;
+            default:
+                return new String(bytes(in), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static long varlong(InputStream in) throws IOException {
+        long v = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (v >>> 1) ^ -(v & 1);
+            }
+        }
+    }
+
+    private static byte[] bytes(DataInputStream in) throws IOException {
+        byte[] b = new byte[(int) varlong(in)];
+        in.readFully(b);
+        return b;
+    }
+
+    public static void main(String[] args) throws SQLException {
+        if (args.length < 2) {
+            System.err.println("Aufruf: TabellenExport tabelle|\"select ...\" datei [csv|binaer]");
+            return;
+        }
+        Format format = args.length > 2 && args[2].equalsIgnoreCase("binaer") ? Format.BINAER : Format.CSV;
+        try (Connection c = JdbcUtils.getConnectionViaDriverManager(DbCred.url, DbCred.user, DbCred.password)) {
+            new TabellenExport().exportiere(c, args[0], Path.of(args[1]), format);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package de.htwberlin.dbtech.utils;
+
+import org.dbunit.Assertion;
+import org.dbunit.IDatabaseTester;
+import org.dbunit.JdbcDatabaseTester;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.csv.CsvDataSet;
+import org.dbunit.operation.DatabaseOperation;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.runners.MethodSorters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TabellenExportTest {
+    private static final Logger L = LoggerFactory.getLogger(TabellenExportTest.class);
+    private static IDatabaseConnection dbTesterCon = null;
+    private static Path verzeichnis = null;
+
+    private static final TabellenExport export = new TabellenExport();
+
+    @BeforeClass
+    public static void setUp() {
+        L.debug("setup: start");
+        try {
+            IDatabaseTester dbTester = new JdbcDatabaseTester(DbCred.driverClass, DbCred.url, DbCred.user, DbCred.password,
+                    DbCred.schema);
+            dbTesterCon = dbTester.getConnection();
+            IDataSet pre = new CsvDataSet(new File("test-data/auktion"));
+            dbTester.setDataSet(pre);
+            DatabaseOperation.CLEAN_INSERT.execute(dbTesterCon, pre);
+            verzeichnis = Files.createTempDirectory("tabellenexport");
+            // kleiner Puffer, damit auch das Leeren mitten im Export geprueft wird
+            export.setPufferGroesse(64);
+        } catch (Exception e) {
+            DbUnitUtils.closeDbUnitConnectionQuietly(dbTesterCon);
+            throw new RuntimeException(e);
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        L.debug("tearDown: start");
+        DbUnitUtils.closeDbUnitConnectionQuietly(dbTesterCon);
+    }
+
+    /**
+     * Die exportierte CSV-Datei laesst sich mit CsvDataSet lesen und enthaelt dieselben Zeilen wie die Tabelle.
+     */
+    @org.junit.Test
+    public void aaaCsv() throws Exception {
+        long zeilen = export.exportiere(dbTesterCon.getConnection(), "Angebot", verzeichnis.resolve("angebot.csv"),
+                TabellenExport.Format.CSV);
+        Assert.assertEquals(6, zeilen);
+        Files.writeString(verzeichnis.resolve("table-ordering.txt"), "angebot\n");
+        ITable exportiert = new CsvDataSet(verzeichnis.toFile()).getTable("angebot");
+        ITable tabelle = dbTesterCon.createQueryTable("angebot", "select * from Angebot");
+        Assertion.assertEquals(tabelle, exportiert);
+    }
+
+    /**
+     * Das Binaerformat gibt Werte und NULL unveraendert zurueck.
+     */
+    @org.junit.Test
+    public void bbbBinaer() throws Exception {
+        Path datei = verzeichnis.resolve("gebot.bin");
+        export.exportiere(dbTesterCon.getConnection(), "select GID, GebotsPreis, Bieter from Gebot order by GID",
+                datei, TabellenExport.Format.BINAER);
+        List<Object[]> zeilen = new ArrayList<>();
+        List<String> spalten = TabellenExport.leseBinaer(datei, z -> zeilen.add(z.clone()));
+        Assert.assertEquals(List.of("GID", "GEBOTSPREIS", "BIETER"), spalten);
+        Assert.assertEquals(8, zeilen.size());
+        Assert.assertEquals(1L, zeilen.get(0)[0]);
+        Assert.assertEquals(0, new BigDecimal("60.00").compareTo((BigDecimal) zeilen.get(0)[1]));
+        Assert.assertNull(zeilen.get(0)[2]);
+    }
+}
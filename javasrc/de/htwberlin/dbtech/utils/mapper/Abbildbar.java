@@ -0,0 +1,16 @@
+package de.htwberlin.dbtech.utils.mapper;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Kennzeichnet eine Klasse, fuer die der {@link MapperProzessor} einen Mapper &lt;Klasse&gt;Mapper im selben
+ * Paket erzeugt. Abgebildet werden die mit {@link Spalte} gekennzeichneten Felder ueber ihre Setter; die Klasse
+ * braucht einen Konstruktor ohne Parameter.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface Abbildbar {
+}
@@ -0,0 +1,231 @@
+package de.htwberlin.dbtech.utils.mapper;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Erzeugt zu jeder mit {@link Abbildbar} gekennzeichneten Klasse einen {@link ZeilenMapper}.
+ * <p>
+ * Der erzeugte Mapper wird je ResultSet angelegt und liest dabei einmal die Spaltenindizes aus den Metadaten;
+ * je Zeile wird dann nur noch ueber den Index gelesen, ohne Reflection. Liefert das Select eine gekennzeichnete
+ * Spalte nicht, wirft schon der Konstruktor eine SQLException. Wrapper-Typen werden bei NULL zu null, primitive
+ * Typen wie bei rs.getInt zu 0. LocalDate und LocalDateTime werden direkt ueber rs.getObject gelesen.
+ * <p>
+ * Die erzeugten Mapper liegen mit im Quellbaum, der Rest des Projekts uebersetzt also auch ohne Prozessor. Fuer
+ * eine neue oder geaenderte Klasse den alten Mapper loeschen und mit dem Prozessor neu erzeugen:
+ * <pre>
+ * javac -cp "javalib/*" -d out javasrc/de/htwberlin/dbtech/utils/mapper/*.java
+ * javac -cp "out:javalib/*" -processorpath out -processor de.htwberlin.dbtech.utils.mapper.MapperProzessor \
+ *       -d out -s javasrc ...
+ * </pre>
+ * Einen vorhandenen Mapper ueberschreibt der Prozessor nicht; passen seine Spalten nicht mehr zur Klasse, meldet
+ * er einen Fehler.
+ */
+@SupportedAnnotationTypes("de.htwberlin.dbtech.utils.mapper.Abbildbar")
+public class MapperProzessor extends AbstractProcessor {
+
+    // Feldtyp auf Ausdruck zum Lesen, %s ist der Spaltenindex
+    private static final Map<String, String> LESEN = new HashMap<>();
+    // Wrapper-Typ auf primitiven Typ, gelesen wird primitiv und danach auf NULL geprueft
+    private static final Map<String, String> WRAPPER = new HashMap<>();
+
+    static {
+        LESEN.put("int", "rs.getInt(%s)");
+        LESEN.put("long", "rs.getLong(%s)");
+        LESEN.put("double", "rs.getDouble(%s)");
+        LESEN.put("boolean", "rs.getBoolean(%s)");
+        LESEN.put("java.lang.String", "rs.getString(%s)");
+        LESEN.put("java.math.BigDecimal", "rs.getBigDecimal(%s)");
+        LESEN.put("java.sql.Timestamp", "rs.getTimestamp(%s)");
+        LESEN.put("java.time.LocalDate", "rs.getObject(%s, java.time.LocalDate.class)");
+        LESEN.put("java.time.LocalDateTime", "rs.getObject(%s, java.time.LocalDateTime.class)");
+        WRAPPER.put("java.lang.Integer", "int");
+        WRAPPER.put("java.lang.Long", "long");
+        WRAPPER.put("java.lang.Double", "double");
+        WRAPPER.put("java.lang.Boolean", "boolean");
+    }
+
+    private static final class Feld {
+        final String name;
+        final String spalte;
+        final String typ;
+        final String setter;
+
+        Feld(String name, String spalte, String typ, String setter) {
+            this.name = name;
+            this.spalte = spalte;
+            this.typ = typ;
+            this.setter = setter;
+        }
+
+        // Feld des Mappers mit dem Spaltenindex
+        String index() {
+            return name + "Index";
+        }
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element e : roundEnv.getElementsAnnotatedWith(Abbildbar.class)) {
+            if (e.getKind() != ElementKind.CLASS) {
+                fehler(e, "@Abbildbar ist nur fuer Klassen moeglich");
+                continue;
+            }
+            TypeElement klasse = (TypeElement) e;
+            List<Feld> felder = felder(klasse);
+            if (felder == null || !hatKonstruktorOhneParameter(klasse)) {
+                continue;
+            }
+            TypeElement vorhanden = processingEnv.getElementUtils().getTypeElement(mapperName(klasse));
+            if (vorhanden == null) {
+                schreibe(klasse, felder);
+            } else if (!passt(vorhanden, felder)) {
+                fehler(vorhanden, vorhanden.getSimpleName() + " passt nicht zu " + klasse.getSimpleName()
+                        + ", bitte loeschen und neu erzeugen");
+            }
+        }
+        return true;
+    }
+
+    // null, wenn ein Feld nicht abgebildet werden kann
+    private List<Feld> felder(TypeElement klasse) {
+        List<Feld> felder = new ArrayList<>();
+        boolean ok = true;
+        for (VariableElement v : ElementFilter.fieldsIn(klasse.getEnclosedElements())) {
+            Spalte spalte = v.getAnnotation(Spalte.class);
+            if (spalte == null) {
+                continue;
+            }
+            String name = v.getSimpleName().toString();
+            String typ = v.asType().toString();
+            if (!LESEN.containsKey(typ) && !WRAPPER.containsKey(typ)) {
+                fehler(v, "Typ " + typ + " wird nicht unterstuetzt");
+                ok = false;
+                continue;
+            }
+            String setter = "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+            if (!hatSetter(klasse, setter, v)) {
+                fehler(v, "kein Setter " + setter + "(" + typ + ")");
+                ok = false;
+                continue;
+            }
+            felder.add(new Feld(name, spalte.value().isEmpty() ? name : spalte.value(), typ, setter));
+        }
+        return ok ? felder : null;
+    }
+
+    private boolean hatSetter(TypeElement klasse, String setter, VariableElement feld) {
+        for (ExecutableElement m : ElementFilter.methodsIn(klasse.getEnclosedElements())) {
+            if (m.getSimpleName().contentEquals(setter) && m.getParameters().size() == 1
+                    && !m.getModifiers().contains(Modifier.PRIVATE)
+                    && processingEnv.getTypeUtils().isSameType(m.getParameters().get(0).asType(), feld.asType())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hatKonstruktorOhneParameter(TypeElement klasse) {
+        for (ExecutableElement k : ElementFilter.constructorsIn(klasse.getEnclosedElements())) {
+            if (k.getParameters().isEmpty() && !k.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        fehler(klasse, "@Abbildbar braucht einen Konstruktor ohne Parameter");
+        return false;
+    }
+
+    private String mapperName(TypeElement klasse) {
+        PackageElement paket = processingEnv.getElementUtils().getPackageOf(klasse);
+        String mapperName = klasse.getSimpleName() + "Mapper";
+        return paket.isUnnamed() ? mapperName : paket.getQualifiedName() + "." + mapperName;
+    }
+
+    // ein vorhandener Mapper passt, wenn er genau fuer die gekennzeichneten Felder einen Index hat
+    private boolean passt(TypeElement mapper, List<Feld> felder) {
+        List<String> erwartet = new ArrayList<>();
+        for (Feld f : felder) {
+            erwartet.add(f.index());
+        }
+        List<String> vorhanden = new ArrayList<>();
+        for (VariableElement v : ElementFilter.fieldsIn(mapper.getEnclosedElements())) {
+            vorhanden.add(v.getSimpleName().toString());
+        }
+        return vorhanden.equals(erwartet);
+    }
+
+    private void schreibe(TypeElement klasse, List<Feld> felder) {
+        PackageElement paket = processingEnv.getElementUtils().getPackageOf(klasse);
+        String klassenName = klasse.getSimpleName().toString();
+        String mapperName = klassenName + "Mapper";
+        String voll = mapperName(klasse);
+        try (PrintWriter w = new PrintWriter(processingEnv.getFiler().createSourceFile(voll, klasse).openWriter())) {
+            if (!paket.isUnnamed()) {
+                w.println("package " + paket.getQualifiedName() + ";");
+                w.println();
+            }
+            w.println("/**");
+            w.println(" * Erzeugt von " + MapperProzessor.class.getSimpleName() + " aus " + klassenName + ".");
+            w.println(" */");
+            w.println("@javax.annotation.processing.Generated(\"" + MapperProzessor.class.getName() + "\")");
+            w.println("public final class " + mapperName
+                    + " implements de.htwberlin.dbtech.utils.mapper.ZeilenMapper<" + klassenName + "> {");
+            for (Feld f : felder) {
+                w.println("    private final int " + f.index() + ";");
+            }
+            w.println();
+            w.println("    public " + mapperName + "(java.sql.ResultSet rs) throws java.sql.SQLException {");
+            w.println("        de.htwberlin.dbtech.utils.mapper.Spalten s = de.htwberlin.dbtech.utils.mapper.Spalten.von(rs);");
+            for (Feld f : felder) {
+                w.println("        " + f.index() + " = s.pflicht(\"" + f.spalte + "\");");
+            }
+            w.println("    }");
+            w.println();
+            w.println("    @Override");
+            w.println("    public " + klassenName + " abbilden(java.sql.ResultSet rs) throws java.sql.SQLException {");
+            w.println("        " + klassenName + " o = new " + klassenName + "();");
+            for (Feld f : felder) {
+                String primitiv = WRAPPER.get(f.typ);
+                if (primitiv == null) {
+                    w.println("        o." + f.setter + "(" + String.format(LESEN.get(f.typ), f.index()) + ");");
+                } else {
+                    w.println("        " + primitiv + " " + f.name + "Wert = "
+                            + String.format(LESEN.get(primitiv), f.index()) + ";");
+                    w.println("        o." + f.setter + "(rs.wasNull() ? null : " + f.name + "Wert);");
+                }
+            }
+            w.println("        return o;");
+            w.println("    }");
+            w.println("}");
+        } catch (IOException e) {
+            fehler(klasse, "Mapper nicht geschrieben: " + e.getMessage());
+        }
+    }
+
+    private void fehler(Element e, String meldung) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, meldung, e);
+    }
+}
@@ -0,0 +1,199 @@
+package de.htwberlin.dbtech.utils.mapper;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MapperProzessorTest {
+
+    private static final String PERSON = "package p;\n"
+            + "import de.htwberlin.dbtech.utils.mapper.*;\n"
+            + "@Abbildbar public class Person {\n"
+            + "  @Spalte(\"PID\") private Integer id;\n"
+            + "  @Spalte private String name;\n"
+            + "  @Spalte private java.time.LocalDate geboren;\n"
+            + "  @Spalte private int anzahl = -1;\n"
+            + "  private Object nichtAbgebildet;\n"
+            + "  public Integer getId() { return id; }\n"
+            + "  public void setId(Integer id) { this.id = id; }\n"
+            + "  public String getName() { return name; }\n"
+            + "  void setName(String name) { this.name = name; }\n"
+            + "  public java.time.LocalDate getGeboren() { return geboren; }\n"
+            + "  public void setGeboren(java.time.LocalDate geboren) { this.geboren = geboren; }\n"
+            + "  public int getAnzahl() { return anzahl; }\n"
+            + "  public void setAnzahl(int anzahl) { this.anzahl = anzahl; }\n"
+            + "}\n";
+
+    private static final class Quelle extends SimpleJavaFileObject {
+        private final String text;
+
+        Quelle(String klasse, String text) {
+            super(URI.create("string:///" + klasse.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.text = text;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return text;
+        }
+    }
+
+    private static DiagnosticCollector<JavaFileObject> uebersetze(Path ziel, String klasse, String text)
+            throws Exception {
+        return uebersetze(ziel, new Quelle(klasse, text));
+    }
+
+    private static DiagnosticCollector<JavaFileObject> uebersetze(Path ziel, Quelle... quellen) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> meldungen = new DiagnosticCollector<>();
+        try (StandardJavaFileManager dateien = compiler.getStandardFileManager(meldungen, null, null)) {
+            JavaCompiler.CompilationTask task = compiler.getTask(null, dateien, meldungen,
+                    Arrays.asList("-d", ziel.toString(), "-s", ziel.toString(),
+                            "-cp", System.getProperty("java.class.path")),
+                    null, Arrays.asList(quellen));
+            task.setProcessors(Collections.singletonList(new MapperProzessor()));
+            task.call();
+        }
+        return meldungen;
+    }
+
+    private static boolean hatFehler(DiagnosticCollector<JavaFileObject> meldungen, String text) {
+        for (Diagnostic<? extends JavaFileObject> d : meldungen.getDiagnostics()) {
+            if (d.getKind() == Diagnostic.Kind.ERROR && d.getMessage(null).contains(text)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ResultSet mit einer Zeile; fehlende Spalten gibt es nicht
+    private static ResultSet resultSet(String[] spalten, Object[] werte) {
+        boolean[] warNull = {false};
+        ResultSetMetaData md = (ResultSetMetaData) Proxy.newProxyInstance(
+                MapperProzessorTest.class.getClassLoader(), new Class<?>[]{ResultSetMetaData.class}, (p, m, a) -> {
+                    if (m.getName().equals("getColumnCount")) {
+                        return spalten.length;
+                    }
+                    return spalten[(Integer) a[0] - 1];
+                });
+        return (ResultSet) Proxy.newProxyInstance(MapperProzessorTest.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (p, m, a) -> {
+                    switch (m.getName()) {
+                        case "getMetaData":
+                            return md;
+                        case "wasNull":
+                            return warNull[0];
+                        default:
+                            Object wert = werte[(Integer) a[0] - 1];
+                            warNull[0] = wert == null;
+                            return wert == null && m.getName().equals("getInt") ? 0 : wert;
+                    }
+                });
+    }
+
+    @org.junit.Test
+    public void erzeugterMapperLiestUeberIndex() throws Exception {
+        Path ziel = Files.createTempDirectory("mapper");
+        DiagnosticCollector<JavaFileObject> meldungen = uebersetze(ziel, "p.Person", PERSON);
+        assertTrue(meldungen.getDiagnostics().toString(), Files.exists(ziel.resolve("p/PersonMapper.class")));
+
+        try (URLClassLoader lader = new URLClassLoader(new URL[]{ziel.toUri().toURL()},
+                MapperProzessorTest.class.getClassLoader())) {
+            Class<?> mapperKlasse = lader.loadClass("p.PersonMapper");
+            // Spalten in anderer Reihenfolge und Schreibweise
+            ResultSet rs = resultSet(new String[]{"GEBOREN", "Anzahl", "Name", "pid"},
+                    new Object[]{LocalDate.of(2000, 2, 29), 7, "Anna", null});
+            ZeilenMapper<?> mapper = (ZeilenMapper<?>) mapperKlasse.getConstructor(ResultSet.class).newInstance(rs);
+            Object person = mapper.abbilden(rs);
+            Class<?> k = person.getClass();
+            assertNull(k.getMethod("getId").invoke(person));
+            assertEquals("Anna", k.getMethod("getName").invoke(person));
+            assertEquals(LocalDate.of(2000, 2, 29), k.getMethod("getGeboren").invoke(person));
+            assertEquals(7, k.getMethod("getAnzahl").invoke(person));
+        }
+    }
+
+    @org.junit.Test
+    public void fehlendeSpalteGibtEineSQLException() throws Exception {
+        Path ziel = Files.createTempDirectory("mapper");
+        uebersetze(ziel, "p.Person", PERSON);
+        try (URLClassLoader lader = new URLClassLoader(new URL[]{ziel.toUri().toURL()},
+                MapperProzessorTest.class.getClassLoader())) {
+            ResultSet rs = resultSet(new String[]{"GEBOREN", "Name", "pid"}, new Object[]{null, "Anna", 1});
+            try {
+                lader.loadClass("p.PersonMapper").getConstructor(ResultSet.class).newInstance(rs);
+                fail("anzahl fehlt");
+            } catch (InvocationTargetException e) {
+                assertTrue(e.getCause() instanceof SQLException);
+                assertEquals("Spalte anzahl fehlt im Select", e.getCause().getMessage());
+            }
+        }
+    }
+
+    @org.junit.Test
+    public void vorhandenerMapperWirdNichtUeberschrieben() throws Exception {
+        Path ziel = Files.createTempDirectory("mapper");
+        String mapper = "package p;\n"
+                + "public final class PersonMapper {\n"
+                + "  private final int idIndex = 1, nameIndex = 2, geborenIndex = 3, anzahlIndex = 4;\n"
+                + "}\n";
+        DiagnosticCollector<JavaFileObject> meldungen = uebersetze(ziel, new Quelle("p.Person", PERSON),
+                new Quelle("p.PersonMapper", mapper));
+        assertTrue(meldungen.getDiagnostics().toString(), meldungen.getDiagnostics().isEmpty());
+        assertFalse(Files.exists(ziel.resolve("p/PersonMapper.java")));
+    }
+
+    @org.junit.Test
+    public void veralteterMapperGibtEinenFehler() throws Exception {
+        Path ziel = Files.createTempDirectory("mapper");
+        String mapper = "package p;\n"
+                + "public final class PersonMapper {\n"
+                + "  private final int idIndex = 1, nameIndex = 2, geborenIndex = 3;\n"
+                + "}\n";
+        DiagnosticCollector<JavaFileObject> meldungen = uebersetze(ziel, new Quelle("p.Person", PERSON),
+                new Quelle("p.PersonMapper", mapper));
+        assertTrue(meldungen.getDiagnostics().toString(), hatFehler(meldungen, "PersonMapper passt nicht zu Person"));
+    }
+
+    @org.junit.Test
+    public void ohneSetterGibtEsEinenFehler() throws Exception {
+        Path ziel = Files.createTempDirectory("mapper");
+        String ohneSetter = PERSON.replace("  public void setAnzahl(int anzahl) { this.anzahl = anzahl; }\n", "");
+        DiagnosticCollector<JavaFileObject> meldungen = uebersetze(ziel, "p.Person", ohneSetter);
+        assertTrue(meldungen.getDiagnostics().toString(), hatFehler(meldungen, "kein Setter setAnzahl(int)"));
+        assertFalse(new File(ziel.toFile(), "p/PersonMapper.java").exists());
+    }
+
+    @org.junit.Test
+    public void nichtUnterstuetzterTypGibtEinenFehler() throws Exception {
+        Path ziel = Files.createTempDirectory("mapper");
+        String mitObject = PERSON.replace("  private Object nichtAbgebildet;", "  @Spalte private Object nichtAbgebildet;");
+        DiagnosticCollector<JavaFileObject> meldungen = uebersetze(ziel, "p.Person", mitObject);
+        assertTrue(meldungen.getDiagnostics().toString(),
+                hatFehler(meldungen, "Typ java.lang.Object wird nicht unterstuetzt"));
+    }
+}
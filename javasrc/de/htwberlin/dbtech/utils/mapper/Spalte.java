@@ -0,0 +1,18 @@
+package de.htwberlin.dbtech.utils.mapper;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Feld, das aus einer Spalte des ResultSets gelesen wird.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface Spalte {
+    /**
+     * Spaltenname, ohne Angabe der Feldname. Gross- und Kleinschreibung spielen keine Rolle.
+     */
+    String value() default "";
+}
@@ -0,0 +1,49 @@
+package de.htwberlin.dbtech.utils.mapper;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Spaltenindizes eines ResultSets nach Spaltenname, einmal aus den Metadaten gelesen.
+ */
+public final class Spalten {
+    private final Map<String, Integer> indizes;
+
+    private Spalten(Map<String, Integer> indizes) {
+        this.indizes = indizes;
+    }
+
+    public static Spalten von(ResultSet rs) throws SQLException {
+        ResultSetMetaData md = rs.getMetaData();
+        int anzahl = md.getColumnCount();
+        Map<String, Integer> indizes = new HashMap<>(anzahl * 2);
+        for (int i = anzahl; i >= 1; i--) {
+            // bei doppelten Namen gilt wie bei rs.getXxx(name) die erste Spalte
+            indizes.put(md.getColumnLabel(i).toUpperCase(Locale.ROOT), i);
+        }
+        return new Spalten(indizes);
+    }
+
+    /**
+     * @return Index ab 1 oder 0, wenn die Spalte nicht gelesen wurde
+     */
+    public int index(String name) {
+        return indizes.getOrDefault(name.toUpperCase(Locale.ROOT), 0);
+    }
+
+    /**
+     * @return Index ab 1
+     * @throws SQLException wenn die Spalte nicht gelesen wurde
+     */
+    public int pflicht(String name) throws SQLException {
+        int index = index(name);
+        if (index == 0) {
+            throw new SQLException("Spalte " + name + " fehlt im Select");
+        }
+        return index;
+    }
+}
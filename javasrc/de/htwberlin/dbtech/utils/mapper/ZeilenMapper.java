@@ -0,0 +1,11 @@
+package de.htwberlin.dbtech.utils.mapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Bildet die aktuelle Zeile eines ResultSets auf ein Objekt ab. Ein Mapper gehoert zu genau einem ResultSet.
+ */
+public interface ZeilenMapper<T> {
+    T abbilden(ResultSet rs) throws SQLException;
+}